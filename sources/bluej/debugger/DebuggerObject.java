@@ -22,6 +22,7 @@
 package bluej.debugger;
 
 import java.lang.reflect.Modifier;
+import java.util.ArrayList;
 import java.util.List;
 
 import bluej.debugger.gentype.GenTypeClass;
@@ -124,6 +125,55 @@ public abstract class DebuggerObject
      * For any other reference type, the return will be DebuggerObject.OBJECT_REFERENCE.
      */
     public abstract String getElementValueString(int index);
+    
+    /**
+     * Return the array element objects for a range of indexes. Where possible, the
+     * elements are fetched together rather than one at a time.
+     * 
+     * @param index   The index of the first element
+     * @param length  The number of elements
+     */
+    public List<DebuggerObject> getElementObjects(int index, int length)
+    {
+        List<DebuggerObject> elements = new ArrayList<>(length);
+        for (int i = index; i < index + length; i++) {
+            elements.add(getElementObject(i));
+        }
+        return elements;
+    }
+    
+    /**
+     * Return string representations (as for getElementValueString) of the array
+     * elements for a range of indexes. Where possible, the elements are fetched
+     * together rather than one at a time.
+     * 
+     * @param index   The index of the first element
+     * @param length  The number of elements
+     */
+    public List<String> getElementValueStrings(int index, int length)
+    {
+        List<String> elements = new ArrayList<>(length);
+        for (int i = index; i < index + length; i++) {
+            elements.add(getElementValueString(i));
+        }
+        return elements;
+    }
+    
+    /**
+     * Return string representations (as for DebuggerField.getValueString) of the
+     * values of some of this object's fields. Where possible, the values are fetched
+     * together rather than one at a time.
+     * 
+     * @param fields  Fields of this object, as returned by getFields()
+     */
+    public List<String> getFieldValueStrings(List<DebuggerField> fields)
+    {
+        List<String> values = new ArrayList<>(fields.size());
+        for (DebuggerField field : fields) {
+            values.add(field.getValueString());
+        }
+        return values;
+    }
 
     /**
      * Return the JDI object. This exposes the JDI to Inspectors.
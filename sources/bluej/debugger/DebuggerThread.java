@@ -60,6 +60,14 @@ public abstract class DebuggerThread
     @OnThread(Tag.VMEventHandler)
     public abstract List<SourceLocation> getStack();
 
+    /**
+     * Get a view of the current execution stack in which frames are only
+     * retrieved as they are accessed. The view is only valid while the
+     * thread remains halted; it should not be kept after resuming the thread.
+     */
+    @OnThread(Tag.VMEventHandler)
+    public abstract List<SourceLocation> getStackView();
+
     @OnThread(Tag.VMEventHandler)
     public abstract List<?> getLocalVariables(int frameNo);
     @OnThread(Tag.VMEventHandler)
@@ -28,6 +28,9 @@ import bluej.debugger.gentype.GenTypeClass;
 import bluej.debugger.gentype.JavaType;
 import bluej.debugger.gentype.Reflective;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import com.sun.jdi.ArrayReference;
 import com.sun.jdi.ArrayType;
 import com.sun.jdi.ObjectReference;
@@ -195,4 +198,38 @@ public class JdiArray extends JdiObject
         Value val = ((ArrayReference) obj).getValue(index);
         return JdiObject.getDebuggerObject((ObjectReference) val, componentType);
     }
+    
+    /**
+     * Return the array element objects for a range of indexes, fetching the elements
+     * from the remote VM in a single request.
+     */
+    @Override
+    public List<DebuggerObject> getElementObjects(int index, int length)
+    {
+        List<DebuggerObject> elements = new ArrayList<>(length);
+        if (length == 0) {
+            return elements;
+        }
+        for (Value val : ((ArrayReference) obj).getValues(index, length)) {
+            elements.add(JdiObject.getDebuggerObject((ObjectReference) val, componentType));
+        }
+        return elements;
+    }
+    
+    /**
+     * Return string representations of the array elements for a range of indexes,
+     * fetching the elements from the remote VM in a single request.
+     */
+    @Override
+    public List<String> getElementValueStrings(int index, int length)
+    {
+        List<String> elements = new ArrayList<>(length);
+        if (length == 0) {
+            return elements;
+        }
+        for (Value val : ((ArrayReference) obj).getValues(index, length)) {
+            elements.add(JdiUtils.getJdiUtils().getValueString(val));
+        }
+        return elements;
+    }
 }
@@ -119,6 +119,24 @@ public class JdiField extends DebuggerField
         return null;
     }
 
+    /**
+     * Get the JDI field.
+     */
+    @OnThread(Tag.Any)
+    Field getJdiField()
+    {
+        return field;
+    }
+    
+    /**
+     * Get the object this is a field of, or null for a static field of a class.
+     */
+    @OnThread(Tag.Any)
+    JdiObject getObject()
+    {
+        return object;
+    }
+
     @Override
     public DebuggerClass getDeclaringClass()
     {
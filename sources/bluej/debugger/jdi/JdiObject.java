@@ -23,6 +23,7 @@ package bluej.debugger.jdi;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 
 import bluej.debugger.DebuggerClass;
@@ -36,6 +37,7 @@ import com.sun.jdi.ArrayReference;
 import com.sun.jdi.Field;
 import com.sun.jdi.ObjectReference;
 import com.sun.jdi.ReferenceType;
+import com.sun.jdi.Value;
 import threadchecker.OnThread;
 import threadchecker.Tag;
 
@@ -272,6 +274,35 @@ public class JdiObject extends DebuggerObject
         return rlist;
     }
 
+    /**
+     * Return string representations of the values of some of this object's fields,
+     * fetching them all from the remote VM in a single request.
+     */
+    @Override
+    @OnThread(Tag.Any)
+    @SuppressWarnings("threadchecker")
+    public List<String> getFieldValueStrings(List<DebuggerField> fields)
+    {
+        List<Field> jdiFields = new ArrayList<>(fields.size());
+        for (DebuggerField field : fields) {
+            if (! (field instanceof JdiField) || ((JdiField) field).getObject() != this) {
+                // Not one of our fields; fetch them one at a time instead:
+                return super.getFieldValueStrings(fields);
+            }
+            jdiFields.add(((JdiField) field).getJdiField());
+        }
+        
+        List<String> values = new ArrayList<>(jdiFields.size());
+        if (jdiFields.isEmpty()) {
+            return values;
+        }
+        Map<Field, Value> remoteValues = obj.getValues(jdiFields);
+        for (Field field : jdiFields) {
+            values.add(JdiUtils.getJdiUtils().getValueString(remoteValues.get(field)));
+        }
+        return values;
+    }
+
     @OnThread(Tag.Any)
     private static boolean checkIgnoreField(Field f)
     {
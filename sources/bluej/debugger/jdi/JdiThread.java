@@ -117,6 +117,20 @@ class JdiThread extends DebuggerThread
     @OnThread(Tag.VMEventHandler)
     private final JdiDebugger debugger;
 
+    /** The number of frames fetched by the first page of a lazily-fetched stack */
+    private static final int STACK_PAGE_SIZE = 8;
+
+    /**
+     * Incremented every time the thread is suspended or resumed; a stack view
+     * only remains valid for the epoch in which it was created.
+     */
+    @OnThread(value = Tag.Any, requireSynchronized = true)
+    private int suspendEpoch;
+
+    /** The stack view for the current epoch, if one has been requested */
+    @OnThread(Tag.VMEventHandler)
+    private LazyStack stackView;
+
     // ---- instance: ----
 
     @OnThread(Tag.Any)
@@ -341,20 +355,7 @@ class JdiThread extends DebuggerThread
                 List<StackFrame> frames = thr.frames();
 
                 for(int i = 0; i < frames.size(); i++) {
-                    StackFrame f = (StackFrame)frames.get(i);
-                    Location loc = f.location();
-                    String className = loc.declaringType().name();
-                    
-                    String fileName = null;
-                    try {
-                        fileName = loc.sourceName();
-                    }
-                    catch(AbsentInformationException e) { }
-                    String methodName = loc.method().name();
-                    int lineNumber = loc.lineNumber();
-
-                    stack.add(new SourceLocation(className, fileName,
-                                                 methodName, lineNumber));
+                    stack.add(getSourceLocation(frames.get(i)));
                 }
                 return stack;
             }
@@ -373,6 +374,48 @@ class JdiThread extends DebuggerThread
         return new ArrayList<SourceLocation>();
     }
 
+    /**
+     * Get a view of the current stack frames in which each frame is only
+     * fetched from the remote VM when it is first accessed. Repeated calls
+     * during the same suspension of the thread return the same view, so frames
+     * that have already been fetched are not fetched again.
+     *
+     * <p>If the thread is not suspended the view is empty. If the thread is
+     * resumed while the view is in use, the view is truncated to the frames
+     * that had already been fetched.
+     */
+    @OnThread(Tag.VMEventHandler)
+    public List<SourceLocation> getStackView()
+    {
+        int epoch;
+        synchronized (this) {
+            epoch = suspendEpoch;
+        }
+        if (stackView == null || stackView.epoch != epoch) {
+            stackView = new LazyStack(epoch);
+        }
+        return stackView;
+    }
+
+    /**
+     * Describe the location of a stack frame.
+     */
+    @OnThread(Tag.VMEventHandler)
+    private static SourceLocation getSourceLocation(StackFrame f)
+    {
+        Location loc = f.location();
+        String className = loc.declaringType().name();
+
+        String fileName = null;
+        try {
+            fileName = loc.sourceName();
+        }
+        catch(AbsentInformationException e) { }
+        String methodName = loc.method().name();
+        int lineNumber = loc.lineNumber();
+
+        return new SourceLocation(className, fileName, methodName, lineNumber);
+    }
 
     /**
      * Return strings listing the local variables.
@@ -393,9 +436,11 @@ class JdiThread extends DebuggerThread
                 // To work around a JDI bug (probably related to the other one described
                 // below) we collect information we need about the variables on the
                 // stack frame before we do anything which might cause types to be
-                // loaded:
+                // loaded.  The values of all the variables are fetched in one request:
                 
+                Map<LocalVariable, Value> values = frame.getValues(vars);
                 List<String> localVals = new ArrayList<String>();
+                List<Boolean> localIsObject = new ArrayList<Boolean>();
                 List<Type> localTypes = new ArrayList<Type>();
                 List<String> genericSigs = new ArrayList<String>();
                 List<String> typeNames = new ArrayList<String>();
@@ -403,8 +448,9 @@ class JdiThread extends DebuggerThread
                 
                 for(int i = 0; i < vars.size(); i++) {
                     LocalVariable var = vars.get(i);
-                    String val = JdiUtils.getJdiUtils().getValueString(frame.getValue(var));
-                    localVals.add(val);
+                    Value value = values.get(var);
+                    localVals.add(JdiUtils.getJdiUtils().getValueString(value));
+                    localIsObject.add(value instanceof ObjectReference);
                     
                     try {
                         localTypes.add(var.type());
@@ -424,7 +470,7 @@ class JdiThread extends DebuggerThread
                     JavaType vartype = JdiReflective.fromLocalVar(localTypes.get(i), genericSigs.get(i),
                             typeNames.get(i), declaringType);
                     int iFinal = i;
-                    Supplier<DebuggerObject> getObjectToInspect = varIsObject(frameNo, i) ?
+                    Supplier<DebuggerObject> getObjectToInspect = localIsObject.get(i) ?
                             () -> getStackObject(frameNo, iFinal)
                             : null;
                     String val = localVals.get(i);
@@ -575,6 +621,7 @@ class JdiThread extends DebuggerThread
                 rt.suspend();
                 debugger.emitThreadHaltEvent(this);
                 isSuspended = true;
+                suspendEpoch++;
             }
         }
         catch (VMDisconnectedException vmde) {}
@@ -591,6 +638,7 @@ class JdiThread extends DebuggerThread
                 debugger.emitThreadResumedEvent(this);
                 rt.resume();
                 isSuspended = false;
+                suspendEpoch++;
             }
         }
         catch (VMDisconnectedException vmde) {}
@@ -606,6 +654,7 @@ class JdiThread extends DebuggerThread
         synchronized (this)
         {
             isSuspended = true;
+            suspendEpoch++;
         }
         clearPreviousStep(rt);
     }
@@ -654,6 +703,7 @@ class JdiThread extends DebuggerThread
                 debugger.emitThreadResumedEvent(this);
                 rt.resume();
                 isSuspended = false;
+                suspendEpoch++;
             }
         }
     }
@@ -725,5 +775,121 @@ class JdiThread extends DebuggerThread
     {
         rt.resume();
         isSuspended = false;
+        suspendEpoch++;
+    }
+
+    /**
+     * A lazily-fetched view of the stack, for one suspension of the thread.
+     * The frame count and the first page of frames are fetched when the view
+     * is first used; after that, each page fetched is as large as all the
+     * frames fetched so far, so that a caller which only looks at the top
+     * of the stack only pays for the top of the stack.
+     */
+    @OnThread(Tag.VMEventHandler)
+    private class LazyStack extends AbstractList<SourceLocation>
+    {
+        private final int epoch;
+        private final List<StackFrame> frames = new ArrayList<>();
+        private SourceLocation[] locations;
+        /** The number of frames available, or -1 if not yet known */
+        private int frameCount = -1;
+
+        private LazyStack(int epoch)
+        {
+            this.epoch = epoch;
+        }
+
+        @Override
+        public int size()
+        {
+            if (frameCount == -1) {
+                frameCount = 0;
+                try {
+                    if (rt.isSuspended()) {
+                        frameCount = rt.frameCount();
+                        locations = new SourceLocation[frameCount];
+                        // Fetch the top frame now, so that a non-empty view
+                        // can always supply it:
+                        if (frameCount > 0) {
+                            getLocation(0);
+                        }
+                    }
+                }
+                catch (IncompatibleThreadStateException | VMDisconnectedException
+                        | InvalidStackFrameException e) {
+                    // Thread was resumed (or the VM has gone); leave the view empty
+                }
+            }
+            return frameCount;
+        }
+
+        @Override
+        public SourceLocation get(int index)
+        {
+            SourceLocation loc = (index >= 0 && index < size()) ? getLocation(index) : null;
+            if (loc == null) {
+                throw new IndexOutOfBoundsException("Frame: " + index + ", size: " + frameCount);
+            }
+            return loc;
+        }
+
+        /**
+         * Iterates only over the frames that can actually be fetched, so that
+         * iteration finishes cleanly if the view is truncated part-way.
+         */
+        @Override
+        public Iterator<SourceLocation> iterator()
+        {
+            return new Iterator<SourceLocation>() {
+                private int next = 0;
+
+                @Override
+                public boolean hasNext()
+                {
+                    return next < size() && getLocation(next) != null;
+                }
+
+                @Override
+                public SourceLocation next()
+                {
+                    if (! hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    return getLocation(next++);
+                }
+            };
+        }
+
+        /**
+         * Get the location of the given frame (which must be less than frameCount),
+         * fetching it if necessary. Returns null, and truncates the view, if the
+         * frame can no longer be fetched.
+         */
+        private SourceLocation getLocation(int index)
+        {
+            if (locations[index] == null) {
+                try {
+                    synchronized (JdiThread.this) {
+                        if (epoch != suspendEpoch) {
+                            // Resumed since the view was created; any frames
+                            // fetched now would not belong to this stack
+                            throw new InvalidStackFrameException();
+                        }
+                    }
+                    while (index >= frames.size()) {
+                        int start = frames.size();
+                        int length = Math.min(frameCount - start, Math.max(STACK_PAGE_SIZE, start));
+                        frames.addAll(rt.frames(start, length));
+                    }
+                    locations[index] = getSourceLocation(frames.get(index));
+                }
+                catch (IncompatibleThreadStateException | VMDisconnectedException
+                        | InvalidStackFrameException e) {
+                    frameCount = index;
+                    return null;
+                }
+            }
+            return locations[index];
+        }
     }
 }
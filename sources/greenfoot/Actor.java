@@ -28,6 +28,7 @@ import threadchecker.OnThread;
 import threadchecker.Tag;
 
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * An Actor is an object that exists in the Greenfoot world. 
@@ -55,7 +56,7 @@ public abstract class Actor
     private static final String ACTOR_NOT_IN_WORLD = "Actor not in world. An attempt was made to use the actor's location while it is not in the world. Either it has not yet been inserted, or it has been removed.";
 
     /** Counter of number of actors constructed, used as a hash value */
-    private static int sequenceNumber = 0;
+    private static final AtomicInteger sequenceNumber = new AtomicInteger();
 
     /**
      * x-coordinate of the object's location in the world. The object is
@@ -97,8 +98,14 @@ public abstract class Actor
     // The following variables cache various aspects of an actor's size, including
     // its bounding box after rotation.
     
-    /** Axis-aligned bounding rectangle of the object, in pixels. */
-    private Rect boundingRect;
+    /**
+     * Axis-aligned bounding rectangle of the object, in pixels. It is updated in
+     * place, and only when needed: boundsValid says whether it (and the corner
+     * co-ordinates) are up to date.
+     */
+    private final Rect boundingRect = new Rect(0, 0, 0, 0);
+    /** Whether the bounding rectangle and corners are up to date */
+    private boolean boundsValid;
     /** X-coordinates of the rotated bounding rectangle's corners */
     private int[] boundingXs = new int[4];
     /** Y-coordinates of the rotated bounding rectangle's corners */
@@ -128,7 +135,7 @@ public abstract class Actor
     {
         // Use the class image, if one is defined, as the default image, or the
         // Greenfoot logo image otherwise
-        mySequenceNumber = sequenceNumber++;
+        mySequenceNumber = sequenceNumber.getAndIncrement();
         GreenfootImage image = getClassImage();
         if (image == null) {
             image = greenfootImage;
@@ -229,7 +236,7 @@ public abstract class Actor
         if (this.rotation != rotation) {
             this.rotation = rotation;
             // Recalculate the bounding rect.
-            boundingRect = null;
+            boundsValid = false;
             // since the rotation have changed, the size probably has too.
             sizeChanged();
         }
@@ -346,7 +353,7 @@ public abstract class Actor
             }
 
             if (this.x != oldX || this.y != oldY) {
-                if (boundingRect != null) {
+                if (boundsValid) {
                     int dx = (this.x - oldX) * world.cellSize;
                     int dy = (this.y - oldY) * world.cellSize;
 
@@ -471,7 +478,7 @@ public abstract class Actor
         this.image = image;
 
         if (sizeChanged) {
-            boundingRect = null;
+            boundsValid = false;
             sizeChanged();
         }
     }
@@ -527,7 +534,7 @@ public abstract class Actor
         
         this.x = x;
         this.y = y;
-        boundingRect = null;
+        boundsValid = false;
 
         this.setWorld(world);
         
@@ -545,8 +552,11 @@ public abstract class Actor
      */
     Rect getBoundingRect() 
     {
-        if (boundingRect == null) {
+        if (! boundsValid) {
             calcBounds();
+            if (! boundsValid) {
+                return null; // not in a world
+            }
         }
         return boundingRect;
     }
@@ -565,11 +575,12 @@ public abstract class Actor
         if (image == null) {
             int wx = x * cellSize + cellSize / 2;
             int wy = y * cellSize + cellSize / 2;
-            boundingRect = new Rect(wx, wy, 0, 0);
+            boundingRect.set(wx, wy, 0, 0);
             for (int i = 0; i < 4; i++) {
                 boundingXs[i] = wx;
                 boundingYs[i] = wy;
             }
+            boundsValid = true;
             return;
         }
         
@@ -590,7 +601,7 @@ public abstract class Actor
             
             int x = cellSize * this.x + (cellSize - width - 1) / 2;
             int y = cellSize * this.y + (cellSize - height - 1) / 2;
-            boundingRect = new Rect(x, y, width, height);
+            boundingRect.set(x, y, width, height);
             boundingXs[0] = x; boundingYs[0] = y;
             boundingXs[1] = x + width - 1; boundingYs[1] = y;
             boundingXs[2] = boundingXs[1]; boundingYs[2] = y + height - 1;
@@ -618,8 +629,19 @@ public abstract class Actor
             // would get with floating point.
             // For instance, if something has the width 28.2, it might cover 30
             // pixels.
-            boundingRect = new Rect(minX, minY, maxX - minX + 1, maxY - minY + 1);
+            boundingRect.set(minX, minY, maxX - minX + 1, maxY - minY + 1);
         }
+        boundsValid = true;
+    }
+    
+    /**
+     * Discard the cached bounds, so that they are calculated again when next needed.
+     * Used after actors have acted in parallel, since the bounds may then have been
+     * calculated by another thread while this actor was moving.
+     */
+    void invalidateBounds()
+    {
+        boundsValid = false;
     }
 
     /**
@@ -802,6 +824,9 @@ public abstract class Actor
 
     /**
      * Check whether this object intersects with another given object.
+     * If pixel-perfect collisions are turned on for the world (see
+     * {@link World#setPixelPerfectCollisions(boolean)}), only the non-transparent
+     * parts of the objects' images are considered.
      * 
      * @param other  The second object to detect the existing of intersection with it.
      * @return True if the object's intersect, false otherwise.
@@ -829,7 +854,9 @@ public abstract class Actor
             Rect thisBounds = getBoundingRect();
             Rect otherBounds = other.getBoundingRect();
             if (rotation == 0 && other.rotation == 0) {
-                return thisBounds.intersects(otherBounds);
+                if (! thisBounds.intersects(otherBounds)) {
+                    return false;
+                }
             }
             else {
                 // First do a check based only on axis-aligned bounding boxes.
@@ -849,10 +876,29 @@ public abstract class Actor
                     return false;
                 }
             }
+            
+            if (world != null && world.isPixelPerfectCollisions()) {
+                return intersectsPixels(other);
+            }
         }
         
         return true;
     }
+    
+    /**
+     * Check whether any non-transparent pixel of this actor's image overlaps a
+     * non-transparent pixel of the other actor's image, as they are painted in the
+     * world. Both actors must have an image.
+     */
+    private boolean intersectsPixels(Actor other)
+    {
+        int cellSize = world.getCellSize();
+        boolean halfPixel = cellSize % 2 != 0;
+        AlphaMask myMask = image.getAlphaMask(rotation, halfPixel);
+        AlphaMask otherMask = other.image.getAlphaMask(other.rotation, halfPixel);
+        return myMask.overlaps(x * cellSize + cellSize / 2, y * cellSize + cellSize / 2,
+                otherMask, other.x * cellSize + cellSize / 2, other.y * cellSize + cellSize / 2);
+    }
 
     /**
      * Return the neighbours to this object within a given distance. This
@@ -1012,7 +1058,7 @@ public abstract class Actor
             return false;
         }
 
-        if (boundingRect == null) {
+        if (! boundsValid) {
             calcBounds(); // Make sure bounds are up-to-date
         }
         
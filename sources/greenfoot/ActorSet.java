@@ -25,23 +25,67 @@ import threadchecker.OnThread;
 import threadchecker.Tag;
 
 import java.util.AbstractSet;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
 
 /**
  * This is an ordered set. 
  * 
+ * <p>The actors are kept in an array in the order they were added. Removing an
+ * actor leaves a gap in the array, which is closed up when the array is next
+ * reallocated. Membership is looked up in an open-addressing hash table (with
+ * linear probing) keyed on the actors' sequence numbers, which holds the
+ * position of each actor in the array.
+ * 
  * @author Davin McCall
  */
 public class ActorSet extends AbstractSet<Actor>
 {
-    private ListNode listHeadTail = new ListNode();
+    /** The smallest (non-zero) length of the actors array */
+    private static final int MIN_CAPACITY = 8;
+    
+    private static final Actor[] NO_ACTORS = new Actor[0];
+    private static final int[] NO_SLOTS = new int[0];
+    
+    /** The actors, in order; removed actors leave null gaps */
+    private Actor[] actors = NO_ACTORS;
+    
+    /** The number of used positions (including gaps) at the start of the actors array */
+    private int end = 0;
     
-    private ListNode [] hashMap = new ListNode[0];
+    /**
+     * For each used position in the actors array, a number which increases with each
+     * actor added. Since the actors stay in the order they were added, these increase
+     * along the array, which lets an iterator find its place after the array has been
+     * reallocated.
+     */
+    private int[] addStamps = NO_SLOTS;
+    
+    /** The add stamp for the next actor added */
+    private int nextAddStamp = 0;
     
     private int numActors = 0;
     
+    /**
+     * The hash table: the sequence number of the actor in each slot, and its position
+     * in the actors array plus one (0 for an empty slot). The table is twice the
+     * length of the actors array, so it is never more than half full.
+     */
+    private int[] slotKeys = NO_SLOTS;
+    private int[] slotPositions = NO_SLOTS;
+    
+    /** Shift used to reduce a hash to a slot number: 32 - log2(table length) */
+    private int slotShift;
+    
+    /** Number of times the actors array has been reallocated (which moves actors) */
+    private int reallocations = 0;
+    
     /** Sum of sequence numbers of contained actors */
     private int myHashCode = 0;
+    
+    /** The actors in order, as returned by getSnapshot(); null if not yet created or out of date */
+    private Actor[] snapshot;
 
 
     @OnThread(value = Tag.Simulation, ignoreParent = true)
@@ -59,44 +103,128 @@ public class ActorSet extends AbstractSet<Actor>
             return false;
         }
         
-        numActors++;
-        ListNode newNode = new ListNode(actor, listHeadTail.prev);
+        if (end == actors.length) {
+            // Grow the array if it is at least half full, otherwise just close the gaps
+            int capacity = actors.length;
+            if (numActors >= capacity / 2) {
+                capacity = Math.max(MIN_CAPACITY, capacity * 2);
+            }
+            reallocate(capacity);
+        }
         
         int seq = ActorVisitor.getSequenceNumber(actor);
-        if (numActors >= 2 * hashMap.length) {
-            // grow the hashmap
-            resizeHashmap();
-        }
-        else {
-            int hash = seq % hashMap.length;
-            ListNode hashHead = hashMap[hash];
-            hashMap[hash] = newNode;
-            newNode.setHashListHead(hashHead);
-        }
+        actors[end] = actor;
+        addStamps[end] = nextAddStamp++;
+        insertSlot(seq, ++end);
+        numActors++;
+        snapshot = null;
         
         myHashCode += seq;
         return true;
     }
 
-    private void resizeHashmap()
+    /**
+     * Move the actors into a new array of the given length, closing up any gaps,
+     * and rebuild the hash table to match.
+     */
+    private void reallocate(int capacity)
     {
-        hashMap = new ListNode[numActors];
-        ListNode currentActor = listHeadTail.next;
-        while (currentActor != listHeadTail) {
-            int seq = ActorVisitor.getSequenceNumber(currentActor.actor);
-            int hash = seq % numActors;
-            ListNode hashHead = hashMap[hash];
-            hashMap[hash] = currentActor;
-            currentActor.setHashListHead(hashHead);
-            
-            currentActor = currentActor.next;
+        Actor[] newActors = new Actor[capacity];
+        int[] newAddStamps = new int[capacity];
+        int newEnd = 0;
+        for (int i = 0; i < end; i++) {
+            if (actors[i] != null) {
+                newAddStamps[newEnd] = addStamps[i];
+                newActors[newEnd++] = actors[i];
+            }
+        }
+        actors = newActors;
+        addStamps = newAddStamps;
+        end = newEnd;
+        reallocations++;
+        
+        int tableLength = capacity * 2;
+        slotKeys = new int[tableLength];
+        slotPositions = new int[tableLength];
+        slotShift = Integer.numberOfLeadingZeros(tableLength) + 1;
+        for (int i = 0; i < end; i++) {
+            insertSlot(ActorVisitor.getSequenceNumber(actors[i]), i + 1);
         }
     }
+    
+    /**
+     * Get the preferred slot in the hash table for a sequence number.
+     */
+    private int hashSlot(int seq)
+    {
+        return (seq * 0x9E3779B9) >>> slotShift;
+    }
+    
+    /**
+     * Put an entry in the hash table.
+     * 
+     * @param position  The position in the actors array, plus one
+     */
+    private void insertSlot(int seq, int position)
+    {
+        int mask = slotKeys.length - 1;
+        int slot = hashSlot(seq);
+        while (slotPositions[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        slotKeys[slot] = seq;
+        slotPositions[slot] = position;
+    }
+    
+    /**
+     * Get the hash table slot holding an actor (-1 if the actor is not in the set).
+     */
+    private int findSlot(Actor actor)
+    {
+        if (numActors == 0) {
+            return -1;
+        }
+        
+        int seq = ActorVisitor.getSequenceNumber(actor);
+        int mask = slotKeys.length - 1;
+        int slot = hashSlot(seq);
+        int position;
+        while ((position = slotPositions[slot]) != 0) {
+            if (slotKeys[slot] == seq && actors[position - 1] == actor) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+    
+    /**
+     * Empty a slot in the hash table, moving back any following entries which
+     * would otherwise no longer be found.
+     */
+    private void deleteSlot(int slot)
+    {
+        int mask = slotKeys.length - 1;
+        int hole = slot;
+        int next = (hole + 1) & mask;
+        while (slotPositions[next] != 0) {
+            int preferred = hashSlot(slotKeys[next]);
+            // The entry can move to the hole if the hole is not before its
+            // preferred slot (in probe order):
+            if (((next - preferred) & mask) >= ((next - hole) & mask)) {
+                slotKeys[hole] = slotKeys[next];
+                slotPositions[hole] = slotPositions[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        slotPositions[hole] = 0;
+    }
 
     @OnThread(value = Tag.Simulation, ignoreParent = true)
     public boolean containsActor(Actor actor)
     {
-        return getActorNode(actor) != null; 
+        return findSlot(actor) != -1; 
     }
 
     @OnThread(value = Tag.Simulation, ignoreParent = true)
@@ -110,69 +238,46 @@ public class ActorSet extends AbstractSet<Actor>
         return false;
     }
     
-    /**
-     * Get the list node for an actor (null if the actor is not in the set).
-     */
-    private ListNode getActorNode(Actor actor)
+    public boolean remove(Actor actor)
     {
-        if (hashMap.length == 0) {
-            return null;
-        }
-        
-        int seq = ActorVisitor.getSequenceNumber(actor);
-        int hash = seq % hashMap.length;
-        ListNode hashHead = hashMap[hash];
-        
-        if (hashHead == null) {
-            return null;
-        }
-        else if (hashHead.actor == actor) {
-            return hashHead;
-        }
-        
-        ListNode curNode = hashHead.nextHash;
-        while (curNode != hashHead) {
-            if (curNode.actor == actor) {
-                return curNode;
-            }
-            curNode = curNode.nextHash;
-        }
-        
-        return null;
+        return remove(actor, true);
     }
-
-    public boolean remove(Actor actor)
+    
+    @OnThread(value = Tag.Simulation, ignoreParent = true)
+    @Override
+    public boolean remove(Object o)
     {
-        ListNode actorNode = getActorNode(actor);
-        
-        if (actorNode != null) {
-            remove(actorNode);
-            myHashCode -= ActorVisitor.getSequenceNumber(actor);
-            return true;
-        }
-        else {
-            return false;
+        if (o instanceof Actor) {
+            return remove((Actor) o, true);
         }
+        return false;
     }
     
-    private void remove(ListNode actorNode)
+    /**
+     * Remove an actor.
+     * 
+     * @param mayShrink  Whether the actors array may be reallocated if it has
+     *                   become mostly empty
+     */
+    private boolean remove(Actor actor, boolean mayShrink)
     {
-        int seq = ActorVisitor.getSequenceNumber(actorNode.actor);
-        int hash = seq % hashMap.length;
-        if (hashMap[hash] == actorNode) {
-            hashMap[hash] = actorNode.nextHash;
-            if (hashMap[hash] == actorNode) {
-                // The circular list had only one element
-                hashMap[hash] = null;
-            }
+        int slot = findSlot(actor);
+        if (slot == -1) {
+            return false;
         }
         
-        actorNode.remove();
+        int position = slotPositions[slot] - 1;
+        deleteSlot(slot);
+        actors[position] = null;
         numActors--;
-        if (numActors <= hashMap.length / 2) {
-            // shrink the hashMap
-            resizeHashmap();
+        snapshot = null;
+        myHashCode -= ActorVisitor.getSequenceNumber(actor);
+        
+        if (mayShrink && actors.length > MIN_CAPACITY && numActors <= actors.length / 4) {
+            // shrink the array (and hash table)
+            reallocate(actors.length / 2);
         }
+        return true;
     }
 
     @OnThread(value = Tag.Simulation, ignoreParent = true)
@@ -181,6 +286,49 @@ public class ActorSet extends AbstractSet<Actor>
     {
         return numActors;
     }
+    
+    /**
+     * Get the add stamp of an actor in this set. Stamps increase in iteration order
+     * (and may wrap around), so two actors' order in the set is given by the sign of
+     * the difference between their stamps.
+     * 
+     * @throws IllegalArgumentException if the actor is not in this set
+     */
+    @OnThread(value = Tag.Simulation, ignoreParent = true)
+    int getAddStamp(Actor actor)
+    {
+        int slot = findSlot(actor);
+        if (slot == -1) {
+            throw new IllegalArgumentException("Actor is not in the set");
+        }
+        return addStamps[slotPositions[slot] - 1];
+    }
+
+    /**
+     * Get the actors in this set, in order, as an array. The same array is returned
+     * until the set is next modified; a modification does not change an array that
+     * was previously returned. The caller must not modify the array.
+     */
+    @OnThread(value = Tag.Simulation, ignoreParent = true)
+    public Actor[] getSnapshot()
+    {
+        if (snapshot == null) {
+            if (numActors == end) {
+                snapshot = Arrays.copyOf(actors, end);
+            }
+            else {
+                Actor[] snapshotActors = new Actor[numActors];
+                int n = 0;
+                for (int i = 0; i < end; i++) {
+                    if (actors[i] != null) {
+                        snapshotActors[n++] = actors[i];
+                    }
+                }
+                snapshot = snapshotActors;
+            }
+        }
+        return snapshot;
+    }
 
     @OnThread(value = Tag.Simulation, ignoreParent = true)
     @Override
@@ -189,95 +337,88 @@ public class ActorSet extends AbstractSet<Actor>
         return new ActorSetIterator();
     }
     
-    @OnThread(Tag.Simulation)
-    private class ListNode
+    /**
+     * Get the position in the actors array of the first actor added after the one
+     * with the given add stamp (or end, if there is none). Gaps keep the stamps of
+     * the actors which were removed from them, so the stamps can be searched
+     * without regard to gaps. Stamps are compared by difference, so that they may
+     * wrap around.
+     */
+    private int positionAfterStamp(int stamp)
     {
-        Actor actor;
-        ListNode next;
-        ListNode prev;
-        
-        // The node also appears in a linked list representing the hash bucket 
-        ListNode nextHash;
-        ListNode prevHash;
-        
-        public ListNode()
-        {
-            // actor, next, prev = null: this is the head/tail node
-            next = this;
-            prev = this;
-        }
-        
-        /**
-         * Create a new list node and insert it at the tail of the list.
-         * @param actor
-         * @param listTail
-         */
-        public ListNode(Actor actor, ListNode listTail)
-        {
-            this.actor = actor;
-            next = listTail.next;
-            prev = listTail;
-            listTail.next = this;
-            next.prev = this;
-        }
-        
-        /**
-         * Set this node as the new head node in a hash bucket list.
-         * @param oldHead  The original head node in the bucket
-         */
-        public void setHashListHead(ListNode oldHead)
-        {
-            if (oldHead == null) {
-                nextHash = this;
-                prevHash = this;
+        int low = 0;
+        int high = end;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (addStamps[mid] - stamp > 0) {
+                high = mid;
             }
             else {
-                nextHash = oldHead;
-                prevHash = oldHead.prevHash;
-                oldHead.prevHash = this;
-                prevHash.nextHash = this;
+                low = mid + 1;
             }
         }
-        
-        public void remove()
-        {
-            next.prev = prev;
-            prev.next = next;
-            nextHash.prevHash = prevHash;
-            prevHash.nextHash = nextHash;
-        }
+        return low;
     }
     
+    /**
+     * An iterator over an ActorSet. Actors may be added to the set while it is being
+     * iterated, and will be returned by the iterator; actors removed from the set
+     * will not be returned. If the actors array is reallocated, the iterator finds
+     * its place again from the add stamp of the actor it last returned, which works
+     * even if that actor has since been removed.
+     */
     @OnThread(Tag.Simulation)
     private class ActorSetIterator implements Iterator<Actor>
     {
-        ListNode currentNode;
-        
-        public ActorSetIterator()
-        {
-            currentNode = listHeadTail;
-        }
+        /** Position in the actors array of the next actor to check */
+        int cursor = 0;
+        /** The actor last returned by next() */
+        Actor lastActor;
+        /** The add stamp of lastActor */
+        int lastStamp;
+        /** Whether lastActor has been removed by this iterator */
+        boolean lastRemoved;
+        int expectedReallocations = reallocations;
 
         @OnThread(value = Tag.Simulation, ignoreParent = true)
         @Override
         public boolean hasNext()
         {
-            return currentNode.next != listHeadTail;
+            if (expectedReallocations != reallocations) {
+                // If nothing has been returned yet, only gaps have been passed
+                cursor = lastActor == null ? 0 : positionAfterStamp(lastStamp);
+                expectedReallocations = reallocations;
+            }
+            
+            while (cursor < end && actors[cursor] == null) {
+                cursor++;
+            }
+            return cursor < end;
         }
 
         @OnThread(value = Tag.Simulation, ignoreParent = true)
         @Override
         public Actor next()
         {
-            currentNode = currentNode.next;
-            return currentNode.actor;
+            if (! hasNext()) {
+                throw new NoSuchElementException();
+            }
+            lastStamp = addStamps[cursor];
+            lastActor = actors[cursor++];
+            lastRemoved = false;
+            return lastActor;
         }
 
         @OnThread(value = Tag.Simulation, ignoreParent = true)
         @Override
         public void remove()
         {
-            ActorSet.this.remove(currentNode);
+            if (lastActor == null || lastRemoved) {
+                throw new IllegalStateException();
+            }
+            // Don't shrink; that would move the remaining actors
+            ActorSet.this.remove(lastActor, false);
+            lastRemoved = true;
         }
     }
 }
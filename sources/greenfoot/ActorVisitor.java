@@ -102,6 +102,11 @@ public class ActorVisitor
         return actor.getBoundingRect();
     }
     
+    public static void invalidateBounds(Actor actor)
+    {
+        actor.invalidateBounds();
+    }
+    
     public static void setData(Actor actor, Object n)
     {
         actor.setData(n);
@@ -23,6 +23,7 @@ package greenfoot;
 
 import java.util.Random;
 
+import greenfoot.core.HeadlessRunner;
 import greenfoot.core.Simulation;
 import greenfoot.core.WorldHandler;
 import greenfoot.sound.MicLevelGrabber;
@@ -69,7 +70,13 @@ public class Greenfoot
         if ( world == null ) {
             throw new NullPointerException("The given world cannot be null.");
         }
+        Simulation.checkNotActThread("Greenfoot.setWorld");
 
+        HeadlessRunner runner = HeadlessRunner.getCurrent();
+        if (runner != null) {
+            runner.setWorld(world);
+            return;
+        }
         WorldHandler.getInstance().setWorld(world, true);
     }
 
@@ -83,6 +90,9 @@ public class Greenfoot
      */
     public static String getKey()
     {
+        if (HeadlessRunner.getCurrent() != null) {
+            return null;
+        }
         return WorldHandler.getInstance().getKeyboardManager().getKey();
     }
     
@@ -94,6 +104,9 @@ public class Greenfoot
      */
     public static boolean isKeyDown(String keyName)
     {
+        if (HeadlessRunner.getCurrent() != null) {
+            return false;
+        }
         return WorldHandler.getInstance().getKeyboardManager().isKeyDown(keyName);
     }
     
@@ -106,6 +119,10 @@ public class Greenfoot
      */
     public static void delay(int time)
     {
+        Simulation.checkNotActThread("Greenfoot.delay");
+        if (HeadlessRunner.getCurrent() != null) {
+            return; // no delays when running headless
+        }
         Simulation.getInstance().sleep(time);
     }
     
@@ -116,6 +133,10 @@ public class Greenfoot
      */
     public static void setSpeed(int speed)
     {
+        Simulation.checkNotActThread("Greenfoot.setSpeed");
+        if (HeadlessRunner.getCurrent() != null) {
+            return;
+        }
         Simulation.getInstance().setSpeed(speed);
     }
     
@@ -124,6 +145,12 @@ public class Greenfoot
      */
     public static void stop()
     {
+        Simulation.checkNotActThread("Greenfoot.stop");
+        HeadlessRunner runner = HeadlessRunner.getCurrent();
+        if (runner != null) {
+            runner.stop();
+            return;
+        }
         Simulation.getInstance().setPaused(true);
     }
     
@@ -132,6 +159,10 @@ public class Greenfoot
      */
     public static void start()
     {
+        Simulation.checkNotActThread("Greenfoot.start");
+        if (HeadlessRunner.getCurrent() != null) {
+            return; // a headless run is always running
+        }
         Simulation.getInstance().setPaused(false);
     }
     
@@ -143,6 +174,10 @@ public class Greenfoot
      */
     public static int getRandomNumber(int limit)
     {
+        HeadlessRunner runner = HeadlessRunner.getCurrent();
+        if (runner != null) {
+            return runner.getRandom().nextInt(limit);
+        }
         return randomGenerator.nextInt(limit);
     }
 
@@ -184,6 +219,9 @@ public class Greenfoot
      */
     public static boolean mousePressed(Object obj)
     {
+        if (HeadlessRunner.getCurrent() != null) {
+            return false;
+        }
         return WorldHandler.getInstance().getMouseManager().isMousePressed(obj);
     }
 
@@ -203,6 +241,9 @@ public class Greenfoot
      */
     public static boolean mouseClicked(Object obj)
     {
+        if (HeadlessRunner.getCurrent() != null) {
+            return false;
+        }
         return WorldHandler.getInstance().getMouseManager().isMouseClicked(obj);
     }
 
@@ -224,6 +265,9 @@ public class Greenfoot
      */
     public static boolean mouseDragged(Object obj)
     {
+        if (HeadlessRunner.getCurrent() != null) {
+            return false;
+        }
         return WorldHandler.getInstance().getMouseManager().isMouseDragged(obj);
     }
 
@@ -245,6 +289,9 @@ public class Greenfoot
      */
     public static boolean mouseDragEnded(Object obj)
     {
+        if (HeadlessRunner.getCurrent() != null) {
+            return false;
+        }
         return WorldHandler.getInstance().getMouseManager().isMouseDragEnded(obj);
     }
 
@@ -266,6 +313,9 @@ public class Greenfoot
      */
     public static boolean mouseMoved(Object obj)
     {
+        if (HeadlessRunner.getCurrent() != null) {
+            return false;
+        }
         return WorldHandler.getInstance().getMouseManager().isMouseMoved(obj);
     }
 
@@ -278,6 +328,9 @@ public class Greenfoot
      */
     public static MouseInfo getMouseInfo()
     {
+        if (HeadlessRunner.getCurrent() != null) {
+            return null;
+        }
         return WorldHandler.getInstance().getMouseManager().getMouseInfo();
     }
     
@@ -307,6 +360,9 @@ public class Greenfoot
      */
     public static String ask(String prompt)
     {
+        if (HeadlessRunner.getCurrent() != null) {
+            return null; // there is no-one to ask
+        }
         return WorldHandler.getInstance().ask(prompt);
     }
 }
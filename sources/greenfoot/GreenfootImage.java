@@ -38,11 +38,17 @@ import java.awt.Shape;
 import java.awt.geom.AffineTransform;
 import java.awt.image.AffineTransformOp;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 import java.awt.image.ImageObserver;
+import java.awt.image.SinglePixelPackedSampleModel;
 import java.awt.image.VolatileImage;
+import java.awt.image.WritableRaster;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.net.URL;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
 
 
 /**
@@ -82,6 +88,32 @@ public class GreenfootImage
      * Value from 0 to 255, with 0 being completely transparent and 255 being opaque.
      */
     private int transparency = 255;
+    
+    /**
+     * Incremented whenever the image data changes. Copy-on-write clones start with
+     * the version of the image they were cloned from.
+     */
+    private int version;
+    
+    /**
+     * Whether the backing image has been handed out by getAwtImage(), in which case
+     * it may be changed without the version being incremented.
+     */
+    private boolean awtImageExposed;
+    
+    /**
+     * Alpha masks used for pixel-perfect collision checking, indexed by rotation
+     * (plus 360 for actors whose centre is in the middle of a pixel). Created when
+     * first needed; the array is shared between all GreenfootImages which share the
+     * same image data (via copy-on-write), and discarded when the image changes.
+     * Not used once the image data has been handed out (see awtImageExposed), since
+     * changes to it can then no longer be detected.
+     */
+    private AlphaMask[] alphaMasks;
+    
+    /** The alpha mask arrays for image data which may be shared by several GreenfootImages */
+    private static final Map<BufferedImage, AlphaMask[]> sharedAlphaMasks =
+            Collections.synchronizedMap(new WeakHashMap<BufferedImage, AlphaMask[]>());
 
     /**
      * Create an image from an image file. Supported file formats are JPEG, GIF
@@ -142,7 +174,9 @@ public class GreenfootImage
             setImage(GraphicsUtilities.createCompatibleTranslucentImage(image.getWidth(), image.getHeight()));
             Graphics2D g = getGraphics();
             g.setComposite(AlphaComposite.Src);
-            g.drawImage(image.getAwtImage(), 0, 0, null);
+            // Read the source's data directly: getAwtImage() would stop its changes
+            // (and so its cached alpha masks and rotations) from being tracked
+            g.drawImage(image.getImageData(), 0, 0, null);
             g.dispose();
         }
         else {
@@ -263,6 +297,7 @@ public class GreenfootImage
         dst.currentColor = src.currentColor;
         dst.currentFont = src.currentFont;
         dst.transparency = src.transparency;
+        dst.version = src.version;
     }    
     
     private void loadURL(URL imageURL)
@@ -315,6 +350,9 @@ public class GreenfootImage
         }
         this.image = getBufferedImage(image);
         copyOnWrite = false;
+        alphaMasks = null;
+        awtImageExposed = false;
+        version++;
     }
 
 
@@ -328,6 +366,7 @@ public class GreenfootImage
     public BufferedImage getAwtImage()
     {
         ensureWritableImage();
+        awtImageExposed = true;
         return image;
     }
     
@@ -336,9 +375,7 @@ public class GreenfootImage
      */
     private Graphics2D getGraphics()
     {
-        if (copyOnWrite) {
         ensureWritableImage();
-        }
         Graphics2D graphics = image.createGraphics();
         initGraphics(graphics);
         return graphics;
@@ -556,6 +593,188 @@ public class GreenfootImage
     {
         setRGBAt(x, y, color.getColorObject().getRGB());
     }
+    
+    /**
+     * Return the colours of the pixels in a rectangular region of the image, row
+     * by row. Each colour is an int in ARGB format: the alpha, red, green and
+     * blue components, 8 bits each, from the most significant to the least
+     * significant byte. This is much faster than calling getColorAt() for each
+     * pixel.
+     * 
+     * @param x The horizontal coordinate of the top-left corner of the region.
+     * @param y The vertical coordinate of the top-left corner of the region.
+     * @param width The width of the region.
+     * @param height The height of the region.
+     * @return An array of width * height colours.
+     * @throws IndexOutOfBoundsException If the region is not within the image bounds.
+     */
+    public int[] getPixels(int x, int y, int width, int height)
+    {
+        int[] pixels = new int[Math.max(width, 0) * Math.max(height, 0)];
+        getPixels(x, y, width, height, pixels, 0, width);
+        return pixels;
+    }
+    
+    /**
+     * Copy the colours of the pixels in a rectangular region of the image into an
+     * array, row by row, in the ARGB format described in
+     * {@link #getPixels(int, int, int, int)}. The colour of pixel (x+i, y+j) is
+     * put at index offset + j * scansize + i.
+     * 
+     * @param x The horizontal coordinate of the top-left corner of the region.
+     * @param y The vertical coordinate of the top-left corner of the region.
+     * @param width The width of the region.
+     * @param height The height of the region.
+     * @param pixels The array to copy the colours into.
+     * @param offset The index in the array of the top-left pixel.
+     * @param scansize The distance in the array from one row to the next.
+     * @throws IndexOutOfBoundsException If the region is not within the image
+     *             bounds, or the array is too small.
+     */
+    public void getPixels(int x, int y, int width, int height, int[] pixels, int offset, int scansize)
+    {
+        checkRegion(x, y, width, height, pixels, offset, scansize);
+        if (width == 0 || height == 0) {
+            return;
+        }
+        
+        if (isPlainARGB(image)) {
+            // Copy the data elements (which are ARGB values) directly, rather than
+            // converting each pixel through the colour model.
+            WritableRaster raster = image.getRaster();
+            if (offset == 0 && scansize == width) {
+                raster.getDataElements(x, y, width, height, pixels);
+            }
+            else {
+                int[] row = new int[width];
+                for (int j = 0; j < height; j++) {
+                    raster.getDataElements(x, y + j, width, 1, row);
+                    System.arraycopy(row, 0, pixels, offset + j * scansize, width);
+                }
+            }
+        }
+        else {
+            image.getRGB(x, y, width, height, pixels, offset, scansize);
+        }
+    }
+    
+    /**
+     * Set the colours of the pixels in a rectangular region of the image from an
+     * array, row by row, in the ARGB format described in
+     * {@link #getPixels(int, int, int, int)}. Pixel (x+i, y+j) is set to the
+     * colour at index offset + j * scansize + i. This is much faster than calling
+     * setColorAt() for each pixel.
+     * 
+     * @param x The horizontal coordinate of the top-left corner of the region.
+     * @param y The vertical coordinate of the top-left corner of the region.
+     * @param width The width of the region.
+     * @param height The height of the region.
+     * @param pixels The array holding the colours.
+     * @param offset The index in the array of the top-left pixel.
+     * @param scansize The distance in the array from one row to the next.
+     * @throws IndexOutOfBoundsException If the region is not within the image
+     *             bounds, or the array is too small.
+     */
+    public void setPixels(int x, int y, int width, int height, int[] pixels, int offset, int scansize)
+    {
+        checkRegion(x, y, width, height, pixels, offset, scansize);
+        if (width == 0 || height == 0) {
+            return;
+        }
+        
+        ensureWritableImage();
+        if (isPlainARGB(image)) {
+            WritableRaster raster = image.getRaster();
+            if (offset == 0 && scansize == width) {
+                raster.setDataElements(x, y, width, height, pixels);
+            }
+            else {
+                int[] row = new int[width];
+                for (int j = 0; j < height; j++) {
+                    System.arraycopy(pixels, offset + j * scansize, row, 0, width);
+                    raster.setDataElements(x, y + j, width, 1, row);
+                }
+            }
+        }
+        else {
+            image.setRGB(x, y, width, height, pixels, offset, scansize);
+        }
+    }
+    
+    /**
+     * Return the array which holds the pixels of this image, for direct access.
+     * The colour of pixel (x, y) is at index y * getWidth() + x, in the ARGB format
+     * described in {@link #getPixels(int, int, int, int)}. Changes made to the
+     * array change the image immediately.
+     * 
+     * <p>This is the fastest way to read and write many pixels, but it has a
+     * cost: once the array has been handed out, Greenfoot can no longer tell when
+     * the image changes, so it can't keep cached copies of it (for instance, the
+     * rotated copies used when painting rotated actors, or the masks used for
+     * pixel-perfect collision checking). As with
+     * {@link #getAwtImage()}, the array stops being the image's data if the image
+     * is later replaced, for example by scale() or by a call to this method after
+     * the image has been copied.
+     * 
+     * @return The pixels of the image.
+     */
+    public int[] getPixelBuffer()
+    {
+        ensureWritableImage();
+        if (! isPlainARGB(image)) {
+            // Convert to an image whose data is laid out as described.
+            BufferedImage argbImage = new BufferedImage(getWidth(), getHeight(), BufferedImage.TYPE_INT_ARGB);
+            Graphics2D graphics = argbImage.createGraphics();
+            graphics.setComposite(AlphaComposite.Src);
+            graphics.drawImage(image, 0, 0, null);
+            graphics.dispose();
+            sharedAlphaMasks.remove(image);
+            image = argbImage;
+        }
+        awtImageExposed = true;
+        return ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+    }
+    
+    /**
+     * Check whether an image holds its pixels as non-premultiplied ARGB ints,
+     * one per pixel, row by row with no padding, so that its data elements are
+     * the same as the values returned by getRGB().
+     */
+    private static boolean isPlainARGB(BufferedImage image)
+    {
+        if (image.getType() != BufferedImage.TYPE_INT_ARGB) {
+            return false;
+        }
+        WritableRaster raster = image.getRaster();
+        return raster.getParent() == null
+                && raster.getDataBuffer().getOffset() == 0
+                && raster.getSampleModel() instanceof SinglePixelPackedSampleModel
+                && ((SinglePixelPackedSampleModel) raster.getSampleModel()).getScanlineStride() == image.getWidth();
+    }
+    
+    /**
+     * Check that a region lies within this image, and that an array is large
+     * enough to hold the pixels of the region.
+     * 
+     * @throws IndexOutOfBoundsException If not.
+     */
+    private void checkRegion(int x, int y, int width, int height, int[] pixels, int offset, int scansize)
+    {
+        if (x < 0 || y < 0 || width < 0 || height < 0
+                || x + width > getWidth() || y + height > getHeight()) {
+            throw new IndexOutOfBoundsException("The region (" + x + "," + y + ") of size "
+                    + width + "x" + height + " is not within the image, which is "
+                    + getWidth() + "x" + getHeight());
+        }
+        if (width > 0 && height > 0) {
+            if (offset < 0 || scansize < width
+                    || (long) offset + (long) (height - 1) * scansize + width > pixels.length) {
+                throw new IndexOutOfBoundsException("The array of length " + pixels.length
+                        + " cannot hold a region of size " + width + "x" + height
+                        + " at offset " + offset + " with scansize " + scansize);
+            }
+        }
+    }
 
     /**
      * Set the transparency of the image.
@@ -846,7 +1065,8 @@ public class GreenfootImage
     /**
      * Ensure we have an image which we are allowed to write to. If we are
      * a copy-on-write image, create a copy of the image (and set up the
-     * graphics2d object) before returning.
+     * graphics2d object) before returning. Since the image is about to be
+     * changed, any alpha masks for it are discarded.
      */
     private void ensureWritableImage()
     {
@@ -859,6 +1079,66 @@ public class GreenfootImage
             copyOnWrite = false;
             graphics.dispose();
         }
+        else if (alphaMasks != null) {
+            // The image is changed in place; the masks are no longer valid
+            sharedAlphaMasks.remove(image);
+        }
+        alphaMasks = null;
+        version++;
+    }
+    
+    /**
+     * Get the version of the image data, which changes whenever the image is
+     * modified. Returns -1 if changes cannot be tracked, because the backing
+     * image has been handed out via getAwtImage().
+     * 
+     * <p>Together with the backing image (see {@link #getImageData()}), the
+     * version identifies the contents of the image, so it can be used to key
+     * caches of images derived from this one.
+     */
+    int getVersion()
+    {
+        return awtImageExposed ? -1 : version;
+    }
+    
+    /**
+     * Get the backing image, for reading only. Unlike getAwtImage(), this does not
+     * make a copy of a copy-on-write image, so the returned image must not be modified.
+     */
+    BufferedImage getImageData()
+    {
+        return image;
+    }
+    
+    /**
+     * Get the alpha mask for this image at the given rotation, creating it if necessary.
+     * If the image data has been handed out by getAwtImage() or getPixelBuffer(), the
+     * mask is worked out afresh each time, since the pixels may have been changed
+     * directly.
+     * 
+     * @param rotation   The rotation of the image, in degrees (0-359)
+     * @param halfPixel  Whether the centre of the image is in the middle of a pixel
+     *                   (see {@link AlphaMask#create(BufferedImage, int, boolean)})
+     */
+    AlphaMask getAlphaMask(int rotation, boolean halfPixel)
+    {
+        if (awtImageExposed) {
+            return AlphaMask.create(image, rotation, halfPixel);
+        }
+        
+        AlphaMask[] masks = alphaMasks;
+        if (masks == null) {
+            masks = sharedAlphaMasks.computeIfAbsent(image, i -> new AlphaMask[720]);
+            alphaMasks = masks;
+        }
+        
+        int index = rotation + (halfPixel ? 360 : 0);
+        AlphaMask mask = masks[index];
+        if (mask == null) {
+            mask = AlphaMask.create(image, rotation, halfPixel);
+            masks[index] = mask;
+        }
+        return mask;
     }
     
     /**
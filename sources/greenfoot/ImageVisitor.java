@@ -22,6 +22,7 @@
 package greenfoot;
 
 import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
 import java.awt.image.ImageObserver;
 
 /**
@@ -45,4 +46,20 @@ public class ImageVisitor
     {
         return GreenfootImage.equal(image1, image2);
     }
+    
+    /**
+     * Get the version of the image data; -1 if changes to it cannot be tracked.
+     */
+    public static int getVersion(GreenfootImage image)
+    {
+        return image.getVersion();
+    }
+    
+    /**
+     * Get the backing image, which must not be modified.
+     */
+    public static BufferedImage getImageData(GreenfootImage image)
+    {
+        return image.getImageData();
+    }
 }
@@ -0,0 +1,59 @@
+/*
+ This file is part of the Greenfoot program.
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot;
+
+/**
+ * A marker interface for actors whose act() method may be run in parallel with
+ * the act() methods of other actors of the same class.
+ * <p>
+ * When a class implementing this interface has many objects in the world, Greenfoot
+ * may call act() on several of them at the same time, using more than one processor.
+ * The act order set by {@link World#setActOrder(Class...)} is still respected: classes
+ * act one after the other, and only objects within the same class act together.
+ * <p>
+ * While actors are acting in parallel, changes to the world are deferred until all
+ * of them have finished. An actor's own location, rotation and image change
+ * immediately, but objects added to or removed from the world with
+ * {@link World#addObject(Actor, int, int)} and {@link World#removeObject(Actor)}
+ * only appear or disappear afterwards.
+ * <p>
+ * Collision checks (such as {@link Actor#getIntersectingObjects(Class)}) made while
+ * actors are acting in parallel are not synchronized with the other actors, which
+ * may be moving or turning at the same moment. Their results are unspecified: they
+ * may reflect the other actors' old positions, their new positions, or a mixture.
+ * Once all of the actors have acted, collision checks are accurate again.
+ * <p>
+ * An actor that implements this interface must therefore only change its own
+ * state from act(). It must not move or otherwise change other actors, change
+ * shared (static) fields without its own synchronization, or rely on seeing the
+ * effects of other actors acting at the same time. It must not call
+ * {@link Greenfoot#setWorld(World)}, {@link Greenfoot#delay(int)},
+ * {@link Greenfoot#stop()}, {@link Greenfoot#start()} or
+ * {@link Greenfoot#setSpeed(int)}; these throw an IllegalStateException when
+ * called while acting in parallel.
+ * <p>
+ * When the scenario runs within Greenfoot (so that it can be debugged), all
+ * actors act one at a time on the simulation thread as usual.
+ */
+public interface ParallelActor
+{
+}
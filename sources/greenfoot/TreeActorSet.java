@@ -25,6 +25,7 @@ import threadchecker.OnThread;
 import threadchecker.Tag;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * A set which allows specifying iteration order according to class of contained
@@ -45,6 +46,44 @@ public class TreeActorSet extends AbstractSet<Actor>
     
     private HashMap<Class<?>, ActorSet> classSets;
     
+    /** Cached result of getSubSetSnapshots(); null if not yet created or out of date */
+    private Actor[][] subSetSnapshots;
+    
+    /**
+     * Index of the contained actors by their exact class. Sets are kept when they
+     * become empty, so that the set of classes only changes when an actor of a new
+     * class is added.
+     */
+    private LinkedHashMap<Class<?>, ActorSet> exactClassSets = new LinkedHashMap<Class<?>, ActorSet>();
+    
+    /**
+     * For each class that has been queried (with getObjects(Class) or size(Class)),
+     * the sets from exactClassSets holding actors of that class or a subclass.
+     * Cleared whenever a new class is added to exactClassSets, or the class order
+     * changes. Queries may come from several threads at once while actors act in
+     * parallel.
+     */
+    private Map<Class<?>, QuerySets> querySets = new ConcurrentHashMap<Class<?>, QuerySets>();
+    
+    /**
+     * The exact-class sets which hold the actors of some class (and its subclasses),
+     * grouped by the subset which holds their actors. The groups are in iteration
+     * order.
+     */
+    private static class QuerySets
+    {
+        /** The subset holding the actors of each group */
+        final ActorSet[] subSets;
+        /** The exact-class sets in each group */
+        final ActorSet[][] exactSets;
+        
+        QuerySets(ActorSet[] subSets, ActorSet[][] exactSets)
+        {
+            this.subSets = subSets;
+            this.exactSets = exactSets;
+        }
+    }
+    
     /**
      * Construct an empty TreeActorSet.
      */
@@ -72,6 +111,8 @@ public class TreeActorSet extends AbstractSet<Actor>
      */
     public void setClassOrder(boolean reverse, Class<?> ... classes)
     {
+        subSetSnapshots = null;
+        querySets.clear();
         HashMap<Class<?>, ActorSet> oldClassSets = classSets;
         classSets = new HashMap<Class<?>, ActorSet>();
         
@@ -128,12 +169,15 @@ public class TreeActorSet extends AbstractSet<Actor>
         
         // Now, for any old subsets not yet handled, move all the actors into
         // the appropriate set. ("Not yet handled" means that the old subset
-        // has no equivalent in the new sets).
+        // has no equivalent in the new sets). The old subset may hold actors
+        // of subclasses which now have a set of their own, so each actor is
+        // placed individually.
         Iterator<Map.Entry<Class<?>,ActorSet>> ei = oldClassSets.entrySet().iterator();
         for ( ; ei.hasNext(); ) {
             Map.Entry<Class<?>,ActorSet> entry = ei.next();
-            ActorSet destinationSet = setForClass(entry.getKey());
-            destinationSet.addAll(entry.getValue());
+            for (Actor actor : entry.getValue()) {
+                setForActor(actor).add(actor);
+            }
         }
         
         // Finally, re-create the subsets list
@@ -169,6 +213,36 @@ public class TreeActorSet extends AbstractSet<Actor>
         return size;
     }
 
+    /**
+     * Get the contents of each of the subsets (one per class with a specified
+     * order, plus the general set) in iteration order, skipping empty subsets.
+     * The same arrays are returned until this set is next modified, and a
+     * modification does not change arrays that were previously returned, so they
+     * can be iterated while actors are added and removed. The caller must not
+     * modify the arrays.
+     */
+    @OnThread(value = Tag.Simulation, ignoreParent = true)
+    public Actor[][] getSubSetSnapshots()
+    {
+        if (subSetSnapshots == null) {
+            int nonEmpty = 0;
+            for (ActorSet subSet : subSets) {
+                if (! subSet.isEmpty()) {
+                    nonEmpty++;
+                }
+            }
+            Actor[][] snapshots = new Actor[nonEmpty][];
+            int i = 0;
+            for (ActorSet subSet : subSets) {
+                if (! subSet.isEmpty()) {
+                    snapshots[i++] = subSet.getSnapshot();
+                }
+            }
+            subSetSnapshots = snapshots;
+        }
+        return subSetSnapshots;
+    }
+
     @OnThread(value = Tag.Simulation, ignoreParent = true)
     @Override
     public boolean add(Actor o)
@@ -177,12 +251,141 @@ public class TreeActorSet extends AbstractSet<Actor>
             throw new UnsupportedOperationException("Cannot add null actor.");
         }
         
-        return setForActor(o).add(o);
+        subSetSnapshots = null;
+        if (! setForActor(o).add(o)) {
+            return false;
+        }
+        
+        ActorSet exactSet = exactClassSets.get(o.getClass());
+        if (exactSet == null) {
+            exactSet = new ActorSet();
+            exactClassSets.put(o.getClass(), exactSet);
+            querySets.clear();
+        }
+        exactSet.add(o);
+        return true;
     }
     
     public boolean remove(Actor o)
     {
-        return setForActor(o).remove(o);
+        subSetSnapshots = null;
+        if (! setForActor(o).remove(o)) {
+            return false;
+        }
+        exactClassSets.get(o.getClass()).remove(o);
+        return true;
+    }
+    
+    /**
+     * Get the number of actors in this set which are instances of the given class
+     * (or of a subclass).
+     */
+    @OnThread(value = Tag.Simulation, ignoreParent = true)
+    public int size(Class<?> cls)
+    {
+        int size = 0;
+        for (ActorSet[] group : setsForClass(cls).exactSets) {
+            for (ActorSet set : group) {
+                size += set.size();
+            }
+        }
+        return size;
+    }
+    
+    /**
+     * Get the actors in this set which are instances of the given class (or of a
+     * subclass), in iteration order. Only the actors of matching classes are looked
+     * at.
+     */
+    @OnThread(value = Tag.Simulation, ignoreParent = true)
+    @SuppressWarnings("unchecked")
+    public <A> List<A> getObjects(Class<A> cls)
+    {
+        QuerySets query = setsForClass(cls);
+        List<A> result = new ArrayList<A>(size(cls));
+        for (int i = 0; i < query.subSets.length; i++) {
+            ActorSet[] group = query.exactSets[i];
+            if (group.length == 1) {
+                // All actors of a single class are in the same order as in their subset
+                for (Actor actor : group[0]) {
+                    result.add((A) actor);
+                }
+            }
+            else {
+                mergeInOrder(query.subSets[i], group, (List<Actor>) result);
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Add the actors from several exact-class sets to a list, in the order that
+     * they are in the subset which holds them all.
+     */
+    private static void mergeInOrder(ActorSet subSet, ActorSet[] sets, List<Actor> result)
+    {
+        List<Iterator<Actor>> iterators = new ArrayList<Iterator<Actor>>(sets.length);
+        Actor[] heads = new Actor[sets.length];
+        int[] stamps = new int[sets.length];
+        for (int i = 0; i < sets.length; i++) {
+            Iterator<Actor> iterator = sets[i].iterator();
+            iterators.add(iterator);
+            if (iterator.hasNext()) {
+                heads[i] = iterator.next();
+                stamps[i] = subSet.getAddStamp(heads[i]);
+            }
+        }
+        
+        while (true) {
+            int first = -1;
+            for (int i = 0; i < sets.length; i++) {
+                if (heads[i] != null && (first == -1 || stamps[i] - stamps[first] < 0)) {
+                    first = i;
+                }
+            }
+            if (first == -1) {
+                return;
+            }
+            result.add(heads[first]);
+            Iterator<Actor> iterator = iterators.get(first);
+            if (iterator.hasNext()) {
+                heads[first] = iterator.next();
+                stamps[first] = subSet.getAddStamp(heads[first]);
+            }
+            else {
+                heads[first] = null;
+            }
+        }
+    }
+    
+    /**
+     * Get the exact-class sets holding the actors which are instances of the given
+     * class, working them out if this class has not been queried since an actor of
+     * a new class was added (or the class order changed).
+     */
+    private QuerySets setsForClass(Class<?> cls)
+    {
+        QuerySets query = querySets.get(cls);
+        if (query == null) {
+            List<ActorSet> groupSubSets = new ArrayList<ActorSet>();
+            List<ActorSet[]> groups = new ArrayList<ActorSet[]>();
+            for (ActorSet subSet : subSets) {
+                List<ActorSet> matching = new ArrayList<ActorSet>();
+                for (Map.Entry<Class<?>, ActorSet> entry : exactClassSets.entrySet()) {
+                    if (cls.isAssignableFrom(entry.getKey()) && setForClass(entry.getKey()) == subSet) {
+                        matching.add(entry.getValue());
+                    }
+                }
+                if (! matching.isEmpty()) {
+                    groupSubSets.add(subSet);
+                    groups.add(matching.toArray(new ActorSet[matching.size()]));
+                }
+            }
+            query = new QuerySets(groupSubSets.toArray(new ActorSet[groupSubSets.size()]),
+                    groups.toArray(new ActorSet[groups.size()][]));
+            querySets.put(cls, query);
+        }
+        return query;
     }
 
     @OnThread(value = Tag.Simulation, ignoreParent = true)
@@ -227,6 +430,8 @@ public class TreeActorSet extends AbstractSet<Actor>
         private Iterator<ActorSet> setIterator;
         private ActorSet currentSet;
         private Iterator<Actor> actorIterator;
+        /** The actor last returned by next() */
+        private Actor lastActor;
         
         public TasIterator()
         {
@@ -241,14 +446,17 @@ public class TreeActorSet extends AbstractSet<Actor>
         @OnThread(value = Tag.Simulation, ignoreParent = true)
         public void remove()
         {
+            subSetSnapshots = null;
             actorIterator.remove();
+            exactClassSets.get(lastActor.getClass()).remove(lastActor);
         }
 
         @OnThread(value = Tag.Simulation, ignoreParent = true)
         public Actor next()
         {
             hasNext(); // update iterator if necessary
-            return actorIterator.next();
+            lastActor = actorIterator.next();
+            return lastActor;
         }
 
         @OnThread(value = Tag.Simulation, ignoreParent = true)
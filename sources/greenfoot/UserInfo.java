@@ -97,6 +97,25 @@ public class UserInfo
         rank = n;
     }
     
+    //package-visible:
+    UserInfo copy()
+    {
+        UserInfo copy = new UserInfo(userName, rank);
+        copy.score = score;
+        copy.ints = ints.clone();
+        copy.strings = strings.clone();
+        return copy;
+    }
+    
+    //package-visible:
+    void copyFrom(UserInfo other)
+    {
+        rank = other.rank;
+        score = other.score;
+        ints = other.ints.clone();
+        strings = other.strings.clone();
+    }
+    
     /**
      * Get the username of the user that this storage belongs to.
      * 
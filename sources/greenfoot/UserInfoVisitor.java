@@ -45,6 +45,33 @@ public class UserInfoVisitor
         }
     }
     
+    /**
+     * Make the given data for the current user the shared instance returned from
+     * UserInfo.getMyInfo(): if there is already an instance for the same user, the
+     * data is copied into it, otherwise the given instance becomes the shared one.
+     * This must be called on the thread which uses the shared instance (normally
+     * the simulation thread).
+     * 
+     * @return  The shared instance
+     */
+    public static UserInfo setMyInfo(UserInfo info)
+    {
+        if (myInfo != null && myInfo.getUserName().equals(info.getUserName()))
+        {
+            myInfo.copyFrom(info);
+        }
+        else
+        {
+            myInfo = info;
+        }
+        return myInfo;
+    }
+    
+    public static UserInfo copy(UserInfo info)
+    {
+        return info.copy();
+    }
+    
     public static GreenfootImage readImage(byte[] imageFileContents)
     {
         return new GreenfootImage(imageFileContents);
@@ -24,8 +24,10 @@ package greenfoot;
 
 import greenfoot.collision.ColManager;
 import greenfoot.collision.CollisionChecker;
+import greenfoot.collision.SynchronizedCollisionChecker;
 import greenfoot.collision.ibsp.Rect;
 import greenfoot.core.TextLabel;
+import greenfoot.core.HeadlessRunner;
 import greenfoot.core.WorldHandler;
 import threadchecker.OnThread;
 import threadchecker.Tag;
@@ -36,6 +38,8 @@ import java.util.Collection;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 
 /**
@@ -63,7 +67,7 @@ public abstract class World
 
     // private CollisionChecker collisionChecker = new GridCollisionChecker();
     // private CollisionChecker collisionChecker = new BVHInsChecker();
-    private CollisionChecker collisionChecker = new ColManager();
+    private CollisionChecker collisionChecker;
     
     //{
     //    collisionChecker = new CollisionProfiler(collisionChecker);
@@ -96,6 +100,15 @@ public abstract class World
     
     /** Whether actors are bound to stay inside the world */
     private boolean isBounded;
+    
+    /** Whether collisions between actors consider only the non-transparent pixels of their images */
+    private boolean pixelPerfectCollisions;
+    
+    /** Whether changes to the world are currently being deferred (see ParallelActor) */
+    private volatile boolean deferringChanges;
+    
+    /** Changes made while actors were acting in parallel, to be applied afterwards */
+    private final Queue<Runnable> deferredChanges = new ConcurrentLinkedQueue<Runnable>();
 
     /**
      * Construct a new world. The size of the world (in number of cells) and the
@@ -123,6 +136,30 @@ public abstract class World
      */
     public World(int worldWidth, int worldHeight, int cellSize, boolean bounded)
     {
+        this(worldWidth, worldHeight, cellSize, bounded, null);
+    }
+
+    /**
+     * Construct a new world, which uses the specified collision checker. The
+     * default checker is a good general choice; this constructor allows a
+     * scenario to pick a checker better suited to its own actors, for instance
+     * a {@link greenfoot.collision.SpatialHashChecker} for a world containing
+     * very many actors of similar size.
+     * 
+     * @param worldWidth  The width of the world (in cells).
+     * @param worldHeight The height of the world (in cells).
+     * @param cellSize    Size of a cell in pixels.
+     * @param bounded     Should actors be restricted to the world boundary?
+     * @param checker     The collision checker to use (null for the default).
+     */
+    protected World(int worldWidth, int worldHeight, int cellSize, boolean bounded, CollisionChecker checker)
+    {
+        if (checker == null) {
+            collisionChecker = new ColManager();
+        }
+        else {
+            collisionChecker = new ColManager(checker);
+        }
         this.width = worldWidth;
         this.height = worldHeight;
         this.cellSize = cellSize;
@@ -137,7 +174,8 @@ public abstract class World
         // the world constructor, if the actors are accessing the world in their
         // constructors (by using getWidth/Height for instance)
         final WorldHandler wHandler = WorldHandler.getInstance();
-        if(wHandler != null) { // will be null when running unit tests.
+        // will be null when running unit tests, and is not used when running headless.
+        if(wHandler != null && HeadlessRunner.getCurrent() == null) {
             wHandler.setInitialisingWorld(this);
         }
     }
@@ -322,6 +360,11 @@ public abstract class World
      */
     public void setPaintOrder(Class ... classes)
     {
+        if (deferringChanges) {
+            deferredChanges.add(() -> setPaintOrder(classes));
+            return;
+        }
+        
         if (classes == null) {
             // Allow null as an argument, to specify no paint order
             if(objectsInPaintOrder == objectsDisordered) {
@@ -376,6 +419,11 @@ public abstract class World
      */
     public void setActOrder(Class ... classes)
     {
+        if (deferringChanges) {
+            deferredChanges.add(() -> setActOrder(classes));
+            return;
+        }
+        
         if (classes == null) {
             // Allow null as an argument, to specify no paint order
             if (objectsInActOrder == objectsDisordered) {
@@ -410,6 +458,35 @@ public abstract class World
         objectsInActOrder.setClassOrder(false, classes);
     }
     
+    /**
+     * Turn pixel-perfect collision checking on or off. Normally, two actors are
+     * considered to intersect if the rectangles of their images overlap. With
+     * pixel-perfect collisions, they only intersect if a non-transparent pixel
+     * of one image overlaps a non-transparent pixel of the other. This affects
+     * methods such as isTouching(), getOneIntersectingObject() and
+     * getIntersectingObjects() in Actor.
+     * <p>
+     * Pixel-perfect checking is slower, especially the first time an image is
+     * checked at a particular rotation, and is off by default.
+     * 
+     * @param pixelPerfect  Whether to use pixel-perfect collision checking
+     */
+    public void setPixelPerfectCollisions(boolean pixelPerfect)
+    {
+        this.pixelPerfectCollisions = pixelPerfect;
+    }
+    
+    /**
+     * Check whether pixel-perfect collision checking is turned on.
+     * 
+     * @return  true if pixel-perfect collision checking is on
+     * @see #setPixelPerfectCollisions(boolean)
+     */
+    public boolean isPixelPerfectCollisions()
+    {
+        return pixelPerfectCollisions;
+    }
+    
     /**
      * Add an Actor to the world.
      * 
@@ -419,6 +496,11 @@ public abstract class World
      */
     public void addObject(Actor object, int x, int y)
     {
+        if (deferringChanges) {
+            deferredChanges.add(() -> addObject(object, x, y));
+            return;
+        }
+        
         if (object.world != null) {
             if (object.world == this) {
                 return;  // Actor is already in the world
@@ -438,7 +520,7 @@ public abstract class World
         object.addedToWorld(this);
         
         WorldHandler whInstance = WorldHandler.getInstance();
-        if (whInstance != null) {
+        if (whInstance != null && HeadlessRunner.getCurrent() == null) {
             WorldHandler.getInstance().objectAddedToWorld(object);
         }
     }
@@ -454,6 +536,11 @@ public abstract class World
             return;
         }
         
+        if (deferringChanges) {
+            deferredChanges.add(() -> removeObject(object));
+            return;
+        }
+        
         objectsDisordered.remove(object);
         collisionChecker.removeObject(object);
         if (objectsDisordered != objectsInActOrder && objectsInActOrder != null) {
@@ -491,17 +578,10 @@ public abstract class World
      */
     public <A> List<A> getObjects(Class<A> cls)
     {
-        List result = new ArrayList();
-        
-        Iterator<Actor> i = objectsDisordered.iterator();
-        while (i.hasNext()) {
-            Actor actor = i.next();
-            if (cls == null || cls.isInstance(actor)) {
-                result.add(actor);
-            }
+        if (cls == null) {
+            return new ArrayList(objectsDisordered);
         }
-        
-        return result;
+        return objectsDisordered.getObjects(cls);
     }
     
     /**
@@ -514,11 +594,30 @@ public abstract class World
         return objectsDisordered.size();
     }
     
+    /**
+     * Get the number of actors of a particular class (or of a subclass) currently
+     * in the world.
+     * 
+     * @param cls Class of objects to count ('null' will count all objects).
+     * @return The number of actors of that class
+     */
+    public int numberOfObjects(Class<?> cls)
+    {
+        if (cls == null) {
+            return objectsDisordered.size();
+        }
+        return objectsDisordered.size(cls);
+    }
+    
     /**
      * Repaints the world. 
      */
     public void repaint() 
     {   
+        if (HeadlessRunner.getCurrent() != null) {
+            // Nothing is painted when running headless
+            return;
+        }
         WorldHandler.getInstance().repaintAndWait();
     }
         
@@ -773,13 +872,57 @@ public abstract class World
 
     void updateObjectLocation(Actor object, int oldX, int oldY)
     {
+        if (deferringChanges) {
+            deferredChanges.add(() -> {
+                if (object.world == this) {
+                    collisionChecker.updateObjectLocation(object, oldX, oldY);
+                }
+            });
+            return;
+        }
         collisionChecker.updateObjectLocation(object, oldX, oldY);
     }
 
     void updateObjectSize(Actor object)
     {
+        if (deferringChanges) {
+            deferredChanges.add(() -> {
+                if (object.world == this) {
+                    collisionChecker.updateObjectSize(object);
+                }
+            });
+            return;
+        }
         collisionChecker.updateObjectSize(object);
     }
+    
+    /**
+     * Start deferring changes to the world. Until {@link #commitDeferredChanges()}
+     * is called, objects are not added or removed and the collision checker is not
+     * updated when objects move; instead the changes are queued. Collision queries
+     * may be made from several threads at once during this time.
+     */
+    void beginDeferredChanges()
+    {
+        collisionChecker = new SynchronizedCollisionChecker(collisionChecker);
+        deferringChanges = true;
+    }
+    
+    /**
+     * Stop deferring changes to the world, and apply all the changes that were
+     * queued since {@link #beginDeferredChanges()}, in the order they were made.
+     */
+    void commitDeferredChanges()
+    {
+        deferringChanges = false;
+        collisionChecker = ((SynchronizedCollisionChecker) collisionChecker).getChecker();
+        
+        Runnable change = deferredChanges.poll();
+        while (change != null) {
+            change.run();
+            change = deferredChanges.poll();
+        }
+    }
 
     /**
      * Used to indicate the start of an animation sequence. For use in the
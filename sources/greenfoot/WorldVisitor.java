@@ -142,4 +142,20 @@ public class WorldVisitor
     {
         return world.textLabels;
     }
+    
+    /**
+     * Start deferring changes to the world, while actors act in parallel.
+     */
+    public static void beginDeferredChanges(World world)
+    {
+        world.beginDeferredChanges();
+    }
+    
+    /**
+     * Apply the changes deferred since {@link #beginDeferredChanges(World)}.
+     */
+    public static void commitDeferredChanges(World world)
+    {
+        world.commitDeferredChanges();
+    }
 }
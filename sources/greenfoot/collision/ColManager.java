@@ -25,6 +25,7 @@ import greenfoot.Actor;
 import greenfoot.collision.ibsp.IBSPColChecker;
 
 import java.awt.Graphics;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -51,8 +52,35 @@ public class ColManager implements CollisionChecker
     /** Classes that are part of the collision checking. */
     private Set<Class<? extends Actor>> collisionClasses = new HashSet<Class<? extends Actor>>();
     
+    /**
+     * For each class that has been queried, the known classes (the keys of
+     * freeObjects plus collisionClasses) which are that class or a subclass.
+     * Cleared whenever an object of a new class is added.
+     */
+    private Map<Class<?>, List<Class<? extends Actor>>> matchingClasses = new HashMap<Class<?>, List<Class<? extends Actor>>>();
+    
     /** The actual collision checker. */
-    private CollisionChecker collisionChecker = new IBSPColChecker();
+    private final CollisionChecker collisionChecker;
+
+    /**
+     * Create a collision manager which delegates to the default collision
+     * checker ({@link IBSPColChecker}).
+     */
+    public ColManager()
+    {
+        this(new IBSPColChecker());
+    }
+
+    /**
+     * Create a collision manager which delegates to the given collision checker.
+     * 
+     * @param collisionChecker  The checker to which actors are added when they
+     *                          first take part in a collision query
+     */
+    public ColManager(CollisionChecker collisionChecker)
+    {
+        this.collisionChecker = collisionChecker;
+    }
 
     /**
      * Ensures that objects of this class are in the collision checker
@@ -62,14 +90,15 @@ public class ColManager implements CollisionChecker
     {
         if (cls == null) {
             //long start = System.nanoTime();
+            // Add all the free objects in one go, which lets the collision
+            // checker build its structure in one pass.
+            List<Actor> allFree = new ArrayList<Actor>();
             Set<Entry<Class<? extends Actor>, LinkedList<Actor>>> entries = freeObjects.entrySet();
             for (Entry<Class<? extends Actor>, LinkedList<Actor>> entry : entries) {
-                // TODO: bulk add could be faster if implemented in collision checker?
-                for (Actor actor : entry.getValue()) {
-                    collisionChecker.addObject(actor);
-                }
+                allFree.addAll(entry.getValue());
                 collisionClasses.add(entry.getKey());
             }
+            collisionChecker.addObjects(allFree);
             //long end = System.nanoTime();
 
             //System.out.println("move all took seconds: " + (end - start) / 1000000000d);
@@ -84,25 +113,42 @@ public class ColManager implements CollisionChecker
                 collisionClasses.add(cls);
     
                 // Add all the objects to the collision checker
-                // TODO: bulk add could be faster if implemented in collision checker?
-                for (Actor actor : classSet) {
-                    collisionChecker.addObject(actor);
-                }
+                collisionChecker.addObjects(classSet);
             }
         }
 
-        if (includeSubclasses) {
-            // Clone it to avoid concurrent modification:
-            Set<Entry<Class<? extends Actor>, LinkedList<Actor>>> entries = 
-                    new HashSet<Entry<Class<? extends Actor>, LinkedList<Actor>>>(freeObjects.entrySet());
-            // Run through all classes to see if any of them is a subclass.
-            for (Entry<Class<? extends Actor>, LinkedList<Actor>> entry : entries) {
-                if(cls.isAssignableFrom(entry.getKey())) {
-                    makeCollisionObjects(entry.getKey(), false);
+        if (includeSubclasses && cls != null) {
+            // Run through all subclasses which still have free objects.
+            for (Class<? extends Actor> subclass : getMatchingClasses(cls)) {
+                if (freeObjects.containsKey(subclass)) {
+                    makeCollisionObjects(subclass, false);
                 }
             }
         }
     }
+    
+    /**
+     * Get the known classes which are the given class or a subclass of it.
+     */
+    private List<Class<? extends Actor>> getMatchingClasses(Class<?> cls)
+    {
+        List<Class<? extends Actor>> matching = matchingClasses.get(cls);
+        if (matching == null) {
+            matching = new ArrayList<Class<? extends Actor>>();
+            for (Class<? extends Actor> known : freeObjects.keySet()) {
+                if (cls.isAssignableFrom(known)) {
+                    matching.add(known);
+                }
+            }
+            for (Class<? extends Actor> known : collisionClasses) {
+                if (cls.isAssignableFrom(known)) {
+                    matching.add(known);
+                }
+            }
+            matchingClasses.put(cls, matching);
+        }
+        return matching;
+    }
 
     /**
      * Ensure that objects of the actors class and all objects of 'cls' or a
@@ -127,6 +173,7 @@ public class ColManager implements CollisionChecker
             if (classSet == null) {
                 classSet = new LinkedList<Actor>();
                 freeObjects.put(cls, classSet);
+                matchingClasses.clear();
             }
             classSet.add(actor);
         }
@@ -147,12 +194,31 @@ public class ColManager implements CollisionChecker
     @SuppressWarnings("unchecked")
     public <T extends Actor> List<T> getObjects(Class<T> cls)
     {
-        List<T> result = collisionChecker.getObjects(cls);
-
-        Set<Entry<Class<? extends Actor>, LinkedList<Actor>>> entries = freeObjects.entrySet();
-        for (Entry<Class<? extends Actor>, LinkedList<Actor>> entry : entries) {
-            if (cls == null || cls.isAssignableFrom(entry.getKey())) {
-                result.addAll((Collection<? extends T>) entry.getValue());
+        if (cls == null) {
+            List<T> result = collisionChecker.getObjects(cls);
+            for (LinkedList<Actor> classSet : freeObjects.values()) {
+                result.addAll((Collection<? extends T>) classSet);
+            }
+            return result;
+        }
+        
+        // Only ask the collision checker if it holds objects of a matching class
+        List<Class<? extends Actor>> matching = getMatchingClasses(cls);
+        List<T> result = null;
+        for (Class<? extends Actor> known : matching) {
+            if (collisionClasses.contains(known)) {
+                result = collisionChecker.getObjects(cls);
+                break;
+            }
+        }
+        if (result == null) {
+            result = new ArrayList<T>();
+        }
+        
+        for (Class<? extends Actor> known : matching) {
+            LinkedList<Actor> classSet = freeObjects.get(known);
+            if (classSet != null) {
+                result.addAll((Collection<? extends T>) classSet);
             }
         }
         return result;
@@ -24,6 +24,7 @@ package greenfoot.collision;
 import greenfoot.Actor;
 
 import java.awt.Graphics;
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -48,6 +49,18 @@ public interface CollisionChecker
      */
     public void addObject(Actor actor);
 
+    /**
+     * Called when a number of objects are added into the world at once. This has
+     * the same effect as calling addObject() for each of them, but may be
+     * implemented more efficiently.
+     */
+    public default void addObjects(Collection<? extends Actor> actors)
+    {
+        for (Actor actor : actors) {
+            addObject(actor);
+        }
+    }
+
     /**
      * Called when an object is removed from the world
      */
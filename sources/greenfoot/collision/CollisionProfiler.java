@@ -28,6 +28,7 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.util.Collection;
 import java.util.List;
 
 public class CollisionProfiler implements CollisionChecker
@@ -103,6 +104,14 @@ public class CollisionProfiler implements CollisionChecker
         addObjectTime += t2 - t1;
     }
 
+    public synchronized void addObjects(Collection<? extends Actor> actors)
+    {
+        long t1 = System.nanoTime();
+        checker.addObjects(actors);
+        long t2 = System.nanoTime();
+        addObjectTime += t2 - t1;
+    }
+
     public synchronized void removeObject(Actor object)
     {
         long t1 = System.nanoTime();
@@ -0,0 +1,591 @@
+/*
+ This file is part of the Greenfoot program.
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.collision;
+
+import greenfoot.Actor;
+import greenfoot.ActorVisitor;
+import greenfoot.collision.ibsp.Rect;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A collision checker based on a uniform spatial hash. The world (in pixels)
+ * is divided into square buckets of a fixed size, and each actor is stored in
+ * every bucket that its bounding rectangle overlaps. Only buckets which
+ * contain actors are allocated, so unbounded worlds are supported.
+ *
+ * <p>Within a bucket, actors are kept in separate lists per concrete class, so
+ * that class-restricted queries can skip over actors of unrelated classes
+ * without testing each of them.
+ *
+ * <p>Some of the good properties of this:
+ * <ul>
+ * <li>Moving an actor within the same bucket(s) costs nothing.</li>
+ * <li>Queries only visit the buckets near the query area.</li>
+ * <li>No rebalancing, regardless of how the actors move.</li>
+ * </ul>
+ *
+ * Some of the bad properties of this:
+ * <ul>
+ * <li>Actors much larger than the bucket size are stored in many buckets.</li>
+ * <li>Performance depends on choosing a bucket size suited to the actors.</li>
+ * </ul>
+ */
+public class SpatialHashChecker implements CollisionChecker
+{
+    /** Minimum bucket size (in pixels) used when none is specified. */
+    public static final int DEFAULT_BUCKET_SIZE = 64;
+
+    private static final int INITIAL_TABLE_SIZE = 256;
+
+    /**
+     * The per-actor data. This records the range of buckets the actor
+     * is currently stored in.
+     */
+    private static class ActorEntry
+    {
+        int minBx, minBy, maxBx, maxBy;
+        /** The last query which visited this actor, to avoid reporting it twice. */
+        int stamp;
+    }
+
+    /**
+     * A single bucket of the spatial hash, holding the actors (in per-class
+     * lists) that overlap it.
+     */
+    private static class Cell
+    {
+        final int bx, by;
+        Cell next;
+
+        Class<?>[] classes = new Class<?>[2];
+        @SuppressWarnings("unchecked")
+        ArrayList<Actor>[] buckets = new ArrayList[2];
+        int numClasses;
+        int size;
+
+        Cell(int bx, int by)
+        {
+            this.bx = bx;
+            this.by = by;
+        }
+
+        void add(Actor actor)
+        {
+            Class<?> cls = actor.getClass();
+            for (int i = 0; i < numClasses; i++) {
+                if (classes[i] == cls) {
+                    buckets[i].add(actor);
+                    size++;
+                    return;
+                }
+            }
+
+            if (numClasses == classes.length) {
+                Class<?>[] newClasses = new Class<?>[numClasses * 2];
+                System.arraycopy(classes, 0, newClasses, 0, numClasses);
+                classes = newClasses;
+                @SuppressWarnings("unchecked")
+                ArrayList<Actor>[] newBuckets = new ArrayList[numClasses * 2];
+                System.arraycopy(buckets, 0, newBuckets, 0, numClasses);
+                buckets = newBuckets;
+            }
+            ArrayList<Actor> list = new ArrayList<Actor>(4);
+            list.add(actor);
+            classes[numClasses] = cls;
+            buckets[numClasses] = list;
+            numClasses++;
+            size++;
+        }
+
+        void remove(Actor actor)
+        {
+            Class<?> cls = actor.getClass();
+            for (int i = 0; i < numClasses; i++) {
+                if (classes[i] == cls) {
+                    ArrayList<Actor> list = buckets[i];
+                    int index = list.indexOf(actor);
+                    if (index != -1) {
+                        // Order within a bucket is irrelevant, so swap with the last element
+                        int last = list.size() - 1;
+                        list.set(index, list.get(last));
+                        list.remove(last);
+                        size--;
+                    }
+                    if (list.isEmpty()) {
+                        numClasses--;
+                        classes[i] = classes[numClasses];
+                        buckets[i] = buckets[numClasses];
+                        classes[numClasses] = null;
+                        buckets[numClasses] = null;
+                    }
+                    return;
+                }
+            }
+        }
+    }
+
+    private GOCollisionQuery actorQuery = new GOCollisionQuery();
+    private NeighbourCollisionQuery neighbourQuery = new NeighbourCollisionQuery();
+    private PointCollisionQuery pointQuery = new PointCollisionQuery();
+    private InRangeQuery inRangeQuery = new InRangeQuery();
+
+    private int requestedBucketSize;
+    private int bucketSize;
+    private int cellSize;
+
+    private Cell[] table = new Cell[INITIAL_TABLE_SIZE];
+    private int numCells;
+    private int numObjects;
+
+    /** Counter used to mark actors visited by the current query. */
+    private int currentStamp;
+
+    /**
+     * Construct a spatial hash checker. The bucket size will be chosen
+     * as the larger of the world cell size and {@link #DEFAULT_BUCKET_SIZE}.
+     */
+    public SpatialHashChecker()
+    {
+        this(0);
+    }
+
+    /**
+     * Construct a spatial hash checker with the given bucket size. For best
+     * results, the bucket size should be around twice the size of the typical
+     * actor image.
+     *
+     * @param bucketSize  The bucket size, in pixels, or 0 to choose a default.
+     */
+    public SpatialHashChecker(int bucketSize)
+    {
+        if (bucketSize < 0) {
+            throw new IllegalArgumentException("Bucket size must not be negative. It was: " + bucketSize);
+        }
+        this.requestedBucketSize = bucketSize;
+    }
+
+    public void initialize(int width, int height, int cellSize, boolean wrap)
+    {
+        this.cellSize = cellSize;
+        if (requestedBucketSize == 0) {
+            bucketSize = Math.max(cellSize, DEFAULT_BUCKET_SIZE);
+        }
+        else {
+            bucketSize = requestedBucketSize;
+        }
+        table = new Cell[INITIAL_TABLE_SIZE];
+        numCells = 0;
+        numObjects = 0;
+    }
+
+    public synchronized void addObject(Actor actor)
+    {
+        if (getEntry(actor) != null) {
+            return;
+        }
+        ActorEntry entry = new ActorEntry();
+        setBucketRange(entry, ActorVisitor.getBoundingRect(actor));
+        ActorVisitor.setData(actor, entry);
+        insert(actor, entry);
+        numObjects++;
+    }
+
+    public synchronized void removeObject(Actor object)
+    {
+        ActorEntry entry = getEntry(object);
+        if (entry == null) {
+            return;
+        }
+        remove(object, entry);
+        ActorVisitor.setData(object, null);
+        numObjects--;
+    }
+
+    public synchronized void updateObjectLocation(Actor object, int oldX, int oldY)
+    {
+        updateObject(object);
+    }
+
+    public synchronized void updateObjectSize(Actor object)
+    {
+        updateObject(object);
+    }
+
+    /**
+     * An actor has moved or changed size. Move it to its new buckets, if they differ
+     * from the old ones.
+     */
+    private void updateObject(Actor object)
+    {
+        ActorEntry entry = getEntry(object);
+        if (entry == null) {
+            // Not (yet) in this checker
+            return;
+        }
+
+        Rect bounds = ActorVisitor.getBoundingRect(object);
+        int minBx = toBucket(bounds.getX());
+        int minBy = toBucket(bounds.getY());
+        int maxBx = toBucket(bounds.getRight());
+        int maxBy = toBucket(bounds.getTop());
+        if (minBx == entry.minBx && minBy == entry.minBy
+                && maxBx == entry.maxBx && maxBy == entry.maxBy) {
+            return;
+        }
+
+        remove(object, entry);
+        entry.minBx = minBx;
+        entry.minBy = minBy;
+        entry.maxBx = maxBx;
+        entry.maxBy = maxBy;
+        insert(object, entry);
+    }
+
+    @SuppressWarnings("unchecked")
+    public synchronized <T extends Actor> List<T> getObjectsAt(int x, int y, Class<T> cls)
+    {
+        int px = x * cellSize + cellSize / 2;
+        int py = y * cellSize + cellSize / 2;
+        pointQuery.init(px, py, null);
+        List<T> result = new ArrayList<T>();
+        collect(px, py, px, py, cls, null, pointQuery, (List<Actor>) result);
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    public synchronized <T extends Actor> List<T> getIntersectingObjects(Actor actor, Class<T> cls)
+    {
+        Rect r = ActorVisitor.getBoundingRect(actor);
+        actorQuery.init(null, actor);
+        List<T> result = new ArrayList<T>();
+        collect(r.getX(), r.getY(), r.getRight(), r.getTop(), cls, actor, actorQuery, (List<Actor>) result);
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    public synchronized <T extends Actor> List<T> getObjectsInRange(int x, int y, int r, Class<T> cls)
+    {
+        int halfCell = cellSize / 2;
+        int px = x * cellSize + halfCell;
+        int py = y * cellSize + halfCell;
+        int pr = r * cellSize;
+        inRangeQuery.init(px, py, pr);
+        List<T> result = new ArrayList<T>();
+        collect(px - pr, py - pr, px + pr, py + pr, cls, null, inRangeQuery, (List<Actor>) result);
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    public synchronized <T extends Actor> List<T> getNeighbours(Actor actor, int distance, boolean diag, Class<T> cls)
+    {
+        int x = ActorVisitor.getX(actor);
+        int y = ActorVisitor.getY(actor);
+        int xPixel = x * cellSize;
+        int yPixel = y * cellSize;
+        int dPixel = distance * cellSize;
+
+        neighbourQuery.init(x, y, distance, diag, null);
+        List<T> result = new ArrayList<T>();
+        collect(xPixel - dPixel, yPixel - dPixel, xPixel + dPixel + cellSize, yPixel + dPixel + cellSize,
+                cls, null, neighbourQuery, (List<Actor>) result);
+        return result;
+    }
+
+    public <T extends Actor> List<T> getObjectsInDirection(int x, int y, int angle, int length, Class<T> cls)
+    {
+        // non-functional (as for IBSPColChecker)
+        return new ArrayList<T>();
+    }
+
+    @SuppressWarnings("unchecked")
+    public synchronized <T extends Actor> List<T> getObjects(Class<T> cls)
+    {
+        List<T> result = new ArrayList<T>(numObjects);
+        int stamp = nextStamp();
+        for (Cell cell : table) {
+            for (; cell != null; cell = cell.next) {
+                for (int i = 0; i < cell.numClasses; i++) {
+                    if (cls != null && !cls.isAssignableFrom(cell.classes[i])) {
+                        continue;
+                    }
+                    ArrayList<Actor> bucket = cell.buckets[i];
+                    for (int j = 0, n = bucket.size(); j < n; j++) {
+                        Actor actor = bucket.get(j);
+                        ActorEntry entry = getEntry(actor);
+                        if (entry.stamp != stamp) {
+                            entry.stamp = stamp;
+                            result.add((T) actor);
+                        }
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    public List<Actor> getObjectsList()
+    {
+        return getObjects(null);
+    }
+
+    public void startSequence()
+    {
+        // Nothing necessary.
+    }
+
+    @SuppressWarnings("unchecked")
+    public synchronized <T extends Actor> T getOneObjectAt(Actor object, int dx, int dy, Class<T> cls)
+    {
+        int px = dx * cellSize + cellSize / 2;
+        int py = dy * cellSize + cellSize / 2;
+        pointQuery.init(px, py, null);
+        return (T) collect(px, py, px, py, cls, object, pointQuery, null);
+    }
+
+    @SuppressWarnings("unchecked")
+    public synchronized <T extends Actor> T getOneIntersectingObject(Actor object, Class<T> cls)
+    {
+        Rect r = ActorVisitor.getBoundingRect(object);
+        actorQuery.init(null, object);
+        return (T) collect(r.getX(), r.getY(), r.getRight(), r.getTop(), cls, object, actorQuery, null);
+    }
+
+    public synchronized void paintDebug(Graphics g)
+    {
+        Color oldColor = g.getColor();
+        g.setColor(Color.RED);
+        for (Cell cell : table) {
+            for (; cell != null; cell = cell.next) {
+                g.drawRect(cell.bx * bucketSize, cell.by * bucketSize, bucketSize, bucketSize);
+            }
+        }
+        g.setColor(oldColor);
+    }
+
+    /**
+     * Visit all actors in the buckets overlapping the given pixel area, and check them
+     * against a query. Each actor is checked at most once.
+     *
+     * @param x1  The left edge of the area (pixels)
+     * @param y1  The top edge of the area (pixels)
+     * @param x2  The right edge of the area (pixels, inclusive)
+     * @param y2  The bottom edge of the area (pixels, inclusive)
+     * @param cls  The class of actors to check (null for all actors)
+     * @param ignore  An actor which should not be checked (may be null)
+     * @param query  The query to check the actors against
+     * @param result  The list to add matching actors to. If null, the first matching
+     *                actor is returned instead.
+     * @return  The first matching actor, if result is null; otherwise null.
+     */
+    private Actor collect(int x1, int y1, int x2, int y2, Class<?> cls, Actor ignore,
+            CollisionQuery query, List<Actor> result)
+    {
+        if (numObjects == 0) {
+            return null;
+        }
+
+        int minBx = toBucket(x1);
+        int minBy = toBucket(y1);
+        int maxBx = toBucket(x2);
+        int maxBy = toBucket(y2);
+        boolean multiCell = minBx != maxBx || minBy != maxBy;
+        int stamp = nextStamp();
+
+        for (int bx = minBx; bx <= maxBx; bx++) {
+            for (int by = minBy; by <= maxBy; by++) {
+                Cell cell = getCell(bx, by);
+                if (cell == null) {
+                    continue;
+                }
+                for (int i = 0; i < cell.numClasses; i++) {
+                    if (cls != null && !cls.isAssignableFrom(cell.classes[i])) {
+                        continue;
+                    }
+                    ArrayList<Actor> bucket = cell.buckets[i];
+                    for (int j = 0, n = bucket.size(); j < n; j++) {
+                        Actor actor = bucket.get(j);
+                        if (actor == ignore) {
+                            continue;
+                        }
+                        if (multiCell) {
+                            ActorEntry entry = getEntry(actor);
+                            if (entry.stamp == stamp) {
+                                continue;
+                            }
+                            entry.stamp = stamp;
+                        }
+                        if (query.checkCollision(actor)) {
+                            if (result == null) {
+                                return actor;
+                            }
+                            result.add(actor);
+                        }
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    private int nextStamp()
+    {
+        currentStamp++;
+        if (currentStamp == 0) {
+            // Wrapped around; stale stamps could now match, so clear them all
+            for (Cell cell : table) {
+                for (; cell != null; cell = cell.next) {
+                    for (int i = 0; i < cell.numClasses; i++) {
+                        for (Actor actor : cell.buckets[i]) {
+                            getEntry(actor).stamp = 0;
+                        }
+                    }
+                }
+            }
+            currentStamp = 1;
+        }
+        return currentStamp;
+    }
+
+    private void setBucketRange(ActorEntry entry, Rect bounds)
+    {
+        entry.minBx = toBucket(bounds.getX());
+        entry.minBy = toBucket(bounds.getY());
+        entry.maxBx = toBucket(bounds.getRight());
+        entry.maxBy = toBucket(bounds.getTop());
+    }
+
+    /**
+     * Convert a pixel co-ordinate to a bucket co-ordinate (rounding down).
+     */
+    private int toBucket(int pixel)
+    {
+        return Math.floorDiv(pixel, bucketSize);
+    }
+
+    private void insert(Actor actor, ActorEntry entry)
+    {
+        for (int bx = entry.minBx; bx <= entry.maxBx; bx++) {
+            for (int by = entry.minBy; by <= entry.maxBy; by++) {
+                Cell cell = getCell(bx, by);
+                if (cell == null) {
+                    cell = createCell(bx, by);
+                }
+                cell.add(actor);
+            }
+        }
+    }
+
+    private void remove(Actor actor, ActorEntry entry)
+    {
+        for (int bx = entry.minBx; bx <= entry.maxBx; bx++) {
+            for (int by = entry.minBy; by <= entry.maxBy; by++) {
+                Cell cell = getCell(bx, by);
+                if (cell != null) {
+                    cell.remove(actor);
+                    if (cell.size == 0) {
+                        removeCell(cell);
+                    }
+                }
+            }
+        }
+    }
+
+    private static int hash(int bx, int by)
+    {
+        int h = bx * 73856093 ^ by * 19349663;
+        return h ^ (h >>> 16);
+    }
+
+    private Cell getCell(int bx, int by)
+    {
+        Cell cell = table[hash(bx, by) & (table.length - 1)];
+        while (cell != null) {
+            if (cell.bx == bx && cell.by == by) {
+                return cell;
+            }
+            cell = cell.next;
+        }
+        return null;
+    }
+
+    private Cell createCell(int bx, int by)
+    {
+        if (numCells >= table.length - (table.length >> 2)) {
+            resizeTable();
+        }
+        Cell cell = new Cell(bx, by);
+        int index = hash(bx, by) & (table.length - 1);
+        cell.next = table[index];
+        table[index] = cell;
+        numCells++;
+        return cell;
+    }
+
+    private void removeCell(Cell cell)
+    {
+        int index = hash(cell.bx, cell.by) & (table.length - 1);
+        Cell prev = null;
+        Cell c = table[index];
+        while (c != null) {
+            if (c == cell) {
+                if (prev == null) {
+                    table[index] = c.next;
+                }
+                else {
+                    prev.next = c.next;
+                }
+                numCells--;
+                return;
+            }
+            prev = c;
+            c = c.next;
+        }
+    }
+
+    private void resizeTable()
+    {
+        Cell[] oldTable = table;
+        table = new Cell[oldTable.length * 2];
+        for (Cell cell : oldTable) {
+            while (cell != null) {
+                Cell next = cell.next;
+                int index = hash(cell.bx, cell.by) & (table.length - 1);
+                cell.next = table[index];
+                table[index] = cell;
+                cell = next;
+            }
+        }
+    }
+
+    private static ActorEntry getEntry(Actor actor)
+    {
+        Object data = ActorVisitor.getData(actor);
+        if (data instanceof ActorEntry) {
+            return (ActorEntry) data;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ This file is part of the Greenfoot program.
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.collision;
+
+import greenfoot.Actor;
+
+import java.awt.Graphics;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A collision checker which delegates to another checker, allowing only one
+ * thread at a time to use it. Used while actors act in parallel, so that the
+ * queries of several actors (which may lazily update the underlying checker)
+ * do not interfere with each other.
+ */
+public class SynchronizedCollisionChecker implements CollisionChecker
+{
+    private final CollisionChecker checker;
+    
+    public SynchronizedCollisionChecker(CollisionChecker checker)
+    {
+        this.checker = checker;
+    }
+    
+    /**
+     * Get the checker that this checker delegates to.
+     */
+    public CollisionChecker getChecker()
+    {
+        return checker;
+    }
+
+    public synchronized void initialize(int width, int height, int cellSize, boolean wrap)
+    {
+        checker.initialize(width, height, cellSize, wrap);
+    }
+
+    public synchronized void addObject(Actor actor)
+    {
+        checker.addObject(actor);
+    }
+
+    public synchronized void addObjects(Collection<? extends Actor> actors)
+    {
+        checker.addObjects(actors);
+    }
+
+    public synchronized void removeObject(Actor object)
+    {
+        checker.removeObject(object);
+    }
+
+    public synchronized void updateObjectLocation(Actor object, int oldX, int oldY)
+    {
+        checker.updateObjectLocation(object, oldX, oldY);
+    }
+
+    public synchronized void updateObjectSize(Actor object)
+    {
+        checker.updateObjectSize(object);
+    }
+
+    public synchronized <T extends Actor> List<T> getObjectsAt(int x, int y, Class<T> cls)
+    {
+        return checker.getObjectsAt(x, y, cls);
+    }
+
+    public synchronized <T extends Actor> List<T> getIntersectingObjects(Actor actor, Class<T> cls)
+    {
+        return checker.getIntersectingObjects(actor, cls);
+    }
+
+    public synchronized <T extends Actor> List<T> getObjectsInRange(int x, int y, int r, Class<T> cls)
+    {
+        return checker.getObjectsInRange(x, y, r, cls);
+    }
+
+    public synchronized <T extends Actor> List<T> getNeighbours(Actor actor, int distance, boolean diag, Class<T> cls)
+    {
+        return checker.getNeighbours(actor, distance, diag, cls);
+    }
+
+    public synchronized <T extends Actor> List<T> getObjectsInDirection(int x, int y, int angle, int length, Class<T> cls)
+    {
+        return checker.getObjectsInDirection(x, y, angle, length, cls);
+    }
+
+    public synchronized <T extends Actor> List<T> getObjects(Class<T> cls)
+    {
+        return checker.getObjects(cls);
+    }
+
+    public synchronized List<Actor> getObjectsList()
+    {
+        return checker.getObjectsList();
+    }
+
+    public synchronized void startSequence()
+    {
+        checker.startSequence();
+    }
+
+    public synchronized <T extends Actor> T getOneObjectAt(Actor object, int dx, int dy, Class<T> cls)
+    {
+        return checker.getOneObjectAt(object, dx, dy, cls);
+    }
+
+    public synchronized <T extends Actor> T getOneIntersectingObject(Actor object, Class<T> cls)
+    {
+        return checker.getOneIntersectingObject(object, cls);
+    }
+
+    public synchronized void paintDebug(Graphics g)
+    {
+        checker.paintDebug(g);
+    }
+}
@@ -23,7 +23,8 @@ package greenfoot.collision.ibsp;
 
 /**
  * A cache for BSP nodes, allowing object re-use. Might help reduce garbage collection
- * impact.
+ * impact. Each collision checker has its own cache, so that worlds may run on
+ * different threads at once; a cache is not thread-safe.
  * 
  * @author Davin McCall
  */
@@ -31,11 +32,11 @@ public class BSPNodeCache
 {
     private static final int CACHE_SIZE = 1000;
     
-    private static BSPNode [] cache = new BSPNode[CACHE_SIZE];
-    private static int tail = 0;
-    private static int size = 0;
+    private BSPNode [] cache = new BSPNode[CACHE_SIZE];
+    private int tail = 0;
+    private int size = 0;
     
-    public static BSPNode getBSPNode()
+    public BSPNode getBSPNode()
     {
         if (size == 0) {
             return new BSPNode(new Rect(0,0,0,0), 0, 0);
@@ -53,7 +54,7 @@ public class BSPNodeCache
         }
     }
     
-    public static void returnNode(BSPNode node)
+    public void returnNode(BSPNode node)
     {
         node.blankNode();
         cache[tail++] = node;
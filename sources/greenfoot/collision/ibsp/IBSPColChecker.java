@@ -49,6 +49,9 @@ public class IBSPColChecker implements CollisionChecker
     
     public static final int REBALANCE_THRESHOLD = 20;
     
+    /** When building a tree in bulk, nodes with this many actors or fewer are not split */
+    public static final int BULK_LEAF_SIZE = 4;
+    
     private GOCollisionQuery actorQuery = new GOCollisionQuery();
     private NeighbourCollisionQuery neighbourQuery = new NeighbourCollisionQuery();
     private PointCollisionQuery pointQuery = new PointCollisionQuery();
@@ -58,6 +61,9 @@ public class IBSPColChecker implements CollisionChecker
     
     private BSPNode bspTree;
     
+    /** Nodes removed from the tree, for re-use */
+    private BSPNodeCache nodeCache = new BSPNodeCache();
+    
     public static boolean debugging = false;
     
     /* (non-Javadoc)
@@ -87,7 +93,7 @@ public class IBSPColChecker implements CollisionChecker
                 splitAxis = Y_AXIS;
                 splitPos = bounds.getMiddleY();
             }
-            bspTree = BSPNodeCache.getBSPNode();
+            bspTree = nodeCache.getBSPNode();
             bspTree.getArea().copyFrom(bounds);
             bspTree.setSplitAxis(splitAxis);
             bspTree.setSplitPos(splitPos);
@@ -102,7 +108,7 @@ public class IBSPColChecker implements CollisionChecker
                     int bx = treeArea.getX() - treeArea.getWidth();
                     Rect newArea = new Rect(bx, treeArea.getY(),
                             treeArea.getRight() - bx, treeArea.getHeight());
-                    BSPNode newTop = BSPNodeCache.getBSPNode();
+                    BSPNode newTop = nodeCache.getBSPNode();
                     newTop.getArea().copyFrom(newArea);
                     newTop.setSplitAxis(X_AXIS);
                     newTop.setSplitPos(treeArea.getX());
@@ -115,7 +121,7 @@ public class IBSPColChecker implements CollisionChecker
                     int bx = treeArea.getRight() + treeArea.getWidth();
                     Rect newArea = new Rect(treeArea.getX(), treeArea.getY(),
                             bx - treeArea.getX(), treeArea.getHeight());
-                    BSPNode newTop = BSPNodeCache.getBSPNode();
+                    BSPNode newTop = nodeCache.getBSPNode();
                     newTop.getArea().copyFrom(newArea);
                     newTop.setSplitAxis(X_AXIS);
                     newTop.setSplitPos(treeArea.getRight());
@@ -128,7 +134,7 @@ public class IBSPColChecker implements CollisionChecker
                     int by = treeArea.getY() - treeArea.getHeight();
                     Rect newArea = new Rect(treeArea.getX(), by,
                             treeArea.getWidth(), treeArea.getTop() - by);
-                    BSPNode newTop = BSPNodeCache.getBSPNode();
+                    BSPNode newTop = nodeCache.getBSPNode();
                     newTop.getArea().copyFrom(newArea);
                     newTop.setSplitAxis(Y_AXIS);
                     newTop.setSplitPos(treeArea.getY());
@@ -141,7 +147,7 @@ public class IBSPColChecker implements CollisionChecker
                     int by = treeArea.getTop() + treeArea.getHeight();
                     Rect newArea = new Rect(treeArea.getX(), treeArea.getY(),
                             treeArea.getWidth(), by - treeArea.getY());
-                    BSPNode newTop = BSPNodeCache.getBSPNode();
+                    BSPNode newTop = nodeCache.getBSPNode();
                     newTop.getArea().copyFrom(newArea);
                     newTop.setSplitAxis(Y_AXIS);
                     newTop.setSplitPos(treeArea.getTop());
@@ -156,6 +162,121 @@ public class IBSPColChecker implements CollisionChecker
         // checkConsistency(true);
     }
     
+    /*
+     * @see greenfoot.collision.CollisionChecker#addObjects(java.util.Collection)
+     */
+    public void addObjects(Collection<? extends Actor> actors)
+    {
+        if (actors.isEmpty()) {
+            return;
+        }
+        
+        List<Actor> allActors = new ArrayList<Actor>(actors);
+        if (bspTree != null) {
+            List<Actor> existing = getObjectsList();
+            if (existing.size() > allActors.size()) {
+                // Not worth rebuilding the tree for relatively few actors
+                for (Actor actor : actors) {
+                    addObject(actor);
+                }
+                return;
+            }
+            
+            // Throw away the existing tree, and build a new one containing
+            // both the existing and the new actors.
+            for (Actor actor : existing) {
+                setNodeForActor(actor, null);
+            }
+            allActors.addAll(existing);
+        }
+        
+        Rect first = getActorBounds(allActors.get(0));
+        int x = first.getX();
+        int y = first.getY();
+        int right = first.getRight();
+        int top = first.getTop();
+        for (Actor actor : allActors) {
+            Rect bounds = getActorBounds(actor);
+            x = Math.min(x, bounds.getX());
+            y = Math.min(y, bounds.getY());
+            right = Math.max(right, bounds.getRight());
+            top = Math.max(top, bounds.getTop());
+        }
+        
+        bspTree = buildTree(allActors, new Rect(x, y, right - x, top - y));
+        // checkConsistency(true);
+    }
+    
+    /**
+     * Build a (sub)tree containing the given actors, top-down. Each node is split
+     * along its longer axis at the median of the actors' centres, so that the
+     * result is balanced.
+     * 
+     * @param actors  The actors, all of which intersect the area
+     * @param area    The area to be covered by the root node of the new tree
+     */
+    private BSPNode buildTree(List<Actor> actors, Rect area)
+    {
+        BSPNode node = createNewNode(area);
+        int numActors = actors.size();
+        
+        if (numActors > BULK_LEAF_SIZE) {
+            int axis = node.getSplitAxis();
+            int low = (axis == X_AXIS) ? area.getX() : area.getY();
+            int high = (axis == X_AXIS) ? area.getRight() : area.getTop();
+            
+            int [] middles = new int[numActors];
+            for (int i = 0; i < numActors; i++) {
+                Rect bounds = getActorBounds(actors.get(i));
+                middles[i] = (axis == X_AXIS) ? bounds.getMiddleX() : bounds.getMiddleY();
+            }
+            Arrays.sort(middles);
+            int splitPos = Math.max(low + 1, Math.min(high - 1, middles[numActors / 2]));
+            
+            if (splitPos > low && splitPos < high) {
+                node.setSplitPos(splitPos);
+                Rect leftArea = node.getLeftArea();
+                Rect rightArea = node.getRightArea();
+                
+                List<Actor> leftActors = new ArrayList<Actor>();
+                List<Actor> rightActors = new ArrayList<Actor>();
+                List<Actor> nodeActors = new ArrayList<Actor>();
+                for (Actor actor : actors) {
+                    Rect bounds = getActorBounds(actor);
+                    boolean inLeft = leftArea.intersects(bounds);
+                    boolean inRight = rightArea.intersects(bounds);
+                    if (inLeft) {
+                        leftActors.add(actor);
+                    }
+                    if (inRight) {
+                        rightActors.add(actor);
+                    }
+                    if (! inLeft && ! inRight) {
+                        // Can happen for an actor with no area; keep it here.
+                        nodeActors.add(actor);
+                    }
+                }
+                
+                // Only split if it separates the actors at least a little, otherwise
+                // we could carry on splitting forever.
+                if (! leftActors.isEmpty() && ! rightActors.isEmpty()
+                        && (leftActors.size() < numActors || rightActors.size() < numActors)) {
+                    node.setChild(PARENT_LEFT, buildTree(leftActors, leftArea));
+                    node.setChild(PARENT_RIGHT, buildTree(rightActors, rightArea));
+                    for (Actor actor : nodeActors) {
+                        node.addActor(actor);
+                    }
+                    return node;
+                }
+            }
+        }
+        
+        for (Actor actor : actors) {
+            node.addActor(actor);
+        }
+        return node;
+    }
+    
     /**
      * Check the consistency of the tree, useful for debugging.
      */
@@ -273,7 +394,7 @@ public class IBSPColChecker implements CollisionChecker
             splitAxis = Y_AXIS;
             splitPos = area.getMiddleY();
         }
-        BSPNode newNode = BSPNodeCache.getBSPNode();
+        BSPNode newNode = nodeCache.getBSPNode();
         newNode.setArea(area);
         newNode.setSplitAxis(splitAxis);
         newNode.setSplitPos(splitPos);
@@ -362,7 +483,7 @@ public class IBSPColChecker implements CollisionChecker
                     }
                 }
                 node.setChild(PARENT_RIGHT, null);
-                BSPNodeCache.returnNode(node);
+                nodeCache.returnNode(node);
                 node = parent;
             }
             else if (right == null) {
@@ -380,7 +501,7 @@ public class IBSPColChecker implements CollisionChecker
                     }
                 }
                 node.setChild(PARENT_LEFT, null);
-                BSPNodeCache.returnNode(node);
+                nodeCache.returnNode(node);
                 node = parent;
             }
             else {
@@ -33,6 +33,14 @@ final public class Rect
         this.height = height;
     }
     
+    public void set(int x, int y, int width, int height)
+    {
+        this.x = x;
+        this.y = y;
+        this.width = width;
+        this.height = height;
+    }
+    
     public void copyFrom(Rect other)
     {
         this.x = other.x;
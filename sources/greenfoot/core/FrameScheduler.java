@@ -0,0 +1,172 @@
+/*
+ This file is part of the Greenfoot program.
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.core;
+
+/**
+ * Paces the simulation loop: decides when each frame (act-loop) should end, and
+ * waits until then. The length of a frame is given by the simulation speed and
+ * may change between frames.
+ * 
+ * <p>Each call to getFrameDeadline() is followed, after waiting, either by a
+ * call to endFrame() or (if the wait was abandoned, for instance because the
+ * simulation was paused) by a call to start().
+ * 
+ * <p>The methods other than getStatistics() are called only from the simulation
+ * thread.
+ */
+public interface FrameScheduler
+{
+    /**
+     * Start a new schedule, with the current frame having begun at the given time.
+     * This is called when the simulation starts running, and when it resumes after
+     * being paused.
+     * 
+     * @param now  The current time, as given by System.nanoTime()
+     */
+    public void start(long now);
+    
+    /**
+     * Get the time (as given by System.nanoTime()) at which the current frame
+     * should end.
+     * 
+     * @param frameNanos  The length of a frame, in nanoseconds
+     */
+    public long getFrameDeadline(long frameNanos);
+    
+    /**
+     * Wait until the given time, as given by System.nanoTime(). Returns
+     * immediately if the time has already passed.
+     * 
+     * @throws InterruptedException  if the thread is interrupted while waiting
+     */
+    public void waitUntil(long deadline) throws InterruptedException;
+    
+    /**
+     * End the current frame, which should have ended at the given deadline, and
+     * begin the next.
+     */
+    public void endFrame(long deadline);
+    
+    /**
+     * Wait for the given time, independently of the frame schedule.
+     * 
+     * @param nanos  The time to wait, in nanoseconds
+     * @throws InterruptedException  if the thread is interrupted while waiting
+     */
+    public default void sleep(long nanos) throws InterruptedException
+    {
+        waitUntil(System.nanoTime() + nanos);
+    }
+    
+    /**
+     * Get the statistics gathered by this scheduler so far. May be called from
+     * any thread.
+     */
+    public Statistics getStatistics();
+    
+    /**
+     * Statistics about how well a scheduler has kept to its frame deadlines.
+     */
+    public static class Statistics
+    {
+        private final long frames;
+        private final long missedDeadlines;
+        private final long totalJitter;
+        private final long maxJitter;
+        private final long waitTime;
+        private final long waitCpuTime;
+        
+        public Statistics(long frames, long missedDeadlines, long totalJitter, long maxJitter,
+                long waitTime, long waitCpuTime)
+        {
+            this.frames = frames;
+            this.missedDeadlines = missedDeadlines;
+            this.totalJitter = totalJitter;
+            this.maxJitter = maxJitter;
+            this.waitTime = waitTime;
+            this.waitCpuTime = waitCpuTime;
+        }
+        
+        /**
+         * The number of frames ended.
+         */
+        public long getFrames()
+        {
+            return frames;
+        }
+        
+        /**
+         * The number of frames which ended too late, because the frame's work was
+         * not finished by the deadline.
+         */
+        public long getMissedDeadlines()
+        {
+            return missedDeadlines;
+        }
+        
+        /**
+         * The mean difference (in nanoseconds) between the deadline and the actual
+         * end of the frame, over the frames which did not miss their deadline.
+         */
+        public long getMeanJitter()
+        {
+            long onTime = frames - missedDeadlines;
+            return onTime == 0 ? 0 : totalJitter / onTime;
+        }
+        
+        /**
+         * The largest difference (in nanoseconds) between the deadline and the
+         * actual end of the frame, over the frames which did not miss their deadline.
+         */
+        public long getMaxJitter()
+        {
+            return maxJitter;
+        }
+        
+        /**
+         * The total (wall-clock) time spent waiting, in nanoseconds.
+         */
+        public long getWaitTime()
+        {
+            return waitTime;
+        }
+        
+        /**
+         * The CPU time used by the waiting thread while waiting, in nanoseconds,
+         * or 0 if this cannot be measured.
+         */
+        public long getWaitCpuTime()
+        {
+            return waitCpuTime;
+        }
+        
+        @Override
+        public String toString()
+        {
+            return "frames: " + frames + ", missed deadlines: " + missedDeadlines
+                    + ", mean jitter: " + getMeanJitter() / 1000 + "us"
+                    + ", max jitter: " + maxJitter / 1000 + "us"
+                    + ", waiting: " + waitTime / 1000000 + "ms"
+                    + " (CPU " + waitCpuTime / 1000000 + "ms)";
+        }
+    }
+}
@@ -0,0 +1,328 @@
+/*
+ This file is part of the Greenfoot program.
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.core;
+
+import greenfoot.Actor;
+import greenfoot.ActorVisitor;
+import greenfoot.World;
+import greenfoot.WorldVisitor;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Runs a world without the Greenfoot environment: no painting, no delays between
+ * act rounds, and no communication with the IDE. This is intended for batch runs,
+ * such as parameter sweeps, where only the outcome of a run is of interest.
+ * 
+ * <p>A runner runs on the thread which calls run(). While it is running, the
+ * Greenfoot class and the world do not use the Simulation or WorldHandler; calls
+ * which would interact with the user (keyboard, mouse, ask) behave as if there
+ * were no input, delays and speed changes are ignored, Greenfoot.stop() ends the
+ * run after the current act round, and random numbers come from the runner's own
+ * generator. Several runners can therefore run independent worlds at the same
+ * time, each on its own thread (see runConcurrently()).
+ * 
+ * <p>Actors all act on the runner's thread, including ParallelActor objects. When
+ * used outside Greenfoot, GreenfootUtil and the actor delegate must have been
+ * initialised, as for an exported scenario. If there is no display, the JVM
+ * should be run with java.awt.headless=true.
+ */
+public class HeadlessRunner
+{
+    /** The runner running on each thread, if any */
+    private static final ThreadLocal<HeadlessRunner> current = new ThreadLocal<HeadlessRunner>();
+    
+    private final Random random;
+    
+    private World world;
+    private boolean stopped;
+    private int rounds;
+    
+    /**
+     * Create a runner whose random numbers are not reproducible.
+     */
+    public HeadlessRunner()
+    {
+        random = new Random();
+    }
+    
+    /**
+     * Create a runner whose random numbers (from Greenfoot.getRandomNumber()) come
+     * from a generator with the given seed, so that runs can be reproduced.
+     */
+    public HeadlessRunner(long seed)
+    {
+        random = new Random(seed);
+    }
+    
+    /**
+     * Get the runner running on the current thread, or null if there is none.
+     */
+    public static HeadlessRunner getCurrent()
+    {
+        return current.get();
+    }
+    
+    /**
+     * Create an instance of the given world class, using its no-argument
+     * constructor, and run it for a number of act rounds.
+     * 
+     * @see #run(Supplier, int, Function)
+     */
+    public <R> R run(Class<? extends World> worldClass, int numRounds,
+            Function<? super World, ? extends R> result)
+    {
+        return run(() -> newWorld(worldClass), numRounds, result);
+    }
+    
+    /**
+     * Create a world and run it for a number of act rounds (fewer if
+     * Greenfoot.stop() is called), as quickly as possible.
+     * 
+     * @param worldFactory  Creates the world. It is called on this thread, as
+     *                      part of the run.
+     * @param numRounds     The number of act rounds to run
+     * @param result        Extracts the result from the world at the end of the run
+     *                      (for instance, {@link #snapshot(World)}). If
+     *                      Greenfoot.setWorld() was called, this is the last world set.
+     * @return  The result of the run
+     */
+    public <R> R run(Supplier<? extends World> worldFactory, int numRounds,
+            Function<? super World, ? extends R> result)
+    {
+        if (current.get() != null) {
+            throw new IllegalStateException("A headless runner is already running on this thread");
+        }
+        
+        current.set(this);
+        try {
+            stopped = false;
+            rounds = 0;
+            world = worldFactory.get();
+            world.started();
+            while (rounds < numRounds && ! stopped) {
+                runOneLoop();
+                rounds++;
+            }
+            world.stopped();
+            return result.apply(world);
+        }
+        finally {
+            current.remove();
+        }
+    }
+    
+    /**
+     * Run a number of worlds at the same time, each with its own runner, on a
+     * thread pool with one thread per processor. The runner for the world at
+     * index i in the list is seeded with i.
+     * 
+     * @return  The results of the runs, in the same order as the worlds
+     * @throws ExecutionException  if any run failed; the first failure is
+     *                             the cause
+     * @throws InterruptedException  if interrupted while waiting for the runs
+     */
+    public static <R> List<R> runConcurrently(List<? extends Supplier<? extends World>> worldFactories,
+            int numRounds, Function<? super World, ? extends R> result)
+        throws InterruptedException, ExecutionException
+    {
+        int threads = Math.max(1, Math.min(worldFactories.size(), Runtime.getRuntime().availableProcessors()));
+        ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        ExecutorService executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "Greenfoot headless runner");
+            thread.setDaemon(true);
+            thread.setContextClassLoader(loader);
+            return thread;
+        });
+        
+        try {
+            List<Callable<R>> runs = new ArrayList<Callable<R>>(worldFactories.size());
+            for (int i = 0; i < worldFactories.size(); i++) {
+                HeadlessRunner runner = new HeadlessRunner(i);
+                Supplier<? extends World> worldFactory = worldFactories.get(i);
+                runs.add(() -> runner.run(worldFactory, numRounds, result));
+            }
+            
+            List<R> results = new ArrayList<R>(runs.size());
+            for (Future<R> future : executor.invokeAll(runs)) {
+                results.add(future.get());
+            }
+            return results;
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+    
+    /**
+     * Get a snapshot of the state of the actors in a world, in act order.
+     */
+    public static List<ActorState> snapshot(World world)
+    {
+        List<ActorState> states = new ArrayList<ActorState>();
+        for (Actor[] bucket : WorldVisitor.getObjectsListInActOrder(world).getSubSetSnapshots()) {
+            for (Actor actor : bucket) {
+                states.add(new ActorState(actor.getClass().getName(), ActorVisitor.getX(actor),
+                        ActorVisitor.getY(actor), ActorVisitor.getRotation(actor)));
+            }
+        }
+        return Collections.unmodifiableList(states);
+    }
+    
+    /**
+     * Run one act round: act the world, then each of the actors in act order.
+     * As in the Simulation, if a new world is set, the rest of the round is skipped.
+     */
+    private void runOneLoop()
+    {
+        World roundWorld = world;
+        roundWorld.act();
+        if (world != roundWorld) {
+            return;
+        }
+        
+        for (Actor[] bucket : WorldVisitor.getObjectsListInActOrder(roundWorld).getSubSetSnapshots()) {
+            for (Actor actor : bucket) {
+                if (ActorVisitor.getWorld(actor) != null) {
+                    actor.act();
+                    if (world != roundWorld) {
+                        return;
+                    }
+                }
+            }
+        }
+    }
+    
+    /**
+     * Set the world to run from the next act round (called by Greenfoot.setWorld()).
+     */
+    public void setWorld(World newWorld)
+    {
+        World oldWorld = world;
+        world = newWorld;
+        if (oldWorld != null && oldWorld != newWorld) {
+            oldWorld.stopped();
+            newWorld.started();
+        }
+    }
+    
+    /**
+     * Get the world currently being run.
+     */
+    public World getWorld()
+    {
+        return world;
+    }
+    
+    /**
+     * Stop the run at the end of the current act round (called by Greenfoot.stop()).
+     */
+    public void stop()
+    {
+        stopped = true;
+    }
+    
+    /**
+     * Get the number of act rounds completed so far.
+     */
+    public int getRounds()
+    {
+        return rounds;
+    }
+    
+    /**
+     * Get the random number generator used for this run.
+     */
+    public Random getRandom()
+    {
+        return random;
+    }
+    
+    private static World newWorld(Class<? extends World> worldClass)
+    {
+        try {
+            return worldClass.getDeclaredConstructor().newInstance();
+        }
+        catch (InvocationTargetException e) {
+            throw new RuntimeException(e.getCause());
+        }
+        catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("Cannot instantiate " + worldClass.getName(), e);
+        }
+    }
+    
+    /**
+     * The state of an actor, as recorded by {@link HeadlessRunner#snapshot(World)}.
+     */
+    public static class ActorState
+    {
+        private final String className;
+        private final int x;
+        private final int y;
+        private final int rotation;
+        
+        public ActorState(String className, int x, int y, int rotation)
+        {
+            this.className = className;
+            this.x = x;
+            this.y = y;
+            this.rotation = rotation;
+        }
+        
+        public String getClassName()
+        {
+            return className;
+        }
+        
+        public int getX()
+        {
+            return x;
+        }
+        
+        public int getY()
+        {
+            return y;
+        }
+        
+        public int getRotation()
+        {
+            return rotation;
+        }
+        
+        @Override
+        public String toString()
+        {
+            return className + " at (" + x + "," + y + ") rotation " + rotation;
+        }
+    }
+}
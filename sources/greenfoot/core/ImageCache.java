@@ -23,35 +23,135 @@ package greenfoot.core;
 
 import greenfoot.GreenfootImage;
 
-import java.lang.ref.Reference;
-import java.lang.ref.ReferenceQueue;
-import java.lang.ref.SoftReference;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
- * An image cache, which uses soft references to avoid holding images when heap space becomes exhausted.
+ * An image cache, holding the images loaded from files, keyed by file name. The
+ * total size of the cached images is limited; when the limit is reached the least
+ * recently used images are dropped. Images handed out from the cache are
+ * copy-on-write clones, so dropping an image from the cache does not affect
+ * images already in use.
+ * 
+ * <p>The cache can be filled in advance (see {@link #preloadImages(Iterable)}), so
+ * that worlds and actors which load many images in their constructors do not have
+ * to decode them one at a time.
  * 
  * @author Davin McCall
  */
 public class ImageCache
 {
+    /** Default limit on the memory used by cached images */
+    public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+    
     private static ImageCache instance = new ImageCache();
     
-    /** A soft reference to a cached image */
-    private class CachedImageRef extends SoftReference<GreenfootImage>
+    /** Number of threads used to decode images when preloading */
+    private static final int PRELOAD_THREADS = Runtime.getRuntime().availableProcessors();
+    
+    /**
+     * Cached images, in order of use; the least recently used first. The image
+     * for a file which could not be loaded is cached as null.
+     */
+    private final LinkedHashMap<String,GreenfootImage> imageCache = new LinkedHashMap<String,GreenfootImage>(64, 0.75f, true);
+    
+    private long maxBytes;
+    private long usedBytes;
+    
+    private long hits;
+    private long misses;
+    private long evictions;
+    
+    private volatile boolean preloadEnabled = true;
+    private ExecutorService preloadExecutor;
+    
+    /**
+     * Statistics about the use of the cache.
+     */
+    public static class Statistics
     {
-        String imgName;
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+        private final int entries;
+        private final long usedBytes;
+        private final long maxBytes;
+        
+        public Statistics(long hits, long misses, long evictions, int entries, long usedBytes, long maxBytes)
+        {
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.entries = entries;
+            this.usedBytes = usedBytes;
+            this.maxBytes = maxBytes;
+        }
+        
+        /**
+         * The number of requests for an image which was in the cache.
+         */
+        public long getHits()
+        {
+            return hits;
+        }
+        
+        /**
+         * The number of requests for an image which was not in the cache.
+         */
+        public long getMisses()
+        {
+            return misses;
+        }
+        
+        /**
+         * The number of images dropped from the cache to keep within the memory limit.
+         */
+        public long getEvictions()
+        {
+            return evictions;
+        }
+        
+        /**
+         * The number of file names in the cache (including those cached as not loadable).
+         */
+        public int getEntries()
+        {
+            return entries;
+        }
+        
+        /**
+         * The memory used by the cached images, in bytes.
+         */
+        public long getUsedBytes()
+        {
+            return usedBytes;
+        }
         
-        public CachedImageRef(String imgName, GreenfootImage image, ReferenceQueue<GreenfootImage> queue)
+        /**
+         * The limit on the memory used by the cached images, in bytes.
+         */
+        public long getMaxBytes()
         {
-            super(image, queue);
-            this.imgName = imgName;
+            return maxBytes;
         }
     }
     
-    private Map<String,CachedImageRef> imageCache = new HashMap<String,CachedImageRef>();
-    private ReferenceQueue<GreenfootImage> imgCacheRefQueue = new ReferenceQueue<GreenfootImage>();
+    public ImageCache()
+    {
+        this(DEFAULT_MAX_BYTES);
+    }
+    
+    public ImageCache(long maxBytes)
+    {
+        this.maxBytes = maxBytes;
+    }
     
     /**
      * Retrieve the image cache instance.
@@ -63,20 +163,23 @@ public class ImageCache
 
     /**
      * Requests that an image with associated name be added into the cache. The image may be null,
-     * in which case the null response will be cached. Thread-safe.
+     * in which case the null response will be cached. Images which are too large to be worth
+     * caching are not cached. Thread-safe.
      * 
      * @return  whether the image was cached.
      */
     public boolean addCachedImage(String fileName, GreenfootImage image) 
     {
+        long size = sizeOf(image);
         synchronized (imageCache) {
-            if (image != null) {
-                CachedImageRef cr = new CachedImageRef(fileName, image, imgCacheRefQueue);
-                imageCache.put(fileName, cr);
-            }
-            else {
-                imageCache.put(fileName, null);
+            if (size > maxBytes / 4) {
+                // Too big to be worth caching; it would push out many other images
+                removeEntry(fileName);
+                return false;
             }
+            GreenfootImage old = imageCache.put(fileName, image);
+            usedBytes += size - sizeOf(old);
+            evict(fileName);
         }
         return true;
     }
@@ -91,12 +194,14 @@ public class ImageCache
     public GreenfootImage getCachedImage(String fileName)
     { 
         synchronized (imageCache) {
-            flushImgCacheRefQueue();
-            CachedImageRef sr = imageCache.get(fileName);
-            if (sr != null) {
-                return sr.get();
+            GreenfootImage image = imageCache.get(fileName);
+            if (image != null || imageCache.containsKey(fileName)) {
+                hits++;
             }
-            return null;
+            else {
+                misses++;
+            }
+            return image;
         }
     }
 
@@ -107,10 +212,7 @@ public class ImageCache
     public void removeCachedImage(String fileName)
     {
         synchronized (imageCache) {
-            CachedImageRef cr = imageCache.remove(fileName);
-            if (cr != null) {
-                cr.clear();
-            }
+            removeEntry(fileName);
         }
     }
 
@@ -126,32 +228,151 @@ public class ImageCache
     }
 
     /**
-     * Clear the image cache.
+     * Clear the image cache. The statistics are kept.
      */
     public void clearImageCache()
     {
         synchronized (imageCache) {
             imageCache.clear();
-            imgCacheRefQueue = new ReferenceQueue<GreenfootImage>();
+            usedBytes = 0;
         }
     }
-
+    
+    /**
+     * Set the limit on the memory used by the cached images. If the cache holds
+     * more than this, the least recently used images are dropped. Thread-safe.
+     */
+    public void setMaxBytes(long maxBytes)
+    {
+        synchronized (imageCache) {
+            this.maxBytes = maxBytes;
+            evict(null);
+        }
+    }
+    
     /**
-     * Flush the image cache reference queue.
-     * <p>
-     * Because the images are cached via soft references, the references may be cleared, but the
-     * key will still map to the (cleared) reference. Calling this method occasionally removes such
-     * dead keys.
+     * Get statistics about the use of the cache. Thread-safe.
      */
-    private void flushImgCacheRefQueue()
+    public Statistics getStatistics()
     {
-        Reference<? extends GreenfootImage> ref = imgCacheRefQueue.poll();
-        while (ref != null) {
-            if (ref instanceof CachedImageRef) {
-                CachedImageRef cr = (CachedImageRef) ref;
-                imageCache.remove(cr.imgName);
+        synchronized (imageCache) {
+            return new Statistics(hits, misses, evictions, imageCache.size(), usedBytes, maxBytes);
+        }
+    }
+    
+    /**
+     * Set whether {@link #preloadImages(Iterable)} loads images. Preloading is enabled by default.
+     */
+    public void setPreloadEnabled(boolean preloadEnabled)
+    {
+        this.preloadEnabled = preloadEnabled;
+    }
+    
+    /**
+     * Load a set of images into the cache, decoding them in parallel, and wait
+     * until they have been loaded. Images already cached are not loaded again.
+     * Loading stops once the cache is full, so that preloaded images do not push
+     * out each other (or images in use). Files which cannot be loaded are cached
+     * as not loadable, just as when they are loaded individually.
+     * 
+     * <p>Does nothing if preloading has been disabled.
+     * 
+     * @param fileNames  The names of the image files, as they would be passed to
+     *                   the GreenfootImage constructor
+     */
+    public void preloadImages(Iterable<String> fileNames)
+    {
+        if (! preloadEnabled) {
+            return;
+        }
+        
+        List<Future<?>> loads = new ArrayList<Future<?>>();
+        ExecutorService executor = getPreloadExecutor();
+        for (String fileName : fileNames) {
+            loads.add(executor.submit(() -> preloadImage(fileName)));
+        }
+        
+        boolean interrupted = false;
+        for (Future<?> load : loads) {
+            while (true) {
+                try {
+                    load.get();
+                    break;
+                }
+                catch (InterruptedException ie) {
+                    // Carry on waiting; the loads are short.
+                    interrupted = true;
+                }
+                catch (ExecutionException ee) {
+                    // Problems with individual images are reported when they are used.
+                    break;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    private void preloadImage(String fileName)
+    {
+        synchronized (imageCache) {
+            if (usedBytes >= maxBytes || imageCache.containsKey(fileName)) {
+                return;
+            }
+        }
+        try {
+            // Loading the image caches it:
+            new GreenfootImage(fileName);
+        }
+        catch (IllegalArgumentException iae) {
+            // Not an image we can load; cached as such.
+        }
+    }
+    
+    private synchronized ExecutorService getPreloadExecutor()
+    {
+        if (preloadExecutor == null) {
+            preloadExecutor = Executors.newFixedThreadPool(PRELOAD_THREADS, r -> {
+                Thread thread = new Thread(r, "Greenfoot image loader");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return preloadExecutor;
+    }
+    
+    /**
+     * Remove an entry, if present. Call while synchronized on the cache.
+     */
+    private void removeEntry(String fileName)
+    {
+        if (imageCache.containsKey(fileName)) {
+            usedBytes -= sizeOf(imageCache.remove(fileName));
+        }
+    }
+    
+    /**
+     * Drop the least recently used images until the cache is within its limit.
+     * Call while synchronized on the cache.
+     * 
+     * @param keep  The name of an image which should not be dropped (may be null)
+     */
+    private void evict(String keep)
+    {
+        Iterator<Map.Entry<String,GreenfootImage>> i = imageCache.entrySet().iterator();
+        while (usedBytes > maxBytes && i.hasNext()) {
+            Map.Entry<String,GreenfootImage> eldest = i.next();
+            if (! eldest.getKey().equals(keep)) {
+                usedBytes -= sizeOf(eldest.getValue());
+                i.remove();
+                evictions++;
             }
-            ref = imgCacheRefQueue.poll();
         }
     }
+    
+    private static long sizeOf(GreenfootImage image)
+    {
+        return image == null ? 0 : 4L * image.getWidth() * image.getHeight();
+    }
 }
@@ -0,0 +1,192 @@
+/*
+ This file is part of the Greenfoot program.
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.core;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A frame scheduler which waits by parking the thread, without spinning, so that
+ * an idle simulation uses no CPU.
+ * 
+ * <p>A parked thread usually wakes up somewhat later than asked. The scheduler
+ * keeps a running estimate of this overshoot, updated after every wake-up, and
+ * parks for correspondingly less time.
+ * 
+ * <p>In VARIABLE_TIMESTEP mode each frame is timed from the end of the previous
+ * one, so a frame that runs late pushes back all the following ones. In
+ * FIXED_TIMESTEP mode the frames are timed from a fixed starting point, so a late
+ * frame is followed by shorter ones until the schedule is caught up; if the
+ * simulation falls more than a whole frame behind, the schedule is restarted
+ * rather than trying to catch up.
+ */
+public class ParkingFrameScheduler implements FrameScheduler
+{
+    public enum Mode
+    {
+        FIXED_TIMESTEP, VARIABLE_TIMESTEP
+    }
+    
+    /** The overshoot assumed before any has been measured */
+    private static final long INITIAL_OVERSHOOT = 50 * 1000L;
+    /** Overshoots longer than this (the thread was probably descheduled) are capped */
+    private static final long MAX_OVERSHOOT = 2 * 1000L * 1000L;
+    /** The weight of the old estimate against a new sample is (OVERSHOOT_WEIGHT - 1) to 1 */
+    private static final int OVERSHOOT_WEIGHT = 8;
+    /** A frame ending this much after its deadline has missed it */
+    private static final long MISSED_THRESHOLD = 1000L * 1000L;
+    
+    private static final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+    private static final boolean cpuTimeSupported = threadBean.isCurrentThreadCpuTimeSupported();
+    
+    private final Mode mode;
+    
+    private boolean started;
+    /**
+     * The time from which the current frame's deadline is calculated: the end of
+     * the previous frame (variable timestep), or its deadline (fixed timestep).
+     */
+    private long frameBase;
+    /** The estimated time by which a park overshoots, in nanoseconds */
+    private long overshoot = INITIAL_OVERSHOOT;
+    
+    // Statistics, guarded by this:
+    private long frames;
+    private long missedDeadlines;
+    private long totalJitter;
+    private long maxJitter;
+    private long waitTime;
+    private long waitCpuTime;
+    
+    /**
+     * Create a scheduler with the given mode.
+     */
+    public ParkingFrameScheduler(Mode mode)
+    {
+        this.mode = mode;
+    }
+    
+    /**
+     * Get the mode of this scheduler.
+     */
+    public Mode getMode()
+    {
+        return mode;
+    }
+    
+    @Override
+    public void start(long now)
+    {
+        frameBase = now;
+        started = true;
+    }
+    
+    @Override
+    public long getFrameDeadline(long frameNanos)
+    {
+        if (! started) {
+            start(System.nanoTime());
+        }
+        return frameBase + frameNanos;
+    }
+    
+    @Override
+    public void waitUntil(long deadline) throws InterruptedException
+    {
+        long startTime = System.nanoTime();
+        long startCpuTime = cpuTime();
+        try {
+            while (true) {
+                if (Thread.interrupted()) {
+                    throw new InterruptedException("ParkingFrameScheduler.waitUntil interrupted.");
+                }
+                
+                long now = System.nanoTime();
+                long parkNanos = deadline - now - overshoot;
+                if (parkNanos <= 0) {
+                    // Close enough: parking again would most likely take us past the deadline
+                    return;
+                }
+                LockSupport.parkNanos(this, parkNanos);
+                
+                long late = System.nanoTime() - (now + parkNanos);
+                if (late >= 0) {
+                    // (An early return is a spurious wake-up or an interrupt; it tells us nothing.)
+                    overshoot += (Math.min(late, MAX_OVERSHOOT) - overshoot) / OVERSHOOT_WEIGHT;
+                }
+            }
+        }
+        finally {
+            long endCpuTime = cpuTime();
+            long endTime = System.nanoTime();
+            synchronized (this) {
+                waitTime += endTime - startTime;
+                waitCpuTime += endCpuTime - startCpuTime;
+            }
+        }
+    }
+    
+    @Override
+    public void endFrame(long deadline)
+    {
+        long now = System.nanoTime();
+        long frameNanos = deadline - frameBase;
+        long lateness = now - deadline;
+        
+        synchronized (this) {
+            frames++;
+            if (frameNanos <= 0) {
+                // Running flat out; there is no deadline to keep
+            }
+            else if (lateness > MISSED_THRESHOLD) {
+                missedDeadlines++;
+            }
+            else {
+                long jitter = Math.abs(lateness);
+                totalJitter += jitter;
+                maxJitter = Math.max(maxJitter, jitter);
+            }
+        }
+        
+        if (mode == Mode.FIXED_TIMESTEP && lateness <= frameNanos) {
+            frameBase = deadline;
+        }
+        else {
+            frameBase = now;
+        }
+    }
+    
+    @Override
+    public synchronized Statistics getStatistics()
+    {
+        return new Statistics(frames, missedDeadlines, totalJitter, maxJitter, waitTime, waitCpuTime);
+    }
+    
+    /**
+     * Get the CPU time used by the current thread, or 0 if it is not available.
+     */
+    private static long cpuTime()
+    {
+        return cpuTimeSupported ? Math.max(threadBean.getCurrentThreadCpuTime(), 0) : 0;
+    }
+}
@@ -23,6 +23,7 @@ package greenfoot.core;
 
 import greenfoot.Actor;
 import greenfoot.ActorVisitor;
+import greenfoot.ParallelActor;
 import greenfoot.World;
 import greenfoot.WorldVisitor;
 import greenfoot.event.SimulationListener;
@@ -30,16 +31,20 @@ import greenfoot.event.SimulationListener.AsyncEvent;
 import greenfoot.event.SimulationListener.SyncEvent;
 import greenfoot.event.WorldEvent;
 import greenfoot.event.WorldListener;
-import greenfoot.util.HDTimer;
 import threadchecker.OnThread;
 import threadchecker.Tag;
 
+import java.lang.management.ManagementFactory;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Queue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * The main class of the simulation. It drives the simulation and calls act()
@@ -71,6 +76,23 @@ public class Simulation extends Thread
     @OnThread(value = Tag.Any, requireSynchronized = true)
     private boolean paused;
 
+    /** Runs of ParallelActor objects shorter than this are acted serially */
+    private static final int PARALLEL_ACT_THRESHOLD = 64;
+    
+    /** The number of ParallelActor objects acted by one task, without further splitting */
+    private static final int PARALLEL_ACT_CHUNK = 16;
+    
+    /** Thread pool for acting ParallelActor objects; created when first needed */
+    private ForkJoinPool actPool;
+    
+    /**
+     * Whether this VM is running under a debugger. If so, ParallelActor objects act
+     * serially on this thread, since the debugger only handles breakpoints and
+     * stepping on the simulation thread.
+     */
+    @OnThread(Tag.Any)
+    private static final boolean debuggerAttached = isDebuggerAttached();
+    
     /** Whether the simulation is enabled (world installed) */
     private volatile boolean enabled;
 
@@ -93,8 +115,12 @@ public class Simulation extends Thread
     @OnThread(value = Tag.Any, requireSynchronized = true)
     private int speed; // the simulation speed in range (1..100)
 
-    private long lastDelayTime;
     private long delay; // the speed translated into delay (nanoseconds)
+    
+    /** Paces the act-loops according to the delay */
+    @OnThread(Tag.Any)
+    private volatile FrameScheduler frameScheduler =
+            new ParkingFrameScheduler(ParkingFrameScheduler.Mode.VARIABLE_TIMESTEP);
 
     /**
      * Lock to synchronize access to the two fields: delaying and interruptDelay
@@ -128,7 +154,6 @@ public class Simulation extends Thread
         paused = true;
         speed = 50;
         delay = calculateDelay(speed);
-        HDTimer.init();
     }
     
     /**
@@ -358,7 +383,7 @@ public class Simulation extends Thread
                     System.gc();
                     try {
                         simulationWait();
-                        lastDelayTime = System.nanoTime();
+                        frameScheduler.start(System.nanoTime());
                     }
                     catch (InterruptedException e1) {
                         // Swallow the interrupt
@@ -392,7 +417,7 @@ public class Simulation extends Thread
     private void resumeRunning() throws InterruptedException
     {
         isRunning = true;
-        lastDelayTime = System.nanoTime();
+        frameScheduler.start(System.nanoTime());
         fireSimulationEventSync(SyncEvent.STARTED);
         World world = worldHandler.getWorld();
         if (world != null) {
@@ -496,8 +521,6 @@ public class Simulation extends Thread
         // so we remember the first interrupted exception and throw it
         // when all the actors have acted.
         ActInterruptedException interruptedException = null;
-        
-        List<? extends Actor> objects = null;
 
         try
         {
@@ -512,30 +535,71 @@ public class Simulation extends Thread
         {
             interruptedException = e;
         }
-        // We need to make a copy so that the original collection can be
-        // modified by the actors' act() methods.
-        objects = new ArrayList<Actor>(WorldVisitor.getObjectsListInActOrder(world));
-        for (Actor actor : objects)
+        // We need a copy so that the original collection can be
+        // modified by the actors' act() methods. The copy is kept per class
+        // bucket, so that runs of ParallelActor objects within a bucket can
+        // act in parallel without disturbing the act order between classes.
+        // The snapshot arrays are cached by the set until it is modified, so
+        // usually no allocation is needed here.
+        Actor[][] buckets = WorldVisitor.getObjectsListInActOrder(world).getSubSetSnapshots();
+        for (int b = 0; b < buckets.length; b++)
         {
-            if (!enabled)
-            {
-                return;
-            }
-            if (ActorVisitor.getWorld(actor) != null)
+            Actor[] bucket = buckets[b];
+            int i = 0;
+            while (i < bucket.length)
             {
-                try
+                int runEnd = i;
+                while (runEnd < bucket.length && bucket[runEnd] instanceof ParallelActor)
+                {
+                    runEnd++;
+                }
+                
+                if (runEnd - i >= PARALLEL_ACT_THRESHOLD && !debuggerAttached)
                 {
-                    actActor(actor);
+                    if (!enabled)
+                    {
+                        return;
+                    }
+                    ActInterruptedException e = actInParallel(world, bucket, i, runEnd);
+                    if (interruptedException == null)
+                    {
+                        interruptedException = e;
+                    }
                     if (world != worldHandler.getWorld())
                     {
                         return; // New world was set
                     }
+                    i = runEnd;
+                    continue;
                 }
-                catch (ActInterruptedException e)
+                
+                // Too few parallel actors to be worth it; act serially up to and
+                // including the next actor which must act on its own.
+                int serialEnd = Math.min(runEnd + 1, bucket.length);
+                for (; i < serialEnd; i++)
                 {
-                    if (interruptedException == null)
+                    Actor actor = bucket[i];
+                    if (!enabled)
                     {
-                        interruptedException = e;
+                        return;
+                    }
+                    if (ActorVisitor.getWorld(actor) != null)
+                    {
+                        try
+                        {
+                            actActor(actor);
+                            if (world != worldHandler.getWorld())
+                            {
+                                return; // New world was set
+                            }
+                        }
+                        catch (ActInterruptedException e)
+                        {
+                            if (interruptedException == null)
+                            {
+                                interruptedException = e;
+                            }
+                        }
                     }
                 }
             }
@@ -555,6 +619,163 @@ public class Simulation extends Thread
         fireSimulationEventSync(SyncEvent.END_ACT_ROUND);
     }
     
+    /**
+     * Act the given range of actors in parallel, on the act thread pool. Changes
+     * to the world are deferred until all of the actors have acted, and then applied
+     * on this (the simulation) thread. The actors' cached bounds are discarded
+     * first: a collision check from another thread may have calculated them while
+     * the actor was moving, leaving them inconsistent with its location.
+     * 
+     * @return  the first ActInterruptedException thrown by an actor, or null.
+     */
+    private ActInterruptedException actInParallel(World world, Actor[] actors, int from, int to)
+    {
+        AtomicReference<ActInterruptedException> interrupted = new AtomicReference<>();
+        WorldVisitor.beginDeferredChanges(world);
+        try
+        {
+            getActPool().invoke(new ParallelActTask(actors, from, to, interrupted));
+        }
+        finally
+        {
+            for (int i = from; i < to; i++)
+            {
+                ActorVisitor.invalidateBounds(actors[i]);
+            }
+            WorldVisitor.commitDeferredChanges(world);
+        }
+        return interrupted.get();
+    }
+    
+    /**
+     * Get the thread pool used for acting ParallelActor objects, creating it if necessary.
+     * Its threads use the same context class loader as the simulation thread, so that
+     * user code behaves the same when run on them.
+     */
+    private ForkJoinPool getActPool()
+    {
+        if (actPool == null)
+        {
+            ClassLoader loader = getContextClassLoader();
+            actPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors(), pool -> {
+                ForkJoinWorkerThread thread = new ActThread(pool);
+                thread.setName("Greenfoot act thread " + thread.getPoolIndex());
+                thread.setContextClassLoader(loader);
+                return thread;
+            }, null, false);
+        }
+        return actPool;
+    }
+    
+    /**
+     * Check whether this VM was started with the JDWP debugging agent, as it is
+     * when run from within Greenfoot.
+     */
+    @OnThread(Tag.Any)
+    private static boolean isDebuggerAttached()
+    {
+        try
+        {
+            for (String arg : ManagementFactory.getRuntimeMXBean().getInputArguments())
+            {
+                if (arg.startsWith("-agentlib:jdwp") || arg.startsWith("-Xrunjdwp"))
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
+        catch (SecurityException | LinkageError e)
+        {
+            // Can't tell; be safe and act serially.
+            return true;
+        }
+    }
+    
+    /**
+     * Check that the current thread is not one of the threads used for acting
+     * ParallelActor objects. Methods which control the simulation (and so must
+     * run on the simulation thread) call this before doing anything.
+     * 
+     * @param method  The name of the calling method, for the exception message
+     * @throws IllegalStateException  if called from an act thread
+     */
+    @OnThread(Tag.Any)
+    public static void checkNotActThread(String method)
+    {
+        if (Thread.currentThread() instanceof ActThread)
+        {
+            throw new IllegalStateException(method + " cannot be called from the act() "
+                    + "method of a ParallelActor while it is acting in parallel.");
+        }
+    }
+    
+    /**
+     * A thread from the pool used for acting ParallelActor objects.
+     */
+    @OnThread(Tag.Worker)
+    private static class ActThread extends ForkJoinWorkerThread
+    {
+        @OnThread(Tag.Any)
+        ActThread(ForkJoinPool pool)
+        {
+            super(pool);
+        }
+    }
+    
+    /**
+     * Acts a range of actors, splitting the range between threads. This runs on
+     * the act threads, not on the simulation thread, while the simulation thread
+     * waits for it to finish.
+     */
+    @OnThread(Tag.Worker)
+    private static class ParallelActTask extends RecursiveAction
+    {
+        private final Actor[] actors;
+        private final int from;
+        private final int to;
+        private final AtomicReference<ActInterruptedException> interrupted;
+        
+        @OnThread(Tag.Any)
+        ParallelActTask(Actor[] actors, int from, int to, AtomicReference<ActInterruptedException> interrupted)
+        {
+            this.actors = actors;
+            this.from = from;
+            this.to = to;
+            this.interrupted = interrupted;
+        }
+        
+        @Override
+        @OnThread(value = Tag.Worker, ignoreParent = true)
+        @SuppressWarnings("threadchecker") // Runs user act() code, normally on the simulation thread
+        protected void compute()
+        {
+            if (to - from > PARALLEL_ACT_CHUNK)
+            {
+                int mid = (from + to) >>> 1;
+                invokeAll(new ParallelActTask(actors, from, mid, interrupted),
+                        new ParallelActTask(actors, mid, to, interrupted));
+                return;
+            }
+            
+            for (int i = from; i < to; i++)
+            {
+                Actor actor = actors[i];
+                if (ActorVisitor.getWorld(actor) != null)
+                {
+                    try
+                    {
+                        actActor(actor);
+                    }
+                    catch (ActInterruptedException e)
+                    {
+                        interrupted.compareAndSet(null, e);
+                    }
+                }
+            }
+        }
+    }
+    
     // The actActor, actWorld and newInstance methods exist as a tagging mechanism
     // that allows them to be found easily in the debugger when we
     // are attempting to reach the next call to user code
@@ -852,6 +1073,26 @@ public class Simulation extends Thread
     {
         return speed;
     }
+    
+    /**
+     * Set the scheduler used to pace the act-loops. It takes effect from the next
+     * delay between act-loops.
+     */
+    @OnThread(Tag.Any)
+    public void setFrameScheduler(FrameScheduler scheduler)
+    {
+        frameScheduler = scheduler;
+    }
+    
+    /**
+     * Get the scheduler used to pace the act-loops, which can be used to obtain
+     * timing statistics.
+     */
+    @OnThread(Tag.Any)
+    public FrameScheduler getFrameScheduler()
+    {
+        return frameScheduler;
+    }
 
     /**
      * Sleep an amount of time according to the current speed setting for this
@@ -906,9 +1147,10 @@ public class Simulation extends Thread
         {
             // If we will be asleep for more than 1/100th of a second, force repaint, otherwise rely on usual if-due mechanism.
             worldHandler.paint(numCycles * delay > 100_000_000L);
+            FrameScheduler scheduler = frameScheduler;
             for (int i = 0; i < numCycles; i++)
             {
-                HDTimer.sleep(delay);
+                scheduler.sleep(delay);
             }
         }
         catch (InterruptedException e)
@@ -941,9 +1183,7 @@ public class Simulation extends Thread
      */
     private void delay()
     {
-        long currentTime = System.nanoTime();
-        long timeElapsed = currentTime - lastDelayTime;
-        long actualDelay = Math.max(delay - timeElapsed, 0L);
+        FrameScheduler scheduler = frameScheduler;
         
         synchronized (this)
         {
@@ -955,7 +1195,7 @@ public class Simulation extends Thread
                     interruptDelay = false;
                     if (paused || abort)
                     {
-                        lastDelayTime = currentTime;
+                        scheduler.start(System.nanoTime());
                         return; // return... without delay
                     }
                 }
@@ -965,11 +1205,14 @@ public class Simulation extends Thread
 
         fireSimulationEventSync(SyncEvent.DELAY_LOOP_ENTERED);
 
-        while (actualDelay > 0)
+        long deadline = scheduler.getFrameDeadline(delay);
+        boolean frameCompleted = true;
+        while (true)
         {
             try
             {
-                HDTimer.sleep(actualDelay);
+                scheduler.waitUntil(deadline);
+                break;
             }
             catch (InterruptedException ie)
             {
@@ -980,17 +1223,22 @@ public class Simulation extends Thread
                 {
                     if (!enabled || paused || abort)
                     {
+                        frameCompleted = false;
                         break;
                     }
                 }
+                deadline = scheduler.getFrameDeadline(delay);
             }
-
-            currentTime = System.nanoTime();
-            timeElapsed = currentTime - lastDelayTime;
-            actualDelay = delay - timeElapsed;
         }
 
-        lastDelayTime = currentTime;
+        if (frameCompleted)
+        {
+            scheduler.endFrame(deadline);
+        }
+        else
+        {
+            scheduler.start(System.nanoTime());
+        }
         synchronized (interruptLock)
         {
             Thread.interrupted(); // clear interrupt, in case we were interrupted just after the delay
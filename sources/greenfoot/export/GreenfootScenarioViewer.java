@@ -26,6 +26,7 @@ import bluej.utility.javafx.JavaFXUtil;
 import bluej.utility.javafx.UnfocusableScrollPane;
 import greenfoot.World;
 import greenfoot.core.ExportedProjectProperties;
+import greenfoot.core.ImageCache;
 import greenfoot.core.Simulation;
 import greenfoot.core.WorldHandler;
 import greenfoot.event.SimulationListener;
@@ -41,7 +42,7 @@ import greenfoot.util.GreenfootUtil;
 import greenfoot.util.StandalonePropStringManager;
 import javafx.application.Platform;
 import javafx.scene.control.ScrollPane;
-import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
 import javafx.scene.image.WritableImage;
 import javafx.scene.input.KeyEvent;
 import javafx.scene.input.MouseButton;
@@ -78,6 +79,9 @@ public class GreenfootScenarioViewer extends BorderPane implements ControlPanelL
     private Constructor<?> worldConstructor;
     
     private final WorldDisplay worldDisplay = new WorldDisplay();
+    // The two images we alternate between when displaying the world (see setWorldImage):
+    private final WritableImage[] worldImg = new WritableImage[2];
+    private int nextWorldImgToWrite = 0;
     private boolean updatingSliderFromSimulation = false;
 
     /**
@@ -252,6 +256,7 @@ public class GreenfootScenarioViewer extends BorderPane implements ControlPanelL
     public World instantiateNewWorld() 
     {
         try {
+            ImageCache.getInstance().preloadImages(GreenfootUtil.getImageFiles());
             World world = (World) worldConstructor.newInstance(new Object[]{});
             return world;
         }
@@ -313,34 +318,37 @@ public class GreenfootScenarioViewer extends BorderPane implements ControlPanelL
     /**
      * Sets the latest world image on the screen.
      * 
-     * @param worldImage A Swing BufferedImage which is copied before returning.
+     * <p>The pixels are copied in one bulk write into one of two reused JavaFX images,
+     * alternating between them so that the image currently on screen is never the one
+     * being written.  A new image is only allocated when the world size changes.
+     * 
+     * @param worldImage A Swing BufferedImage of type TYPE_INT_ARGB, which is copied
+     *                   before returning.
      */
     public void setWorldImage(BufferedImage worldImage)
     {
-        if (worldDisplay.setImage(bufferedImageToFX(worldImage)))
+        int width = worldImage.getWidth();
+        int height = worldImage.getHeight();
+        WritableImage img = worldImg[nextWorldImgToWrite];
+        if (img == null || img.getWidth() != width || img.getHeight() != height)
         {
-            worldDisplay.getScene().getWindow().sizeToScene();
+            img = new WritableImage(width == 0 ? 1 : width, height == 0 ? 1 : height);
+            worldImg[nextWorldImgToWrite] = img;
         }
-    }
 
-    /**
-     * Directly copies a BufferedImage, which is assumed to have ARGB format, into a JavaFX image.
-     * @param worldImage The BufferedImage to copy from.  Must be in ARGB format.
-     * @return The JavaFX image with a copy of the BufferedImage
-     */
-    private static Image bufferedImageToFX(BufferedImage worldImage)
-    {
-        WritableImage fxImage = new WritableImage(worldImage.getWidth(), worldImage.getHeight());
-        int [] raw = ((DataBufferInt) worldImage.getData().getDataBuffer()).getData();
-        int offset = 0;
-        for (int y = 0; y < worldImage.getHeight(); y++)
+        // getRaster() gives the backing array directly; getData() would copy it first:
+        int[] raw = ((DataBufferInt) worldImage.getRaster().getDataBuffer()).getData();
+        if (width > 0 && height > 0)
         {
-            for (int x = 0; x < worldImage.getWidth(); x++)
-            {
-                fxImage.getPixelWriter().setArgb(x, y, raw[offset++]);
-            }
+            img.getPixelWriter().setPixels(0, 0, width, height, PixelFormat.getIntArgbInstance(),
+                    raw, 0, width);
+        }
+
+        if (worldDisplay.setImage(img))
+        {
+            worldDisplay.getScene().getWindow().sizeToScene();
         }
-        return fxImage;
+        nextWorldImgToWrite = (nextWorldImgToWrite + 1) % worldImg.length;
     }
 
     @Override
@@ -24,28 +24,36 @@ package greenfoot.export;
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.Hashtable;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.jar.Attributes;
+import java.util.jar.JarFile;
 import java.util.jar.JarInputStream;
-import java.util.jar.JarOutputStream;
 import java.util.jar.Manifest;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipException;
-import java.util.zip.ZipOutputStream;
 
 import bluej.Boot;
 import bluej.Config;
@@ -64,6 +72,9 @@ public class JarCreator
 {
     private static final String SOURCE_SUFFIX = "." + SourceType.Java.toString().toLowerCase();    
 
+    /** Suffixes of files which are already compressed, and are stored without deflating them again */
+    private static final String[] COMPRESSED_SUFFIXES = {".png", ".jpg", ".jpeg", ".gif", ".mp3", ".ogg", ".jar", ".zip"};
+
     /** Should source files be included in the jar? */
     private boolean includeSource;
 
@@ -104,6 +115,24 @@ public class JarCreator
     private Properties properties;
  
     private boolean isZip = false;
+    
+    /** Compresses entries while create() is running */
+    private ExecutorService compressor;
+    /** Entries being compressed, in the order they are to be written */
+    private final Deque<Future<ZipWriter.Entry>> pendingEntries = new ArrayDeque<>();
+    /** The most entries that may be pending at once (which bounds the memory used) */
+    private int maxPendingEntries;
+    /** Files larger than this (in bytes) are streamed into the jar rather than read into memory */
+    private static final long STREAM_THRESHOLD = 1 << 20;
+    /** The modification time given to new entries, in ZIP format */
+    private long entryTime;
+    
+    // Counts for the report at the end of create():
+    private int deflatedEntries;
+    private int storedEntries;
+    private int rawEntries;
+    private int streamedEntries;
+    private int recompressedJars;
 
     /**
      * Prepares a new jar creator. Once everything is set up, call create()
@@ -279,17 +308,39 @@ public class JarCreator
     
     /**
      * Creates the jar file with the current settings.
+     * 
+     * <p>Files are read and compressed in parallel, but written in order. Entries from
+     * jars added with addJarToJar are copied as they are, without being decompressed.
+     * How long each stage took is written to the debug log.
      */
     public void create()
     {        
+        long startTime = System.nanoTime();
         File jarFile = new File(exportDir, jarName);
         File propertiesFile = null;
         File soundFile = null;
-        OutputStream oStream = null;
-        ZipOutputStream jStream = null;
+        File imageFile = null;
+        ZipWriter writer = null;
+        
+        int threads = Runtime.getRuntime().availableProcessors();
+        compressor = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "Greenfoot export compressor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        maxPendingEntries = 4 * threads;
+        entryTime = ZipWriter.toDosTime(System.currentTimeMillis());
+        deflatedEntries = 0;
+        storedEntries = 0;
+        rawEntries = 0;
+        streamedEntries = 0;
+        recompressedJars = 0;
+        long filesTime = 0;
+        long jarsTime = 0;
+        long libsTime = 0;
 
         try {
-            oStream = new BufferedOutputStream(new FileOutputStream(jarFile));
+            writer = new ZipWriter(new BufferedOutputStream(new FileOutputStream(jarFile)), !isZip);
             String pathPrefix = ""; // Put everything in top level of jar
             if (! isZip) {
                 // It is a jar file so we write the manifest and the properties.
@@ -297,56 +348,95 @@ public class JarCreator
                 propertiesFile = new File(projectDir, "standalone.properties");
                 writePropertiesFile(propertiesFile);
                 soundFile = new File(projectDir, "soundindex.list");
-                writeSoundFilesList(soundFile);
-                jStream = new JarOutputStream(oStream, manifest);
+                writeFilesList(soundFile, "sounds");
+                imageFile = new File(projectDir, "imageindex.list");
+                writeFilesList(imageFile, "images");
+                // The manifest must be the first entry, as with JarOutputStream:
+                ByteArrayOutputStream manifestBytes = new ByteArrayOutputStream();
+                manifest.write(manifestBytes);
+                writeEntry(writer, ZipWriter.Entry.compress(JarFile.MANIFEST_NAME, entryTime,
+                        manifestBytes.toByteArray(), false), false);
             }
             else {
                 // It is a zip, so we want a dir with the project name inside the zip
                 pathPrefix = projectDir.getName() + "/";
-                jStream = new ZipOutputStream(oStream);
             }
             // Write contents of directories added
+            long stageStart = System.nanoTime();
+            File outputFile = jarFile.getCanonicalFile();
             for(File dir : dirs) {
-                writeFileToJar(dir, pathPrefix, jStream, jarFile.getCanonicalFile(), true);
+                writeFileToJar(dir, pathPrefix, writer, outputFile, true);
             }
             for(PrefixedFile dir : prefixDirs) {
-                writeFileToJar(dir.getFile(), pathPrefix + dir.getPrefix(), jStream, jarFile.getCanonicalFile(), true);
+                writeFileToJar(dir.getFile(), pathPrefix + dir.getPrefix(), writer, outputFile, true);
             }
+            writePendingEntries(writer, 0);
+            filesTime = System.nanoTime() - stageStart;
+            
+            stageStart = System.nanoTime();
             for(File jar : extraJarsInJar) {
-                writeJarToJar(jar, jStream);
+                writeJarToJar(jar, writer);
             }
+            writePendingEntries(writer, 0);
+            jarsTime = System.nanoTime() - stageStart;
+            
+            stageStart = System.nanoTime();
             copyLibsToDir(extraJars, exportDir);            
+            libsTime = System.nanoTime() - stageStart;
         }
         catch (IOException exc) {
             Debug.reportError("problem writing jar file: " + exc);
         }
         finally {
+            compressor.shutdownNow();
+            pendingEntries.clear();
             try {
-                if (jStream != null)
-                    jStream.close();
+                if (writer != null)
+                    writer.close();
             }
             catch (IOException e) {}
             if(propertiesFile != null) {
                 propertiesFile.delete();
             }
         }
+        
+        Debug.message("Exported " + jarFile.getName() + " in " + toMillis(System.nanoTime() - startTime) + "ms ("
+                + (writer == null ? 0 : writer.getBytesWritten()) + " bytes): "
+                + "files " + toMillis(filesTime) + "ms, "
+                + "jar contents " + toMillis(jarsTime) + "ms, "
+                + "libraries " + toMillis(libsTime) + "ms; "
+                + deflatedEntries + " entries deflated, " + storedEntries + " stored, "
+                + rawEntries + " copied without recompressing, " + streamedEntries + " streamed"
+                + (recompressedJars == 0 ? "" : ", " + recompressedJars + " jars had to be recompressed"));
+    }
+    
+    private static long toMillis(long nanos)
+    {
+        return nanos / 1000000;
     }
 
-    private void writeSoundFilesList(File file)
+    /**
+     * Writes the names of the files in a subdirectory of the project to the given
+     * file, one per line, so that the standalone scenario can find them.
+     */
+    private void writeFilesList(File file, String dir)
     {
         BufferedWriter os;
         try {
             file.createNewFile();
             os = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file)));
-            for (String name : new File(projectDir, "sounds").list())
-            {
-                os.write(name + "\n");
+            String[] names = new File(projectDir, dir).list();
+            if (names != null) {
+                for (String name : names)
+                {
+                    os.write(name + "\n");
+                }
             }
             os.close();
         }
         catch (IOException e)
         {
-            Debug.reportError("Error writing list of sounds: ", e);
+            Debug.reportError("Error writing list of " + dir + ": ", e);
         }
         
     }
@@ -540,7 +630,7 @@ public class JarCreator
      * the Jar file we are creating (to prevent including itself in the Jar
      * file)
      */
-    private void writeDirToJar(File sourceDir, String pathPrefix, ZipOutputStream stream, File outputFile)
+    private void writeDirToJar(File sourceDir, String pathPrefix, ZipWriter writer, File outputFile)
         throws IOException
     {
         if (!skipDir(sourceDir))
@@ -548,7 +638,7 @@ public class JarCreator
             File[] dir = sourceDir.listFiles();
             for (File sourceFile : dir)
             {
-                writeFileToJar(sourceFile, pathPrefix, stream, outputFile, false);
+                writeFileToJar(sourceFile, pathPrefix, writer, outputFile, false);
             }
         }
     }
@@ -563,7 +653,7 @@ public class JarCreator
      * @param onlyDirContents If sourceFile is a dir, this parameter indicates that
      *           the contents of the dir should be added, not the dir itself.
      */
-    private void writeFileToJar(File sourceFile, String pathPrefix, ZipOutputStream stream, File outputFile, boolean onlyDirContents)
+    private void writeFileToJar(File sourceFile, String pathPrefix, ZipWriter writer, File outputFile, boolean onlyDirContents)
         throws IOException
     {
         if(!sourceFile.exists()) {
@@ -575,24 +665,29 @@ public class JarCreator
             if(!onlyDirContents) {
                 pathPrefix += sourceFile.getName()  + "/";
             }
-            writeDirToJar(sourceFile, pathPrefix, stream, outputFile);
+            writeDirToJar(sourceFile, pathPrefix, writer, outputFile);
         }
         else {
             // check against a list of files we don't want to export and also
             // check that we don't try to export the jar file we are writing
-            // (hangs the machine)
+            // (hangs the machine). Only files with the same name as the jar
+            // need their canonical path comparing.
             if (!skipFile(sourceFile.getName(), !includeSource)
-                    && !outputFile.equals(sourceFile.getCanonicalFile())) {
-                writeJarEntry(sourceFile, stream, pathPrefix + sourceFile.getName());
+                    && !(outputFile.getName().equals(sourceFile.getName())
+                            && outputFile.equals(sourceFile.getCanonicalFile()))) {
+                writeJarEntry(sourceFile, writer, pathPrefix + sourceFile.getName());
             }
         }
     }
     
     /**
-     * Write the contents of a jar into another jar stream. If the source file does not exist,
+     * Write the contents of a jar into the jar being created. If the source file does not exist,
      * this method will just return without doing anything.
+     * 
+     * <p>The entries are copied exactly as they are stored, without being decompressed and
+     * compressed again, unless the jar uses a feature we can't copy that way (such as ZIP64).
      */
-    private void writeJarToJar(File inputJar, ZipOutputStream outputStream)
+    private void writeJarToJar(File inputJar, ZipWriter writer)
         throws IOException
     {
         if(!inputJar.exists()) {
@@ -600,18 +695,58 @@ public class JarCreator
             return;
         }
         
+        ZipWriter.RawReader reader;
+        try {
+            reader = new ZipWriter.RawReader(inputJar);
+        }
+        catch (ZipException exc) {
+            recompressJarToJar(inputJar, writer);
+            return;
+        }
+        
+        try {
+            for (int i = 0; i < reader.size(); i++) {
+                // Like JarInputStream, leave out the jar's own manifest:
+                String name = reader.getName(i);
+                if (name.equalsIgnoreCase("META-INF/") || name.equalsIgnoreCase(JarFile.MANIFEST_NAME)) {
+                    continue;
+                }
+                writeEntry(writer, reader.read(i), true);
+            }
+        }
+        finally {
+            reader.close();
+        }
+    }
+    
+    /**
+     * Write the contents of a jar into the jar being created, decompressing each entry
+     * and compressing it again.
+     */
+    private void recompressJarToJar(File inputJar, ZipWriter writer)
+        throws IOException
+    {
+        recompressedJars++;
         JarInputStream inputStream = new JarInputStream(
                 new BufferedInputStream(new FileInputStream(inputJar)));
-        
-        ZipEntry inputEntry = inputStream.getNextJarEntry();
-        while(inputEntry != null) {
-            //TODO: What if we have duplicate files????
-            outputStream.putNextEntry(inputEntry);
-            FileUtility.copyStream(inputStream, outputStream);
-            inputStream.closeEntry();
-            inputEntry = inputStream.getNextJarEntry();
-        }        
-        inputStream.close();
+        try {
+            ZipEntry inputEntry = inputStream.getNextJarEntry();
+            while(inputEntry != null) {
+                ByteArrayOutputStream contents = new ByteArrayOutputStream();
+                FileUtility.copyStream(inputStream, contents);
+                inputStream.closeEntry();
+                
+                String name = inputEntry.getName();
+                long time = inputEntry.getTime() == -1 ? entryTime : ZipWriter.toDosTime(inputEntry.getTime());
+                byte[] bytes = contents.toByteArray();
+                boolean store = isCompressed(name);
+                submitEntry(writer, () -> ZipWriter.Entry.compress(name, time, bytes, store));
+                inputEntry = inputStream.getNextJarEntry();
+            }
+        }
+        finally {
+            inputStream.close();
+        }
     }
 
     /**
@@ -643,10 +778,10 @@ public class JarCreator
      */
     private boolean skipDir(File dir) throws IOException
     {
-
+        String path = dir.getCanonicalFile().getPath();
         for (String skipDir : skipDirs)
         {
-            if (dir.getCanonicalFile().getPath().endsWith(skipDir))
+            if (path.endsWith(skipDir))
             {
                 return true;
             }
@@ -673,25 +808,105 @@ public class JarCreator
     }
 
     /**
-     * Write a jar file entry to the jar output stream. Note: entryName should
-     * always be a path with / seperators (NOT the platform dependant
-     * File.seperator)
+     * Write a jar file entry to the jar being created. The file is read and compressed
+     * on another thread, and written once the entries before it have been. Files larger
+     * than STREAM_THRESHOLD are instead written on this thread as they are read, so that
+     * large assets are never held in memory whole. Note: entryName should always be a
+     * path with / seperators (NOT the platform dependant File.seperator)
      */
-    private void writeJarEntry(File file, ZipOutputStream stream, String entryName)
+    private void writeJarEntry(File file, ZipWriter writer, String entryName)
+        throws IOException
+    {
+        boolean store = isCompressed(entryName);
+        if (file.length() > STREAM_THRESHOLD) {
+            // Keep the entries in order:
+            writePendingEntries(writer, 0);
+            try {
+                writer.writeFile(entryName, entryTime, file, store);
+                streamedEntries++;
+            }
+            catch (ZipException exc) {
+                Debug.message("warning: " + exc);
+            }
+            return;
+        }
+        submitEntry(writer, () -> ZipWriter.Entry.compress(entryName, entryTime, Files.readAllBytes(file.toPath()), store));
+    }
+    
+    /**
+     * Whether a file is in a format which is already compressed, so that deflating
+     * it again would take time for little or no gain.
+     */
+    private static boolean isCompressed(String fileName)
+    {
+        String lowerName = fileName.toLowerCase();
+        for (String suffix : COMPRESSED_SUFFIXES) {
+            if (lowerName.endsWith(suffix))
+                return true;
+        }
+        return false;
+    }
+    
+    /**
+     * Start making an entry on the compressor threads. If too many entries are pending,
+     * wait for the oldest to be written first.
+     */
+    private void submitEntry(ZipWriter writer, Callable<ZipWriter.Entry> task)
+        throws IOException
+    {
+        pendingEntries.add(compressor.submit(task));
+        writePendingEntries(writer, maxPendingEntries);
+    }
+    
+    /**
+     * Write pending entries, in the order they were submitted, until no more
+     * than the given number are left.
+     */
+    private void writePendingEntries(ZipWriter writer, int maxLeft)
+        throws IOException
+    {
+        while (pendingEntries.size() > maxLeft) {
+            ZipWriter.Entry entry;
+            try {
+                entry = pendingEntries.removeFirst().get();
+            }
+            catch (InterruptedException exc) {
+                throw new InterruptedIOException("Interrupted while compressing jar entries");
+            }
+            catch (ExecutionException exc) {
+                if (exc.getCause() instanceof IOException) {
+                    throw (IOException) exc.getCause();
+                }
+                throw new IOException(exc.getCause());
+            }
+            writeEntry(writer, entry, false);
+        }
+    }
+    
+    /**
+     * Write an entry to the jar, warning rather than failing if it is a duplicate.
+     * 
+     * @param raw  Whether the entry was copied from another jar without recompressing
+     */
+    private void writeEntry(ZipWriter writer, ZipWriter.Entry entry, boolean raw)
         throws IOException
     {
-        InputStream in = null;
         try {
-            in = new BufferedInputStream(new FileInputStream(file));
-            stream.putNextEntry(new ZipEntry(entryName));
-            FileUtility.copyStream(in, stream);
+            writer.write(entry);
         }
         catch (ZipException exc) {
             Debug.message("warning: " + exc);
+            return;
         }
-        finally {
-            if (in != null)
-                in.close();
+        
+        if (raw) {
+            rawEntries++;
+        }
+        else if (entry.getMethod() == ZipEntry.DEFLATED) {
+            deflatedEntries++;
+        }
+        else {
+            storedEntries++;
         }
     }
     
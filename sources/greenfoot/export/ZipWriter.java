@@ -0,0 +1,553 @@
+/*
+ This file is part of the Greenfoot program.
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.export;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+/**
+ * Writes a ZIP (or JAR) file from entries whose data has already been compressed.
+ * 
+ * <p>Unlike ZipOutputStream, this lets the data for each entry be compressed on any
+ * thread before it is written (see {@link Entry#compress}), and lets entries be copied
+ * from another ZIP file without being decompressed and compressed again (see
+ * {@link RawReader}). Entries are written in the order they are given. Large files
+ * can instead be written as they are read, without holding them in memory (see
+ * {@link #writeFile}).
+ * 
+ * <p>ZIP64 is not supported, so the file must have fewer than 65536 entries and be
+ * smaller than 4GB.
+ */
+class ZipWriter implements Closeable
+{
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int END_SIGNATURE = 0x06054b50;
+    private static final int DATA_DESCRIPTOR_SIGNATURE = 0x08074b50;
+    private static final int LOCAL_HEADER_SIZE = 30;
+    private static final int CENTRAL_HEADER_SIZE = 46;
+    private static final int END_SIZE = 22;
+    private static final int DATA_DESCRIPTOR_SIZE = 16;
+    private static final int VERSION = 20;
+    
+    private static final int FLAG_ENCRYPTED = 0x1;
+    private static final int FLAG_DATA_DESCRIPTOR = 0x8;
+    private static final int FLAG_UTF8 = 0x800;
+    
+    /** The extra field which marks a JAR file, as JarOutputStream writes on the first entry */
+    private static final byte[] JAR_MAGIC = {(byte) 0xFE, (byte) 0xCA, 0, 0};
+    private static final byte[] NO_EXTRA = new byte[0];
+    
+    private final OutputStream out;
+    private final boolean jar;
+    private final ByteArrayOutputStream centralDirectory = new ByteArrayOutputStream();
+    private final Set<String> names = new HashSet<>();
+    private long written;
+    private int entryCount;
+    
+    /**
+     * An entry, with its data ready to write.
+     */
+    static class Entry
+    {
+        private final String name;
+        private final byte[] nameBytes;
+        private final int flags;
+        private final int method;
+        private final long dosTime;
+        private final long crc;
+        private final long size;
+        private final byte[] data;
+        
+        private Entry(String name, byte[] nameBytes, int flags, int method, long dosTime, long crc, long size, byte[] data)
+        {
+            this.name = name;
+            this.nameBytes = nameBytes;
+            this.flags = flags;
+            this.method = method;
+            this.dosTime = dosTime;
+            this.crc = crc;
+            this.size = size;
+            this.data = data;
+        }
+        
+        /**
+         * Make an entry from the given contents, deflating them unless told to store them,
+         * or deflating doesn't make them smaller. This may be called on any thread.
+         * 
+         * @param name     The name of the entry, with / separators
+         * @param dosTime  The modification time, in the format given by {@link ZipWriter#toDosTime}
+         * @param contents The uncompressed contents
+         * @param store    Whether to store the contents without trying to deflate them
+         */
+        static Entry compress(String name, long dosTime, byte[] contents, boolean store)
+        {
+            byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+            CRC32 crc = new CRC32();
+            crc.update(contents);
+            
+            if (!store && contents.length > 0) {
+                Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+                deflater.setInput(contents);
+                deflater.finish();
+                ByteArrayOutputStream compressed = new ByteArrayOutputStream(contents.length / 2 + 64);
+                byte[] buffer = new byte[8192];
+                while (!deflater.finished()) {
+                    int n = deflater.deflate(buffer);
+                    compressed.write(buffer, 0, n);
+                }
+                deflater.end();
+                if (compressed.size() < contents.length) {
+                    return new Entry(name, nameBytes, FLAG_UTF8, ZipEntry.DEFLATED, dosTime, crc.getValue(),
+                            contents.length, compressed.toByteArray());
+                }
+            }
+            return new Entry(name, nameBytes, FLAG_UTF8, ZipEntry.STORED, dosTime, crc.getValue(),
+                    contents.length, contents);
+        }
+        
+        String getName()
+        {
+            return name;
+        }
+        
+        /**
+         * Either ZipEntry.STORED or ZipEntry.DEFLATED.
+         */
+        int getMethod()
+        {
+            return method;
+        }
+        
+        /**
+         * The size of the (possibly compressed) data, in bytes.
+         */
+        long getCompressedSize()
+        {
+            return data.length;
+        }
+    }
+    
+    /**
+     * Reads the entries of an existing ZIP file exactly as they are stored, so that they
+     * can be written to a ZipWriter without being decompressed.
+     */
+    static class RawReader implements Closeable
+    {
+        private final RandomAccessFile file;
+        // The entries, without their data, and where their data is:
+        private final List<Entry> entries = new ArrayList<>();
+        private final List<Long> offsets = new ArrayList<>();
+        private final List<Integer> compressedSizes = new ArrayList<>();
+        
+        /**
+         * Open a ZIP file and read its central directory.
+         * 
+         * @throws ZipException if the file uses a feature that can't be copied raw (such
+         *                      as ZIP64 or encryption); nothing can be read from it in that case.
+         */
+        RawReader(File zipFile) throws IOException
+        {
+            file = new RandomAccessFile(zipFile, "r");
+            try {
+                readCentralDirectory();
+            }
+            catch (IOException e) {
+                file.close();
+                throw e;
+            }
+        }
+        
+        private void readCentralDirectory() throws IOException
+        {
+            // The end record is at the end of the file, followed only by a comment
+            // of up to 65535 bytes:
+            long length = file.length();
+            int tailLength = (int) Math.min(length, END_SIZE + 0xFFFF);
+            ByteBuffer tail = readAt(length - tailLength, tailLength);
+            int end = -1;
+            for (int i = tailLength - END_SIZE; i >= 0; i--) {
+                if (tail.getInt(i) == END_SIGNATURE) {
+                    end = i;
+                    break;
+                }
+            }
+            if (end == -1)
+                throw new ZipException("Not a ZIP file");
+            
+            int count = tail.getShort(end + 10) & 0xFFFF;
+            long directorySize = tail.getInt(end + 12) & 0xFFFFFFFFL;
+            long directoryOffset = tail.getInt(end + 16) & 0xFFFFFFFFL;
+            if (count == 0xFFFF || directoryOffset == 0xFFFFFFFFL)
+                throw new ZipException("ZIP64 is not supported");
+            
+            ByteBuffer directory = readAt(directoryOffset, (int) directorySize);
+            for (int i = 0; i < count; i++) {
+                int pos = directory.position();
+                if (directory.getInt(pos) != CENTRAL_HEADER_SIGNATURE)
+                    throw new ZipException("Invalid central directory");
+                int flags = directory.getShort(pos + 8) & 0xFFFF;
+                int method = directory.getShort(pos + 10) & 0xFFFF;
+                long dosTime = directory.getInt(pos + 12) & 0xFFFFFFFFL;
+                long crc = directory.getInt(pos + 16) & 0xFFFFFFFFL;
+                long compressedSize = directory.getInt(pos + 20) & 0xFFFFFFFFL;
+                long size = directory.getInt(pos + 24) & 0xFFFFFFFFL;
+                int nameLength = directory.getShort(pos + 28) & 0xFFFF;
+                int extraLength = directory.getShort(pos + 30) & 0xFFFF;
+                int commentLength = directory.getShort(pos + 32) & 0xFFFF;
+                long offset = directory.getInt(pos + 42) & 0xFFFFFFFFL;
+                
+                if ((flags & FLAG_ENCRYPTED) != 0)
+                    throw new ZipException("Encrypted entries are not supported");
+                if (method != ZipEntry.STORED && method != ZipEntry.DEFLATED)
+                    throw new ZipException("Unsupported compression method: " + method);
+                if (compressedSize == 0xFFFFFFFFL || size == 0xFFFFFFFFL || offset == 0xFFFFFFFFL)
+                    throw new ZipException("ZIP64 is not supported");
+                if (compressedSize > Integer.MAX_VALUE)
+                    throw new ZipException("Entry too large to copy");
+                
+                byte[] nameBytes = new byte[nameLength];
+                directory.position(pos + CENTRAL_HEADER_SIZE);
+                directory.get(nameBytes);
+                String name = new String(nameBytes, (flags & FLAG_UTF8) != 0
+                        ? StandardCharsets.UTF_8 : StandardCharsets.ISO_8859_1);
+                directory.position(pos + CENTRAL_HEADER_SIZE + nameLength + extraLength + commentLength);
+                
+                // We know the sizes, so the copy won't need a data descriptor:
+                entries.add(new Entry(name, nameBytes, flags & ~FLAG_DATA_DESCRIPTOR, method, dosTime,
+                        crc, size, null));
+                offsets.add(offset);
+                compressedSizes.add((int) compressedSize);
+            }
+        }
+        
+        /**
+         * The number of entries in the file.
+         */
+        int size()
+        {
+            return entries.size();
+        }
+        
+        /**
+         * The name of the entry at the given index.
+         */
+        String getName(int index)
+        {
+            return entries.get(index).name;
+        }
+        
+        /**
+         * Read the entry at the given index, with its data as stored in the file.
+         */
+        Entry read(int index) throws IOException
+        {
+            Entry entry = entries.get(index);
+            long offset = offsets.get(index);
+            ByteBuffer header = readAt(offset, LOCAL_HEADER_SIZE);
+            if (header.getInt(0) != LOCAL_HEADER_SIGNATURE)
+                throw new ZipException("Invalid local header for " + entry.name);
+            int nameLength = header.getShort(26) & 0xFFFF;
+            int extraLength = header.getShort(28) & 0xFFFF;
+            
+            ByteBuffer data = readAt(offset + LOCAL_HEADER_SIZE + nameLength + extraLength, compressedSizes.get(index));
+            return new Entry(entry.name, entry.nameBytes, entry.flags, entry.method, entry.dosTime,
+                    entry.crc, entry.size, data.array());
+        }
+        
+        private ByteBuffer readAt(long position, int length) throws IOException
+        {
+            byte[] bytes = new byte[length];
+            file.seek(position);
+            file.readFully(bytes);
+            return ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        
+        @Override
+        public void close() throws IOException
+        {
+            file.close();
+        }
+    }
+    
+    /**
+     * Create a writer for the given stream.
+     * 
+     * @param jar  Whether to mark the file as a JAR, as JarOutputStream does
+     */
+    ZipWriter(OutputStream out, boolean jar)
+    {
+        this.out = out;
+        this.jar = jar;
+    }
+    
+    /**
+     * Write an entry.
+     * 
+     * @throws ZipException if there is already an entry with the same name (the entry
+     *                      is not written, but the writer can still be used)
+     * @throws IOException  if the entry can't be written, in which case the writer
+     *                      should not be used further
+     */
+    void write(Entry entry) throws IOException
+    {
+        if (!names.add(entry.name))
+            throw new ZipException("duplicate entry: " + entry.name);
+        if (entryCount == 0xFFFF || written + LOCAL_HEADER_SIZE + entry.nameBytes.length + entry.data.length > 0xFFFFFFFFL)
+            throw new IOException("ZIP64 is not supported; too many or too large entries");
+        
+        byte[] extra = (jar && entryCount == 0) ? JAR_MAGIC : NO_EXTRA;
+        long offset = written;
+        writeLocalHeader(entry.nameBytes, entry.flags, entry.method, entry.dosTime, entry.crc,
+                entry.data.length, entry.size, extra);
+        out.write(entry.data);
+        written += entry.data.length;
+        writeCentralHeader(entry.nameBytes, entry.flags, entry.method, entry.dosTime, entry.crc,
+                entry.data.length, entry.size, extra, offset);
+    }
+    
+    /**
+     * Write an entry with the contents of a file, reading the file as the entry is
+     * written rather than holding it all in memory. This is slower than compressing
+     * an entry with {@link Entry#compress} (which can be done on another thread), so
+     * is meant for large files. A deflated entry is followed by a data descriptor,
+     * since its size and CRC are only known once it has been written; a stored entry
+     * has its CRC worked out first, by reading the file twice.
+     * 
+     * @param name     The name of the entry, with / separators
+     * @param dosTime  The modification time, in the format given by {@link ZipWriter#toDosTime}
+     * @param file     The file holding the uncompressed contents
+     * @param store    Whether to store the contents without deflating them
+     * @throws ZipException if there is already an entry with the same name (the entry
+     *                      is not written, but the writer can still be used)
+     * @throws IOException  if the entry can't be written, in which case the writer
+     *                      should not be used further
+     */
+    void writeFile(String name, long dosTime, File file, boolean store) throws IOException
+    {
+        if (names.contains(name))
+            throw new ZipException("duplicate entry: " + name);
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        long length = file.length();
+        // Deflating can make the data slightly larger, by at most 5 bytes per 16KB block:
+        long maxDataLength = length + (length >> 12) + 64;
+        if (entryCount == 0xFFFF || written + LOCAL_HEADER_SIZE + nameBytes.length + maxDataLength
+                + DATA_DESCRIPTOR_SIZE > 0xFFFFFFFFL)
+            throw new IOException("ZIP64 is not supported; too many or too large entries");
+        names.add(name);
+        
+        byte[] extra = (jar && entryCount == 0) ? JAR_MAGIC : NO_EXTRA;
+        long offset = written;
+        byte[] buffer = new byte[65536];
+        CRC32 crc = new CRC32();
+        long size = 0;
+        
+        if (store) {
+            try (InputStream in = new FileInputStream(file)) {
+                int n;
+                while ((n = in.read(buffer)) != -1) {
+                    crc.update(buffer, 0, n);
+                }
+            }
+            writeLocalHeader(nameBytes, FLAG_UTF8, ZipEntry.STORED, dosTime, crc.getValue(), length, length, extra);
+            try (InputStream in = new FileInputStream(file)) {
+                int n;
+                while ((n = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, n);
+                    size += n;
+                }
+            }
+            if (size != length)
+                throw new IOException("File changed while being written: " + file);
+            written += size;
+            writeCentralHeader(nameBytes, FLAG_UTF8, ZipEntry.STORED, dosTime, crc.getValue(), size, size, extra, offset);
+        }
+        else {
+            int flags = FLAG_UTF8 | FLAG_DATA_DESCRIPTOR;
+            writeLocalHeader(nameBytes, flags, ZipEntry.DEFLATED, dosTime, 0, 0, 0, extra);
+            Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+            long compressedSize = 0;
+            byte[] compressed = new byte[65536];
+            try (InputStream in = new FileInputStream(file)) {
+                int n;
+                while ((n = in.read(buffer)) != -1) {
+                    crc.update(buffer, 0, n);
+                    size += n;
+                    deflater.setInput(buffer, 0, n);
+                    while (!deflater.needsInput()) {
+                        int c = deflater.deflate(compressed);
+                        out.write(compressed, 0, c);
+                        compressedSize += c;
+                    }
+                }
+                deflater.finish();
+                while (!deflater.finished()) {
+                    int c = deflater.deflate(compressed);
+                    out.write(compressed, 0, c);
+                    compressedSize += c;
+                }
+            }
+            finally {
+                deflater.end();
+            }
+            if (compressedSize > maxDataLength)
+                throw new IOException("File changed while being written: " + file);
+            
+            ByteBuffer descriptor = ByteBuffer.allocate(DATA_DESCRIPTOR_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            descriptor.putInt(DATA_DESCRIPTOR_SIGNATURE);
+            descriptor.putInt((int) crc.getValue());
+            descriptor.putInt((int) compressedSize);
+            descriptor.putInt((int) size);
+            out.write(descriptor.array());
+            written += compressedSize + DATA_DESCRIPTOR_SIZE;
+            writeCentralHeader(nameBytes, flags, ZipEntry.DEFLATED, dosTime, crc.getValue(), compressedSize, size,
+                    extra, offset);
+        }
+    }
+    
+    /**
+     * Write the local header of an entry, which comes before its data.
+     */
+    private void writeLocalHeader(byte[] nameBytes, int flags, int method, long dosTime, long crc,
+            long compressedSize, long size, byte[] extra) throws IOException
+    {
+        ByteBuffer header = ByteBuffer.allocate(LOCAL_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(LOCAL_HEADER_SIGNATURE);
+        header.putShort((short) VERSION);
+        putCommonFields(header, nameBytes, flags, method, dosTime, crc, compressedSize, size, extra);
+        out.write(header.array());
+        out.write(nameBytes);
+        out.write(extra);
+        written += LOCAL_HEADER_SIZE + nameBytes.length + extra.length;
+    }
+    
+    /**
+     * Add an entry to the central directory, once its data has been written.
+     * 
+     * @param offset  The position of the entry's local header in the file
+     */
+    private void writeCentralHeader(byte[] nameBytes, int flags, int method, long dosTime, long crc,
+            long compressedSize, long size, byte[] extra, long offset) throws IOException
+    {
+        ByteBuffer header = ByteBuffer.allocate(CENTRAL_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(CENTRAL_HEADER_SIGNATURE);
+        header.putShort((short) VERSION); // version made by
+        header.putShort((short) VERSION);
+        putCommonFields(header, nameBytes, flags, method, dosTime, crc, compressedSize, size, extra);
+        header.putShort((short) 0); // comment length
+        header.putShort((short) 0); // disk number
+        header.putShort((short) 0); // internal attributes
+        header.putInt(0); // external attributes
+        header.putInt((int) offset);
+        centralDirectory.write(header.array());
+        centralDirectory.write(nameBytes);
+        centralDirectory.write(extra);
+        entryCount++;
+    }
+    
+    /**
+     * Put the fields from "version needed" to "extra field length", which are the
+     * same in the local and central headers.
+     */
+    private static void putCommonFields(ByteBuffer header, byte[] nameBytes, int flags, int method, long dosTime,
+            long crc, long compressedSize, long size, byte[] extra)
+    {
+        header.putShort((short) flags);
+        header.putShort((short) method);
+        header.putInt((int) dosTime);
+        header.putInt((int) crc);
+        header.putInt((int) compressedSize);
+        header.putInt((int) size);
+        header.putShort((short) nameBytes.length);
+        header.putShort((short) extra.length);
+    }
+    
+    /**
+     * The number of bytes written so far.
+     */
+    long getBytesWritten()
+    {
+        return written;
+    }
+    
+    /**
+     * Write the central directory and close the underlying stream.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        try {
+            long directoryOffset = written;
+            centralDirectory.writeTo(out);
+            ByteBuffer end = ByteBuffer.allocate(END_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            end.putInt(END_SIGNATURE);
+            end.putShort((short) 0); // disk number
+            end.putShort((short) 0); // disk with central directory
+            end.putShort((short) entryCount);
+            end.putShort((short) entryCount);
+            end.putInt(centralDirectory.size());
+            end.putInt((int) directoryOffset);
+            end.putShort((short) 0); // comment length
+            out.write(end.array());
+            written += centralDirectory.size() + END_SIZE;
+        }
+        finally {
+            out.close();
+        }
+    }
+    
+    /**
+     * Convert a time in milliseconds since the epoch to the MS-DOS date and time
+     * format used in ZIP files.
+     */
+    static long toDosTime(long time)
+    {
+        LocalDateTime d = LocalDateTime.ofInstant(Instant.ofEpochMilli(time), ZoneId.systemDefault());
+        int year = d.getYear() - 1980;
+        if (year < 0) {
+            // The earliest representable time: 1 January 1980
+            return (1 << 21) | (1 << 16);
+        }
+        return ((long) year << 25 | d.getMonthValue() << 21 | d.getDayOfMonth() << 16
+                | d.getHour() << 11 | d.getMinute() << 5 | d.getSecond() >> 1) & 0xFFFFFFFFL;
+    }
+}
@@ -0,0 +1,261 @@
+/*
+ This file is part of the Greenfoot program.
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.gui;
+
+import greenfoot.GreenfootImage;
+import greenfoot.ImageVisitor;
+import threadchecker.OnThread;
+import threadchecker.Tag;
+
+import java.awt.AlphaComposite;
+import java.awt.Composite;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * A cache of rotated versions of actor images, so that a rotated actor can be
+ * painted by copying a ready-rotated image rather than by transforming its image
+ * every time the world is painted.
+ * 
+ * <p>Entries are keyed by the image data (and its version), the rotation, and
+ * whether actor centres fall in the middle of a pixel (which depends on the cell
+ * size). Copy-on-write images which share data (such as many actors using the same
+ * image file) share entries. The total size of the cached images is limited; the
+ * least recently used entries are dropped first.
+ */
+@OnThread(Tag.Simulation)
+class RotatedImageCache
+{
+    /** Default limit on the memory used by cached images */
+    static final long DEFAULT_MAX_BYTES = 32L * 1024 * 1024;
+    
+    private final long maxBytes;
+    private long usedBytes;
+    
+    private final LinkedHashMap<Key, RotatedImage> cache = new LinkedHashMap<Key, RotatedImage>(64, 0.75f, true);
+    
+    /**
+     * An image rotated and ready to paint, positioned relative to the pixel
+     * containing the centre of the actor.
+     */
+    static class RotatedImage
+    {
+        private final BufferedImage image;
+        private final int offsetX;
+        private final int offsetY;
+        
+        private RotatedImage(BufferedImage image, int offsetX, int offsetY)
+        {
+            this.image = image;
+            this.offsetX = offsetX;
+            this.offsetY = offsetY;
+        }
+        
+        /**
+         * Paint the image, for an actor whose centre is in the given pixel.
+         * 
+         * @param transparency  The transparency of the original GreenfootImage (0-255)
+         */
+        void draw(Graphics2D g, int centreX, int centreY, int transparency)
+        {
+            Composite oldComposite = null;
+            if (transparency < 255) {
+                oldComposite = g.getComposite();
+                g.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, transparency / 255f));
+            }
+            
+            g.drawImage(image, centreX + offsetX, centreY + offsetY, null);
+            
+            if (oldComposite != null) {
+                g.setComposite(oldComposite);
+            }
+        }
+    }
+    
+    private static class Key
+    {
+        private final BufferedImage data;
+        private final int version;
+        private final int rotation;
+        private final boolean halfPixel;
+        
+        Key(BufferedImage data, int version, int rotation, boolean halfPixel)
+        {
+            this.data = data;
+            this.version = version;
+            this.rotation = rotation;
+            this.halfPixel = halfPixel;
+        }
+        
+        @Override
+        public boolean equals(Object o)
+        {
+            if (! (o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return data == other.data && version == other.version
+                    && rotation == other.rotation && halfPixel == other.halfPixel;
+        }
+        
+        @Override
+        public int hashCode()
+        {
+            int hash = System.identityHashCode(data);
+            hash = hash * 31 + version;
+            hash = hash * 31 + rotation;
+            return halfPixel ? ~hash : hash;
+        }
+    }
+    
+    public RotatedImageCache()
+    {
+        this(DEFAULT_MAX_BYTES);
+    }
+    
+    public RotatedImageCache(long maxBytes)
+    {
+        this.maxBytes = maxBytes;
+    }
+    
+    /**
+     * Get the rotated version of an image, creating it if necessary. Returns null
+     * if the image cannot be cached, in which case it must be painted with a
+     * transform as usual.
+     * 
+     * @param image      The image
+     * @param rotation   The rotation of the actor, in degrees (1-359)
+     * @param halfPixel  Whether the centre of the actor is in the middle of a pixel,
+     *                   i.e. the cell size is odd
+     */
+    public synchronized RotatedImage get(GreenfootImage image, int rotation, boolean halfPixel)
+    {
+        int version = ImageVisitor.getVersion(image);
+        if (version == -1) {
+            return null;
+        }
+        
+        BufferedImage data = ImageVisitor.getImageData(image);
+        Key key = new Key(data, version, rotation, halfPixel);
+        RotatedImage rotated = cache.get(key);
+        if (rotated == null) {
+            if (maxRotatedSize(data, rotation) > maxBytes / 4) {
+                // Too big to be worth caching; don't waste time rotating it
+                return null;
+            }
+            rotated = createRotated(data, rotation, halfPixel);
+            long size = sizeOf(rotated);
+            cache.put(key, rotated);
+            usedBytes += size;
+            
+            Iterator<RotatedImage> i = cache.values().iterator();
+            while (usedBytes > maxBytes && i.hasNext()) {
+                RotatedImage eldest = i.next();
+                if (eldest != rotated) {
+                    usedBytes -= sizeOf(eldest);
+                    i.remove();
+                }
+            }
+        }
+        return rotated;
+    }
+    
+    /**
+     * Remove all entries from the cache.
+     */
+    public synchronized void clear()
+    {
+        cache.clear();
+        usedBytes = 0;
+    }
+    
+    private static long sizeOf(RotatedImage rotated)
+    {
+        return 4L * rotated.image.getWidth() * rotated.image.getHeight();
+    }
+    
+    /**
+     * Get an upper limit on the size (in bytes) of the rotated version of an image,
+     * without creating it. The rotated image covers the rotated bounding box, plus
+     * at most two pixels either side for rounding and the spare pixel.
+     */
+    private static long maxRotatedSize(BufferedImage data, int rotation)
+    {
+        double rotR = Math.toRadians(rotation);
+        double sinR = Math.abs(Math.sin(rotR));
+        double cosR = Math.abs(Math.cos(rotR));
+        int width = data.getWidth();
+        int height = data.getHeight();
+        long rotatedWidth = (long) Math.ceil(width * cosR + height * sinR) + 4;
+        long rotatedHeight = (long) Math.ceil(width * sinR + height * cosR) + 4;
+        return 4L * rotatedWidth * rotatedHeight;
+    }
+    
+    /**
+     * Paint an image rotated into a new image, exactly as WorldRenderer would paint
+     * it into the world, but translated by a whole number of pixels.
+     */
+    private static RotatedImage createRotated(BufferedImage data, int rotation, boolean halfPixel)
+    {
+        int width = data.getWidth();
+        int height = data.getHeight();
+        
+        // Position of the image's top-left corner relative to the (exact) centre
+        double c = halfPixel ? 0.5 : 0;
+        double left = Math.floor(c - width / 2.) - c;
+        double top = Math.floor(c - height / 2.) - c;
+        
+        double rotR = Math.toRadians(rotation);
+        double sinR = Math.sin(rotR);
+        double cosR = Math.cos(rotR);
+        
+        double minX = Double.MAX_VALUE;
+        double maxX = -Double.MAX_VALUE;
+        double minY = Double.MAX_VALUE;
+        double maxY = -Double.MAX_VALUE;
+        for (int corner = 0; corner < 4; corner++) {
+            double u = (corner & 1) == 0 ? left : left + width;
+            double v = (corner & 2) == 0 ? top : top + height;
+            double rx = u * cosR - v * sinR;
+            double ry = u * sinR + v * cosR;
+            minX = Math.min(minX, rx);
+            maxX = Math.max(maxX, rx);
+            minY = Math.min(minY, ry);
+            maxY = Math.max(maxY, ry);
+        }
+        // Leave a pixel spare all round, in case of rounding
+        int offsetX = (int) Math.floor(minX + c) - 1;
+        int offsetY = (int) Math.floor(minY + c) - 1;
+        int rotatedWidth = (int) Math.ceil(maxX + c) - offsetX + 1;
+        int rotatedHeight = (int) Math.ceil(maxY + c) - offsetY + 1;
+        
+        BufferedImage rotated = new BufferedImage(rotatedWidth, rotatedHeight, BufferedImage.TYPE_INT_ARGB_PRE);
+        Graphics2D g = rotated.createGraphics();
+        g.rotate(rotR, c - offsetX, c - offsetY);
+        g.drawImage(data, (int) Math.floor(c - width / 2.) - offsetX, (int) Math.floor(c - height / 2.) - offsetY, null);
+        g.dispose();
+        
+        return new RotatedImage(rotated, offsetX, offsetY);
+    }
+}
@@ -34,9 +34,15 @@ import threadchecker.Tag;
 import java.awt.*;
 import java.awt.geom.AffineTransform;
 import java.awt.image.BufferedImage;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * A class which handles the rendering of a World into a BufferedImage, including
@@ -54,6 +60,49 @@ public class WorldRenderer
     private Point dragLocation;
     /** Image used when dragging new actors on the world. Includes the drop shadow.*/
     private BufferedImage dragImage;
+    
+    /** Rotated actor images, so that rotated actors can be painted without a transform */
+    private final RotatedImageCache rotatedImages = new RotatedImageCache();
+    
+    /** Worlds with fewer pixels than this are always painted serially */
+    private static final int TILED_MIN_PIXELS = 512 * 512;
+    /** The minimum height of a band, when painting in bands */
+    private static final int MIN_BAND_HEIGHT = 64;
+    /** The maximum number of bands (and painting threads) */
+    private static final int MAX_BANDS = Runtime.getRuntime().availableProcessors();
+    
+    /** Whether to paint large worlds in bands, in parallel */
+    @OnThread(Tag.Any)
+    private volatile boolean tiledRendering = true;
+    /** Threads for painting bands; created when first needed */
+    private ExecutorService bandExecutor;
+    
+    /**
+     * An actor to be painted in a band: what to paint, and the vertical extent
+     * (in pixels) of what will be painted.
+     */
+    private static class BandItem
+    {
+        final GreenfootImage image;
+        final int x;
+        final int y;
+        final int rotation;
+        final RotatedImageCache.RotatedImage rotated;
+        final int top;
+        final int bottom;
+        
+        BandItem(GreenfootImage image, int x, int y, int rotation,
+                RotatedImageCache.RotatedImage rotated, int top, int bottom)
+        {
+            this.image = image;
+            this.x = x;
+            this.y = y;
+            this.rotation = rotation;
+            this.rotated = rotated;
+            this.top = top;
+            this.bottom = bottom;
+        }
+    }
 
     @OnThread(Tag.Any)
     public WorldRenderer()
@@ -80,8 +129,16 @@ public class WorldRenderer
         }
         else
         {
-            paintBackground(g2, drawWorld, worldImage.getWidth(), worldImage.getHeight());
-            paintObjects(g2, drawWorld);
+            int bands = numberOfBands(worldImage.getWidth(), worldImage.getHeight());
+            if (bands > 1)
+            {
+                paintInBands(drawWorld, worldImage, bands);
+            }
+            else
+            {
+                paintBackground(g2, drawWorld, worldImage.getWidth(), worldImage.getHeight());
+                paintObjects(g2, drawWorld);
+            }
             paintDraggedObject(g2, drawWorld);
             WorldVisitor.paintDebug(drawWorld, g2);
             paintWorldText(g2, drawWorld);
@@ -109,27 +166,15 @@ public class WorldRenderer
             if (image != null) {
                 ActorVisitor.setLastPaintSeqNum(thing, paintSeq++);
 
-                double halfWidth = image.getWidth() / 2.;
-                double halfHeight = image.getHeight() / 2.;
-
-                AffineTransform oldTx = null;
                 try {
                     int ax = ActorVisitor.getX(thing);
                     int ay = ActorVisitor.getY(thing);
-                    double xCenter = ax * cellSize + cellSize / 2.;
-                    int paintX = (int) Math.floor(xCenter - halfWidth);
-                    double yCenter = ay * cellSize + cellSize / 2.;
-                    int paintY = (int) Math.floor(yCenter - halfHeight);
-
                     int rotation = ActorVisitor.getRotation(thing);
+                    RotatedImageCache.RotatedImage rotated = null;
                     if (rotation != 0) {
-                        // don't bother transforming if it is not rotated at
-                        // all.
-                        oldTx = g.getTransform();
-                        g.rotate(Math.toRadians(rotation), xCenter, yCenter);
+                        rotated = rotatedImages.get(image, rotation, cellSize % 2 != 0);
                     }
-
-                    ImageVisitor.drawImage(image, g, paintX, paintY, null, true);
+                    paintActor(g, image, cellSize, ax, ay, rotation, rotated);
                 }
                 catch (IllegalStateException e) {
                     // We get this if the object has been removed from the
@@ -137,13 +182,185 @@ public class WorldRenderer
                     // method that removes an object from the world, while the
                     // scenario is executing.
                 }
+            }
+        }
+    }
+    
+    /**
+     * Paint a single actor's image.
+     * 
+     * @param rotated  The rotated version of the image from the rotated image cache,
+     *                 or null if it is not rotated or could not be cached.
+     */
+    private static void paintActor(Graphics2D g, GreenfootImage image, int cellSize, int ax, int ay,
+            int rotation, RotatedImageCache.RotatedImage rotated)
+    {
+        if (rotated != null) {
+            // Paint the ready-rotated image; no transform needed
+            rotated.draw(g, ax * cellSize + cellSize / 2, ay * cellSize + cellSize / 2,
+                    image.getTransparency());
+            return;
+        }
+        
+        double halfWidth = image.getWidth() / 2.;
+        double halfHeight = image.getHeight() / 2.;
+        double xCenter = ax * cellSize + cellSize / 2.;
+        int paintX = (int) Math.floor(xCenter - halfWidth);
+        double yCenter = ay * cellSize + cellSize / 2.;
+        int paintY = (int) Math.floor(yCenter - halfHeight);
 
-                // Restore the old state of the graphics
-                if (oldTx != null) {
-                    g.setTransform(oldTx);
+        AffineTransform oldTx = null;
+        if (rotation != 0) {
+            // don't bother transforming if it is not rotated at
+            // all.
+            oldTx = g.getTransform();
+            g.rotate(Math.toRadians(rotation), xCenter, yCenter);
+        }
+
+        ImageVisitor.drawImage(image, g, paintX, paintY, null, true);
+
+        // Restore the old state of the graphics
+        if (oldTx != null) {
+            g.setTransform(oldTx);
+        }
+    }
+    
+    /**
+     * Decide how many horizontal bands to paint a world image of the given size in.
+     * Returns 1 if it should be painted serially.
+     */
+    private int numberOfBands(int width, int height)
+    {
+        if (! tiledRendering || (long) width * height < TILED_MIN_PIXELS) {
+            return 1;
+        }
+        return Math.max(1, Math.min(MAX_BANDS, height / MIN_BAND_HEIGHT));
+    }
+    
+    /**
+     * Paint the background and the objects of the world in horizontal bands, each
+     * band on a separate thread with its drawing clipped to the band. The actors are
+     * painted in the same order as by paintObjects, so the result is the same as
+     * painting serially.
+     * 
+     * Must be synchronized on the World.lock.
+     */
+    private void paintInBands(World drawWorld, BufferedImage worldImage, int bands)
+    {
+        int width = worldImage.getWidth();
+        int height = worldImage.getHeight();
+        
+        // Take a snapshot of what to paint, in paint order. This is done on this
+        // thread, since it involves calling user code (getImage()) and updating
+        // the actors' paint sequence numbers.
+        List<BandItem> items = new ArrayList<BandItem>();
+        int cellSize = WorldVisitor.getCellSize(drawWorld);
+        int paintSeq = 0;
+        for (Actor thing : WorldVisitor.getObjectsListInPaintOrder(drawWorld)) {
+            GreenfootImage image = ActorVisitor.getDisplayImage(thing);
+            if (image != null) {
+                ActorVisitor.setLastPaintSeqNum(thing, paintSeq++);
+                try {
+                    int rotation = ActorVisitor.getRotation(thing);
+                    RotatedImageCache.RotatedImage rotated = null;
+                    if (rotation != 0) {
+                        rotated = rotatedImages.get(image, rotation, cellSize % 2 != 0);
+                    }
+                    int ax = ActorVisitor.getX(thing);
+                    int ay = ActorVisitor.getY(thing);
+                    // Half the extent of the painted image in any direction, whatever
+                    // the rotation, with a margin for rounding and antialiasing:
+                    int reach = (int) Math.ceil(Math.hypot(image.getWidth(), image.getHeight()) / 2) + 2;
+                    int yCenter = ay * cellSize + cellSize / 2;
+                    items.add(new BandItem(image, ax, ay, rotation, rotated,
+                            yCenter - reach, yCenter + reach));
+                }
+                catch (IllegalStateException e) {
+                    // The object has been removed from the world; see paintObjects.
+                }
+            }
+        }
+        
+        List<Callable<Void>> bandPainters = new ArrayList<Callable<Void>>(bands);
+        for (int band = 0; band < bands; band++) {
+            int top = height * band / bands;
+            int bottom = height * (band + 1) / bands;
+            bandPainters.add(() -> {
+                Graphics2D g = (Graphics2D) worldImage.getGraphics();
+                try {
+                    g.clipRect(0, top, width, bottom - top);
+                    paintBackground(g, drawWorld, width, height);
+                    for (BandItem item : items) {
+                        if (item.bottom > top && item.top < bottom) {
+                            paintActor(g, item.image, cellSize, item.x, item.y, item.rotation, item.rotated);
+                        }
+                    }
+                }
+                finally {
+                    g.dispose();
+                }
+                return null;
+            });
+        }
+        
+        List<Future<Void>> results = new ArrayList<Future<Void>>(bands);
+        for (Callable<Void> bandPainter : bandPainters) {
+            results.add(getBandExecutor().submit(bandPainter));
+        }
+        
+        // Wait for every band to finish, even if we are interrupted: as soon as we
+        // return, the image may be displayed and then reused for the next frame.
+        boolean interrupted = false;
+        Throwable failure = null;
+        for (Future<Void> result : results) {
+            while (true) {
+                try {
+                    result.get();
+                    break;
+                }
+                catch (InterruptedException e) {
+                    interrupted = true;
+                }
+                catch (ExecutionException e) {
+                    if (failure == null) {
+                        failure = e.getCause();
+                    }
+                    break;
                 }
             }
         }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null) {
+            throw new RuntimeException(failure);
+        }
+    }
+    
+    /**
+     * Get the executor used to paint bands, creating it if necessary.
+     */
+    private ExecutorService getBandExecutor()
+    {
+        if (bandExecutor == null) {
+            bandExecutor = Executors.newFixedThreadPool(MAX_BANDS, r -> {
+                Thread thread = new Thread(r, "Greenfoot world painter");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return bandExecutor;
+    }
+    
+    /**
+     * Turn painting in parallel bands on or off. It is on by default, but is only
+     * used for worlds of at least {@value #TILED_MIN_PIXELS} pixels, on machines with
+     * more than one processor.
+     */
+    @OnThread(Tag.Any)
+    public void setTiledRendering(boolean tiled)
+    {
+        tiledRendering = tiled;
     }
 
     /**
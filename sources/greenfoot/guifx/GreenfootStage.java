@@ -106,6 +106,7 @@ import javafx.scene.effect.DropShadow;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.image.PixelFormat;
+import javafx.scene.image.PixelWriter;
 import javafx.scene.image.WritableImage;
 import javafx.scene.input.KeyCode;
 import javafx.scene.input.KeyCodeCombination;
@@ -132,6 +133,7 @@ import java.io.IOException;
 import java.lang.reflect.Modifier;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.BufferUnderflowException;
 import java.nio.IntBuffer;
 import java.util.*;
 
@@ -229,6 +231,14 @@ public class GreenfootStage extends Stage implements FXCompileObserver,
     // World image
     private final WritableImage[] worldImg = new WritableImage[2];
     private int nextWorldImgToWrite = 0;
+    // Copy of the latest world image pixels, onto which partial (tile) updates are applied:
+    private int[] worldPixels;
+    private int worldPixelsWidth;
+    private int worldPixelsHeight;
+    // For each world image, the tile lists (see receivedWorldImageTiles) received since it was
+    // last written, or null if it must be written in full:
+    @SuppressWarnings("unchecked")
+    private final List<int[]>[] worldImgPendingTiles = new List[worldImg.length];
 
     // The scenario information that usually shipped with it when uploading
     // to the gallery. We should maintain a reference to it and make sure
@@ -1605,15 +1615,98 @@ public class GreenfootStage extends Stage implements FXCompileObserver,
         // If we are closing a project but receive an image late on, ignore it:
         if (project == null)
         {
+            worldPixels = null;
             return;
         }
-        
-        if (worldImg[nextWorldImgToWrite] == null || worldImg[nextWorldImgToWrite].getWidth() != width || worldImg[nextWorldImgToWrite].getHeight() != height)
+
+        try
+        {
+            if (worldPixels == null || worldPixels.length != width * height)
+            {
+                worldPixels = new int[width * height];
+            }
+            worldPixelsWidth = width;
+            worldPixelsHeight = height;
+            buffer.duplicate().get(worldPixels);
+        }
+        catch (BufferUnderflowException ex)
+        {
+            worldPixels = null;
+            Debug.reportError("Error receiving world (world image probably too large)");
+            worldInstantiationError = true;
+            worldVisible.set(false);
+            return;
+        }
+
+        // Every image now needs to be completely re-written:
+        Arrays.fill(worldImgPendingTiles, null);
+        displayWorldPixels(null);
+    }
+
+    /**
+     * A partial world image update has been received from the remote VM. The update consists
+     * of a number of rectangular tiles which have changed since the previous image.
+     * 
+     * @param width   The image width
+     * @param height  The image height
+     * @param tiles   The changed tiles, as successive (x, y, width, height) quadruples
+     * @param buffer  The buffer containing the pixel data for each tile in turn (row by row)
+     * @return  true if the update was applied; false if it could not be applied because
+     *          there is no matching previous image (a complete image is then needed).
+     */
+    public boolean receivedWorldImageTiles(int width, int height, int[] tiles, IntBuffer buffer)
+    {
+        if (project == null)
         {
-            worldImg[nextWorldImgToWrite] = new WritableImage(width == 0 ? 1 : width, height == 0 ? 1 : height);
+            return true;
+        }
+        if (worldPixels == null || worldPixelsWidth != width || worldPixelsHeight != height)
+        {
+            return false;
+        }
 
-            if (worldViewScroll.getWidth() < worldImg[nextWorldImgToWrite].getWidth() ||
-                    worldViewScroll.getHeight() < worldImg[nextWorldImgToWrite].getHeight())
+        for (int i = 0; i < tiles.length; i += 4)
+        {
+            int tileX = tiles[i];
+            int tileY = tiles[i + 1];
+            int tileWidth = tiles[i + 2];
+            int tileHeight = tiles[i + 3];
+            for (int row = 0; row < tileHeight; row++)
+            {
+                buffer.get(worldPixels, (tileY + row) * width + tileX, tileWidth);
+            }
+        }
+
+        for (int i = 0; i < worldImgPendingTiles.length; i++)
+        {
+            if (i != nextWorldImgToWrite && worldImgPendingTiles[i] != null)
+            {
+                worldImgPendingTiles[i].add(tiles);
+            }
+        }
+        displayWorldPixels(tiles);
+        return true;
+    }
+
+    /**
+     * Write the received world pixels into the next world image, and display it.
+     * 
+     * @param tiles  The tiles changed by the latest update, or null if the whole image changed.
+     */
+    private void displayWorldPixels(int[] tiles)
+    {
+        int width = worldPixelsWidth;
+        int height = worldPixelsHeight;
+        WritableImage img = worldImg[nextWorldImgToWrite];
+        List<int[]> pendingTiles = worldImgPendingTiles[nextWorldImgToWrite];
+        if (img == null || img.getWidth() != width || img.getHeight() != height)
+        {
+            img = new WritableImage(width == 0 ? 1 : width, height == 0 ? 1 : height);
+            worldImg[nextWorldImgToWrite] = img;
+            pendingTiles = null;
+
+            if (worldViewScroll.getWidth() < img.getWidth() ||
+                    worldViewScroll.getHeight() < img.getHeight())
             {
                 // We don't call sizeToScene() directly while holding the file lock because it can
                 // cause us to re-enter the animation timer (see commit comment).  So we set this
@@ -1623,9 +1716,35 @@ public class GreenfootStage extends Stage implements FXCompileObserver,
         }
         try
         {
-            worldImg[nextWorldImgToWrite].getPixelWriter().setPixels(0, 0, width, height, PixelFormat.getIntArgbInstance(),
-                    buffer, width);
-            worldDisplay.setImage(worldImg[nextWorldImgToWrite]);
+            PixelWriter pixelWriter = img.getPixelWriter();
+            if (pendingTiles == null || tiles == null)
+            {
+                pixelWriter.setPixels(0, 0, width, height, PixelFormat.getIntArgbInstance(),
+                        worldPixels, 0, width);
+            }
+            else
+            {
+                // Bring the image up to date with the updates it missed, then the latest update:
+                pendingTiles.add(tiles);
+                for (int[] tileList : pendingTiles)
+                {
+                    for (int i = 0; i < tileList.length; i += 4)
+                    {
+                        pixelWriter.setPixels(tileList[i], tileList[i + 1], tileList[i + 2], tileList[i + 3],
+                                PixelFormat.getIntArgbInstance(), worldPixels,
+                                tileList[i + 1] * width + tileList[i], width);
+                    }
+                }
+            }
+            if (worldImgPendingTiles[nextWorldImgToWrite] == null)
+            {
+                worldImgPendingTiles[nextWorldImgToWrite] = new ArrayList<>();
+            }
+            else
+            {
+                worldImgPendingTiles[nextWorldImgToWrite].clear();
+            }
+            worldDisplay.setImage(img);
             nextWorldImgToWrite = (nextWorldImgToWrite + 1) % worldImg.length;
             worldInstantiationError = false;
             worldVisible.set(true);
@@ -25,10 +25,13 @@ import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Properties;
 
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
 
 /**
  * Equivalent of the Scratch ImageMedia class.
@@ -45,6 +48,10 @@ public class ImageMedia extends ScratchMedia
 {
     // If non-null, the File that the image has been saved into
     private File imageFile;
+    
+    // The size of the JPEG image, if there is one; read when first needed
+    private int jpegWidth = -1;
+    private int jpegHeight = -1;
 
     public ImageMedia(int version, List<ScratchObject> scratchObjects)
     {
@@ -85,13 +92,9 @@ public class ImageMedia extends ScratchMedia
     
     public int getWidth()
     {
-        byte[] jpegBytes = getJpegBytes();
-        if (jpegBytes != null) {
-            try {
-                return ImageIO.read(new ByteArrayInputStream(jpegBytes)).getWidth();
-            } catch (IOException e) {
-                return -1;
-            }
+        if (getJpegBytes() != null) {
+            readJpegSize();
+            return jpegWidth;
         } else {
             return getImage().getWidth();
         }        
@@ -99,19 +102,42 @@ public class ImageMedia extends ScratchMedia
     
     public int getHeight()
     {
-        byte[] jpegBytes = getJpegBytes();
-        if (jpegBytes != null) {
-            try {
-                return ImageIO.read(new ByteArrayInputStream(jpegBytes)).getHeight();
-            } catch (IOException e) {
-                return -1;
-            }
+        if (getJpegBytes() != null) {
+            readJpegSize();
+            return jpegHeight;
         } else {
             return getImage().getHeight();
         }        
     }
+    
+    /**
+     * Reads the size of the JPEG image, without decoding the image, if it has
+     * not been read already.  If it can't be read, the size is left as -1.
+     */
+    private void readJpegSize()
+    {
+        if (jpegWidth != -1) {
+            return;
+        }
+        try (ImageInputStream iis = ImageIO.createImageInputStream(new ByteArrayInputStream(getJpegBytes()))) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(iis);
+            if (readers.hasNext()) {
+                ImageReader reader = readers.next();
+                try {
+                    reader.setInput(iis);
+                    jpegWidth = reader.getWidth(0);
+                    jpegHeight = reader.getHeight(0);
+                }
+                finally {
+                    reader.dispose();
+                }
+            }
+        } catch (IOException e) {
+            // Leave the size as -1
+        }
+    }
 
-    @Override public File saveInto(File destDir, Properties props, String prefix) throws IOException
+    @Override public File saveInto(File destDir, Properties props, String prefix, ImportContext context) throws IOException
     {       
         if (imageFile == null) {
             byte[] jpegBytes = getJpegBytes();
@@ -121,19 +147,24 @@ public class ImageMedia extends ScratchMedia
             File imageDir = new File(destDir, "images");
             imageDir.mkdirs();
             for (int i = -1;;i++) {
-                // First try without addition, then append numbers until we find a free file:
+                // First try without addition, then append numbers until we find a free file.
+                // The file is created straight away, to claim the name, since it may be
+                // written in the background:
                 imageFile = new File(imageDir, prefix + mungeChars(getMediaName()) + (i < 0 ? "" : "_" + i) + "." + extension);
-                if (false == imageFile.exists())
+                if (imageFile.createNewFile())
                     break;
             }
             
-            if (jpegBytes != null) {
-                FileOutputStream fos = new FileOutputStream(imageFile);
-                fos.write(jpegBytes);
-                fos.close();
-            } else {
-                ImageIO.write(getImage().getBufferedImage(), "png", imageFile);
-            }
+            File file = imageFile;
+            context.writeMedia(() -> {
+                if (jpegBytes != null) {
+                    try (FileOutputStream fos = new FileOutputStream(file)) {
+                        fos.write(jpegBytes);
+                    }
+                } else {
+                    ImageIO.write(getImage().getBufferedImage(), "png", file);
+                }
+            });
         }
         
         return imageFile;
@@ -0,0 +1,98 @@
+/*
+ This file is part of the Greenfoot program.
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.importer.scratch;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * The state of a single Scratch import, which is passed to the objects as they
+ * are saved into the project. Media files (images and sounds) are written in
+ * parallel, since decoding and encoding them takes most of the time of an import;
+ * any error writing them is reported at the end of the import.
+ */
+public class ImportContext
+{
+    private final ExecutorService mediaExecutor =
+            Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    private final List<Future<Void>> mediaWrites = new ArrayList<Future<Void>>();
+    
+    /**
+     * The writing of a media file.
+     */
+    interface MediaWrite
+    {
+        void write() throws IOException;
+    }
+    
+    /**
+     * Writes a media file, in parallel with the other media files of the import.
+     */
+    void writeMedia(MediaWrite write)
+    {
+        mediaWrites.add(mediaExecutor.submit(() -> {
+            write.write();
+            return null;
+        }));
+    }
+    
+    /**
+     * Waits for all media files to be written.
+     * 
+     * @throws IOException if any of the files could not be written
+     */
+    void waitForMediaWrites() throws IOException
+    {
+        IOException firstException = null;
+        for (Future<Void> mediaWrite : mediaWrites) {
+            try {
+                mediaWrite.get();
+            }
+            catch (ExecutionException e) {
+                if (firstException == null) {
+                    firstException = e.getCause() instanceof IOException
+                            ? (IOException) e.getCause() : new IOException(e.getCause());
+                }
+            }
+            catch (InterruptedException e) {
+                throw new InterruptedIOException();
+            }
+        }
+        if (firstException != null) {
+            throw firstException;
+        }
+    }
+    
+    /**
+     * Ends the import, abandoning any media files still being written.
+     */
+    void close()
+    {
+        mediaExecutor.shutdownNow();
+    }
+}
@@ -23,7 +23,7 @@ package greenfoot.importer.scratch;
 
 import java.awt.Color;
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 
 /**
@@ -42,8 +42,13 @@ public class ScratchImage extends ScratchObject
     private int h;
     private int d;
     private int offset;
-    // The image, only valid after resolve is called
+    // The bits (an int[], or a compressed byte[]), only valid after resolve is called
+    private Object bits;
+    // The image, decoded from the bits when first needed
     private BufferedImage img;
+    // The pixels and palette, while decoding
+    private int[] pixels;
+    private int[] paletteRGB;
     // The ScratchObject representing the palette.  Almost certainly an object reference
     // When it is resolved, the actual image will be stored in the "palette" field
     private ScratchObject paletteRef;
@@ -71,7 +76,9 @@ public class ScratchImage extends ScratchObject
     }
 
     /**
-     * Resolves the references for bits and palette, and decodes the image
+     * Resolves the references for bits and palette.  The image is decoded later, when
+     * it is first needed (see getBufferedImage()), so that images can be decoded in
+     * parallel.
      */
     public ScratchObject resolve(ArrayList<ScratchObject> objects) {
         if (isResolved) return this;
@@ -86,23 +93,39 @@ public class ScratchImage extends ScratchObject
             }
         }
         
+        bits = bitsRef.resolve(objects).getValue();
+        
+        isResolved = true;
+
+        return this;
+    }
+    
+    /**
+     * Decodes the image from the bits.
+     */
+    private void decode()
+    {
         // The compression scheme is documented in the 
         // Graphics-Primitives.Bitmap.compress:toByteArray: method
         
-        img = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
-               
-        ScratchObject resolved = bitsRef.resolve(objects);
+        pixels = new int[w * h];
+        if (palette != null) {
+            paletteRGB = new int[palette.length];
+            for (int i = 0; i < palette.length; i++) {
+                paletteRGB[i] = palette[i].getRGB();
+            }
+        }
         
-        if (resolved.getValue() instanceof int[]) {
+        if (bits instanceof int[]) {
             // Uncompressed:
-            int[] values = (int[])resolved.getValue();
+            int[] values = (int[])bits;
             for (int pos = 0; pos < values.length;pos++) {
                 setBitmapEntry(pos, values[pos]);
             }
             
-        } else if (resolved.getValue() instanceof byte[]) {
+        } else if (bits instanceof byte[]) {
             //Compressed, need to decompress:
-            ByteArrayInputStream bitsInput = new ByteArrayInputStream((byte[]) resolved.getValue());
+            ByteBuffer bitsInput = ByteBuffer.wrap((byte[]) bits);
             
             
     
@@ -119,7 +142,7 @@ public class ScratchImage extends ScratchObject
                     bitmapPos += wordCount;
                 break;
                 case 1: { // Replicate next byte to all 4 bytes to wordCount words:
-                    int b = bitsInput.read();
+                    int b = read(bitsInput);
                     int x = (b << 24) | (b << 16) | (b << 8) | b;
                     int end = bitmapPos + wordCount;
                     while (bitmapPos < end) {
@@ -128,11 +151,7 @@ public class ScratchImage extends ScratchObject
                 }
                 break;
                 case 2: { //Replicate next 4 bytes to wordCount words: 
-                    int x = 0;
-                    for (int i = 0; i < 4; i++) {
-                        x <<= 8;
-                        x |= bitsInput.read();
-                    }
+                    int x = readWord(bitsInput);
                     int end = bitmapPos + wordCount;
                     while (bitmapPos < end) {
                         setBitmapEntry(bitmapPos++, x);
@@ -142,13 +161,7 @@ public class ScratchImage extends ScratchObject
                 case 3: { //Exact wordCount words follows (no repetition) 
                     int end = bitmapPos + wordCount;
                     while (bitmapPos < end) {
-                        int x = 0;
-                        for (int i = 0; i < 4; i++) {
-                            x <<= 8;
-                            x |= bitsInput.read();
-                        }
-                        
-                        setBitmapEntry(bitmapPos++, x);
+                        setBitmapEntry(bitmapPos++, readWord(bitsInput));
                     }
                 }
                 break;
@@ -156,30 +169,34 @@ public class ScratchImage extends ScratchObject
             }
         }
         
-        isResolved = true;
-
-        return this;
+        img = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+        img.setRGB(0, 0, w, h, pixels, 0, w);
+        pixels = null;
+        paletteRGB = null;
     }
     
     private void setBitmapEntry(int pos, int val)
     {
         final int pixelsPerWord = 32 / d;
+        // Number of pixels per row divided by pixels-per-word gives number of words per row:
+        final int realWidth = (w + (pixelsPerWord - 1)) / pixelsPerWord;
+        // Divide word-position by words per row to get row 
+        final int y = pos / realWidth;
+        if (y >= h) {
+            // Some bits can be beyond the image due to aligning the images to nice 2^n sizes:
+            return;
+        }
         for (int i = 0; i < pixelsPerWord;i++) {
             int index = d == 32 ? val : val & ((1 << d) - 1);
             
-            // Number of pixels per row divided by pixels-per-word gives number of words per row:
-            int realWidth = (w + (pixelsPerWord - 1)) / pixelsPerWord;
-            
             // Take remainder from word-position by words per row to get
             // index of words into row, then times by pixels-per-word to get number of pixels,
             // then add i (number of pixels into word)
             int x = ((pos % realWidth) * pixelsPerWord) + (pixelsPerWord - i);
-            // Divide word-position by words per row to get row 
-            int y = pos / realWidth;
             // Some bits can be beyond the image due to aligning the images to nice 2^n sizes:
-            if (x < w && y < h) {
-                if (palette != null) {
-                    img.setRGB(x, y, palette[index].getRGB());
+            if (x < w) {
+                if (paletteRGB != null) {
+                    pixels[y * w + x] = paletteRGB[index];
                 } else {
                     // If the alpha is zero but the other channels are not,
                     // set alpha to 255.  I can't find any part of the Scratch code
@@ -188,36 +205,56 @@ public class ScratchImage extends ScratchObject
                     if (index >> 24 == 0 && (index & 0xFFFFFF) != 0) {
                         index |= 0xFF000000;
                     }
-                    img.setRGB(x, y, index);
+                    pixels[y * w + x] = index;
                 }
             }
             
             val >>= d;
         }
     }
+    
+    /**
+     * Reads a single (unsigned) byte, or returns -1 if at the end of the bits.
+     */
+    private static int read(ByteBuffer bitsInput)
+    {
+        return bitsInput.hasRemaining() ? bitsInput.get() & 0xFF : -1;
+    }
+    
+    /**
+     * Reads a big-endian 4-byte word.
+     */
+    private static int readWord(ByteBuffer bitsInput)
+    {
+        if (bitsInput.remaining() >= 4) {
+            return bitsInput.getInt();
+        }
+        int x = 0;
+        for (int i = 0; i < 4; i++) {
+            x <<= 8;
+            x |= read(bitsInput);
+        }
+        return x;
+    }
 
 
     /**
      * Decodes a count field.
      * Anything above 0xE0 has its low bits (& 0x1F) merged with the next number
      */
-    private int decodeLen(ByteArrayInputStream bitsInput)
+    private int decodeLen(ByteBuffer bitsInput)
     {
         int x = 0;
-        int first = bitsInput.read();
+        int first = read(bitsInput);
         
         if (first == -1) //EOF
             return -1;
         
         if (first == 0xFF) {
-            for (int i = 0; i < 4; i++) {
-                x <<= 8;
-                x |= bitsInput.read();
-            }
-            return x;
+            return readWord(bitsInput);
         } else if (first >= 0xE0) {
             x = (first & 0x1F) << 8;
-            x |= bitsInput.read();
+            x |= read(bitsInput);
         } else {
             x = first;
         }
@@ -234,8 +271,15 @@ public class ScratchImage extends ScratchObject
         return h;
     }
 
-    public BufferedImage getBufferedImage()
+    /**
+     * Gets the image, decoding it if that has not already been done.  Only valid
+     * after resolve has been called.
+     */
+    public synchronized BufferedImage getBufferedImage()
     {
+        if (img == null) {
+            decode();
+        }
         return img;
     }
     
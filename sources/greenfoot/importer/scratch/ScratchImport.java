@@ -26,11 +26,12 @@ import greenfoot.core.GreenfootMain;
 
 import java.awt.Color;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.math.BigDecimal;
-import java.nio.charset.Charset;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -46,29 +47,43 @@ import bluej.utility.Debug;
 public class ScratchImport
 {   
     /**
-     * Reads a fixed number of bytes, treats them as ASCII, and returns them as a String
+     * Reads a single (unsigned) byte, or returns -1 if at the end of the input.
+     */
+    private static int read(ByteBuffer input)
+    {
+        return input.hasRemaining() ? input.get() & 0xFF : -1;
+    }
+    
+    /**
+     * Reads a fixed number of bytes (or as many as remain, if fewer), and returns them.
      */
-    private static String readFixedASCII(FileInputStream input, int num) throws IOException
+    private static byte[] readBytes(ByteBuffer input, int num)
     {
         byte[] b = new byte[num];
-        input.read(b);
-        return new String(b, Charset.forName("US-ASCII"));
+        input.get(b, 0, Math.min(num, input.remaining()));
+        return b;
+    }
+    
+    /**
+     * Reads a fixed number of bytes, treats them as ASCII, and returns them as a String
+     */
+    private static String readFixedASCII(ByteBuffer input, int num) throws IOException
+    {
+        return new String(readBytes(input, num), StandardCharsets.US_ASCII);
     }
     
     /**
      * Reads a fixed number of bytes, treats them as UTF8, and returns them as a String
      */
-    private static String readUTF8(FileInputStream input, int num) throws IOException
+    private static String readUTF8(ByteBuffer input, int num) throws IOException
     {
-        byte[] b = new byte[num];
-        input.read(b);
-        return new String(b, Charset.forName("UTF-8"));
+        return new String(readBytes(input, num), StandardCharsets.UTF_8);
     }
     
     /**
      * Reads the version string from the file
      */
-    private static void readVersion(FileInputStream input) throws IOException 
+    private static void readVersion(ByteBuffer input) throws IOException 
     {
         String ver = readFixedASCII(input, 10);
         if ("ScratchV01".equals(ver)) {
@@ -85,13 +100,19 @@ public class ScratchImport
      * 
      * The Scratch format has all sorts of integer sizes, including 3 bytes.
      */
-    private static long readInt(FileInputStream input, int bytes) throws IOException
+    private static long readInt(ByteBuffer input, int bytes) throws IOException
     {
         long x = 0;
-        for (int i = 0; i < bytes; i++)
-        {
-            x <<= 8;
-            x |= input.read();
+        if (bytes == 4 && input.remaining() >= 4) {
+            // The most common case, read in one go:
+            x = input.getInt() & 0xFFFFFFFFL;
+        }
+        else {
+            for (int i = 0; i < bytes; i++)
+            {
+                x <<= 8;
+                x |= read(input);
+            }
         }
         
         // Fix negative numbers when less than 8-bytes:
@@ -106,16 +127,16 @@ public class ScratchImport
     /**
      * Reads the header from a Scratch file (the version, and the info block, which is skipped)
      */
-    private static void readHeader(FileInputStream input) throws IOException
+    private static void readHeader(ByteBuffer input) throws IOException
     {
         readVersion(input);
         int infoSize = (int)readInt(input, 4);
-        input.skip(infoSize);
+        input.position(input.position() + Math.max(0, Math.min(infoSize, input.remaining())));
     }
     
-    private static ScratchObject readObject(FileInputStream input) throws IOException
+    private static ScratchObject readObject(ByteBuffer input) throws IOException
     {
-        int id = input.read();
+        int id = read(input);
         if (id == -1)
             return null;
         
@@ -129,10 +150,10 @@ public class ScratchImport
     }
     
     // See Scratch Object IO.ObjStream.readObjectRecord
-    private static ScratchUserObject readUserObject(int id, FileInputStream input) throws IOException
+    private static ScratchUserObject readUserObject(int id, ByteBuffer input) throws IOException
     {
-        int version = input.read();
-        int fieldAmount = input.read();
+        int version = read(input);
+        int fieldAmount = read(input);
         
         List<ScratchObject> scratchObjects = Arrays.asList(readFields(input, fieldAmount));
         
@@ -150,14 +171,14 @@ public class ScratchImport
         }
     }
     
-    private static ScratchObject readPrimitiveOrReference(FileInputStream input) throws IOException
+    private static ScratchObject readPrimitiveOrReference(ByteBuffer input) throws IOException
     {
-        int id = input.read();
+        int id = read(input);
         return readPrimitiveOrReferenceWithGivenId(id, input);
     }
     
     // See Scratch Object IO.ObjStream.readField and Scratch Object IO.ObjStream.<class>  
-    private static ScratchObject readPrimitiveOrReferenceWithGivenId(int id, FileInputStream input) throws IOException
+    private static ScratchObject readPrimitiveOrReferenceWithGivenId(int id, ByteBuffer input) throws IOException
     {
         switch (id)
         {
@@ -181,18 +202,17 @@ public class ScratchImport
             return new ScratchPrimitive(readFixedASCII(input, size));
         } case 11: { // ByteArray
             int size = (int)readInt(input, 4);
-            byte[] b = new byte[size];
-            input.read(b);
-            return new ScratchPrimitive(b);
+            return new ScratchPrimitive(readBytes(input, size));
         } case 12: { // SoundBuf -- TODO read this properly as int16s
             int size = (int)readInt(input, 4);
-            byte[] b = new byte[size * 2];
-            input.read(b);
-            return new ScratchPrimitive(b);
+            return new ScratchPrimitive(readBytes(input, size * 2));
         } case 13: { //Bitmap, oddly this is effectively int[] and nothing more
             int size = (int)readInt(input, 4);
             int[] arr = new int[size];
-            for (int i = 0; i < size; i++) {
+            int available = Math.min(size, input.remaining() / 4);
+            input.asIntBuffer().get(arr, 0, available);
+            input.position(input.position() + available * 4);
+            for (int i = available; i < size; i++) {
                 arr[i] = (int)readInt(input, 4);
             }
             return new ScratchPrimitive(arr);
@@ -251,7 +271,7 @@ public class ScratchImport
         }
     }
 
-    private static ScratchObject[] readFields(FileInputStream input,
+    private static ScratchObject[] readFields(ByteBuffer input,
             int size) throws IOException
     {
         List<ScratchObject> scratchObjects = new ArrayList<ScratchObject>();
@@ -263,7 +283,7 @@ public class ScratchImport
 
 
 
-    private static List<ScratchObject> readObjectStore(FileInputStream input) throws IOException
+    private static List<ScratchObject> readObjectStore(ByteBuffer input) throws IOException
     {
         String header = readFixedASCII(input, 10);
         if (!"ObjS\001Stch\001".equals(header)) {
@@ -298,8 +318,13 @@ public class ScratchImport
 
     private static void importScratch(File src, File dest)
     {
+        ImportContext context = new ImportContext();
         try {
-            FileInputStream input = new FileInputStream(src);
+            // Reading the whole file at once is much quicker than reading it a few
+            // bytes at a time, and even large projects (tens of megabytes) fit
+            // comfortably in memory. (ByteBuffers are big-endian, as is the
+            // Scratch format.)
+            ByteBuffer input = ByteBuffer.wrap(Files.readAllBytes(src.toPath()));
         
             readHeader(input);
             List<ScratchObject> objects = readObjectStore(input);
@@ -307,8 +332,9 @@ public class ScratchImport
             Properties props = new Properties();
             props.setProperty("version", GreenfootMain.getAPIVersion().toString());
             for (ScratchObject o : objects) {
-                o.saveInto(dest, props, null);
+                o.saveInto(dest, props, null, context);
             }
+            context.waitForMediaWrites();
             
             File javaFile = new File(dest, "Bubble.java");
             FileWriter javaFileWriter = new FileWriter(javaFile);
@@ -326,8 +352,11 @@ public class ScratchImport
         } catch (IOException e) {
             Debug.reportError("Problem during Scratch import", e);
         }
+        finally {
+            context.close();
+        }
     }
-
+    
     public static File convert(File scratchFile)
     {
         String archiveName = scratchFile.getName();
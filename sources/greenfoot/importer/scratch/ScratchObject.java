@@ -66,9 +66,10 @@ public class ScratchObject
     }
 
     /**
-     * Saves the item (e.g. image, sound, class) in the given project
+     * Saves the item (e.g. image, sound, class) in the given project, as part of
+     * the given import.
      */
-    public File saveInto(File destDir, Properties props, String prefix) throws IOException
+    public File saveInto(File destDir, Properties props, String prefix, ImportContext context) throws IOException
     {
         return null;
     }
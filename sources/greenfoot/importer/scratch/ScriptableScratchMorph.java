@@ -108,7 +108,7 @@ public abstract class ScriptableScratchMorph extends Morph
     protected abstract void constructorContents(StringBuilder acc);
 
     @Override
-    public File saveInto(File destDir, Properties props, String prefix) throws IOException
+    public File saveInto(File destDir, Properties props, String prefix, ImportContext context) throws IOException
     {
         if (javaFile != null) return javaFile;
         
@@ -132,7 +132,7 @@ public abstract class ScriptableScratchMorph extends Morph
         int curCostume = 0;
         for (ImageMedia img : getCostumes()) {
             if (i != 0) acc.append(", ");
-            costumes[i] = img.saveInto(destDir, props, className + "_").getName();
+            costumes[i] = img.saveInto(destDir, props, className + "_", context).getName();
             acc.append("\"").append(costumes[i]).append("\"");
             if (img == imageMedia) {
                 curCostume = i;
@@ -185,11 +185,11 @@ public abstract class ScriptableScratchMorph extends Morph
         javaFileWriter.close();
         
         for (ScratchObject media : getMedia()) {
-            media.saveInto(destDir, props, className + "_");
+            media.saveInto(destDir, props, className + "_", context);
         }
         
         
-        File imageFile = imageMedia.saveInto(destDir, props, className + "_");
+        File imageFile = imageMedia.saveInto(destDir, props, className + "_", context);
         props.setProperty("class." + className + ".image", imageFile.getName());
         
         return javaFile;
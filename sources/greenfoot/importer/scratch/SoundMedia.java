@@ -86,15 +86,12 @@ public class SoundMedia extends ScratchMedia
     }
 
     @Override
-    public File saveInto(File destDir, Properties props, String prefix) throws IOException
+    public File saveInto(File destDir, Properties props, String prefix, ImportContext context) throws IOException
     {
         if (destFile != null) return destFile;
         
         String name = getMediaName();
         
-        // The code for this method is cobbled together from the Scratch/SmallTalk code
-        // and this page: http://wiki.multimedia.cx/index.php?title=IMA_ADPCM
-        
         float sampleRate = getSampleRate();
         //bits per sample can be 2, 3, 4, 5
         int bitsPerSample = getBitsPerSample();
@@ -103,6 +100,39 @@ public class SoundMedia extends ScratchMedia
         if (compressed == null)
             return null; // TODO must be uncompressed?
         
+        File soundsDir = new File(destDir, "sounds");
+        soundsDir.mkdirs();
+        destFile = new File(soundsDir, prefix + name + ".wav");
+        
+        // Decoding and writing the sound can take a while, so may be done in the background:
+        File file = destFile;
+        context.writeMedia(() -> {
+            byte[] uncompressed = decompress(compressed, bitsPerSample);
+            ByteArrayInputStream baiStream = new ByteArrayInputStream(uncompressed);
+            AudioFormat format = new AudioFormat(sampleRate, 16, 1, true, true);
+            AudioInputStream aiStream = new AudioInputStream(baiStream,format,uncompressed.length);
+            try {
+                
+                AudioSystem.write(aiStream,AudioFileFormat.Type.WAVE,file);
+                aiStream.close();
+                baiStream.close();
+            }
+            catch (IOException e) {
+                Debug.reportError("Problem writing converted sound to WAV file", e);
+            }
+        });
+        
+        return destFile;
+    }
+    
+    /**
+     * Decompresses ADPCM sound data to 16-bit big-endian samples.
+     */
+    private static byte[] decompress(byte[] compressed, int bitsPerSample)
+    {
+        // The code for this method is cobbled together from the Scratch/SmallTalk code
+        // and this page: http://wiki.multimedia.cx/index.php?title=IMA_ADPCM
+        
         int uncompressedSamples = (compressed.length * 8) / bitsPerSample; // Length in samples
         byte[] uncompressed = new byte[uncompressedSamples * 2]; // * 2 because we use 16-bits (2 bytes) per sample
         
@@ -153,25 +183,7 @@ public class SoundMedia extends ScratchMedia
             
         }
         
-        
-        File soundsDir = new File(destDir, "sounds");
-        soundsDir.mkdirs();
-        destFile = new File(soundsDir, prefix + name + ".wav");
-        
-        ByteArrayInputStream baiStream = new ByteArrayInputStream(uncompressed);
-        AudioFormat format = new AudioFormat(sampleRate, 16, 1, true, true);
-        AudioInputStream aiStream = new AudioInputStream(baiStream,format,uncompressed.length);
-        try {
-            
-            AudioSystem.write(aiStream,AudioFileFormat.Type.WAVE,destFile);
-            aiStream.close();
-            baiStream.close();
-        }
-        catch (IOException e) {
-            Debug.reportError("Problem writing converted sound to WAV file", e);
-        }
-        
-        return destFile;
+        return uncompressed;
     }
 
     private byte[] getCompressedSamples()
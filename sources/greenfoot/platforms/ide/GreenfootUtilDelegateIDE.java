@@ -88,11 +88,27 @@ public class GreenfootUtilDelegateIDE implements GreenfootUtilDelegate
     @Override
     @OnThread(Tag.Any)
     public Iterable<String> getSoundFiles()
+    {
+        return listProjectDir("sounds");
+    }
+    
+    @Override
+    @OnThread(Tag.Any)
+    public Iterable<String> getImageFiles()
+    {
+        return listProjectDir("images");
+    }
+    
+    /**
+     * List the files in a subdirectory of the project.
+     */
+    @OnThread(Tag.Any)
+    private Iterable<String> listProjectDir(String dir)
     {
         ArrayList<String> files = new ArrayList<>();
         try
         {
-            URL url = getResource("sounds");
+            URL url = getResource(dir);
             if (url != null && "file".equals(url.getProtocol()))
             {
                 for (String file : new File(url.toURI()).list())
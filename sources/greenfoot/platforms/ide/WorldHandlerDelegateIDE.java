@@ -140,6 +140,9 @@ public class WorldHandlerDelegateIDE
             try {
                 Constructor<?> cons = icls.getConstructor(new Class<?>[0]);
                 WorldHandler.getInstance().clearWorldSet();
+                // Decode the scenario's images up front, in parallel, rather than
+                // one by one as the world and its actors are constructed:
+                ImageCache.getInstance().preloadImages(GreenfootUtil.getImageFiles());
                 World newWorld = (World) Simulation.newInstance(cons);
                 if (! WorldHandler.getInstance().checkWorldSet()) {
                     ImageCache.getInstance().clearImageCache();
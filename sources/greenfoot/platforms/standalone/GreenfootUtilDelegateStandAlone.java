@@ -22,8 +22,8 @@
 package greenfoot.platforms.standalone;
 
 import greenfoot.GreenfootImage;
-import greenfoot.UserInfoVisitor;
 import greenfoot.UserInfo;
+import greenfoot.UserInfoVisitor;
 import greenfoot.platforms.GreenfootUtilDelegate;
 import greenfoot.util.GreenfootStorageException;
 import threadchecker.OnThread;
@@ -33,14 +33,13 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.net.InetSocketAddress;
 import java.net.URL;
-import java.nio.BufferUnderflowException;
-import java.nio.ByteBuffer;
-import java.nio.channels.SocketChannel;
-import java.security.AccessControlException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Implementation of GreenfootUtilDelegate for standalone applications.
@@ -48,8 +47,10 @@ import java.util.List;
 @OnThread(Tag.Simulation)
 public class GreenfootUtilDelegateStandAlone implements GreenfootUtilDelegate
 {
-    private SocketChannel socket;
-    private boolean failedLastConnection;
+    /** How long to wait for the storage server to answer a request */
+    private static final long STORAGE_TIMEOUT_SECONDS = 30;
+    
+    private StorageClient storageClient;
     private boolean firstStorageException = true;
     private boolean storageStandalone;
     private String storageHost;
@@ -116,7 +117,23 @@ public class GreenfootUtilDelegateStandAlone implements GreenfootUtilDelegate
     @OnThread(Tag.Any)
     public Iterable<String> getSoundFiles()
     {
-        InputStream is = this.getClass().getClassLoader().getResourceAsStream("soundindex.list");
+        return readIndex("soundindex.list");
+    }
+    
+    @Override
+    @OnThread(Tag.Any)
+    public Iterable<String> getImageFiles()
+    {
+        return readIndex("imageindex.list");
+    }
+    
+    /**
+     * Read a list of files, one per line, written into the JAR when it was exported.
+     */
+    @OnThread(Tag.Any)
+    private Iterable<String> readIndex(String indexName)
+    {
+        InputStream is = this.getClass().getClassLoader().getResourceAsStream(indexName);
         ArrayList<String> r = new ArrayList<String>();
         
         if (is != null)
@@ -150,23 +167,12 @@ public class GreenfootUtilDelegateStandAlone implements GreenfootUtilDelegate
         return this.getClass().getClassLoader().getResource("greenfoot.png").toString();
     }
 
-    /**
-     * Closes the connection (well, silently drops it), but allows
-     * a subsequent connection attempt
-     */
-    private void closeConnection(Exception e)
-    {
-        e.printStackTrace();
-        socket = null;
-        failedLastConnection = false;
-    }
-
     @Override
     public boolean isStorageSupported()
     {
         try
         {
-            ensureStorageConnected();
+            getStorageClient();
             return getCurrentUserInfo() != null;
         }
         catch (GreenfootStorageException e)
@@ -186,27 +192,25 @@ public class GreenfootUtilDelegateStandAlone implements GreenfootUtilDelegate
     }
     
     /**
-     * Tries to connect to the server, if not already connected.
+     * Get the client for the storage server, creating it if necessary.  The client
+     * does not connect until it is first used.
      * 
-     * If it returns without throwing an exception, you can assume you are connected.
+     * <p>The client's methods return futures.  The methods of this class wait for
+     * them, as UserInfo expects, but callers who don't want the simulation thread to
+     * wait on the network may use the client directly.
      * 
-     * @throws GreenfootStorageException if there is a problem
+     * @throws GreenfootStorageException if storage is not supported, or the storage
+     *                                   parameters are invalid
      */
-    private void ensureStorageConnected() throws GreenfootStorageException
+    public StorageClient getStorageClient() throws GreenfootStorageException
     {
-        if (socket != null && socket.isConnected())
-            return; //Already connected
-        
-        if ((socket == null || !socket.isConnected()) && failedLastConnection)
-            throw new GreenfootStorageException("Already failed to connect to storage server on last attempt");
-            // We don't continually try to reconnect -- probably a firewall blocked us
+        if (storageClient != null)
+            return storageClient;
         
         if (!storageStandalone)
             throw new GreenfootStorageException("Standalone storage not supported");
             // This means the gallery didn't give us the go-ahead via an applet param
         
-        System.err.println("Attempting to reconnect to storage server");
-        
         int userId;
         try
         {
@@ -229,184 +233,76 @@ public class GreenfootUtilDelegateStandAlone implements GreenfootUtilDelegate
             throw new GreenfootStorageException("Error connecting to storage server -- invalid port: " + e.getMessage());
         }
         
-        try
+        if (storagePasscode == null)
+            throw new GreenfootStorageException("Could not find passcode to send back to server");
+        
+        byte[] passcode = new byte[storagePasscode.length() / 2];
+        for (int i = 0; i < passcode.length; i++)
         {
-            if (storagePasscode == null)
-                throw new GreenfootStorageException("Could not find passcode to send back to server");
-            
-            failedLastConnection = true; // True unless we reach the end
-            
-            socket = SocketChannel.open();
-            if (!socket.connect(new InetSocketAddress(storageHost, port)))
-            {
-                socket = null;
-                throw new GreenfootStorageException("Could not connect to storage server");
-            }
-            
-            ByteBuffer buffer = makeRequest((storagePasscode.length() / 2) + 4 + 4);
-            for (int i = 0; i < storagePasscode.length() / 2; i++)
-            {
-                // Because bytes are parsed as signed, we must use short to be able to pass bytes above 0x80
-                byte b = (byte)(0xFF & Short.parseShort(storagePasscode.substring(i * 2, i * 2 + 2), 16));
-                buffer.put(b);
-            }
-            try
-            {
-                buffer.putInt(Integer.parseInt(storageScenarioId));
-                buffer.putInt(userId);
-            }
-            catch (NumberFormatException e)
-            {
-                socket = null;
-                throw new GreenfootStorageException("Invalid scenario ID: " + e.getMessage());
-            }
-            buffer.flip();
-            socket.write(buffer);
-            
-            failedLastConnection = false; // We succeeded, so didn't fail!
+            // Because bytes are parsed as signed, we must use short to be able to pass bytes above 0x80
+            passcode[i] = (byte)(0xFF & Short.parseShort(storagePasscode.substring(i * 2, i * 2 + 2), 16));
         }
-        catch (IOException e)
+        
+        int scenarioId;
+        try
         {
-            socket = null;
-            throw new GreenfootStorageException("Error connecting to storage server: " + e.getMessage());
-        }
-        catch (AccessControlException ace) {
-            if (socket != null) {
-                try {
-                    socket.close();
-                }
-                catch (IOException ioe) {}
-                socket = null;
-            }
+            scenarioId = Integer.parseInt(storageScenarioId);
         }
-    }
-    
-    private ByteBuffer makeRequest(int plusBytes)
-    {
-        ByteBuffer buf = ByteBuffer.allocate(4 + plusBytes);
-        buf.putInt(plusBytes); // bytes after this point
-        
-        return buf;
-    }
-    
-    private void readFullBuffer(ByteBuffer buf, int amount) throws IOException
-    {
-        int totalBytes = 0;
-        while (totalBytes < amount)
+        catch (NumberFormatException e)
         {
-            int bytesRead = socket.read(buf);
-            if (bytesRead > 0)
-                totalBytes += bytesRead;
-            else
-                throw new IOException("Connection unexpectedly closed by remote end");
+            throw new GreenfootStorageException("Invalid scenario ID: " + e.getMessage());
         }
-        buf.flip();
+        
+        storageClient = new StorageClient(storageHost, port, passcode, scenarioId, userId);
+        return storageClient;
     }
     
-    private ByteBuffer readResponse() throws IOException
-    {
-        ByteBuffer buf = ByteBuffer.allocate(4);
-        readFullBuffer(buf, 4);
-        int size = buf.getInt();
-        buf = ByteBuffer.allocate(size);
-        readFullBuffer(buf, size);
-        return buf;
-    }
-
-    @Override
-    public UserInfo getCurrentUserInfo()
+    /**
+     * Wait for the result of a storage request.  If the request failed, or did
+     * not complete within STORAGE_TIMEOUT_SECONDS, the reason is printed and the
+     * failure value is returned instead.
+     */
+    private static <T> T await(CompletableFuture<T> request, T failureValue)
     {
         try
         {
-            ensureStorageConnected();
-            ByteBuffer buf = makeRequest(1);
-            buf.put((byte) 1);
-            buf.flip();
-            socket.write(buf);
-            
-            buf = readResponse();
-            if (1 != buf.getInt()) // Should be exactly one user
-                return null; // Error, or we're not logged in
-            return readLines(buf, 1, true)[0];
+            return request.get(STORAGE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
         }
-        catch (IOException e)
+        catch (TimeoutException e)
         {
-            closeConnection(e);
-            //throw new GreenfootStorageException("Error communicating with server: " + e.getMessage());
-            return null;
+            System.err.println("Timed out waiting for storage server");
+            return failureValue;
         }
-        catch (BufferUnderflowException e)
+        catch (ExecutionException e)
         {
-            closeConnection(e);
-            //throw new GreenfootStorageException("Server sent aborted message");
-            return null;
+            e.getCause().printStackTrace();
+            return failureValue;
         }
-        catch (GreenfootStorageException e)
+        catch (InterruptedException e)
         {
-            closeConnection(e);
-            return null;
+            // The simulation thread is interrupted when it is paused or aborted;
+            // we just give up on the request, leaving the interrupt for the
+            // simulation to see:
+            Thread.currentThread().interrupt();
+            return failureValue;
         }
     }
-    
-    private static String getString(ByteBuffer buf) throws BufferUnderflowException
-    {
-        int len = buf.getShort(); //2-bytes for length
-        if (len == -1)
-            return null;
-        
-        char[] cs = new char[len];
-        for (int i = 0; i < len; i++)
-        {
-            cs[i] = buf.getChar();
-        }
-        return new String(cs);
-    }
-    
-    private static void putString(ByteBuffer buf, String value)
+
+    @Override
+    public UserInfo getCurrentUserInfo()
     {
-        if (value == null)
-        {
-            buf.putShort((short) -1);
-        }
-        else
+        try
         {
-            buf.putShort((short)value.length()); //2-bytes for length
-            for (int i = 0; i < value.length(); i++)
-            {
-                buf.putChar(value.charAt(i));
-            }
+            // The client reads the data on its own thread; only update the
+            // shared instance here, on the caller's thread:
+            UserInfo info = await(getStorageClient().getCurrentUserInfo(), null);
+            return info == null ? null : UserInfoVisitor.setMyInfo(info);
         }
-    }
-
-    private UserInfo[] readLines(ByteBuffer buf, int numLines, boolean useSingleton) throws BufferUnderflowException
-    {
-        // Read number of ints then number of Strings (username not included)
-        int numInts = buf.getInt();
-        int numStrings = buf.getInt();
-        
-        UserInfo[] r = new UserInfo[numLines]; 
-        
-        for (int line = 0; line < numLines; line++)
+        catch (GreenfootStorageException e)
         {
-            String userName = getString(buf);
-            int score = buf.getInt();
-            int rank = buf.getInt();
-            r[line] = UserInfoVisitor.allocate(userName, rank, useSingleton ? getUserName() : null);
-            r[line].setScore(score);
-            for (int i = 0; i < numInts; i++)
-            {
-                int x = buf.getInt();
-                if (i < UserInfo.NUM_INTS)
-                    r[line].setInt(i, x);
-            }
-            for (int i = 0; i < numStrings; i++)
-            {
-                String s = getString(buf);
-                if (i < UserInfo.NUM_STRINGS)
-                    r[line].setString(i, s);
-            }
+            e.printStackTrace();
+            return null;
         }
-        return r;
     }
 
     @Override
@@ -414,99 +310,25 @@ public class GreenfootUtilDelegateStandAlone implements GreenfootUtilDelegate
     {
         try
         {
-            ensureStorageConnected();
-            int payloadLength = 0;
-            payloadLength += 4 + 4 + (1 + UserInfo.NUM_INTS) * 4;
-            for (int i = 0; i < UserInfo.NUM_STRINGS; i++)
-                payloadLength += stringSize(data.getString(i));
-            
-            ByteBuffer buf = makeRequest(1 + payloadLength);
-            buf.put((byte) 2);
-            buf.putInt(data.getScore());
-            buf.putInt(UserInfo.NUM_INTS);
-            buf.putInt(UserInfo.NUM_STRINGS);
-            for (int i = 0; i < UserInfo.NUM_INTS; i++)
-                buf.putInt(data.getInt(i));
-            for (int i = 0; i < UserInfo.NUM_STRINGS; i++)
-                putString(buf, data.getString(i));
-            buf.flip();
-            socket.write(buf);
-            
-            buf = readResponse();
-            byte code = buf.get();
-            if (code != 0)
-            {
-                // Connection will be closed in catch block beneath:
-                throw new GreenfootStorageException("Error storing data, code: " + Byte.toString(code));
-            }
-            
-            return true;
-        }
-        catch (IOException e)
-        {
-            closeConnection(e);
-            //throw new GreenfootStorageException("Error communicating with server: " + e.getMessage());
-            return false;
-        }
-        catch (BufferUnderflowException e)
-        {
-            closeConnection(e);
-            //throw new GreenfootStorageException("Server sent aborted message");
-            return false;
+            return await(getStorageClient().store(data), false);
         }
         catch (GreenfootStorageException e)
         {
-            closeConnection(e);
+            e.printStackTrace();
             return false;
         }
     }
 
-    private static int stringSize(String string)
-    {
-        if (string == null)
-            return 2;
-        else
-            return 2 + (2 * string.length());
-    }
-
     @Override
     public List<UserInfo> getTopUserInfo(int limit)
     {
         try
         {
-            ensureStorageConnected();
-            ByteBuffer buf = makeRequest(1 + 4);
-            buf.put((byte) 3);
-            buf.putInt(limit);
-            buf.flip();
-            socket.write(buf);
-            
-            buf = readResponse();
-            int numUsers = buf.getInt();
-            UserInfo[] storage = readLines(buf, numUsers, false);
-            
-            List<UserInfo> r = new ArrayList<UserInfo>();
-            for (UserInfo s : storage)
-            {
-                r.add(s);
-            }
-            return r;
-        }
-        catch (IOException e)
-        {
-            closeConnection(e);
-            //System.err.println("Error communicating with server: " + e.getMessage());
-            return null;
-        }
-        catch (BufferUnderflowException e)
-        {
-            closeConnection(e);
-            //throw new GreenfootStorageException("Server sent aborted message");
-            return null;
+            return await(getStorageClient().getTopUserInfo(limit), null);
         }
         catch (GreenfootStorageException e)
         {
-            closeConnection(e);
+            e.printStackTrace();
             return null;
         }
     }
@@ -516,42 +338,11 @@ public class GreenfootUtilDelegateStandAlone implements GreenfootUtilDelegate
     {
         try
         {
-            ensureStorageConnected();
-            ByteBuffer buf = makeRequest(1 + 4);
-            buf.put((byte) 5);
-            buf.putInt(limit);
-            buf.flip();
-            socket.write(buf);
-            
-            buf = readResponse();
-            int numUsers = buf.getInt();
-            if (numUsers < 0)
-                return null; // Error, or we're not logged in
-            
-            UserInfo[] storage = readLines(buf, numUsers, false);
-            
-            List<UserInfo> r = new ArrayList<UserInfo>();
-            for (UserInfo s : storage)
-            {
-                r.add(s);
-            }
-            return r;
-        }
-        catch (IOException e)
-        {
-            closeConnection(e);
-            //System.err.println("Error communicating with server: " + e.getMessage());
-            return null;
-        }
-        catch (BufferUnderflowException e)
-        {
-            closeConnection(e);
-            //throw new GreenfootStorageException("Server sent aborted message");
-            return null;
+            return await(getStorageClient().getNearbyUserInfo(limit), null);
         }
         catch (GreenfootStorageException e)
         {
-            closeConnection(e);
+            e.printStackTrace();
             return null;
         }
     }
@@ -564,41 +355,11 @@ public class GreenfootUtilDelegateStandAlone implements GreenfootUtilDelegate
         
         try
         {
-            ensureStorageConnected();
-            ByteBuffer buf = makeRequest(1 + 2 + (2*userName.length()));
-            buf.put((byte) 4);
-            putString(buf, userName);
-            buf.flip();
-            socket.write(buf);
-            
-            buf = readResponse();
-            int numBytes = buf.getInt();
-            byte[] fileData = new byte[numBytes];
-            buf.get(fileData);
-            
-            // We can't create a temporary file and read that back in,
-            // because we are in an applet, so we must pass the file contents
-            // directly to a hidden constructor:
-        
-            try
-            {
-                return UserInfoVisitor.readImage(fileData);
-            }
-            catch (IllegalArgumentException e)
-            {
-                // We can't read the image, not a permanent failure:
-                return null;
-            }
-        }
-        catch (IOException e)
-        {
-            closeConnection(e);
-            //throw new GreenfootStorageException("Error communicating with server: " + e.getMessage());
-            return null;
+            return await(getStorageClient().getUserImage(userName), null);
         }
         catch (GreenfootStorageException e)
         {
-            closeConnection(e);
+            e.printStackTrace();
             return null;
         }
     }
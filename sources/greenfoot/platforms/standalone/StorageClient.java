@@ -0,0 +1,744 @@
+/*
+ This file is part of the Greenfoot program.
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.platforms.standalone;
+
+import greenfoot.GreenfootImage;
+import greenfoot.UserInfo;
+import greenfoot.UserInfoVisitor;
+import greenfoot.util.GreenfootStorageException;
+import threadchecker.OnThread;
+import threadchecker.Tag;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * An asynchronous client for the storage server used by exported scenarios to hold
+ * user data such as high scores.
+ * 
+ * <p>Every request returns a future straight away, so the simulation thread only waits
+ * on the network if it chooses to. Requests are written to the server from a single
+ * background thread without waiting for the responses to earlier requests. The server
+ * answers requests in the order it receives them, so a reader thread completes the
+ * futures in that same order.
+ * 
+ * <p>A store which has not yet been sent is replaced by a later one rather than sending
+ * both. The results of top and nearby requests are cached for a short time (see
+ * {@link #setCacheTimeToLive(long)}), as scenarios often ask for them every time they
+ * draw a score board.
+ */
+@OnThread(Tag.Any)
+public class StorageClient
+{
+    /** The default time for which top and nearby results are cached, in milliseconds */
+    public static final long DEFAULT_CACHE_TTL = 2000;
+    
+    // The request codes understood by the server:
+    static final byte GET_CURRENT_USER = 1;
+    static final byte STORE_CURRENT_USER = 2;
+    static final byte GET_TOP_USERS = 3;
+    static final byte GET_USER_IMAGE = 4;
+    static final byte GET_NEARBY_USERS = 5;
+    
+    private final String host;
+    private final int port;
+    private final byte[] handshake;
+    
+    private final ExecutorService sender = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "Greenfoot storage client");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    // All fields below are guarded by this.
+    
+    // The connection in use, or null if we are not connected:
+    private Connection connection;
+    private boolean failedLastConnection;
+    
+    // A store request which has not yet been sent, and the latest message for it:
+    private Request<Boolean> queuedStore;
+    private ByteBuffer queuedStoreMessage;
+    
+    private final Map<Integer, CachedList> topCache = new HashMap<>();
+    private final Map<Integer, CachedList> nearbyCache = new HashMap<>();
+    private long cacheTimeToLive = DEFAULT_CACHE_TTL;
+    
+    private long requestsSent;
+    private long cacheHits;
+    private long coalescedStores;
+    private int maxInFlight;
+    
+    /**
+     * Statistics about the use of the client.
+     */
+    public static class Statistics
+    {
+        private final long requestsSent;
+        private final long cacheHits;
+        private final long coalescedStores;
+        private final int maxInFlight;
+        
+        public Statistics(long requestsSent, long cacheHits, long coalescedStores, int maxInFlight)
+        {
+            this.requestsSent = requestsSent;
+            this.cacheHits = cacheHits;
+            this.coalescedStores = coalescedStores;
+            this.maxInFlight = maxInFlight;
+        }
+        
+        /**
+         * The number of requests written to the server.
+         */
+        public long getRequestsSent()
+        {
+            return requestsSent;
+        }
+        
+        /**
+         * The number of top or nearby requests answered from the cache.
+         */
+        public long getCacheHits()
+        {
+            return cacheHits;
+        }
+        
+        /**
+         * The number of stores which replaced an earlier store before it was sent.
+         */
+        public long getCoalescedStores()
+        {
+            return coalescedStores;
+        }
+        
+        /**
+         * The largest number of requests which have been sent and were awaiting
+         * a response at the same time.
+         */
+        public int getMaxInFlight()
+        {
+            return maxInFlight;
+        }
+    }
+    
+    /**
+     * Create a client for the given server. No connection is made until the first request.
+     * 
+     * @param host        The host name of the storage server
+     * @param port        The port of the storage server
+     * @param passcode    The passcode the server gave the scenario
+     * @param scenarioId  The ID of the scenario on the server
+     * @param userId      The ID of the logged-in user
+     */
+    public StorageClient(String host, int port, byte[] passcode, int scenarioId, int userId)
+    {
+        this.host = host;
+        this.port = port;
+        
+        ByteBuffer buf = makeRequest(passcode.length + 4 + 4);
+        buf.put(passcode);
+        buf.putInt(scenarioId);
+        buf.putInt(userId);
+        this.handshake = buf.array();
+    }
+    
+    /**
+     * Get the data stored for the current user. The future's value is null if
+     * the user is not logged in.
+     * 
+     * <p>The value is a new UserInfo, read on the connection's reader thread. To
+     * update the shared instance for the current user, pass it to
+     * {@link UserInfoVisitor#setMyInfo} on the thread which uses that instance.
+     */
+    public CompletableFuture<UserInfo> getCurrentUserInfo()
+    {
+        ByteBuffer buf = makeRequest(1);
+        buf.put(GET_CURRENT_USER);
+        buf.flip();
+        return submit(buf, response -> {
+            if (1 != response.getInt()) // Should be exactly one user
+                return null; // Error, or we're not logged in
+            return readLines(response, 1)[0];
+        });
+    }
+    
+    /**
+     * Store the data for the current user. The data is copied before returning,
+     * so the caller may carry on modifying it.
+     * 
+     * <p>If an earlier store has not been sent yet, this data replaces it, and
+     * the future from the earlier store is returned.
+     */
+    public CompletableFuture<Boolean> store(UserInfo data)
+    {
+        ByteBuffer message = makeStoreRequest(data);
+        Request<Boolean> request;
+        synchronized (this) {
+            // The scores may have changed, so the cached lists may be out of date:
+            topCache.clear();
+            nearbyCache.clear();
+            
+            if (queuedStore != null) {
+                queuedStoreMessage = message;
+                coalescedStores++;
+                return queuedStore.future;
+            }
+            request = new Request<>(StorageClient::readStoreResult);
+            queuedStore = request;
+            queuedStoreMessage = message;
+        }
+        
+        sender.execute(() -> {
+            ByteBuffer latest;
+            synchronized (StorageClient.this) {
+                latest = queuedStoreMessage;
+                queuedStore = null;
+                queuedStoreMessage = null;
+            }
+            send(request, latest);
+        });
+        return request.future;
+    }
+    
+    /**
+     * Get the data of the users with the highest scores. The future's value is
+     * null if there was a problem.
+     */
+    public CompletableFuture<List<UserInfo>> getTopUserInfo(int limit)
+    {
+        return getCachedList(topCache, GET_TOP_USERS, limit);
+    }
+    
+    /**
+     * Get the data of the users with scores near the current user's. The
+     * future's value is null if there was a problem, or the user is not logged in.
+     */
+    public CompletableFuture<List<UserInfo>> getNearbyUserInfo(int limit)
+    {
+        return getCachedList(nearbyCache, GET_NEARBY_USERS, limit);
+    }
+    
+    /**
+     * Get the image of the given user. The future's value is null if the server's
+     * image could not be read.
+     */
+    public CompletableFuture<GreenfootImage> getUserImage(String userName)
+    {
+        ByteBuffer buf = makeRequest(1 + stringSize(userName));
+        buf.put(GET_USER_IMAGE);
+        putString(buf, userName);
+        buf.flip();
+        return submit(buf, response -> {
+            int numBytes = response.getInt();
+            byte[] fileData = new byte[numBytes];
+            response.get(fileData);
+            
+            // We pass the file contents directly to a hidden constructor,
+            // rather than writing them out to a temporary file:
+            try {
+                return UserInfoVisitor.readImage(fileData);
+            }
+            catch (IllegalArgumentException e) {
+                // We can't read the image, not a permanent failure:
+                return null;
+            }
+        });
+    }
+    
+    /**
+     * Set how long the results of top and nearby requests are cached for,
+     * in milliseconds. Zero turns off caching.
+     */
+    public synchronized void setCacheTimeToLive(long millis)
+    {
+        cacheTimeToLive = millis;
+        topCache.clear();
+        nearbyCache.clear();
+    }
+    
+    /**
+     * Get statistics about the use of this client.
+     */
+    public synchronized Statistics getStatistics()
+    {
+        return new Statistics(requestsSent, cacheHits, coalescedStores, maxInFlight);
+    }
+    
+    /**
+     * Close the connection, failing any requests still awaiting a response.
+     * The client must not be used afterwards.
+     */
+    public void close()
+    {
+        Connection c;
+        synchronized (this) {
+            c = connection;
+            connection = null;
+        }
+        sender.shutdown();
+        if (c != null) {
+            c.close(new GreenfootStorageException("Storage client closed"));
+        }
+    }
+    
+    /**
+     * Get a top or nearby list, from the cache if a request for the same number
+     * of users was made recently enough (whether or not it has completed yet).
+     */
+    private CompletableFuture<List<UserInfo>> getCachedList(Map<Integer, CachedList> cache, byte command, int limit)
+    {
+        CompletableFuture<List<UserInfo>> result;
+        synchronized (this) {
+            long now = System.nanoTime();
+            CachedList cached = cache.get(limit);
+            if (cached != null && now - cached.time < cacheTimeToLive * 1000000L
+                    && !cached.result.isCompletedExceptionally()) {
+                cacheHits++;
+                result = cached.result;
+            }
+            else {
+                ByteBuffer buf = makeRequest(1 + 4);
+                buf.put(command);
+                buf.putInt(limit);
+                buf.flip();
+                result = submit(buf, response -> {
+                    int numUsers = response.getInt();
+                    if (numUsers < 0)
+                        return null; // Error, or we're not logged in
+                    return Arrays.asList(readLines(response, numUsers));
+                });
+                cache.put(limit, new CachedList(now, result));
+            }
+        }
+        // Callers may modify the list and the UserInfo objects in it, so each
+        // one gets its own copies:
+        return result.thenApply(list -> {
+            if (list == null)
+                return null;
+            List<UserInfo> copy = new ArrayList<>(list.size());
+            for (UserInfo info : list) {
+                copy.add(UserInfoVisitor.copy(info));
+            }
+            return copy;
+        });
+    }
+    
+    private <T> CompletableFuture<T> submit(ByteBuffer message, ResponseReader<T> reader)
+    {
+        Request<T> request = new Request<>(reader);
+        sender.execute(() -> send(request, message));
+        return request.future;
+    }
+    
+    /**
+     * Write a request to the server, connecting first if necessary. Only called
+     * on the sender thread.
+     */
+    private void send(Request<?> request, ByteBuffer message)
+    {
+        Connection c;
+        try {
+            c = ensureConnected();
+        }
+        catch (GreenfootStorageException e) {
+            request.fail(e);
+            return;
+        }
+        
+        try {
+            int inFlight = c.send(request, message);
+            synchronized (this) {
+                requestsSent++;
+                maxInFlight = Math.max(maxInFlight, inFlight);
+            }
+        }
+        catch (IOException e) {
+            connectionFailed(c, e);
+            request.fail(e);
+        }
+    }
+    
+    /**
+     * Tries to connect to the server, if not already connected. Only called on
+     * the sender thread.
+     * 
+     * @throws GreenfootStorageException if there is a problem
+     */
+    private Connection ensureConnected() throws GreenfootStorageException
+    {
+        synchronized (this) {
+            if (connection != null)
+                return connection; //Already connected
+            
+            if (failedLastConnection)
+                throw new GreenfootStorageException("Already failed to connect to storage server on last attempt");
+                // We don't continually try to reconnect -- probably a firewall blocked us
+        }
+        
+        System.err.println("Attempting to reconnect to storage server");
+        
+        SocketChannel channel = null;
+        try {
+            channel = SocketChannel.open();
+            if (!channel.connect(new InetSocketAddress(host, port)))
+                throw new IOException("Could not connect to storage server");
+            
+            ByteBuffer buf = ByteBuffer.wrap(handshake);
+            while (buf.hasRemaining()) {
+                channel.write(buf);
+            }
+        }
+        catch (IOException | SecurityException e) {
+            if (channel != null) {
+                try {
+                    channel.close();
+                }
+                catch (IOException ioe) {}
+            }
+            synchronized (this) {
+                failedLastConnection = true;
+            }
+            throw new GreenfootStorageException("Error connecting to storage server: " + e.getMessage());
+        }
+        
+        Connection c = new Connection(channel);
+        synchronized (this) {
+            connection = c;
+        }
+        Thread reader = new Thread(c::readResponses, "Greenfoot storage reader");
+        reader.setDaemon(true);
+        reader.start();
+        return c;
+    }
+    
+    /**
+     * Closes a failed connection, but allows a subsequent connection attempt.
+     */
+    private void connectionFailed(Connection c, Exception e)
+    {
+        synchronized (this) {
+            if (connection == c) {
+                connection = null;
+            }
+        }
+        c.close(e);
+    }
+    
+    private static ByteBuffer makeStoreRequest(UserInfo data)
+    {
+        int payloadLength = 0;
+        payloadLength += 4 + 4 + (1 + UserInfo.NUM_INTS) * 4;
+        for (int i = 0; i < UserInfo.NUM_STRINGS; i++)
+            payloadLength += stringSize(data.getString(i));
+        
+        ByteBuffer buf = makeRequest(1 + payloadLength);
+        buf.put(STORE_CURRENT_USER);
+        buf.putInt(data.getScore());
+        buf.putInt(UserInfo.NUM_INTS);
+        buf.putInt(UserInfo.NUM_STRINGS);
+        for (int i = 0; i < UserInfo.NUM_INTS; i++)
+            buf.putInt(data.getInt(i));
+        for (int i = 0; i < UserInfo.NUM_STRINGS; i++)
+            putString(buf, data.getString(i));
+        buf.flip();
+        return buf;
+    }
+    
+    private static Boolean readStoreResult(ByteBuffer response) throws GreenfootStorageException
+    {
+        byte code = response.get();
+        if (code != 0)
+            throw new GreenfootStorageException("Error storing data, code: " + Byte.toString(code));
+        return true;
+    }
+    
+    /**
+     * Read the given number of users' data from a response, into new UserInfo objects.
+     */
+    private static UserInfo[] readLines(ByteBuffer buf, int numLines) throws BufferUnderflowException
+    {
+        // Read number of ints then number of Strings (username not included)
+        int numInts = buf.getInt();
+        int numStrings = buf.getInt();
+        
+        UserInfo[] r = new UserInfo[numLines]; 
+        
+        for (int line = 0; line < numLines; line++)
+        {
+            String userName = getString(buf);
+            int score = buf.getInt();
+            int rank = buf.getInt();
+            r[line] = UserInfoVisitor.allocate(userName, rank, null);
+            r[line].setScore(score);
+            for (int i = 0; i < numInts; i++)
+            {
+                int x = buf.getInt();
+                if (i < UserInfo.NUM_INTS)
+                    r[line].setInt(i, x);
+            }
+            for (int i = 0; i < numStrings; i++)
+            {
+                String s = getString(buf);
+                if (i < UserInfo.NUM_STRINGS)
+                    r[line].setString(i, s);
+            }
+        }
+        return r;
+    }
+    
+    /**
+     * Make a buffer for a message of the given length, preceded by the length itself
+     * as every message in the protocol is.
+     */
+    static ByteBuffer makeRequest(int plusBytes)
+    {
+        ByteBuffer buf = ByteBuffer.allocate(4 + plusBytes);
+        buf.putInt(plusBytes); // bytes after this point
+        
+        return buf;
+    }
+    
+    /**
+     * Read a complete message from the channel, without its length.
+     */
+    static ByteBuffer readResponse(SocketChannel channel) throws IOException
+    {
+        ByteBuffer buf = ByteBuffer.allocate(4);
+        readFullBuffer(channel, buf);
+        int size = buf.getInt();
+        buf = ByteBuffer.allocate(size);
+        readFullBuffer(channel, buf);
+        return buf;
+    }
+    
+    private static void readFullBuffer(SocketChannel channel, ByteBuffer buf) throws IOException
+    {
+        while (buf.hasRemaining())
+        {
+            int bytesRead = channel.read(buf);
+            if (bytesRead < 0)
+                throw new IOException("Connection unexpectedly closed by remote end");
+        }
+        buf.flip();
+    }
+    
+    static String getString(ByteBuffer buf) throws BufferUnderflowException
+    {
+        int len = buf.getShort(); //2-bytes for length
+        if (len == -1)
+            return null;
+        
+        char[] cs = new char[len];
+        for (int i = 0; i < len; i++)
+        {
+            cs[i] = buf.getChar();
+        }
+        return new String(cs);
+    }
+    
+    static void putString(ByteBuffer buf, String value)
+    {
+        if (value == null)
+        {
+            buf.putShort((short) -1);
+        }
+        else
+        {
+            buf.putShort((short)value.length()); //2-bytes for length
+            for (int i = 0; i < value.length(); i++)
+            {
+                buf.putChar(value.charAt(i));
+            }
+        }
+    }
+    
+    static int stringSize(String string)
+    {
+        if (string == null)
+            return 2;
+        else
+            return 2 + (2 * string.length());
+    }
+    
+    /**
+     * Turns the body of a response into the value of a request's future.
+     */
+    @FunctionalInterface
+    private static interface ResponseReader<T>
+    {
+        T read(ByteBuffer response) throws GreenfootStorageException;
+    }
+    
+    /**
+     * A request which is waiting to be sent, or for its response.
+     */
+    private static class Request<T>
+    {
+        private final ResponseReader<T> reader;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        
+        Request(ResponseReader<T> reader)
+        {
+            this.reader = reader;
+        }
+        
+        /**
+         * Complete the request with the value read from the response.
+         * 
+         * @throws RuntimeException if the response could not be understood (other
+         *                          than being too short), after failing the request
+         */
+        void complete(ByteBuffer response)
+        {
+            try {
+                future.complete(reader.read(response));
+            }
+            catch (BufferUnderflowException e) {
+                future.completeExceptionally(new GreenfootStorageException("Server sent aborted message"));
+            }
+            catch (GreenfootStorageException e) {
+                future.completeExceptionally(e);
+            }
+            catch (RuntimeException e) {
+                future.completeExceptionally(e);
+                throw e;
+            }
+        }
+        
+        void fail(Exception e)
+        {
+            future.completeExceptionally(e);
+        }
+    }
+    
+    /**
+     * A top or nearby list, and when it was requested.
+     */
+    private static class CachedList
+    {
+        private final long time;
+        private final CompletableFuture<List<UserInfo>> result;
+        
+        CachedList(long time, CompletableFuture<List<UserInfo>> result)
+        {
+            this.time = time;
+            this.result = result;
+        }
+    }
+    
+    /**
+     * An open connection to the server, with the requests which have been
+     * written to it and are awaiting a response.
+     */
+    private class Connection
+    {
+        private final SocketChannel channel;
+        // Guarded by this:
+        private final Deque<Request<?>> awaitingResponse = new ArrayDeque<>();
+        private boolean closed;
+        
+        Connection(SocketChannel channel)
+        {
+            this.channel = channel;
+        }
+        
+        /**
+         * Write a request to the server. Only called on the sender thread.
+         * 
+         * @return The number of requests now awaiting a response.
+         */
+        int send(Request<?> request, ByteBuffer message) throws IOException
+        {
+            int inFlight;
+            synchronized (this) {
+                if (closed)
+                    throw new IOException("Connection to storage server closed");
+                awaitingResponse.add(request);
+                inFlight = awaitingResponse.size();
+            }
+            while (message.hasRemaining()) {
+                channel.write(message);
+            }
+            return inFlight;
+        }
+        
+        /**
+         * Read responses and complete the requests awaiting them, in order, until
+         * the connection fails or is closed. Runs on the connection's reader thread.
+         * If a response can't be understood, the connection is failed, so that no
+         * request is left waiting for a response which will never come.
+         */
+        void readResponses()
+        {
+            try {
+                while (true) {
+                    ByteBuffer response = readResponse(channel);
+                    Request<?> request;
+                    synchronized (this) {
+                        request = awaitingResponse.poll();
+                    }
+                    if (request == null)
+                        throw new IOException("Unexpected response from storage server");
+                    request.complete(response);
+                }
+            }
+            catch (IOException | RuntimeException e) {
+                connectionFailed(this, e);
+            }
+        }
+        
+        /**
+         * Close the connection, failing any requests still awaiting a response.
+         */
+        void close(Exception cause)
+        {
+            List<Request<?>> failed;
+            synchronized (this) {
+                if (closed)
+                    return;
+                closed = true;
+                failed = new ArrayList<>(awaitingResponse);
+                awaitingResponse.clear();
+            }
+            try {
+                channel.close();
+            }
+            catch (IOException e) {}
+            for (Request<?> request : failed) {
+                request.fail(cause);
+            }
+        }
+    }
+}
@@ -21,12 +21,17 @@
  */
 package greenfoot.sound;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.net.URL;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
 
 import javax.sound.sampled.AudioFormat;
 import javax.sound.sampled.AudioInputStream;
@@ -34,45 +39,386 @@ import javax.sound.sampled.AudioSystem;
 import javax.sound.sampled.UnsupportedAudioFileException;
 
 /**
- * A cache for soundclip data.
+ * A cache for soundclip data, decoded to PCM. Clips which are in use are always
+ * kept; clips which are not in use are kept, least recently used first, up to a
+ * limit on their total size.
+ * 
+ * <p>Clips can be decoded ahead of time, in the background (see
+ * {@link #decodeAhead(URL)}), so that they do not have to be decoded when they
+ * are first played.
  * 
  * @author Davin McCall
  */
 public class ClipCache
 {
-    /** Data for clips that aren't currently in use */
-    private LinkedHashMap<String,ClipData> freeClips = new LinkedHashMap<String,ClipData>();
-    private int numberFreeClips = 0;
+    /** Default limit on the size of the data for clips that aren't in use */
+    public static final long DEFAULT_MAX_FREE_BYTES = 16L * 1024 * 1024;
+    
+    private static ClipCache instance = new ClipCache();
     
-    private static int MAX_CACHED_CLIPS = 20;
+    /** Number of threads used to decode clips ahead of time */
+    private static final int DECODE_THREADS = Runtime.getRuntime().availableProcessors();
+    
+    /** Data for clips that aren't currently in use, least recently used first */
+    private LinkedHashMap<String,ClipData> freeClips = new LinkedHashMap<String,ClipData>(16, 0.75f, true);
+    private long freeBytes;
+    private long maxFreeBytes;
     
     /** Data for clips that are in use */
     private Map<String,ClipData> cachedClips = new HashMap<String,ClipData>();
     
-    public synchronized ClipData getCachedClip(URL url)
+    /** Clips being decoded */
+    private Map<String,FutureTask<ClipData>> decoding = new HashMap<String,FutureTask<ClipData>>();
+    private ExecutorService decodeExecutor;
+    
+    private long hits;
+    private long misses;
+    private long decodes;
+    private long totalDecodeTime;
+    private long maxDecodeTime;
+    
+    /**
+     * Statistics about the use of the cache.
+     */
+    public static class Statistics
+    {
+        private final long hits;
+        private final long misses;
+        private final long cachedBytes;
+        private final long decodes;
+        private final long totalDecodeTime;
+        private final long maxDecodeTime;
+        
+        public Statistics(long hits, long misses, long cachedBytes, long decodes,
+                long totalDecodeTime, long maxDecodeTime)
+        {
+            this.hits = hits;
+            this.misses = misses;
+            this.cachedBytes = cachedBytes;
+            this.decodes = decodes;
+            this.totalDecodeTime = totalDecodeTime;
+            this.maxDecodeTime = maxDecodeTime;
+        }
+        
+        /**
+         * The number of requests for a clip which had been decoded (or was being
+         * decoded ahead of time).
+         */
+        public long getHits()
+        {
+            return hits;
+        }
+        
+        /**
+         * The number of requests for a clip which had to be decoded there and then.
+         */
+        public long getMisses()
+        {
+            return misses;
+        }
+        
+        /**
+         * The fraction of requests which were hits, between 0 and 1.
+         */
+        public double getHitRate()
+        {
+            long requests = hits + misses;
+            return requests == 0 ? 0 : (double) hits / requests;
+        }
+        
+        /**
+         * The size of the data of all clips held, in use or not, in bytes.
+         */
+        public long getCachedBytes()
+        {
+            return cachedBytes;
+        }
+        
+        /**
+         * The number of clips decoded.
+         */
+        public long getDecodes()
+        {
+            return decodes;
+        }
+        
+        /**
+         * The mean time taken to decode a clip, in nanoseconds.
+         */
+        public long getMeanDecodeTime()
+        {
+            return decodes == 0 ? 0 : totalDecodeTime / decodes;
+        }
+        
+        /**
+         * The longest time taken to decode a clip, in nanoseconds.
+         */
+        public long getMaxDecodeTime()
+        {
+            return maxDecodeTime;
+        }
+    }
+    
+    public ClipCache()
+    {
+        this(DEFAULT_MAX_FREE_BYTES);
+    }
+    
+    public ClipCache(long maxFreeBytes)
+    {
+        this.maxFreeBytes = maxFreeBytes;
+    }
+    
+    /**
+     * Retrieve the clip cache instance.
+     */
+    public static ClipCache getInstance()
+    {
+        return instance;
+    }
+    
+    /**
+     * Get the data for a clip, decoding it if necessary (or waiting for it to be
+     * decoded, if that has been started ahead of time). The data must be released
+     * with {@link #releaseClipData(ClipData)} when no longer needed.
+     */
+    public ClipData getCachedClip(URL url)
         throws IOException, UnsupportedAudioFileException
     {
         String urlStr = url.toString();
+        FutureTask<ClipData> task;
+        boolean decodeHere = false;
+        synchronized (this) {
+            ClipData data = takeClip(urlStr);
+            if (data != null) {
+                hits++;
+                return data;
+            }
+            task = decoding.get(urlStr);
+            if (task == null) {
+                task = createDecodeTask(url);
+                decodeHere = true;
+                misses++;
+            }
+            else {
+                hits++;
+            }
+        }
+        
+        if (decodeHere) {
+            task.run();
+        }
+        ClipData decoded = waitFor(task);
+        
+        synchronized (this) {
+            ClipData data = takeClip(urlStr);
+            if (data == null) {
+                // The decoded data was not kept as a free clip (because it is too big,
+                // or was pushed out already), so start using it directly.
+                data = decoded;
+                data.addUser();
+                cachedClips.put(urlStr, data);
+            }
+            return data;
+        }
+    }
+    
+    /**
+     * Start decoding a clip in the background, if it is not already cached or being
+     * decoded, so that it is ready when it is played. Thread-safe; returns without
+     * waiting.
+     */
+    public synchronized void decodeAhead(URL url)
+    {
+        String urlStr = url.toString();
+        if (cachedClips.containsKey(urlStr) || freeClips.containsKey(urlStr) || decoding.containsKey(urlStr)) {
+            return;
+        }
+        getDecodeExecutor().execute(createDecodeTask(url));
+    }
+    
+    public synchronized void releaseClipData(ClipData data)
+    {
+        if (data.release()) {
+            cachedClips.remove(data.getUrl());
+            addFreeClip(data);
+        }
+    }
+    
+    /**
+     * Set the limit on the size of the data for clips which are not in use.
+     */
+    public synchronized void setMaxFreeBytes(long maxFreeBytes)
+    {
+        this.maxFreeBytes = maxFreeBytes;
+        trimFreeClips();
+    }
+    
+    /**
+     * Get statistics about the use of the cache.
+     */
+    public synchronized Statistics getStatistics()
+    {
+        // The size of clips in use can change (see ClipData.getSize()), so add them up now:
+        long cachedBytes = freeBytes;
+        for (ClipData data : cachedClips.values()) {
+            cachedBytes += data.getSize();
+        }
+        return new Statistics(hits, misses, cachedBytes, decodes, totalDecodeTime, maxDecodeTime);
+    }
+    
+    /**
+     * Find the data for a clip, if it has been decoded, and add a user for it.
+     * Call while synchronized.
+     */
+    private ClipData takeClip(String urlStr)
+    {
         ClipData data = cachedClips.get(urlStr);
         if (data == null) {
             // Maybe we have a free clip
             data = freeClips.remove(urlStr);
-            if (data != null) {
-                numberFreeClips --;
-                cachedClips.put(urlStr, data);
+            if (data == null) {
+                return null;
             }
+            freeBytes -= data.getSize();
+            cachedClips.put(urlStr, data);
         }
-        if (data == null) {
-            // We need to create a new clip
-            AudioInputStream ais = AudioSystem.getAudioInputStream(url);
-            AudioFormat af = ais.getFormat();
-            long frameLength = ais.getFrameLength();
-            
-            int total = (int)(af.getFrameSize() * frameLength);
-            byte[] allBytes = new byte[(int)(af.getFrameSize() * frameLength)];
-            int pos = 0;
-            
+        data.addUser();
+        return data;
+    }
+    
+    /**
+     * Add data for a clip which is not in use to the free clips, removing the least
+     * recently used free clips if they are now over the limit. Call while synchronized.
+     */
+    private void addFreeClip(ClipData data)
+    {
+        freeClips.put(data.getUrl(), data);
+        freeBytes += data.getSize();
+        trimFreeClips();
+    }
+    
+    private void trimFreeClips()
+    {
+        Iterator<ClipData> it = freeClips.values().iterator();
+        while (freeBytes > maxFreeBytes && it.hasNext()) {
+            freeBytes -= it.next().getSize();
+            it.remove();
+        }
+    }
+    
+    /**
+     * Create a task to decode a clip, and record that it is being decoded. When the
+     * task has finished, the decoded clip is held as a free clip. Call while synchronized.
+     */
+    private FutureTask<ClipData> createDecodeTask(URL url)
+    {
+        String urlStr = url.toString();
+        FutureTask<ClipData> task = new FutureTask<ClipData>(() -> {
             try {
+                long start = System.nanoTime();
+                ClipData data = decode(url);
+                long time = System.nanoTime() - start;
+                synchronized (this) {
+                    decodes++;
+                    totalDecodeTime += time;
+                    maxDecodeTime = Math.max(maxDecodeTime, time);
+                    data.release();
+                    addFreeClip(data);
+                }
+                return data;
+            }
+            finally {
+                synchronized (this) {
+                    decoding.remove(urlStr);
+                }
+            }
+        });
+        decoding.put(urlStr, task);
+        return task;
+    }
+    
+    private synchronized ExecutorService getDecodeExecutor()
+    {
+        if (decodeExecutor == null) {
+            decodeExecutor = Executors.newFixedThreadPool(DECODE_THREADS, r -> {
+                Thread thread = new Thread(r, "Greenfoot sound decoder");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return decodeExecutor;
+    }
+    
+    /**
+     * Wait for a decode task to finish, and return its result or throw its exception.
+     */
+    private static ClipData waitFor(FutureTask<ClipData> task)
+        throws IOException, UnsupportedAudioFileException
+    {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return task.get();
+                }
+                catch (InterruptedException ie) {
+                    // Carry on waiting; decoding a clip doesn't take long.
+                    interrupted = true;
+                }
+                catch (ExecutionException ee) {
+                    Throwable cause = ee.getCause();
+                    if (cause instanceof IOException) {
+                        throw (IOException) cause;
+                    }
+                    if (cause instanceof UnsupportedAudioFileException) {
+                        throw (UnsupportedAudioFileException) cause;
+                    }
+                    if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    }
+                    throw new IOException(cause);
+                }
+            }
+        }
+        finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+    
+    /**
+     * Read a clip and decode it to PCM. The returned data has a single user.
+     */
+    private static ClipData decode(URL url)
+        throws IOException, UnsupportedAudioFileException
+    {
+        AudioInputStream source = AudioSystem.getAudioInputStream(url);
+        AudioInputStream ais = source;
+        try {
+            AudioFormat af = source.getFormat();
+            AudioFormat.Encoding encoding = af.getEncoding();
+            if (! encoding.equals(AudioFormat.Encoding.PCM_SIGNED)
+                    && ! encoding.equals(AudioFormat.Encoding.PCM_UNSIGNED)) {
+                // Decode (for instance, from u-law) so that it need not be done while playing
+                AudioFormat pcmFormat = new AudioFormat(AudioFormat.Encoding.PCM_SIGNED, af.getSampleRate(), 16,
+                        af.getChannels(), af.getChannels() * 2, af.getSampleRate(), af.isBigEndian());
+                try {
+                    ais = AudioSystem.getAudioInputStream(pcmFormat, source);
+                }
+                catch (IllegalArgumentException e) {
+                    // No converter; play it as it is.
+                }
+            }
+            
+            af = ais.getFormat();
+            long frameLength = ais.getFrameLength();
+            byte[] allBytes;
+            if (frameLength != AudioSystem.NOT_SPECIFIED) {
+                int total = (int)(af.getFrameSize() * frameLength);
+                allBytes = new byte[total];
+                int pos = 0;
                 while (pos < total) {
                     int r = ais.read(allBytes, pos, total - pos);
                     if (r == -1) {
@@ -81,32 +427,22 @@ public class ClipCache
                     pos += r;
                 }
             }
-            finally {
-                ais.close();
+            else {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                byte[] buffer = new byte[8192];
+                int r;
+                while ((r = ais.read(buffer)) != -1) {
+                    bytes.write(buffer, 0, r);
+                }
+                allBytes = bytes.toByteArray();
+                frameLength = allBytes.length / af.getFrameSize();
             }
             
-            data = new ClipData(urlStr, allBytes, af, (int) frameLength);
+            return new ClipData(url.toString(), allBytes, af, (int) frameLength);
         }
-        else {
-            data.addUser();
-        }
-        
-        return data;
-    }
-    
-    public synchronized void releaseClipData(ClipData data)
-    {
-        if (data.release()) {
-            cachedClips.remove(data.getUrl());
-            freeClips.put(data.getUrl(), data);
-            numberFreeClips++;
-            if (numberFreeClips > MAX_CACHED_CLIPS) {
-                // remove least recently used free clip
-                Iterator<ClipData> it = freeClips.values().iterator();
-                it.next();
-                it.remove();
-                numberFreeClips = MAX_CACHED_CLIPS;
-            }
+        finally {
+            ais.close();
+            source.close();
         }
     }
 }
@@ -35,6 +35,7 @@ public class ClipData
     private AudioFormat format;
     private int activeUsers;
     private int length; // length in sample frames
+    private SoftwareMixer.Sample mixerSample;
     
     /**
      * Construct a ClipData with a single active user.
@@ -77,4 +78,35 @@ public class ClipData
     {
         return length;
     }
+    
+    /**
+     * Get the size of the data held for the clip, in bytes, including the
+     * data for the software mixer if it has been set.
+     */
+    public long getSize()
+    {
+        long size = buffer.length;
+        if (mixerSample != null) {
+            size += 2L * 2 * mixerSample.getFrames();
+        }
+        return size;
+    }
+    
+    /**
+     * Get the clip converted to the software mixer's format, or null if it
+     * has not been converted.
+     */
+    SoftwareMixer.Sample getMixerSample()
+    {
+        return mixerSample;
+    }
+    
+    /**
+     * Set the clip converted to the software mixer's format. This should only
+     * be set while the clip data is in use, since it changes its size.
+     */
+    void setMixerSample(SoftwareMixer.Sample mixerSample)
+    {
+        this.mixerSample = mixerSample;
+    }
 }
@@ -0,0 +1,322 @@
+/*
+ This file is part of the Greenfoot program.
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.sound;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.URL;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+/**
+ * A sound which is played through the {@link SoftwareMixer}, rather than with a
+ * line of its own. The sound is decoded the first time it is played (or when it
+ * is preloaded), and the decoded sound is shared with other MixerSounds for the
+ * same URL.
+ * 
+ * <p>Decoding happens in the background, so that playing a sound never holds up
+ * the caller (usually the simulation thread). A sound which is played before it
+ * has been loaded counts as playing straight away, and is heard once it has loaded.
+ */
+public class MixerSound implements Sound
+{
+    /** URL of the sound data. */
+    private final URL url;
+    
+    /** The states a sound can be in. */
+    private enum State
+    {
+        STOPPED, PLAYING, LOOPING, PAUSED_PLAYING, PAUSED_LOOPING, CLOSED
+    }
+    
+    private State state = State.CLOSED;
+    
+    /**
+     * The voice playing this sound, or null if it is stopped. Paused sounds keep
+     * their voice, so that they can be resumed at the same position.
+     */
+    private SoftwareMixer.Voice voice;
+    
+    /** The master volume of the sound. */
+    private int masterVolume = 100;
+    
+    /** Listener for state changes. */
+    private SoundPlaybackListener playbackListener;
+    
+    /** The decoded sound, or null if it has not been loaded yet */
+    private SoftwareMixer.Sample sample;
+    
+    /** Whether the sample is being loaded in the background */
+    private boolean loading;
+    
+    /** Loads samples for all MixerSounds; created when first needed */
+    private static ExecutorService loader;
+    
+    /**
+     * Creates a new mixer sound.
+     */
+    public MixerSound(URL url, SoundPlaybackListener listener)
+    {
+        this.url = url;
+        playbackListener = listener;
+    }
+    
+    /**
+     * Preloads the sound, by decoding it in the background.
+     */
+    public void preLoad()
+    {
+        ClipCache.getInstance().decodeAhead(url);
+    }
+    
+    @Override
+    public synchronized void play()
+    {
+        start(State.PLAYING);
+    }
+    
+    @Override
+    public synchronized void loop()
+    {
+        start(State.LOOPING);
+    }
+    
+    /**
+     * Start (or resume) playing, either once or in a loop. If the sound has not
+     * been loaded yet, it starts once it has been.
+     */
+    private void start(State newState)
+    {
+        if (state == newState) {
+            return;
+        }
+        boolean inMixer = state == State.PLAYING || state == State.LOOPING;
+        if (voice == null) {
+            if (sample == null) {
+                loadSample();
+                setState(newState);
+                return;
+            }
+            createVoice();
+        }
+        voice.setLooping(newState == State.LOOPING);
+        if (! inMixer) {
+            SoftwareMixer.getInstance().addVoice(voice);
+        }
+        setState(newState);
+    }
+    
+    /**
+     * Create a voice to play this sound from the start. The sample must have been loaded.
+     */
+    private void createVoice()
+    {
+        voice = new SoftwareMixer.Voice(sample, this);
+        voice.setVolume(masterVolume);
+    }
+    
+    /**
+     * Load the sample on the loader thread, unless it is already being loaded.
+     * Decoding is started straight away on the clip cache's decoding threads; the
+     * loader waits for it and converts the result into the mixer's format.
+     */
+    private void loadSample()
+    {
+        if (loading) {
+            return;
+        }
+        loading = true;
+        ClipCache.getInstance().decodeAhead(url);
+        getLoader().execute(() -> {
+            SoftwareMixer.Sample loaded = null;
+            try {
+                loaded = SoftwareMixer.getInstance().getSample(url);
+            }
+            catch (SecurityException e) {
+                SoundExceptionHandler.handleSecurityException(e, url.toString());
+            }
+            catch (FileNotFoundException e) {
+                SoundExceptionHandler.handleFileNotFoundException(e, url.toString());
+            }
+            catch (IOException e) {
+                SoundExceptionHandler.handleIOException(e, url.toString());
+            }
+            catch (UnsupportedAudioFileException e) {
+                SoundExceptionHandler.handleUnsupportedAudioFileException(e, url.toString());
+            }
+            finally {
+                sampleLoaded(loaded);
+            }
+        });
+    }
+    
+    /**
+     * Called on the loader thread once the sample has been loaded (or has failed
+     * to load, in which case the problem has been reported and loaded is null).
+     * Starts the voice if the sound is still meant to be playing.
+     */
+    private synchronized void sampleLoaded(SoftwareMixer.Sample loaded)
+    {
+        loading = false;
+        if (loaded == null) {
+            if (state != State.CLOSED) {
+                setState(State.STOPPED);
+            }
+            return;
+        }
+        
+        sample = loaded;
+        if (voice == null && ! isStopped()) {
+            // Paused sounds get a voice too, ready for when they are resumed
+            createVoice();
+            voice.setLooping(state == State.LOOPING || state == State.PAUSED_LOOPING);
+            if (state == State.PLAYING || state == State.LOOPING) {
+                SoftwareMixer.getInstance().addVoice(voice);
+            }
+        }
+    }
+    
+    private static synchronized ExecutorService getLoader()
+    {
+        if (loader == null) {
+            loader = Executors.newSingleThreadExecutor(r -> {
+                Thread thread = new Thread(r, "Greenfoot sound loader");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return loader;
+    }
+    
+    /**
+     * Called by the mixer when the voice has played to the end (or can't be played).
+     */
+    synchronized void voiceFinished(SoftwareMixer.Voice finishedVoice)
+    {
+        if (voice == finishedVoice && (state == State.PLAYING || state == State.LOOPING)) {
+            voice = null;
+            setState(State.STOPPED);
+        }
+    }
+    
+    @Override
+    public synchronized void pause()
+    {
+        if (state == State.PLAYING || state == State.LOOPING) {
+            if (voice != null) {
+                SoftwareMixer.getInstance().removeVoice(voice);
+            }
+            setState(state == State.PLAYING ? State.PAUSED_PLAYING : State.PAUSED_LOOPING);
+        }
+    }
+    
+    @Override
+    public synchronized void stop()
+    {
+        if (isStopped()) {
+            return;
+        }
+        releaseVoice();
+        setState(State.STOPPED);
+    }
+    
+    @Override
+    public synchronized void close()
+    {
+        if (state != State.CLOSED) {
+            releaseVoice();
+            setState(State.CLOSED);
+        }
+    }
+    
+    private void releaseVoice()
+    {
+        if (voice != null) {
+            SoftwareMixer.getInstance().removeVoice(voice);
+            voice = null;
+        }
+    }
+    
+    @Override
+    public synchronized void setVolume(int level)
+    {
+        masterVolume = level;
+        if (voice != null) {
+            voice.setVolume(level);
+        }
+    }
+    
+    @Override
+    public synchronized int getVolume()
+    {
+        return masterVolume;
+    }
+    
+    private void setState(State newState)
+    {
+        if (state != newState) {
+            state = newState;
+            switch (state) {
+                case PLAYING:
+                case LOOPING:
+                    playbackListener.playbackStarted(this);
+                    break;
+                case STOPPED:
+                    playbackListener.playbackStopped(this);
+                    break;
+                case PAUSED_PLAYING:
+                case PAUSED_LOOPING:
+                    playbackListener.playbackPaused(this);
+                    break;
+                case CLOSED:
+                    playbackListener.soundClosed(this);
+                    break;
+            }
+        }
+    }
+    
+    @Override
+    public synchronized boolean isPlaying()
+    {
+        return state == State.PLAYING || state == State.LOOPING;
+    }
+    
+    @Override
+    public synchronized boolean isPaused()
+    {
+        return state == State.PAUSED_PLAYING || state == State.PAUSED_LOOPING;
+    }
+    
+    @Override
+    public synchronized boolean isStopped()
+    {
+        return state == State.STOPPED || state == State.CLOSED;
+    }
+    
+    @Override
+    public String toString()
+    {
+        return url + " " + super.toString();
+    }
+}
@@ -0,0 +1,518 @@
+/*
+ This file is part of the Greenfoot program.
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.sound;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.DataLine;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.SourceDataLine;
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+import bluej.utility.Debug;
+
+/**
+ * A software mixer, which plays any number of sounds at once through a single
+ * audio line. Sounds are converted once into samples in the mixer's own format,
+ * which are shared by all the voices playing them, and are kept along with the
+ * sounds' data in the {@link ClipCache}. A single thread mixes the playing
+ * voices and writes the result to the line.
+ * 
+ * <p>Compared with opening a Clip for each sound, this avoids running out of
+ * lines when many sounds overlap, and avoids starting and stopping threads for
+ * each sound. The mixing thread and the line are released when nothing has been
+ * playing for a while.
+ * 
+ * @see MixerSound
+ */
+public class SoftwareMixer implements Runnable
+{
+    /** The format in which sounds are mixed and played: 44.1kHz, 16-bit signed, stereo. */
+    static final AudioFormat FORMAT = new AudioFormat(44100f, 16, 2, true, false);
+    
+    /** Number of frames mixed at a time (about 12ms) */
+    private static final int CHUNK_FRAMES = 512;
+    
+    /** Size of the line's buffer, in chunks. This is the latency of the mixer. */
+    private static final int LINE_BUFFER_CHUNKS = 4;
+    
+    /** How long the mixer waits with nothing to play before releasing the line */
+    private static final long IDLE_TIMEOUT_MS = 2000;
+    
+    private static SoftwareMixer instance;
+    private static Boolean available;
+    
+    /** The voices currently playing. Replaced (never modified) when voices are added or removed. */
+    private volatile Voice[] voices = new Voice[0];
+    
+    /** The mixing thread, or null if it is not running */
+    private Thread thread;
+    
+    private volatile int peakVoices;
+    private volatile long underruns;
+    
+    /**
+     * A sound decoded into the mixer's format: interleaved left and right samples.
+     */
+    static class Sample
+    {
+        private final short[] data;
+        private final int frames;
+        
+        private Sample(short[] data)
+        {
+            this.data = data;
+            this.frames = data.length / 2;
+        }
+        
+        /**
+         * The length of the sample, in frames.
+         */
+        int getFrames()
+        {
+            return frames;
+        }
+    }
+    
+    /**
+     * A sample being played, with its own position and volume.
+     */
+    static class Voice
+    {
+        private final Sample sample;
+        private final MixerSound owner;
+        private volatile int position;
+        private volatile float gain;
+        private volatile boolean looping;
+        
+        Voice(Sample sample, MixerSound owner)
+        {
+            this.sample = sample;
+            this.owner = owner;
+        }
+        
+        /**
+         * Set the volume, between 0 and 100.
+         */
+        void setVolume(int level)
+        {
+            if (level <= 0) {
+                gain = 0;
+            }
+            else {
+                // Treat the level as a position on a 50dB scale, as for clips.
+                float db = SoundUtils.convertMinMax(Math.min(level, 100), -50f, 0f);
+                gain = (float) Math.pow(10, db / 20);
+            }
+        }
+        
+        void setLooping(boolean looping)
+        {
+            this.looping = looping;
+        }
+        
+        /**
+         * Add the next frames of this voice to the mix.
+         * 
+         * @return  true if the voice has finished playing.
+         */
+        private boolean mixInto(int[] mix, int frames)
+        {
+            short[] data = sample.data;
+            int end = sample.frames;
+            int pos = position;
+            float g = gain;
+            for (int i = 0; i < frames; i++) {
+                if (pos >= end) {
+                    if (! looping || end == 0) {
+                        position = pos;
+                        return true;
+                    }
+                    pos = 0;
+                }
+                mix[2 * i] += (int) (data[2 * pos] * g);
+                mix[2 * i + 1] += (int) (data[2 * pos + 1] * g);
+                pos++;
+            }
+            position = pos;
+            return false;
+        }
+    }
+    
+    private SoftwareMixer()
+    {
+    }
+    
+    /**
+     * Get the mixer instance.
+     */
+    public synchronized static SoftwareMixer getInstance()
+    {
+        if (instance == null) {
+            instance = new SoftwareMixer();
+        }
+        return instance;
+    }
+    
+    /**
+     * Check whether the system can play sound in the mixer's format.
+     */
+    public synchronized static boolean isAvailable()
+    {
+        if (available == null) {
+            try {
+                available = AudioSystem.isLineSupported(new DataLine.Info(SourceDataLine.class, FORMAT));
+            }
+            catch (SecurityException e) {
+                available = false;
+            }
+        }
+        return available;
+    }
+    
+    /**
+     * Get the sample for a sound file, decoding and converting it if necessary.
+     * Thread-safe.
+     * 
+     * @throws UnsupportedAudioFileException if the file cannot be converted into the mixer's format.
+     */
+    Sample getSample(URL url) throws IOException, UnsupportedAudioFileException
+    {
+        ClipCache clipCache = ClipCache.getInstance();
+        ClipData data = clipCache.getCachedClip(url);
+        try {
+            synchronized (data) {
+                Sample sample = data.getMixerSample();
+                if (sample == null) {
+                    sample = convert(data);
+                    data.setMixerSample(sample);
+                }
+                return sample;
+            }
+        }
+        finally {
+            // Voices hold on to their own samples, so the data need not stay in use.
+            clipCache.releaseClipData(data);
+        }
+    }
+    
+    /**
+     * Start playing a voice. Thread-safe.
+     */
+    void addVoice(Voice voice)
+    {
+        synchronized (this) {
+            Voice[] current = voices;
+            for (Voice v : current) {
+                if (v == voice) {
+                    return;
+                }
+            }
+            Voice[] newVoices = Arrays.copyOf(current, current.length + 1);
+            newVoices[current.length] = voice;
+            voices = newVoices;
+            peakVoices = Math.max(peakVoices, newVoices.length);
+            
+            if (thread == null) {
+                thread = new Thread(this, "Greenfoot sound mixer");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MAX_PRIORITY);
+                thread.start();
+            }
+            else {
+                notifyAll();
+            }
+        }
+    }
+    
+    /**
+     * Stop playing a voice. Thread-safe.
+     */
+    synchronized void removeVoice(Voice voice)
+    {
+        Voice[] current = voices;
+        List<Voice> remaining = new ArrayList<Voice>(current.length);
+        for (Voice v : current) {
+            if (v != voice) {
+                remaining.add(v);
+            }
+        }
+        if (remaining.size() != current.length) {
+            voices = remaining.toArray(new Voice[remaining.size()]);
+        }
+    }
+    
+    /**
+     * Get the number of voices currently playing.
+     */
+    public int getVoiceCount()
+    {
+        return voices.length;
+    }
+    
+    /**
+     * Get the largest number of voices which have played at once.
+     */
+    public int getPeakVoiceCount()
+    {
+        return peakVoices;
+    }
+    
+    /**
+     * Get the number of times the line ran out of sound to play while voices were
+     * playing, because the mixer did not keep up. Each underrun is heard as a click
+     * or a gap.
+     */
+    public long getUnderrunCount()
+    {
+        return underruns;
+    }
+    
+    /**
+     * Mix the playing voices and write them to the line, until nothing has been
+     * playing for a while. If the thread finishes for any other reason, all the
+     * voices are stopped, so that the next voice added starts a new thread.
+     */
+    @Override
+    public void run()
+    {
+        SourceDataLine line = null;
+        boolean idle = false;
+        try {
+            int frameSize = FORMAT.getFrameSize();
+            line = AudioSystem.getSourceDataLine(FORMAT);
+            line.open(FORMAT, CHUNK_FRAMES * frameSize * LINE_BUFFER_CHUNKS);
+            line.start();
+            
+            int[] mix = new int[CHUNK_FRAMES * 2];
+            byte[] buffer = new byte[CHUNK_FRAMES * frameSize];
+            List<Voice> finished = new ArrayList<Voice>();
+            boolean wasMixing = false;
+            
+            while (true) {
+                Voice[] current = voices;
+                if (current.length == 0) {
+                    if (! waitForVoices()) {
+                        idle = true;
+                        return;
+                    }
+                    wasMixing = false;
+                    continue;
+                }
+                
+                Arrays.fill(mix, 0);
+                for (Voice voice : current) {
+                    if (voice.mixInto(mix, CHUNK_FRAMES)) {
+                        finished.add(voice);
+                    }
+                }
+                
+                for (int i = 0; i < mix.length; i++) {
+                    int s = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, mix[i]));
+                    buffer[2 * i] = (byte) s;
+                    buffer[2 * i + 1] = (byte) (s >> 8);
+                }
+                
+                if (wasMixing && line.available() >= line.getBufferSize()) {
+                    // The line played everything we gave it before we gave it more
+                    underruns++;
+                }
+                // This blocks until there is room in the line's buffer, which
+                // paces the mixing:
+                line.write(buffer, 0, buffer.length);
+                wasMixing = true;
+                
+                if (! finished.isEmpty()) {
+                    for (Voice voice : finished) {
+                        removeVoice(voice);
+                        notifyFinished(voice);
+                    }
+                    finished.clear();
+                }
+            }
+        }
+        catch (LineUnavailableException | IllegalArgumentException | SecurityException e) {
+            SoundExceptionHandler.handleLineUnavailableException(e);
+        }
+        finally {
+            try {
+                if (line != null) {
+                    line.drain();
+                    line.close();
+                }
+            }
+            finally {
+                if (! idle) {
+                    // waitForVoices() has not cleared the thread, so we must
+                    stopAll();
+                }
+            }
+        }
+    }
+    
+    /**
+     * Wait for a voice to be added. If none is added within the idle timeout,
+     * mark the mixing thread as finished.
+     * 
+     * @return  true if there are voices to play, false if the thread should finish.
+     */
+    private synchronized boolean waitForVoices()
+    {
+        if (voices.length == 0) {
+            try {
+                wait(IDLE_TIMEOUT_MS);
+            }
+            catch (InterruptedException ie) {
+                // Finish as if idle
+            }
+        }
+        if (voices.length == 0) {
+            thread = null;
+            return false;
+        }
+        return true;
+    }
+    
+    /**
+     * Stop all voices, because the mixer cannot play them, and mark the mixing
+     * thread as finished. Only called on the mixing thread.
+     */
+    private void stopAll()
+    {
+        Voice[] stopped;
+        synchronized (this) {
+            stopped = voices;
+            voices = new Voice[0];
+            thread = null;
+        }
+        for (Voice voice : stopped) {
+            notifyFinished(voice);
+        }
+    }
+    
+    /**
+     * Tell a voice's owner that the voice has finished. An exception thrown while
+     * doing so (for instance, by a playback listener) is reported, but does not
+     * stop the mixer.
+     */
+    private static void notifyFinished(Voice voice)
+    {
+        try {
+            voice.owner.voiceFinished(voice);
+        }
+        catch (RuntimeException e) {
+            Debug.reportError("Exception while notifying that a sound has finished", e);
+        }
+    }
+    
+    /**
+     * Convert the data for a clip into the mixer's format.
+     */
+    private static Sample convert(ClipData data) throws IOException, UnsupportedAudioFileException
+    {
+        AudioFormat clipFormat = data.getFormat();
+        AudioInputStream source = new AudioInputStream(new ByteArrayInputStream(data.getBuffer()),
+                clipFormat, data.getLength());
+        try {
+            AudioFormat sourceFormat = source.getFormat();
+            int channels = sourceFormat.getChannels();
+            float sampleRate = sourceFormat.getSampleRate();
+            if (sampleRate == AudioSystem.NOT_SPECIFIED) {
+                sampleRate = FORMAT.getSampleRate();
+            }
+            
+            // Let the audio system convert to 16-bit PCM at the original rate...
+            AudioFormat pcmFormat = new AudioFormat(AudioFormat.Encoding.PCM_SIGNED, sampleRate, 16,
+                    channels, channels * 2, sampleRate, false);
+            AudioInputStream pcm;
+            if (sourceFormat.matches(pcmFormat)) {
+                pcm = source;
+            }
+            else {
+                try {
+                    pcm = AudioSystem.getAudioInputStream(pcmFormat, source);
+                }
+                catch (IllegalArgumentException e) {
+                    throw new UnsupportedAudioFileException("Cannot convert " + sourceFormat + " to " + pcmFormat);
+                }
+            }
+            
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int r;
+            while ((r = pcm.read(buffer)) != -1) {
+                bytes.write(buffer, 0, r);
+            }
+            
+            // ...and then convert to stereo at the mixer's rate ourselves, since
+            // the audio system generally cannot change the sample rate.
+            return new Sample(resample(bytes.toByteArray(), channels, sampleRate / FORMAT.getSampleRate()));
+        }
+        finally {
+            source.close();
+        }
+    }
+    
+    /**
+     * Convert 16-bit little-endian PCM data to stereo, changing the sample rate
+     * by linear interpolation.
+     * 
+     * @param step  The number of source frames per output frame
+     */
+    private static short[] resample(byte[] pcm, int channels, double step)
+    {
+        int inFrames = pcm.length / (2 * channels);
+        if (inFrames == 0 || channels == 0) {
+            return new short[0];
+        }
+        int outFrames = (int) ((inFrames - 1) / step) + 1;
+        short[] out = new short[outFrames * 2];
+        for (int j = 0; j < outFrames; j++) {
+            double p = j * step;
+            int i0 = (int) p;
+            int i1 = Math.min(i0 + 1, inFrames - 1);
+            double frac = p - i0;
+            for (int c = 0; c < 2; c++) {
+                // Mono is played on both channels; beyond stereo, only the first two are played
+                int sc = Math.min(c, channels - 1);
+                int s0 = sampleAt(pcm, (i0 * channels + sc) * 2);
+                int s1 = sampleAt(pcm, (i1 * channels + sc) * 2);
+                out[2 * j + c] = (short) Math.round(s0 + (s1 - s0) * frac);
+            }
+        }
+        return out;
+    }
+    
+    private static int sampleAt(byte[] pcm, int index)
+    {
+        return (short) ((pcm[index + 1] << 8) | (pcm[index] & 0xff));
+    }
+}
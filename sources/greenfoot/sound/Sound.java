@@ -27,6 +27,7 @@ package greenfoot.sound;
  * @see SoundStream
  * @see MidiFileSound
  * @see SoundClip
+ * @see MixerSound
  * @author Poul Henriksen 
  *
  */
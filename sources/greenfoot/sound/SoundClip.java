@@ -49,7 +49,7 @@ import javax.sound.sampled.UnsupportedAudioFileException;
  */
 public class SoundClip implements Sound, LineListener
 {
-    private static ClipCache clipCache = new ClipCache();
+    private static ClipCache clipCache = ClipCache.getInstance();
     private static ClipProcessThread processThread = new ClipProcessThread();
     private static ClipCloserThread closerThread = new ClipCloserThread();
 
@@ -150,22 +150,11 @@ public class SoundClip implements Sound, LineListener
     }
     
     /**
-     * Preloads the clip, by opening it.
+     * Preloads the clip, by decoding it in the background.
      */
-    public synchronized void preLoad()
+    public void preLoad()
     {
-        //Ignore all exceptions when pre-loading
-        try
-        {
-            clipData = clipCache.getCachedClip(url);
-            clipCache.releaseClipData(clipData);
-        }
-        catch (IOException e) {
-            
-        }
-        catch (UnsupportedAudioFileException e) {
-            
-        }
+        clipCache.decodeAhead(url);
     }
 
     /*
@@ -23,8 +23,12 @@ package greenfoot.sound;
 
 import greenfoot.util.GreenfootUtil;
 
+import java.io.File;
 import java.io.IOException;
+import java.net.URISyntaxException;
 import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
 
 import javax.sound.sampled.UnsupportedAudioFileException;
 
@@ -51,6 +55,33 @@ public class SoundFactory
      * clips don't work so well. What about applets?
      */
     private static final int maxClipSize = 500 * 1000;
+    
+    /**
+     * Whether sounds small enough to be clips are played through the software
+     * mixer (if it is available) rather than each with its own Clip.
+     */
+    private volatile boolean useSoftwareMixer = true;
+    
+    /**
+     * The sizes of sound files, by URL, so that each is only looked up once (or,
+     * for a local file, again only if the file has been modified since).
+     */
+    private final Map<String,FileSize> fileSizes = new HashMap<String,FileSize>();
+    
+    /**
+     * The size of a sound file, and when the file was last modified (0 if not known).
+     */
+    private static class FileSize
+    {
+        private final int size;
+        private final long lastModified;
+        
+        private FileSize(int size, long lastModified)
+        {
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+    }
 
     private SoundFactory()
     {
@@ -66,6 +97,8 @@ public class SoundFactory
             
             if (s instanceof SoundClip)
                 ((SoundClip)s).preLoad();
+            else if (s instanceof MixerSound)
+                ((MixerSound)s).preLoad();
             
             // if (!soundCache.hasFreeSpace())
             //    return; // No point continuing
@@ -84,6 +117,16 @@ public class SoundFactory
     {
         return soundCollection;
     }
+    
+    /**
+     * Set whether sounds small enough to be loaded into memory are played through
+     * the {@link SoftwareMixer} (the default), or each with its own Clip. This
+     * affects sounds created afterwards.
+     */
+    public void setUseSoftwareMixer(boolean useSoftwareMixer)
+    {
+        this.useSoftwareMixer = useSoftwareMixer;
+    }
    
     /**
      * Creates the sound from file.
@@ -98,7 +141,7 @@ public class SoundFactory
     {      
         try {
             URL url = GreenfootUtil.getURL(file, "sounds");
-            int size = url.openConnection().getContentLength();
+            int size = getFileSize(url);
             if (isMidi(url)) {
                 return new MidiFileSound(url, soundCollection);
             }
@@ -112,6 +155,11 @@ public class SoundFactory
             else if (isJavaAudioStream(size)) {
                 return new SoundStream(new JavaAudioInputStream(url), soundCollection);
             } 
+            else if (useSoftwareMixer && SoftwareMixer.isAvailable()) {
+                // The sound is small enough to be decoded into memory, and played
+                // through the mixer along with other such sounds.
+                return new MixerSound(url, soundCollection);
+            }
             else {
                 // The sound is small enough to be loaded into memory as a clip.
                 return new SoundClip(file, url, soundCollection);
@@ -128,6 +176,44 @@ public class SoundFactory
         return null;
     }
     
+    /**
+     * Get the size of a sound file, or -1 if it cannot be found.
+     */
+    private int getFileSize(URL url) throws IOException
+    {
+        String urlStr = url.toString();
+        // A sound file in the project may be replaced while Greenfoot is running:
+        long lastModified = getLastModified(url);
+        synchronized (fileSizes) {
+            FileSize cached = fileSizes.get(urlStr);
+            if (cached != null && cached.lastModified == lastModified) {
+                return cached.size;
+            }
+        }
+        int size = url.openConnection().getContentLength();
+        synchronized (fileSizes) {
+            fileSizes.put(urlStr, new FileSize(size, lastModified));
+        }
+        return size;
+    }
+    
+    /**
+     * Get the time at which a local file was last modified, or 0 if the URL is
+     * not for a local file (or the time can't be found).
+     */
+    private static long getLastModified(URL url)
+    {
+        if (! "file".equals(url.getProtocol())) {
+            return 0;
+        }
+        try {
+            return new File(url.toURI()).lastModified();
+        }
+        catch (URISyntaxException | IllegalArgumentException e) {
+            return 0;
+        }
+    }
+    
     private boolean isJavaAudioStream(int size)
     {
         // If we can not get the size, or if it is a big file we stream
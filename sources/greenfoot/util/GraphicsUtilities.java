@@ -88,6 +88,26 @@ public class GraphicsUtilities {
                     getDefaultScreenDevice().getDefaultConfiguration();
     }
 
+    // Creates an image compatible with the primary screen. When running
+    // headless there is no screen, and a plain RGB or ARGB image is used.
+    private static BufferedImage createScreenCompatibleImage(int width, int height,
+                                                             int transparency) {
+        if (GraphicsEnvironment.isHeadless()) {
+            return new BufferedImage(width, height, transparency == Transparency.OPAQUE ?
+                    BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB);
+        }
+        return getGraphicsConfiguration().createCompatibleImage(width, height,
+                                                   transparency);
+    }
+
+    // Returns the color model of images compatible with the primary screen
+    private static ColorModel getScreenColorModel() {
+        if (GraphicsEnvironment.isHeadless()) {
+            return ColorModel.getRGBdefault();
+        }
+        return getGraphicsConfiguration().getColorModel();
+    }
+
     /**
      * <p>Returns a new <code>BufferedImage</code> using the same color model
      * as the image passed as a parameter. The returned image is only compatible
@@ -145,8 +165,7 @@ public class GraphicsUtilities {
      */
     public static BufferedImage createCompatibleImage(BufferedImage image,
                                                       int width, int height) {
-        return getGraphicsConfiguration().createCompatibleImage(width, height,
-                                                   image.getTransparency());
+        return createScreenCompatibleImage(width, height, image.getTransparency());
     }
 
     /**
@@ -164,7 +183,7 @@ public class GraphicsUtilities {
      *   specified width and height
      */
     public static BufferedImage createCompatibleImage(int width, int height) {
-        return getGraphicsConfiguration().createCompatibleImage(width, height);
+        return createScreenCompatibleImage(width, height, Transparency.OPAQUE);
     }
 
     /**
@@ -183,8 +202,7 @@ public class GraphicsUtilities {
      */
     public static BufferedImage createCompatibleTranslucentImage(int width,
                                                                  int height) {
-        return getGraphicsConfiguration().createCompatibleImage(width, height,
-                                                   Transparency.TRANSLUCENT);
+        return createScreenCompatibleImage(width, height, Transparency.TRANSLUCENT);
     }
 
     /**
@@ -261,14 +279,12 @@ public class GraphicsUtilities {
      *   same width and height and transparency and content, of <code>image</code>
      */
     public static BufferedImage toCompatibleImage(BufferedImage image) {
-        if (image.getColorModel().equals(
-                getGraphicsConfiguration().getColorModel())) {
+        if (image.getColorModel().equals(getScreenColorModel())) {
             return image;
         }
 
         BufferedImage compatibleImage =
-                getGraphicsConfiguration().createCompatibleImage(
-                    image.getWidth(), image.getHeight(),
+                createScreenCompatibleImage(image.getWidth(), image.getHeight(),
                     image.getTransparency());
         Graphics g = compatibleImage.getGraphics();
         g.drawImage(image, 0, 0, null);
@@ -296,12 +312,12 @@ public class GraphicsUtilities {
      */
     public static BufferedImage toCompatibleTranslucentImage(BufferedImage image)
     {
-        if (image.getColorModel().equals(getGraphicsConfiguration().getColorModel())
+        if (image.getColorModel().equals(getScreenColorModel())
                 && image.getColorModel().hasAlpha()) {
             return image;
         }
 
-        BufferedImage compatibleImage = getGraphicsConfiguration().createCompatibleImage(
+        BufferedImage compatibleImage = createScreenCompatibleImage(
                     image.getWidth(), image.getHeight(),
                     Transparency.TRANSLUCENT);
         Graphics g = compatibleImage.getGraphics();
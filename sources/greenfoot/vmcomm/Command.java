@@ -75,6 +75,9 @@ public class Command
 
     public static final int COMMAND_WORLD_FOCUS_GAINED = 40;
     public static final int COMMAND_WORLD_FOCUS_LOST = 41;
+
+    // The server VM could not apply a partial world image; the next image must be complete
+    public static final int COMMAND_REQUEST_FULL_FRAME = 50;
     
     
     // Commands are assigned a stricly increasing ID:
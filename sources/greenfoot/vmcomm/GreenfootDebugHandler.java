@@ -240,7 +240,6 @@ public class GreenfootDebugHandler implements DebuggerListener, ObjectBenchInter
     public boolean examineDebuggerEvent(final DebuggerEvent e)
     {
         final Debugger debugger = (Debugger)e.getSource();
-        List<SourceLocation> stack = e.getThread().getStack();
         boolean atBreakpoint = e.getID() == DebuggerEvent.THREAD_BREAKPOINT && e.getThread() != null && e.getBreakpointProperties() != null;
         if (atBreakpoint && e.getBreakpointProperties().get(SIMULATION_THREAD_RUN_KEY) != null)
         {
@@ -321,6 +320,8 @@ public class GreenfootDebugHandler implements DebuggerListener, ObjectBenchInter
         }
         else if (e.isHalt() && isSimulationThread(e.getThread()))
         {
+            // Frames are only fetched as far down as the checks below look:
+            List<SourceLocation> stack = e.getThread().getStackView();
             if (atBreakpoint && e.getBreakpointProperties().get(SIMULATION_THREAD_PAUSED_KEY) != null)
             {
                 // They are going to pause; remove all special breakpoints and set them going
@@ -345,7 +346,7 @@ public class GreenfootDebugHandler implements DebuggerListener, ObjectBenchInter
                 if (atBreakpoint && e.getBreakpointProperties().get(SIMULATION_INVOKE_KEY) != null) {
                     e.getThread().stepInto();
                     return true;
-                } else if (inInvokeMethods(stack, 0)) {
+                } else if (!stack.isEmpty() && inInvokeMethods(stack.get(0))) {
                     // Finished calling act() and have stepped out; run to next one:
                     runToInternalBreakpoint(debugger, e.getThread());
                     return true;                    
@@ -368,6 +369,7 @@ public class GreenfootDebugHandler implements DebuggerListener, ObjectBenchInter
     /**
      * Fetches all the objects in a debug VM array into
      * a server VM list of debug objects (the array elements).
+     * The elements are fetched together, not one at a time.
      * @param arrayValue
      * @return
      */
@@ -375,12 +377,7 @@ public class GreenfootDebugHandler implements DebuggerListener, ObjectBenchInter
     @SuppressWarnings("threadchecker")
     private List<DebuggerObject> fetchArray(DebuggerObject arrayValue)
     {
-        List<DebuggerObject> elements = new ArrayList<>(arrayValue.getElementCount());
-        for (int i = 0; i < arrayValue.getElementCount(); i++)
-        {
-            elements.add(arrayValue.getElementObject(i));
-        }
-        return elements;
+        return arrayValue.getElementObjects(0, arrayValue.getElementCount());
     }
 
     /**
@@ -472,8 +469,8 @@ public class GreenfootDebugHandler implements DebuggerListener, ObjectBenchInter
      */
     private static boolean insideUserCode(List<SourceLocation> stack)
     {
-        for (int i = 0; i < stack.size();i++) {
-            if (inInvokeMethods(stack, i)) {
+        for (SourceLocation loc : stack) {
+            if (inInvokeMethods(loc)) {
                 return true;
             }
         }
@@ -485,21 +482,19 @@ public class GreenfootDebugHandler implements DebuggerListener, ObjectBenchInter
      * methods that call the World and Actor's act() methods or the method that runs
      * other user code on the simulation thread 
      */
-    private static boolean inInvokeMethods(List<SourceLocation> stack, int frame)
-    {
-        if (frame < stack.size()) {
-            String className = stack.get(frame).getClassName();
-            if (className.equals(SIMULATION_CLASS)) {
-                String methodName = stack.get(frame).getMethodName();
-                for (String actMethod : INVOKE_METHODS) {
-                    if (actMethod.equals(methodName)) {
-                        return true;
-                    }
+    private static boolean inInvokeMethods(SourceLocation frame)
+    {
+        String className = frame.getClassName();
+        if (className.equals(SIMULATION_CLASS)) {
+            String methodName = frame.getMethodName();
+            for (String actMethod : INVOKE_METHODS) {
+                if (actMethod.equals(methodName)) {
+                    return true;
                 }
             }
-            else if (JavaNames.getBase(className).startsWith(Invoker.SHELLNAME)) {
-                return true;
-            }
+        }
+        else if (JavaNames.getBase(className).startsWith(Invoker.SHELLNAME)) {
+            return true;
         }
         
         return false;
@@ -102,6 +102,11 @@ public class VMCommsMain implements Closeable
     private int setSpeedCommandCount = 0;
     private int lastPaintSeq = -1;
     private int lastConsumedImg = -1;
+    // The paint sequence of the last image successfully applied to the stage (-1 if the stage's
+    // image is not known to be up to date), against which partial images are applied:
+    private int lastAppliedImg = -1;
+    // Whether we have asked the debug VM for a full image, and not yet received one:
+    private boolean fullFrameRequested = false;
     
     private boolean checkingIO = false;
     
@@ -298,7 +303,34 @@ public class VMCommsMain implements Closeable
             copy.position(USER_AREA_OFFSET + 2);
             int width = copy.get();
             int height = copy.get();
-            stage.receivedWorldImage(width, height, copy);
+            int tileCount = copy.get();
+            int basePaintSeq = copy.get();
+            copy.get(); // skip payload length
+            if (tileCount < 0)
+            {
+                stage.receivedWorldImage(width, height, copy);
+                lastAppliedImg = lastPaintSeq;
+                fullFrameRequested = false;
+            }
+            else
+            {
+                int[] tiles = new int[tileCount * 4];
+                copy.get(tiles);
+                if (basePaintSeq == lastAppliedImg && stage.receivedWorldImageTiles(width, height, tiles, copy))
+                {
+                    lastAppliedImg = lastPaintSeq;
+                }
+                else
+                {
+                    // We don't have the image that the tiles are relative to; ask for a full image:
+                    lastAppliedImg = -1;
+                    if (!fullFrameRequested)
+                    {
+                        pendingCommands.add(new Command(COMMAND_REQUEST_FULL_FRAME));
+                        fullFrameRequested = true;
+                    }
+                }
+            }
             haveUpdatedImage = false;
             lastConsumedImg = lastPaintSeq;
         }
@@ -363,12 +395,15 @@ public class VMCommsMain implements Closeable
                     int paintSeq = sharedMemory.get();
                     int width = sharedMemory.get();
                     int height = sharedMemory.get();
+                    sharedMemory.get(); // skip tile count
+                    sharedMemory.get(); // skip base paint sequence
+                    int payloadLength = sharedMemory.get();
                     if (width != 0 && height != 0 && paintSeq != lastPaintSeq)
                     {
                         lastPaintSeq = paintSeq;
                         haveUpdatedImage = true;
                     }
-                    sharedMemory.position(sharedMemory.position() + width * height);
+                    sharedMemory.position(sharedMemory.position() + payloadLength);
     
                     // Get rid of all commands that the client has confirmed it has seen:
                     int lastAckCommand = sharedMemory.get();
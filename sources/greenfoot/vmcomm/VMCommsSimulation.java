@@ -44,6 +44,7 @@ import java.nio.IntBuffer;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileLock;
+import java.util.Arrays;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.atomic.AtomicReference;
@@ -112,21 +113,28 @@ public class VMCommsSimulation
      *        unchanged in subsequent frames).
      * Pos 1: Width of world image in pixels (W)
      * Pos 2: Height of world image in pixels (H)
-     * Pos 3 incl to 3+(W*H) excl, if W and H are both greater than zero:
-     *        W * H pixels one row at a time with no gaps, each pixel is one
+     * Pos 3: Tile count (T). -1 if the image is complete; otherwise the image consists only of T
+     *        tiles which have changed since the image painted at the base sequence index.
+     * Pos 4: Base sequence index: the paint sequence of the previous image, which a partial
+     *        image should be applied on top of.
+     * Pos 5: Length of the image data (L), in integers.
+     * Pos 6 incl to 6+L excl, if W and H are both greater than zero:
+     *        If T is -1, W * H pixels one row at a time with no gaps, each pixel is one
      *        integer, in BGRA form, i.e. blue is highest 8 bits, alpha is lowest.
-     * Pos 3+(W*H): Sequence ID of most recently processed command, or -1 if N/A.
-     * Pos 4+(W*H): Stopped-with-error count.  (If this goes up, server VM will bring terminal to front)
-     * Pos 5+(W*H) and 6+(W*H): Two ints (highest bits first) with value of System.currentTimeMillis()
-     *                          at the point when some execution that may contain user code last started on
-     *                          the simulation thread, or 0L if user code is not currently running.
-     * Pos 7+(W*H): The current simulation speed (1 to 100)
-     * Pos 8+(W*H): world counter if a world is currently installed, or 0 if there is no world.
-     * Pos 9+(W*H): The world cell size in pixels
-     * Pos 10+(W*H): -1 if not currently awaiting a Greenfoot.ask() answer.
-     *              If awaiting, it is count (P) of following codepoints which make up prompt.
-     * Pos 11+(W*H) to 11+(W*H)+P excl: codepoints making up ask prompt.
-     * Pos 11+(W*H)+P: 1 if the the delay loop is currently running, or 0 otherwise.
+     *        Otherwise, T quadruples (x, y, width, height) giving the position of each changed
+     *        tile, followed by the pixels of each tile in turn (one row at a time, as above).
+     * Pos 6+L: Sequence ID of most recently processed command, or -1 if N/A.
+     * Pos 7+L: Stopped-with-error count.  (If this goes up, server VM will bring terminal to front)
+     * Pos 8+L and 9+L: Two ints (highest bits first) with value of System.currentTimeMillis()
+     *                  at the point when some execution that may contain user code last started on
+     *                  the simulation thread, or 0L if user code is not currently running.
+     * Pos 10+L: The current simulation speed (1 to 100)
+     * Pos 11+L: world counter if a world is currently installed, or 0 if there is no world.
+     * Pos 12+L: The world cell size in pixels
+     * Pos 13+L: -1 if not currently awaiting a Greenfoot.ask() answer.
+     *           If awaiting, it is count (P) of following codepoints which make up prompt.
+     * Pos 14+L to 14+L+P excl: codepoints making up ask prompt.
+     * Pos 14+L+P: 1 if the the delay loop is currently running, or 0 otherwise.
      */
     private final IntBuffer sharedMemory;
     private int seq = 1;
@@ -137,6 +145,19 @@ public class VMCommsSimulation
     private int lastPaintSeq = -1; // last paint sequence
     private int lastPaintSize; // number of ints last transmitted as image
     
+    // Size (in pixels) of the square tiles which are compared to find changed areas of the image:
+    private static final int TILE_SIZE = 32;
+    // Copy of the last image transmitted, used to find which tiles have changed (null if none):
+    private int[] lastSentPixels;
+    private int lastSentWidth;
+    private int lastSentHeight;
+    // The world counter at the time the last image was transmitted:
+    private int lastSentWorldCounter;
+    // Whether the server VM has asked for a complete image:
+    private boolean fullFrameRequested;
+    // Buffer for the positions of changed tiles (x, y, width, height quadruples):
+    private int[] changedTiles = new int[0];
+    
     // How many times have we stopped with an error?  We continuously send the count to the
     // server VM, so that the server VM can observe changes in the count (only ever increases).
     private int stoppedWithErrorCount = 0;
@@ -148,6 +169,15 @@ public class VMCommsSimulation
     // Size of the shared memory file
     private final int fileSize;
 
+    // Whether to periodically print the average time taken to transfer a frame:
+    private static final boolean PRINT_FRAME_STATS = false;
+    private static final int FRAME_STATS_INTERVAL = 100;
+    // Frames transferred, and total nanoseconds spent copying them, since the last report:
+    private int framesTransferred;
+    private long frameTransferNanos;
+    // Average time in nanoseconds to copy a frame into shared memory, over the last report interval:
+    private volatile long averageFrameTransferNanos;
+
     /**
      * Construct a VMCommsSimulation.
      * 
@@ -313,7 +343,8 @@ public class VMCommsSimulation
             }
             
             BufferedImage img = doUpdateImage ? worldImageForSending.getAndSet(null) : null;
-            int [] raw = (img == null) ? null : ((DataBufferInt) img.getData().getDataBuffer()).getData();
+            // Use the raster's backing array directly; getData() would copy the whole image:
+            int [] raw = (img == null) ? null : ((DataBufferInt) img.getRaster().getDataBuffer()).getData();
 
             int imageWidth = 0;
             int imageHeight = 0;
@@ -330,19 +361,24 @@ public class VMCommsSimulation
                 sharedMemory.put(lastPaintSeq);
                 sharedMemory.get(); // skip width
                 sharedMemory.get(); // skip height
+                sharedMemory.get(); // skip tile count
+                sharedMemory.get(); // skip base sequence
+                sharedMemory.get(); // skip length
                 sharedMemory.position(sharedMemory.position() + lastPaintSize);
             }
             else
             {
+                int basePaintSeq = lastPaintSeq;
                 lastPaintSeq = (seq - 1);
                 sharedMemory.put(lastPaintSeq);
                 sharedMemory.put(imageWidth);
                 sharedMemory.put(imageHeight);
-                for (int i = 0; i < raw.length; i++)
-                {
-                    sharedMemory.put(raw[i]);
-                }
-                lastPaintSize = raw.length;
+                long transferStart = System.nanoTime();
+                boolean allowPartial = !fullFrameRequested && curWorldCounter == lastSentWorldCounter;
+                lastPaintSize = writeImage(raw, imageWidth, imageHeight, basePaintSeq, allowPartial);
+                recordFrameTransfer(System.nanoTime() - transferStart);
+                fullFrameRequested = false;
+                lastSentWorldCounter = curWorldCounter;
                 
                 // Now that we've rendered from it, put it back into the old images for re-use:
                 worldImagesForPainting.offer(img);
@@ -412,6 +448,8 @@ public class VMCommsSimulation
         }
         catch (BufferOverflowException ex)
         {
+            // The previous image may be partially updated; make sure the next one is complete:
+            lastSentPixels = null;
             try
             {
                 putLock.release();
@@ -438,6 +476,169 @@ public class VMCommsSimulation
         }
     }
     
+    /**
+     * Write a world image into the shared memory area, starting at the tile count (see the
+     * shared memory documentation). Only the tiles which have changed since the last image
+     * are written, unless a partial image is not allowed or would not be much smaller than
+     * the complete image.
+     * 
+     * @param raw  The image pixels
+     * @param width  The image width
+     * @param height  The image height
+     * @param basePaintSeq  The paint sequence of the previously transmitted image
+     * @param allowPartial  Whether it is permissible to send only the changed tiles
+     * @return  The length of the image data written, in integers
+     */
+    @OnThread(Tag.Worker)
+    private int writeImage(int[] raw, int width, int height, int basePaintSeq, boolean allowPartial)
+    {
+        int tileCount = -1;
+        int pixelCount = 0;
+        if (allowPartial && lastSentPixels != null && lastSentWidth == width && lastSentHeight == height)
+        {
+            tileCount = findChangedTiles(raw, width, height, raw.length / 2);
+            // A count of -1 means that too much has changed to be worth sending tiles.
+        }
+
+        if (tileCount == -1)
+        {
+            sharedMemory.put(-1);
+            sharedMemory.put(basePaintSeq);
+            sharedMemory.put(raw.length);
+            sharedMemory.put(raw);
+
+            if (lastSentPixels == null || lastSentPixels.length != raw.length)
+            {
+                lastSentPixels = new int[raw.length];
+            }
+            System.arraycopy(raw, 0, lastSentPixels, 0, raw.length);
+            lastSentWidth = width;
+            lastSentHeight = height;
+            return raw.length;
+        }
+
+        for (int i = 0; i < tileCount * 4; i += 4)
+        {
+            pixelCount += changedTiles[i + 2] * changedTiles[i + 3];
+        }
+        int length = tileCount * 4 + pixelCount;
+        sharedMemory.put(tileCount);
+        sharedMemory.put(basePaintSeq);
+        sharedMemory.put(length);
+        sharedMemory.put(changedTiles, 0, tileCount * 4);
+        for (int i = 0; i < tileCount * 4; i += 4)
+        {
+            int tileX = changedTiles[i];
+            int tileY = changedTiles[i + 1];
+            int tileWidth = changedTiles[i + 2];
+            int tileHeight = changedTiles[i + 3];
+            for (int row = 0; row < tileHeight; row++)
+            {
+                int offset = (tileY + row) * width + tileX;
+                sharedMemory.put(raw, offset, tileWidth);
+                System.arraycopy(raw, offset, lastSentPixels, offset, tileWidth);
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Compare an image with the last transmitted image, and record the positions of the tiles
+     * which differ into the changedTiles array. Horizontally adjacent changed tiles are merged.
+     * 
+     * @param raw  The image pixels
+     * @param width  The image width
+     * @param height  The image height
+     * @param maxPixels  The maximum number of changed pixels worth sending as tiles
+     * @return  The number of changed tiles, or -1 if more than maxPixels pixels are in changed tiles.
+     */
+    @OnThread(Tag.Worker)
+    private int findChangedTiles(int[] raw, int width, int height, int maxPixels)
+    {
+        int tilesAcross = (width + TILE_SIZE - 1) / TILE_SIZE;
+        int tilesDown = (height + TILE_SIZE - 1) / TILE_SIZE;
+        if (changedTiles.length < tilesAcross * tilesDown * 4)
+        {
+            changedTiles = new int[tilesAcross * tilesDown * 4];
+        }
+
+        int tileCount = 0;
+        int pixelCount = 0;
+        for (int tileY = 0; tileY < height; tileY += TILE_SIZE)
+        {
+            int tileHeight = Math.min(TILE_SIZE, height - tileY);
+            // The start of the current run of changed tiles in this row, or -1 if none:
+            int runStart = -1;
+            // We go one tile past the end of the row, to finish off any run of changed tiles:
+            for (int tileIndex = 0; tileIndex <= tilesAcross; tileIndex++)
+            {
+                int tileX = tileIndex * TILE_SIZE;
+                boolean changed = false;
+                if (tileIndex < tilesAcross)
+                {
+                    int tileWidth = Math.min(TILE_SIZE, width - tileX);
+                    for (int row = tileY; row < tileY + tileHeight && !changed; row++)
+                    {
+                        int offset = row * width + tileX;
+                        changed = !Arrays.equals(raw, offset, offset + tileWidth,
+                                lastSentPixels, offset, offset + tileWidth);
+                    }
+                }
+
+                if (changed && runStart == -1)
+                {
+                    runStart = tileX;
+                }
+                else if (!changed && runStart != -1)
+                {
+                    int runWidth = Math.min(tileX, width) - runStart;
+                    changedTiles[tileCount * 4] = runStart;
+                    changedTiles[tileCount * 4 + 1] = tileY;
+                    changedTiles[tileCount * 4 + 2] = runWidth;
+                    changedTiles[tileCount * 4 + 3] = tileHeight;
+                    tileCount++;
+                    pixelCount += runWidth * tileHeight;
+                    if (pixelCount > maxPixels)
+                    {
+                        return -1;
+                    }
+                    runStart = -1;
+                }
+            }
+        }
+        return tileCount;
+    }
+
+    /**
+     * Record the time taken to copy a frame into the shared memory area.
+     */
+    @OnThread(Tag.Worker)
+    private void recordFrameTransfer(long nanos)
+    {
+        framesTransferred++;
+        frameTransferNanos += nanos;
+        if (framesTransferred == FRAME_STATS_INTERVAL)
+        {
+            averageFrameTransferNanos = frameTransferNanos / framesTransferred;
+            if (PRINT_FRAME_STATS)
+            {
+                Debug.message("Average frame transfer time: " + (averageFrameTransferNanos / 1000) + "us");
+            }
+            framesTransferred = 0;
+            frameTransferNanos = 0;
+        }
+    }
+
+    /**
+     * Get the average time, in nanoseconds, taken to copy a world image into the shared
+     * memory area (averaged over recent frames). Returns 0 until enough frames have been sent.
+     */
+    @OnThread(Tag.Any)
+    public long getAverageFrameTransferNanos()
+    {
+        return averageFrameTransferNanos;
+    }
+
     /**
      * An "ask" answer has been received from the other VM; record it and signal the simulation
      * thread.
@@ -561,6 +762,9 @@ public class VMCommsSimulation
                     case Command.COMMAND_WORLD_FOCUS_LOST:
                         WorldHandler.getInstance().worldFocusChanged(false);
                         break;
+                    case Command.COMMAND_REQUEST_FULL_FRAME:
+                        fullFrameRequested = true;
+                        break;
                 }
             }
         }
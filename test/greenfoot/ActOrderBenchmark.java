@@ -0,0 +1,172 @@
+/*
+ This file is part of the Greenfoot program.
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot;
+
+import greenfoot.util.BenchmarkHarness;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A benchmark for the act-loop's view of the world's actors. Each round, the
+ * simulation needs a copy of the actors in act order which the actors' act()
+ * methods cannot disturb. This compares copying the act-order set into a new
+ * ArrayList every round (as the act loop used to) with iterating the cached
+ * snapshot arrays from TreeActorSet.getSubSetSnapshots(), and reports the
+ * throughput and allocation per actor visited.
+ * <p>
+ * Two workloads are run, with a fixed number of actors: one where the world
+ * does not change between rounds, and one where a few actors are replaced each
+ * round (so the snapshots must be rebuilt).
+ * <p>
+ * Run the main method, optionally with the number of actors as an argument.
+ * A graphics environment is needed, since actors are created with images.
+ */
+class ActOrderBenchmark
+{
+    private static final int DEFAULT_ACTORS = 5000;
+    
+    /** Rounds run before measuring starts, to let the JIT compiler settle */
+    private static final int WARMUP_ROUNDS = 2000;
+    private static final int MEASURED_ROUNDS = 10000;
+    
+    /** Number of actors replaced per round, in the churn workload */
+    private static final int CHURN_PER_ROUND = 4;
+    
+    /**
+     * The ways of getting the act-order view which are measured.
+     */
+    private enum Method
+    {
+        COPY("ArrayList copy"),
+        SNAPSHOTS("cached snapshots");
+        
+        private final String name;
+        
+        private Method(String name)
+        {
+            this.name = name;
+        }
+        
+        @Override
+        public String toString()
+        {
+            return name;
+        }
+    }
+    
+    private static class ActorA extends Actor
+    {
+    }
+    
+    private static class ActorB extends Actor
+    {
+    }
+    
+    private static class ActorC extends Actor
+    {
+    }
+    
+    private final int numActors;
+    private final BenchmarkHarness harness = new BenchmarkHarness(Method.values());
+    
+    ActOrderBenchmark(int numActors)
+    {
+        this.numActors = numActors;
+    }
+    
+    public static void main(String[] args)
+    {
+        BenchmarkHarness.initialiseGreenfoot();
+        
+        int numActors = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_ACTORS;
+        
+        ActOrderBenchmark benchmark = new ActOrderBenchmark(numActors);
+        System.out.println(numActors + " actors in 3 classes, with an act order set");
+        BenchmarkHarness.printHeader("workload", "method", "actor");
+        for (int churn : new int[] {0, CHURN_PER_ROUND}) {
+            benchmark.harness.reset();
+            for (Method method : Method.values()) {
+                benchmark.run(method, churn);
+            }
+            benchmark.harness.printResults(churn == 0 ? "steady" : "churn");
+        }
+        benchmark.harness.printChecksum();
+    }
+    
+    /**
+     * Run one workload with one way of getting the act-order view, recording the results.
+     *
+     * @param churn  The number of actors to replace between rounds
+     */
+    private void run(Method method, int churn)
+    {
+        TreeActorSet set = new TreeActorSet();
+        set.setClassOrder(false, ActorC.class, ActorA.class);
+        ArrayDeque<Actor> inSet = new ArrayDeque<Actor>();
+        for (int i = 0; i < numActors; i++) {
+            Actor actor = newActor(i);
+            set.add(actor);
+            inSet.add(actor);
+        }
+        
+        for (int round = 0; round < WARMUP_ROUNDS + MEASURED_ROUNDS; round++) {
+            // Replace some of the oldest actors, outside the measurement
+            for (int i = 0; i < churn; i++) {
+                Actor old = inSet.poll();
+                set.remove(old);
+                Actor actor = newActor(round + i);
+                set.add(actor);
+                inSet.add(actor);
+            }
+            
+            long start = harness.start();
+            int n = 0;
+            if (method == Method.SNAPSHOTS) {
+                for (Actor[] bucket : set.getSubSetSnapshots()) {
+                    for (Actor actor : bucket) {
+                        harness.consume(actor.hashCode() & 1);
+                        n++;
+                    }
+                }
+            }
+            else {
+                List<Actor> objects = new ArrayList<Actor>(set);
+                for (Actor actor : objects) {
+                    harness.consume(actor.hashCode() & 1);
+                    n++;
+                }
+            }
+            harness.end(round >= WARMUP_ROUNDS, method, start, n);
+        }
+    }
+    
+    private static Actor newActor(int i)
+    {
+        switch (i % 3) {
+            case 0: return new ActorA();
+            case 1: return new ActorB();
+            default: return new ActorC();
+        }
+    }
+}
@@ -0,0 +1,404 @@
+/*
+ This file is part of the Greenfoot program.
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot;
+
+import greenfoot.util.BenchmarkHarness;
+
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * A benchmark for ActorSet, the set used to hold the actors of a world in act and
+ * paint order. It runs a reproducible workload (a fixed random seed) which mimics
+ * a world continually creating and removing short-lived actors such as bullets,
+ * and reports the throughput and allocation per operation. The linked-list
+ * implementation which ActorSet used before (kept here as PreviousActorSet) and
+ * a LinkedHashSet are measured as well, for comparison.
+ * <p>
+ * Run the main method, optionally with the number of actors as an argument.
+ * A graphics environment is needed, since actors are created with images.
+ */
+class ActorSetBenchmark
+{
+    private static final int DEFAULT_ACTORS = 20000;
+    
+    /** Steps run before measuring starts, to let the JIT compiler settle */
+    private static final int WARMUP_STEPS = 200;
+    private static final int MEASURED_STEPS = 1000;
+    
+    /** Fraction of the actors replaced in each step */
+    private static final double CHURN = 0.05;
+    
+    /** Number of membership tests per step */
+    private static final int LOOKUPS_PER_STEP = 10000;
+    
+    private static final long SEED = 42;
+    
+    /**
+     * The operations that are measured.
+     */
+    private enum Operation
+    {
+        ADD("add"),
+        REMOVE("remove"),
+        CONTAINS("contains"),
+        ITERATE("iterate (per actor)");
+        
+        final String name;
+        
+        private Operation(String name)
+        {
+            this.name = name;
+        }
+        
+        @Override
+        public String toString()
+        {
+            return name;
+        }
+    }
+    
+    private static class BenchActor extends Actor
+    {
+    }
+    
+    private final int numActors;
+    private final BenchmarkHarness harness = new BenchmarkHarness(Operation.values());
+    
+    /** Actors which are not currently in the set, to be added later */
+    private final ArrayDeque<Actor> spare = new ArrayDeque<Actor>();
+    
+    ActorSetBenchmark(int numActors)
+    {
+        this.numActors = numActors;
+    }
+    
+    public static void main(String[] args)
+    {
+        BenchmarkHarness.initialiseGreenfoot();
+        
+        int numActors = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_ACTORS;
+        
+        ActorSetBenchmark benchmark = new ActorSetBenchmark(numActors);
+        System.out.println("Churn of " + (int) (CHURN * 100) + "% per step (" + numActors + " actors)");
+        BenchmarkHarness.printHeader("set", "operation", "op");
+        benchmark.run("ActorSet", ActorSet::new);
+        benchmark.run("previous", PreviousActorSet::new);
+        benchmark.run("LinkedHashSet", LinkedHashSet<Actor>::new);
+        benchmark.harness.printChecksum();
+    }
+    
+    /**
+     * Run the workload against a new set, and print the results.
+     */
+    private void run(String setName, Supplier<Set<Actor>> setFactory)
+    {
+        harness.reset();
+        
+        Random random = new Random(SEED);
+        Set<Actor> set = setFactory.get();
+        // Actors are removed from the set in roughly the order they were added,
+        // like bullets which leave the world after a while:
+        ArrayDeque<Actor> inSet = new ArrayDeque<Actor>();
+        spare.clear();
+        for (int i = 0; i < numActors; i++) {
+            Actor actor = new BenchActor();
+            set.add(actor);
+            inSet.add(actor);
+        }
+        Actor[] lookups = new Actor[LOOKUPS_PER_STEP];
+        int churn = (int) (numActors * CHURN);
+        
+        for (int step = 0; step < WARMUP_STEPS + MEASURED_STEPS; step++) {
+            boolean measure = step >= WARMUP_STEPS;
+            
+            // Remove a random selection of the older actors
+            Actor[] toRemove = new Actor[churn];
+            for (int i = 0; i < churn; i++) {
+                Actor actor = inSet.poll();
+                if (random.nextInt(4) == 0) {
+                    // This one survives a little longer
+                    inSet.add(actor);
+                    actor = inSet.poll();
+                }
+                toRemove[i] = actor;
+            }
+            long start = harness.start();
+            for (Actor actor : toRemove) {
+                if (set.remove(actor)) {
+                    harness.consume(1);
+                }
+            }
+            harness.end(measure, Operation.REMOVE, start, churn);
+            
+            // Add actors, reusing ones which were removed earlier
+            Actor[] toAdd = new Actor[churn];
+            for (int i = 0; i < churn; i++) {
+                toAdd[i] = newActor();
+                inSet.add(toAdd[i]);
+            }
+            for (Actor actor : toRemove) {
+                spare.add(actor);
+            }
+            start = harness.start();
+            for (Actor actor : toAdd) {
+                if (set.add(actor)) {
+                    harness.consume(1);
+                }
+            }
+            harness.end(measure, Operation.ADD, start, churn);
+            
+            // Look up a mix of members and non-members
+            Actor[] members = inSet.toArray(new Actor[inSet.size()]);
+            for (int i = 0; i < lookups.length; i++) {
+                lookups[i] = (i % 4 == 0 && ! spare.isEmpty()) ? spare.peek() : members[random.nextInt(members.length)];
+            }
+            start = harness.start();
+            for (Actor actor : lookups) {
+                if (set.contains(actor)) {
+                    harness.consume(1);
+                }
+            }
+            harness.end(measure, Operation.CONTAINS, start, lookups.length);
+            
+            start = harness.start();
+            int n = 0;
+            for (Iterator<Actor> i = set.iterator(); i.hasNext(); ) {
+                harness.consume(i.next().hashCode() & 1);
+                n++;
+            }
+            harness.end(measure, Operation.ITERATE, start, n);
+        }
+        
+        harness.printResults(setName);
+    }
+    
+    /**
+     * Get an actor which is not in the set: a spare one if there is one, or else a new one.
+     * (Spare actors are ones which have been removed from the set.)
+     */
+    private Actor newActor()
+    {
+        Actor actor = spare.poll();
+        return actor != null ? actor : new BenchActor();
+    }
+    
+    /**
+     * The implementation of ActorSet used before the open-addressing version: a
+     * doubly linked list of nodes, which are also chained into hash buckets.
+     */
+    private static class PreviousActorSet extends AbstractSet<Actor>
+    {
+        private ListNode listHeadTail = new ListNode();
+        
+        private ListNode [] hashMap = new ListNode[0];
+        
+        private int numActors = 0;
+        
+        @Override
+        public boolean add(Actor actor)
+        {
+            if (getActorNode(actor) != null) {
+                return false;
+            }
+            
+            numActors++;
+            ListNode newNode = new ListNode(actor, listHeadTail.prev);
+            
+            int seq = ActorVisitor.getSequenceNumber(actor);
+            if (numActors >= 2 * hashMap.length) {
+                // grow the hashmap
+                resizeHashmap();
+            }
+            else {
+                int hash = seq % hashMap.length;
+                ListNode hashHead = hashMap[hash];
+                hashMap[hash] = newNode;
+                newNode.setHashListHead(hashHead);
+            }
+            return true;
+        }
+        
+        private void resizeHashmap()
+        {
+            hashMap = new ListNode[numActors];
+            ListNode currentActor = listHeadTail.next;
+            while (currentActor != listHeadTail) {
+                int seq = ActorVisitor.getSequenceNumber(currentActor.actor);
+                int hash = seq % numActors;
+                ListNode hashHead = hashMap[hash];
+                hashMap[hash] = currentActor;
+                currentActor.setHashListHead(hashHead);
+                
+                currentActor = currentActor.next;
+            }
+        }
+        
+        @Override
+        public boolean contains(Object o)
+        {
+            return o instanceof Actor && getActorNode((Actor) o) != null;
+        }
+        
+        private ListNode getActorNode(Actor actor)
+        {
+            if (hashMap.length == 0) {
+                return null;
+            }
+            
+            int seq = ActorVisitor.getSequenceNumber(actor);
+            int hash = seq % hashMap.length;
+            ListNode hashHead = hashMap[hash];
+            
+            if (hashHead == null) {
+                return null;
+            }
+            else if (hashHead.actor == actor) {
+                return hashHead;
+            }
+            
+            ListNode curNode = hashHead.nextHash;
+            while (curNode != hashHead) {
+                if (curNode.actor == actor) {
+                    return curNode;
+                }
+                curNode = curNode.nextHash;
+            }
+            
+            return null;
+        }
+        
+        @Override
+        public boolean remove(Object o)
+        {
+            ListNode actorNode = o instanceof Actor ? getActorNode((Actor) o) : null;
+            if (actorNode == null) {
+                return false;
+            }
+            
+            int seq = ActorVisitor.getSequenceNumber(actorNode.actor);
+            int hash = seq % hashMap.length;
+            if (hashMap[hash] == actorNode) {
+                hashMap[hash] = actorNode.nextHash;
+                if (hashMap[hash] == actorNode) {
+                    // The circular list had only one element
+                    hashMap[hash] = null;
+                }
+            }
+            
+            actorNode.remove();
+            numActors--;
+            if (numActors <= hashMap.length / 2) {
+                // shrink the hashMap
+                resizeHashmap();
+            }
+            return true;
+        }
+        
+        @Override
+        public int size()
+        {
+            return numActors;
+        }
+        
+        @Override
+        public Iterator<Actor> iterator()
+        {
+            return new Iterator<Actor>() {
+                ListNode currentNode = listHeadTail;
+                
+                @Override
+                public boolean hasNext()
+                {
+                    return currentNode.next != listHeadTail;
+                }
+                
+                @Override
+                public Actor next()
+                {
+                    currentNode = currentNode.next;
+                    return currentNode.actor;
+                }
+            };
+        }
+        
+        private static class ListNode
+        {
+            Actor actor;
+            ListNode next;
+            ListNode prev;
+            
+            // The node also appears in a linked list representing the hash bucket 
+            ListNode nextHash;
+            ListNode prevHash;
+            
+            ListNode()
+            {
+                // actor, next, prev = null: this is the head/tail node
+                next = this;
+                prev = this;
+            }
+            
+            /**
+             * Create a new list node and insert it at the tail of the list.
+             */
+            ListNode(Actor actor, ListNode listTail)
+            {
+                this.actor = actor;
+                next = listTail.next;
+                prev = listTail;
+                listTail.next = this;
+                next.prev = this;
+            }
+            
+            /**
+             * Set this node as the new head node in a hash bucket list.
+             */
+            void setHashListHead(ListNode oldHead)
+            {
+                if (oldHead == null) {
+                    nextHash = this;
+                    prevHash = this;
+                }
+                else {
+                    nextHash = oldHead;
+                    prevHash = oldHead.prevHash;
+                    oldHead.prevHash = this;
+                    prevHash.nextHash = this;
+                }
+            }
+            
+            void remove()
+            {
+                next.prev = prev;
+                prev.next = next;
+                nextHash.prevHash = prevHash;
+                prevHash.nextHash = nextHash;
+            }
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ This file is part of the Greenfoot program.
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot;
+
+import greenfoot.platforms.standalone.GreenfootUtilDelegateStandAlone;
+import greenfoot.util.GreenfootUtil;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for GreenfootImage's tracking of changes to its image data.
+ */
+public class GreenfootImageTest
+{
+    private static File imageFile;
+    
+    @BeforeClass
+    public static void setUp() throws IOException
+    {
+        GreenfootUtil.initialise(new GreenfootUtilDelegateStandAlone());
+        imageFile = File.createTempFile("greenfootImageTest", ".png");
+        ImageIO.write(new BufferedImage(8, 8, BufferedImage.TYPE_INT_ARGB), "png", imageFile);
+    }
+    
+    @AfterClass
+    public static void tearDown()
+    {
+        imageFile.delete();
+    }
+    
+    /**
+     * Loading an image copies it into the image cache; that must not stop changes to
+     * the loaded image being tracked.
+     */
+    @Test
+    public void testLoadedImageKeepsVersion()
+    {
+        GreenfootImage image = new GreenfootImage(imageFile.getAbsolutePath());
+        assertTrue(image.getVersion() >= 0);
+        
+        GreenfootImage copy = new GreenfootImage(image);
+        assertTrue(image.getVersion() >= 0);
+        assertTrue(copy.getVersion() >= 0);
+    }
+    
+    @Test
+    public void testCopiedImageKeepsVersion()
+    {
+        GreenfootImage image = new GreenfootImage(10, 10);
+        image.fillRect(0, 0, 5, 5);
+        new GreenfootImage(image);
+        assertTrue(image.getVersion() >= 0);
+        
+        image.getAwtImage();
+        assertTrue(image.getVersion() == -1);
+    }
+}
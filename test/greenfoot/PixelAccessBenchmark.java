@@ -0,0 +1,150 @@
+/*
+ This file is part of the Greenfoot program.
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot;
+
+import greenfoot.util.BenchmarkHarness;
+
+/**
+ * A benchmark for reading and writing the pixels of a GreenfootImage. It runs
+ * the same filter (inverting the colour of every pixel) using getColorAt() and
+ * setColorAt() for each pixel, using the bulk getPixels() and setPixels()
+ * methods, a row at a time and for the whole image, and using the array returned
+ * by getPixelBuffer() directly. It reports the throughput and allocation per
+ * pixel for each.
+ * <p>
+ * Run the main method, optionally with the width and height of the image as
+ * arguments.
+ */
+class PixelAccessBenchmark
+{
+    private static final int DEFAULT_SIZE = 1024;
+    
+    /** Passes run before measuring starts, to let the JIT compiler settle */
+    private static final int WARMUP_PASSES = 5;
+    private static final int MEASURED_PASSES = 20;
+    
+    /**
+     * The ways of accessing the pixels which are measured.
+     */
+    private enum Access
+    {
+        PER_PIXEL("getColorAt/setColorAt"),
+        BULK_ROWS("getPixels (rows)"),
+        BULK_IMAGE("getPixels (image)"),
+        DIRECT("getPixelBuffer");
+        
+        final String name;
+        
+        private Access(String name)
+        {
+            this.name = name;
+        }
+        
+        @Override
+        public String toString()
+        {
+            return name;
+        }
+    }
+    
+    private final int width;
+    private final int height;
+    private final BenchmarkHarness harness = new BenchmarkHarness(Access.values());
+    
+    PixelAccessBenchmark(int width, int height)
+    {
+        this.width = width;
+        this.height = height;
+    }
+    
+    public static void main(String[] args)
+    {
+        int width = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_SIZE;
+        int height = args.length > 1 ? Integer.parseInt(args[1]) : width;
+        
+        PixelAccessBenchmark benchmark = new PixelAccessBenchmark(width, height);
+        System.out.println("Inverting a " + width + "x" + height + " image");
+        BenchmarkHarness.printHeader("image", "access", "pixel");
+        for (Access access : Access.values()) {
+            benchmark.run(access);
+        }
+        benchmark.harness.printResults(width + "x" + height);
+        benchmark.harness.printChecksum();
+    }
+    
+    /**
+     * Run the filter repeatedly on a new image, recording the results.
+     */
+    private void run(Access access)
+    {
+        GreenfootImage image = new GreenfootImage(width, height);
+        image.setColor(Color.ORANGE);
+        image.fill();
+        
+        for (int pass = 0; pass < WARMUP_PASSES + MEASURED_PASSES; pass++) {
+            long start = harness.start();
+            invert(image, access);
+            harness.end(pass >= WARMUP_PASSES, access, start, (long) width * height);
+        }
+        harness.consume(image.getColorAt(width / 2, height / 2).getRed());
+    }
+    
+    /**
+     * Invert the colour of every pixel in the image, keeping its transparency.
+     */
+    private void invert(GreenfootImage image, Access access)
+    {
+        switch (access) {
+            case PER_PIXEL:
+                for (int y = 0; y < height; y++) {
+                    for (int x = 0; x < width; x++) {
+                        Color c = image.getColorAt(x, y);
+                        image.setColorAt(x, y, new Color(255 - c.getRed(), 255 - c.getGreen(), 255 - c.getBlue(), c.getAlpha()));
+                    }
+                }
+                break;
+            case BULK_ROWS:
+                int[] row = new int[width];
+                for (int y = 0; y < height; y++) {
+                    image.getPixels(0, y, width, 1, row, 0, width);
+                    invert(row);
+                    image.setPixels(0, y, width, 1, row, 0, width);
+                }
+                break;
+            case BULK_IMAGE:
+                int[] pixels = image.getPixels(0, 0, width, height);
+                invert(pixels);
+                image.setPixels(0, 0, width, height, pixels, 0, width);
+                break;
+            case DIRECT:
+                invert(image.getPixelBuffer());
+                break;
+        }
+    }
+    
+    private static void invert(int[] pixels)
+    {
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] ^= 0x00FFFFFF;
+        }
+    }
+}
@@ -0,0 +1,348 @@
+/*
+ This file is part of the Greenfoot program.
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.collision;
+
+import greenfoot.Actor;
+import greenfoot.GreenfootImage;
+import greenfoot.World;
+import greenfoot.collision.ibsp.IBSPColChecker;
+import greenfoot.util.BenchmarkHarness;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * A benchmark which drives the different collision checkers through the same
+ * synthetic workloads, using the CollisionChecker interface, and reports the
+ * throughput and allocation per operation. Unlike the CollisionProfiler, which
+ * times a real scenario, the workloads here are reproducible (they use a fixed
+ * random seed) so results can be compared between checkers and between runs.
+ * <p>
+ * Run the main method, optionally with the number of actors as an argument.
+ * A graphics environment is needed, since actor images are created.
+ */
+public class CollisionBenchmark
+{
+    private static final int WORLD_WIDTH = 2000;
+    private static final int WORLD_HEIGHT = 2000;
+    
+    private static final int DEFAULT_ACTORS = 5000;
+    
+    /** Steps run before measuring starts, to let the JIT compiler settle */
+    private static final int WARMUP_STEPS = 50;
+    private static final int MEASURED_STEPS = 200;
+    
+    /** Number of each kind of query done per step */
+    private static final int QUERIES_PER_STEP = 500;
+    
+    private static final int RANGE = 50;
+    private static final int NEIGHBOUR_DISTANCE = 30;
+    
+    private static final long SEED = 42;
+    
+    /**
+     * The operations that are measured.
+     */
+    private enum Operation
+    {
+        MOVE("move (actor side)"),
+        UPDATE("update"),
+        OBJECTS_AT("getObjectsAt"),
+        INTERSECTING("getIntersectingObjects"),
+        IN_RANGE("getObjectsInRange"),
+        NEIGHBOURS("getNeighbours"),
+        ONE_INTERSECTING("getOneIntersectingObject");
+        
+        private final String name;
+        
+        private Operation(String name)
+        {
+            this.name = name;
+        }
+        
+        @Override
+        public String toString()
+        {
+            return name;
+        }
+    }
+    
+    /**
+     * The workloads. Each one places actors in the world, and moves (or turns) some of them
+     * every step.
+     */
+    private enum Workload
+    {
+        /** Small actors spread evenly over the world, all moving randomly */
+        UNIFORM,
+        /** Small actors in a few dense swarms, which drift across the world */
+        CLUSTERED,
+        /** Large static tiles covering the world, with small actors moving over them */
+        STATIC_TILES,
+        /** Long thin actors which do not move but turn every step */
+        ROTATION
+    }
+    
+    private static class BenchWorld extends World
+    {
+        public BenchWorld()
+        {
+            super(WORLD_WIDTH, WORLD_HEIGHT, 1, false);
+        }
+    }
+    
+    private static class BenchActor extends Actor
+    {
+        public BenchActor(GreenfootImage image)
+        {
+            setImage(image);
+        }
+    }
+    
+    private final int numActors;
+    private final BenchmarkHarness harness = new BenchmarkHarness(Operation.values());
+    
+    // State of the current run:
+    private Random random;
+    private Actor[] actors;
+    private Actor[] movers;
+    private int[] oldXs;
+    private int[] oldYs;
+    private int[] clusterXs;
+    private int[] clusterYs;
+    
+    public CollisionBenchmark(int numActors)
+    {
+        this.numActors = numActors;
+    }
+    
+    public static void main(String[] args)
+    {
+        BenchmarkHarness.initialiseGreenfoot();
+        
+        int numActors = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_ACTORS;
+        
+        Map<String, Supplier<CollisionChecker>> checkers = new LinkedHashMap<String, Supplier<CollisionChecker>>();
+        checkers.put("IBSPColChecker", IBSPColChecker::new);
+        checkers.put("BVHInsChecker", BVHInsChecker::new);
+        checkers.put("GridCollisionChecker", GridCollisionChecker::new);
+        checkers.put("SpatialHashChecker", SpatialHashChecker::new);
+        checkers.put("ColManager", ColManager::new);
+        
+        CollisionBenchmark benchmark = new CollisionBenchmark(numActors);
+        for (Workload workload : Workload.values()) {
+            System.out.println();
+            System.out.println(workload + " (" + numActors + " actors)");
+            BenchmarkHarness.printHeader("checker", "operation", "op");
+            for (Map.Entry<String, Supplier<CollisionChecker>> entry : checkers.entrySet()) {
+                try {
+                    benchmark.run(workload, entry.getValue().get());
+                    benchmark.harness.printResults(entry.getKey());
+                }
+                catch (RuntimeException e) {
+                    System.out.println(String.format("%-22s failed: %s", entry.getKey(), e));
+                }
+            }
+        }
+        benchmark.harness.printChecksum();
+    }
+    
+    /**
+     * Run a workload against a checker, recording the results.
+     */
+    private void run(Workload workload, CollisionChecker checker)
+    {
+        harness.reset();
+        
+        random = new Random(SEED);
+        World world = new BenchWorld();
+        populate(workload, world);
+        
+        checker.initialize(WORLD_WIDTH, WORLD_HEIGHT, 1, false);
+        for (Actor actor : actors) {
+            checker.addObject(actor);
+        }
+        
+        for (int step = 0; step < WARMUP_STEPS + MEASURED_STEPS; step++) {
+            boolean measure = step >= WARMUP_STEPS;
+            checker.startSequence();
+            
+            // Moving the actors is measured separately from updating the checker. The
+            // world's own collision manager is never queried, so this shows the cost
+            // of moving actors which no collision query asks about.
+            long start = harness.start();
+            move(workload);
+            harness.end(measure, Operation.MOVE, start, movers.length);
+            start = harness.start();
+            if (workload == Workload.ROTATION) {
+                for (Actor actor : movers) {
+                    checker.updateObjectSize(actor);
+                }
+            }
+            else {
+                for (int i = 0; i < movers.length; i++) {
+                    checker.updateObjectLocation(movers[i], oldXs[i], oldYs[i]);
+                }
+            }
+            harness.end(measure, Operation.UPDATE, start, movers.length);
+            
+            query(checker, measure);
+        }
+    }
+    
+    /**
+     * Create the actors for a workload and add them to the world.
+     */
+    private void populate(Workload workload, World world)
+    {
+        actors = new Actor[numActors];
+        GreenfootImage small = new GreenfootImage(16, 16);
+        int first = 0;
+        
+        switch (workload) {
+            case UNIFORM:
+                break;
+            case CLUSTERED:
+                clusterXs = new int[20];
+                clusterYs = new int[20];
+                for (int c = 0; c < clusterXs.length; c++) {
+                    clusterXs[c] = random.nextInt(WORLD_WIDTH);
+                    clusterYs[c] = random.nextInt(WORLD_HEIGHT);
+                }
+                break;
+            case STATIC_TILES:
+                GreenfootImage tile = new GreenfootImage(100, 100);
+                for (int x = 50; x < WORLD_WIDTH && first < numActors; x += 100) {
+                    for (int y = 50; y < WORLD_HEIGHT && first < numActors; y += 100) {
+                        actors[first] = new BenchActor(tile);
+                        world.addObject(actors[first++], x, y);
+                    }
+                }
+                break;
+            case ROTATION:
+                small = new GreenfootImage(40, 8);
+                break;
+        }
+        
+        for (int i = first; i < numActors; i++) {
+            actors[i] = new BenchActor(small);
+            if (workload == Workload.CLUSTERED) {
+                int c = i % clusterXs.length;
+                world.addObject(actors[i], wrap(clusterXs[c] + (int) (random.nextGaussian() * 40), WORLD_WIDTH),
+                        wrap(clusterYs[c] + (int) (random.nextGaussian() * 40), WORLD_HEIGHT));
+            }
+            else {
+                world.addObject(actors[i], random.nextInt(WORLD_WIDTH), random.nextInt(WORLD_HEIGHT));
+            }
+        }
+        
+        movers = new Actor[numActors - first];
+        System.arraycopy(actors, first, movers, 0, movers.length);
+        oldXs = new int[movers.length];
+        oldYs = new int[movers.length];
+    }
+    
+    /**
+     * Move (or turn) the moving actors for one step, remembering their old locations.
+     */
+    private void move(Workload workload)
+    {
+        if (workload == Workload.ROTATION) {
+            for (Actor actor : movers) {
+                actor.turn(1 + random.nextInt(15));
+            }
+            return;
+        }
+        
+        if (workload == Workload.CLUSTERED) {
+            for (int c = 0; c < clusterXs.length; c++) {
+                clusterXs[c] += random.nextInt(5) - 2;
+                clusterYs[c] += random.nextInt(5) - 2;
+            }
+        }
+        
+        for (int i = 0; i < movers.length; i++) {
+            Actor actor = movers[i];
+            oldXs[i] = actor.getX();
+            oldYs[i] = actor.getY();
+            int dx = random.nextInt(7) - 3;
+            int dy = random.nextInt(7) - 3;
+            if (workload == Workload.CLUSTERED) {
+                // Follow the drift of the cluster
+                int c = i % clusterXs.length;
+                dx += Integer.signum(clusterXs[c] - oldXs[i]);
+                dy += Integer.signum(clusterYs[c] - oldYs[i]);
+            }
+            actor.setLocation(wrap(oldXs[i] + dx, WORLD_WIDTH), wrap(oldYs[i] + dy, WORLD_HEIGHT));
+        }
+    }
+    
+    /**
+     * Perform each kind of query a number of times, around randomly chosen moving actors.
+     */
+    private void query(CollisionChecker checker, boolean measure)
+    {
+        Actor[] targets = new Actor[QUERIES_PER_STEP];
+        for (int i = 0; i < targets.length; i++) {
+            targets[i] = movers[random.nextInt(movers.length)];
+        }
+        
+        long start = harness.start();
+        for (Actor actor : targets) {
+            harness.consume(checker.getObjectsAt(actor.getX(), actor.getY(), null).size());
+        }
+        harness.end(measure, Operation.OBJECTS_AT, start, targets.length);
+        
+        start = harness.start();
+        for (Actor actor : targets) {
+            harness.consume(checker.getIntersectingObjects(actor, null).size());
+        }
+        harness.end(measure, Operation.INTERSECTING, start, targets.length);
+        
+        start = harness.start();
+        for (Actor actor : targets) {
+            harness.consume(checker.getObjectsInRange(actor.getX(), actor.getY(), RANGE, null).size());
+        }
+        harness.end(measure, Operation.IN_RANGE, start, targets.length);
+        
+        start = harness.start();
+        for (Actor actor : targets) {
+            harness.consume(checker.getNeighbours(actor, NEIGHBOUR_DISTANCE, true, null).size());
+        }
+        harness.end(measure, Operation.NEIGHBOURS, start, targets.length);
+        
+        start = harness.start();
+        for (Actor actor : targets) {
+            if (checker.getOneIntersectingObject(actor, null) != null) {
+                harness.consume(1);
+            }
+        }
+        harness.end(measure, Operation.ONE_INTERSECTING, start, targets.length);
+    }
+    
+    private static int wrap(int value, int size)
+    {
+        return Math.floorMod(value, size);
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ This file is part of the Greenfoot program.
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.core;
+
+import greenfoot.Actor;
+import greenfoot.ActorVisitor;
+import greenfoot.Greenfoot;
+import greenfoot.GreenfootImage;
+import greenfoot.World;
+import greenfoot.platforms.standalone.GreenfootUtilDelegateStandAlone;
+import greenfoot.util.GreenfootUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for HeadlessRunner.
+ */
+public class HeadlessRunnerTest
+{
+    private static final int NUM_WORLDS = 4;
+    private static final int NUM_ROUNDS = 200;
+    
+    @BeforeClass
+    public static void setUp()
+    {
+        System.setProperty("java.awt.headless", "true");
+        GreenfootUtil.initialise(new GreenfootUtilDelegateStandAlone());
+        ActorVisitor.setDelegate(name -> null);
+    }
+    
+    /**
+     * A world full of actors which wander about, and remove each other when they
+     * collide, so that the collision checker adds, moves and removes actors all the
+     * time.
+     */
+    public static class CrowdedWorld extends World
+    {
+        public CrowdedWorld()
+        {
+            super(300, 300, 1);
+            for (int i = 0; i < 150; i++) {
+                addObject(new Wanderer(), Greenfoot.getRandomNumber(300), Greenfoot.getRandomNumber(300));
+            }
+        }
+        
+        @Override
+        public void act()
+        {
+            // Keep the population up
+            if (numberOfObjects() < 100) {
+                addObject(new Wanderer(), Greenfoot.getRandomNumber(300), Greenfoot.getRandomNumber(300));
+            }
+        }
+    }
+    
+    public static class Wanderer extends Actor
+    {
+        public Wanderer()
+        {
+            setImage(new GreenfootImage(8, 8));
+        }
+        
+        @Override
+        public void act()
+        {
+            turn(Greenfoot.getRandomNumber(41) - 20);
+            move(3);
+            Actor other = getOneIntersectingObject(Wanderer.class);
+            if (other != null && Greenfoot.getRandomNumber(4) == 0) {
+                getWorld().removeObject(other);
+            }
+        }
+    }
+    
+    /**
+     * Worlds run at the same time must give the same results as when run one at a time.
+     */
+    @Test
+    public void testConcurrentWorldsMatchSerialRuns() throws Exception
+    {
+        List<Supplier<World>> factories = new ArrayList<Supplier<World>>();
+        for (int i = 0; i < NUM_WORLDS; i++) {
+            factories.add(CrowdedWorld::new);
+        }
+        
+        List<String> serial = new ArrayList<String>();
+        for (int i = 0; i < NUM_WORLDS; i++) {
+            serial.add(new HeadlessRunner(i).run(factories.get(i), NUM_ROUNDS,
+                    world -> HeadlessRunner.snapshot(world).toString()));
+        }
+        
+        // Repeat, to give the threads more chances to interfere
+        for (int repeat = 0; repeat < 5; repeat++) {
+            List<String> concurrent = HeadlessRunner.runConcurrently(factories, NUM_ROUNDS,
+                    world -> HeadlessRunner.snapshot(world).toString());
+            assertEquals(serial, concurrent);
+        }
+    }
+}
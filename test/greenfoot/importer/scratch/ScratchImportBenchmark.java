@@ -0,0 +1,157 @@
+/*
+ This file is part of the Greenfoot program.
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.importer.scratch;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import bluej.utility.FileUtility;
+
+/**
+ * A timing harness for the Scratch importer. It imports a Scratch (.sb) file
+ * several times, and reports how long each import took.
+ * <p>
+ * Run the main method with the path of a Scratch file to import that file, or
+ * with no arguments to import a generated file holding many large images and
+ * sounds (about 50MB), which is the worst case for the importer. Greenfoot and
+ * BlueJ must be on the class path. The imported projects are deleted afterwards.
+ */
+public class ScratchImportBenchmark
+{
+    private static final int RUNS = 5;
+    
+    private static final int GENERATED_IMAGES = 100;
+    private static final int GENERATED_IMAGE_SIZE = 320;
+    private static final int GENERATED_SOUNDS = 50;
+    private static final int GENERATED_SOUND_BYTES = 200 * 1000;
+    
+    private static final long SEED = 42;
+    
+    public static void main(String[] args) throws IOException
+    {
+        File scratchFile;
+        boolean generated = args.length == 0;
+        if (generated) {
+            scratchFile = File.createTempFile("benchmark", ".sb");
+            writeSampleFile(scratchFile);
+        }
+        else {
+            scratchFile = new File(args[0]);
+        }
+        
+        try {
+            System.out.println("Importing " + scratchFile + " (" + scratchFile.length() / 1024 + "KB)");
+            for (int run = 0; run < RUNS; run++) {
+                long start = System.nanoTime();
+                File project = ScratchImport.convert(scratchFile);
+                long time = System.nanoTime() - start;
+                System.out.println(String.format("run %d: %8.1f ms", run + 1, time / 1e6));
+                FileUtility.deleteDir(project);
+            }
+        }
+        finally {
+            if (generated) {
+                scratchFile.delete();
+            }
+        }
+    }
+    
+    /**
+     * Write a Scratch file holding many uncompressed 32-bit images and ADPCM sounds
+     * (with no sprites or stage, which the importer does not need).
+     */
+    private static void writeSampleFile(File file) throws IOException
+    {
+        Random random = new Random(SEED);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.write("ScratchV02".getBytes(StandardCharsets.US_ASCII));
+            out.writeInt(0); // Empty info block
+            out.write("ObjS\001Stch\001".getBytes(StandardCharsets.US_ASCII));
+            out.writeInt(GENERATED_IMAGES + GENERATED_SOUNDS);
+            
+            for (int i = 0; i < GENERATED_IMAGES; i++) {
+                out.writeByte(ScratchUserObject.IMAGE_MEDIA);
+                out.writeByte(1); // version
+                out.writeByte(6); // fields
+                writeString(out, "image" + i);
+                // Form: width, height, depth, offset, bits
+                out.writeByte(34);
+                writeInt(out, GENERATED_IMAGE_SIZE);
+                writeInt(out, GENERATED_IMAGE_SIZE);
+                writeInt(out, 32);
+                out.writeByte(1); // nil
+                out.writeByte(13); // Bitmap
+                out.writeInt(GENERATED_IMAGE_SIZE * GENERATED_IMAGE_SIZE);
+                for (int p = 0; p < GENERATED_IMAGE_SIZE * GENERATED_IMAGE_SIZE; p++) {
+                    // Smooth gradients with some noise, so the images compress like real ones
+                    int x = p % GENERATED_IMAGE_SIZE;
+                    int y = p / GENERATED_IMAGE_SIZE;
+                    int noise = random.nextInt(8);
+                    out.writeInt(0xFF000000 | ((x + i) & 0xFF) << 16 | ((y + noise) & 0xFF) << 8 | ((x + y) & 0xFF));
+                }
+                // Rotation centre (a point), then no text box, JPEG or composite image
+                out.writeByte(32);
+                writeInt(out, GENERATED_IMAGE_SIZE / 2);
+                writeInt(out, GENERATED_IMAGE_SIZE / 2);
+                out.writeByte(1);
+                out.writeByte(1);
+                out.writeByte(1);
+            }
+            
+            for (int i = 0; i < GENERATED_SOUNDS; i++) {
+                out.writeByte(ScratchUserObject.SOUND_MEDIA);
+                out.writeByte(1); // version
+                out.writeByte(7); // fields
+                writeString(out, "sound" + i);
+                out.writeByte(1); // no original sound
+                writeInt(out, 100); // volume
+                writeInt(out, 50); // balance
+                writeInt(out, 22050); // sample rate
+                writeInt(out, 4); // bits per sample
+                byte[] data = new byte[GENERATED_SOUND_BYTES];
+                random.nextBytes(data);
+                out.writeByte(11); // ByteArray
+                out.writeInt(data.length);
+                out.write(data);
+            }
+        }
+    }
+    
+    private static void writeString(DataOutputStream out, String s) throws IOException
+    {
+        byte[] bytes = s.getBytes(StandardCharsets.US_ASCII);
+        out.writeByte(9);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+    
+    private static void writeInt(DataOutputStream out, int value) throws IOException
+    {
+        out.writeByte(4);
+        out.writeInt(value);
+    }
+}
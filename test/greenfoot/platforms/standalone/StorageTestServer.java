@@ -0,0 +1,432 @@
+/*
+ This file is part of the Greenfoot program.
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.platforms.standalone;
+
+import greenfoot.UserInfo;
+import greenfoot.UserInfoVisitor;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.imageio.ImageIO;
+
+/**
+ * An in-process stand-in for the storage server, speaking the same protocol as
+ * {@link StorageClient}, so that the client can be tried out and load-tested without
+ * a network. Data is held in memory only, and passcodes are not checked.
+ * 
+ * <p>Each response is delayed by a fixed latency, which models the network round trip
+ * without holding up the server: requests which arrive while earlier responses are
+ * still delayed are processed straight away.
+ * 
+ * <p>Run the main method to load-test the client, waiting for each request in turn (as
+ * the blocking UserInfo methods do) and then pipelining them. The optional arguments are
+ * the number of clients, the number of requests per client and the latency in milliseconds.
+ * 
+ * <p>This is a development tool only, kept with the tests: it is not part of the runtime.
+ */
+class StorageTestServer
+{
+    private final long latencyNanos;
+    private final Map<Integer, StoredUser> users = new HashMap<>(); // guarded by itself
+    private final AtomicLong requestsHandled = new AtomicLong();
+    private ServerSocketChannel serverChannel;
+    private byte[] userImage;
+    
+    /**
+     * A user's data as held by the server.
+     */
+    private static class StoredUser
+    {
+        private final String userName;
+        private int score;
+        private int[] ints = new int[UserInfo.NUM_INTS];
+        private String[] strings = new String[UserInfo.NUM_STRINGS];
+        
+        StoredUser(String userName)
+        {
+            this.userName = userName;
+        }
+    }
+    
+    /**
+     * Create a server which delays each response by the given number of milliseconds.
+     */
+    StorageTestServer(long latencyMillis)
+    {
+        this.latencyNanos = latencyMillis * 1000000L;
+    }
+    
+    /**
+     * The name the server gives to the user with the given ID.
+     */
+    static String getUserName(int userId)
+    {
+        return "user" + userId;
+    }
+    
+    /**
+     * Start listening on the loopback interface.
+     * 
+     * @return The port the server is listening on.
+     */
+    int start() throws IOException
+    {
+        BufferedImage image = new BufferedImage(50, 50, BufferedImage.TYPE_INT_ARGB);
+        ByteArrayOutputStream imageBytes = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", imageBytes);
+        userImage = imageBytes.toByteArray();
+        
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        Thread acceptor = new Thread(this::acceptConnections, "Storage test server");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        return serverChannel.socket().getLocalPort();
+    }
+    
+    /**
+     * Stop accepting connections. Existing connections are left to be closed by the clients.
+     */
+    void stop() throws IOException
+    {
+        serverChannel.close();
+    }
+    
+    /**
+     * The number of requests handled since the server started.
+     */
+    long getRequestsHandled()
+    {
+        return requestsHandled.get();
+    }
+    
+    private void acceptConnections()
+    {
+        try {
+            while (true) {
+                SocketChannel channel = serverChannel.accept();
+                Thread reader = new Thread(() -> serve(channel), "Storage test server connection");
+                reader.setDaemon(true);
+                reader.start();
+            }
+        }
+        catch (IOException e) {
+            // Stopped
+        }
+    }
+    
+    /**
+     * Handle the requests on a connection in turn. The responses are passed to a
+     * separate thread which writes each one out once its latency has passed.
+     */
+    private void serve(SocketChannel channel)
+    {
+        BlockingQueue<DelayedResponse> responses = new LinkedBlockingQueue<>();
+        Thread writer = new Thread(() -> writeResponses(channel, responses), "Storage test server writer");
+        writer.setDaemon(true);
+        writer.start();
+        
+        try {
+            ByteBuffer handshake = StorageClient.readResponse(channel);
+            // The passcode comes first, and we don't check it:
+            handshake.position(handshake.limit() - 8);
+            handshake.getInt(); // scenario ID
+            StoredUser user = getUser(handshake.getInt());
+            
+            while (true) {
+                ByteBuffer request = StorageClient.readResponse(channel);
+                long due = System.nanoTime() + latencyNanos;
+                ByteBuffer response = handle(user, request);
+                requestsHandled.incrementAndGet();
+                responses.add(new DelayedResponse(due, response));
+            }
+        }
+        catch (IOException | RuntimeException e) {
+            // Connection closed by the client, or a malformed request
+        }
+        finally {
+            responses.add(new DelayedResponse(0, null));
+        }
+    }
+    
+    private void writeResponses(SocketChannel channel, BlockingQueue<DelayedResponse> responses)
+    {
+        try {
+            while (true) {
+                DelayedResponse response = responses.take();
+                if (response.message == null)
+                    break;
+                long wait = response.due - System.nanoTime();
+                if (wait > 0) {
+                    Thread.sleep(wait / 1000000L, (int) (wait % 1000000L));
+                }
+                while (response.message.hasRemaining()) {
+                    channel.write(response.message);
+                }
+            }
+        }
+        catch (IOException | InterruptedException e) {
+            // Give up on the connection
+        }
+        try {
+            channel.close();
+        }
+        catch (IOException e) {}
+    }
+    
+    private StoredUser getUser(int userId)
+    {
+        synchronized (users) {
+            return users.computeIfAbsent(userId, id -> new StoredUser(getUserName(id)));
+        }
+    }
+    
+    private ByteBuffer handle(StoredUser user, ByteBuffer request) throws IOException
+    {
+        byte command = request.get();
+        switch (command)
+        {
+            case StorageClient.GET_CURRENT_USER:
+                synchronized (users) {
+                    List<StoredUser> ranked = getRankedUsers();
+                    return writeLines(ranked, ranked.indexOf(user), 1);
+                }
+            case StorageClient.STORE_CURRENT_USER:
+                int score = request.getInt();
+                int numInts = request.getInt();
+                int numStrings = request.getInt();
+                int[] ints = new int[UserInfo.NUM_INTS];
+                String[] strings = new String[UserInfo.NUM_STRINGS];
+                for (int i = 0; i < numInts; i++) {
+                    int x = request.getInt();
+                    if (i < ints.length)
+                        ints[i] = x;
+                }
+                for (int i = 0; i < numStrings; i++) {
+                    String s = StorageClient.getString(request);
+                    if (i < strings.length)
+                        strings[i] = s;
+                }
+                synchronized (users) {
+                    user.score = score;
+                    user.ints = ints;
+                    user.strings = strings;
+                }
+                ByteBuffer buf = StorageClient.makeRequest(1);
+                buf.put((byte) 0);
+                buf.flip();
+                return buf;
+            case StorageClient.GET_TOP_USERS:
+                int topLimit = request.getInt();
+                synchronized (users) {
+                    List<StoredUser> ranked = getRankedUsers();
+                    return writeLines(ranked, 0, Math.min(topLimit, ranked.size()));
+                }
+            case StorageClient.GET_NEARBY_USERS:
+                int nearbyLimit = request.getInt();
+                synchronized (users) {
+                    List<StoredUser> ranked = getRankedUsers();
+                    int count = Math.min(nearbyLimit, ranked.size());
+                    int first = Math.max(0, Math.min(ranked.indexOf(user) - count / 2, ranked.size() - count));
+                    return writeLines(ranked, first, count);
+                }
+            case StorageClient.GET_USER_IMAGE:
+                StorageClient.getString(request); // user name; everyone has the same image
+                ByteBuffer image = StorageClient.makeRequest(4 + userImage.length);
+                image.putInt(userImage.length);
+                image.put(userImage);
+                image.flip();
+                return image;
+            default:
+                throw new IOException("Unknown request: " + command);
+        }
+    }
+    
+    /**
+     * Get all the users, highest score first. Must be called while holding the users lock.
+     */
+    private List<StoredUser> getRankedUsers()
+    {
+        List<StoredUser> ranked = new ArrayList<>(users.values());
+        ranked.sort((a, b) -> Integer.compare(b.score, a.score));
+        return ranked;
+    }
+    
+    /**
+     * Write a response holding the given range of users, in the format read by
+     * StorageClient.readLines, preceded by the number of users.
+     */
+    private static ByteBuffer writeLines(List<StoredUser> ranked, int first, int count)
+    {
+        int size = 4 + 4 + 4;
+        for (int line = first; line < first + count; line++) {
+            StoredUser user = ranked.get(line);
+            size += StorageClient.stringSize(user.userName) + 4 + 4 + UserInfo.NUM_INTS * 4;
+            for (String s : user.strings) {
+                size += StorageClient.stringSize(s);
+            }
+        }
+        
+        ByteBuffer buf = StorageClient.makeRequest(size);
+        buf.putInt(count);
+        buf.putInt(UserInfo.NUM_INTS);
+        buf.putInt(UserInfo.NUM_STRINGS);
+        for (int line = first; line < first + count; line++) {
+            StoredUser user = ranked.get(line);
+            StorageClient.putString(buf, user.userName);
+            buf.putInt(user.score);
+            buf.putInt(line + 1);
+            for (int x : user.ints) {
+                buf.putInt(x);
+            }
+            for (String s : user.strings) {
+                StorageClient.putString(buf, s);
+            }
+        }
+        buf.flip();
+        return buf;
+    }
+    
+    /**
+     * A response, and the time at which it should be written.
+     */
+    private static class DelayedResponse
+    {
+        private final long due;
+        private final ByteBuffer message;
+        
+        DelayedResponse(long due, ByteBuffer message)
+        {
+            this.due = due;
+            this.message = message;
+        }
+    }
+    
+    public static void main(String[] args) throws Exception
+    {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int requests = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        long latency = args.length > 2 ? Long.parseLong(args[2]) : 20;
+        
+        StorageTestServer server = new StorageTestServer(latency);
+        int port = server.start();
+        System.out.println(clients + " clients, " + requests + " requests each, "
+                + latency + "ms latency");
+        
+        runLoad(server, port, clients, requests, false, 0);
+        runLoad(server, port, clients, requests, true, 0);
+        runLoad(server, port, clients, requests, true, StorageClient.DEFAULT_CACHE_TTL);
+        server.stop();
+    }
+    
+    /**
+     * Have each client make a mix of requests, either waiting for each response before
+     * making the next request or making them all and then waiting for the responses.
+     */
+    private static void runLoad(StorageTestServer server, int port, int clients, int requests,
+            boolean pipelined, long cacheTimeToLive) throws Exception
+    {
+        long handledBefore = server.getRequestsHandled();
+        List<StorageClient> storageClients = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int c = 0; c < clients; c++) {
+            int userId = c + 1;
+            StorageClient client = new StorageClient(InetAddress.getLoopbackAddress().getHostAddress(),
+                    port, new byte[16], 1, userId);
+            client.setCacheTimeToLive(cacheTimeToLive);
+            storageClients.add(client);
+            Thread thread = new Thread(() -> makeRequests(client, userId, requests, pipelined));
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long elapsed = System.nanoTime() - start;
+        
+        long sent = 0;
+        long cacheHits = 0;
+        long coalesced = 0;
+        int maxInFlight = 0;
+        for (StorageClient client : storageClients) {
+            StorageClient.Statistics stats = client.getStatistics();
+            sent += stats.getRequestsSent();
+            cacheHits += stats.getCacheHits();
+            coalesced += stats.getCoalescedStores();
+            maxInFlight = Math.max(maxInFlight, stats.getMaxInFlight());
+            client.close();
+        }
+        
+        System.out.printf("%-10s cache %4dms: %8.1f ms, %9.1f requests/s; sent %d, handled %d, "
+                + "cache hits %d, coalesced stores %d, max in flight %d%n",
+                pipelined ? "pipelined" : "blocking", cacheTimeToLive, elapsed / 1e6,
+                (double) clients * requests * 1e9 / elapsed, sent,
+                server.getRequestsHandled() - handledBefore, cacheHits, coalesced, maxInFlight);
+    }
+    
+    private static void makeRequests(StorageClient client, int userId, int requests, boolean pipelined)
+    {
+        UserInfo info = UserInfoVisitor.allocate(getUserName(userId), 0, null);
+        List<CompletableFuture<?>> pending = new ArrayList<>();
+        // getCurrentUserInfo is left out, as all the clients in this VM would share
+        // the one UserInfo instance for the current user:
+        for (int i = 0; i < requests; i++) {
+            CompletableFuture<?> result;
+            if (i % 10 == 0) {
+                info.setScore(userId * 1000 + i);
+                result = client.store(info);
+            }
+            else if (i % 3 == 0) {
+                result = client.getTopUserInfo(10);
+            }
+            else if (i % 3 == 1) {
+                result = client.getNearbyUserInfo(5);
+            }
+            else {
+                result = client.getUserImage(getUserName(userId));
+            }
+            if (pipelined) {
+                pending.add(result);
+            }
+            else {
+                result.join();
+            }
+        }
+        CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0])).join();
+    }
+}
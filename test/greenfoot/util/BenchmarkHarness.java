@@ -0,0 +1,184 @@
+/*
+ This file is part of the Greenfoot program.
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.util;
+
+import greenfoot.ActorVisitor;
+import greenfoot.platforms.standalone.GreenfootUtilDelegateStandAlone;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Records the time taken and the memory allocated by the operations measured in
+ * a benchmark, and prints the results. The operations are the constants of an
+ * enum, whose toString() gives the name printed for each. A benchmark brackets
+ * each batch of operations with {@link #start()} and {@link #end}:
+ * 
+ * <pre>
+ *     long start = harness.start();
+ *     ... do n operations ...
+ *     harness.end(measure, ADD, start, n);
+ * </pre>
+ * 
+ * Allocation is counted per thread, using the HotSpot extension to the thread
+ * MXBean; on other JVMs it is reported as zero.
+ */
+public class BenchmarkHarness
+{
+    private final Enum<?>[] operations;
+    
+    private final long[] times;
+    private final long[] allocated;
+    private final long[] counts;
+    
+    private long allocationStart;
+    
+    /** Prevents the JIT from removing work whose results are not otherwise used */
+    private long sink;
+    
+    private static final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+    
+    /**
+     * Create a harness for the given operations (all the values of an enum).
+     */
+    public BenchmarkHarness(Enum<?>[] operations)
+    {
+        this.operations = operations;
+        times = new long[operations.length];
+        allocated = new long[operations.length];
+        counts = new long[operations.length];
+    }
+    
+    /**
+     * Set up Greenfoot as for an exported scenario, so that worlds, actors and
+     * images can be created. A graphics environment is needed.
+     */
+    public static void initialiseGreenfoot()
+    {
+        GreenfootUtil.initialise(new GreenfootUtilDelegateStandAlone());
+        ActorVisitor.setDelegate(name -> null);
+    }
+    
+    /**
+     * Discard the results recorded so far, before a new run.
+     */
+    public void reset()
+    {
+        for (int i = 0; i < operations.length; i++) {
+            times[i] = 0;
+            allocated[i] = 0;
+            counts[i] = 0;
+        }
+    }
+    
+    /**
+     * Start measuring a batch of operations.
+     * 
+     * @return  The start time, to pass to end()
+     */
+    public long start()
+    {
+        // Read the allocation counter first, so that reading it is not included in the time
+        allocationStart = allocatedBytes();
+        return System.nanoTime();
+    }
+    
+    /**
+     * Finish measuring a batch of operations.
+     * 
+     * @param measure    Whether to record the results (false while warming up)
+     * @param operation  The operation
+     * @param start      The time returned by start()
+     * @param ops        The number of operations in the batch
+     */
+    public void end(boolean measure, Enum<?> operation, long start, long ops)
+    {
+        long time = System.nanoTime() - start;
+        long bytes = allocatedBytes() - allocationStart;
+        if (measure) {
+            int i = operation.ordinal();
+            times[i] += time;
+            allocated[i] += bytes;
+            counts[i] += ops;
+        }
+    }
+    
+    /**
+     * Use a result, so that the work which produced it cannot be optimised away.
+     */
+    public void consume(long value)
+    {
+        sink += value;
+    }
+    
+    /**
+     * Print the column headings for printResults().
+     * 
+     * @param subject    The heading for the first column (what was measured)
+     * @param operation  The heading for the second column (the operations)
+     * @param unit       What one operation counts, for instance "op" or "pixel"
+     */
+    public static void printHeader(String subject, String operation, String unit)
+    {
+        System.out.println(String.format("%-22s %-26s %14s %10s", subject, operation, unit + "s/sec", "B/" + unit));
+    }
+    
+    /**
+     * Print the throughput and allocation per operation of each operation which
+     * has been measured since the last reset.
+     * 
+     * @param subject  What was measured (for instance, the implementation)
+     */
+    public void printResults(String subject)
+    {
+        for (int i = 0; i < operations.length; i++) {
+            if (counts[i] == 0) {
+                continue;
+            }
+            double opsPerSec = counts[i] * 1e9 / Math.max(times[i], 1);
+            double bytesPerOp = (double) allocated[i] / counts[i];
+            System.out.println(String.format("%-22s %-26s %14.0f %10.2f", subject, operations[i], opsPerSec, bytesPerOp));
+        }
+    }
+    
+    /**
+     * Print the checksum of the results passed to consume(), which shows that
+     * they were used.
+     */
+    public void printChecksum()
+    {
+        System.out.println();
+        System.out.println("(checksum " + sink + ")");
+    }
+    
+    /**
+     * Get the number of bytes allocated by this thread so far, or 0 if the JVM
+     * cannot tell us.
+     */
+    public static long allocatedBytes()
+    {
+        if (threadBean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threadBean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+}